@@ -0,0 +1,24 @@
+--liquibase formatted sql
+
+-- changeset leon:permission_v1.3.2_20261018_100000
+-- comment: Permitted data ids of large permission snapshots, joined by the data permission filter
+CREATE TABLE t_permission_snapshot
+(
+    id              BIGINT PRIMARY KEY,
+    data_type       VARCHAR(31) NOT NULL,
+    size            INTEGER NOT NULL,
+    last_used_at    BIGINT NOT NULL,
+    created_at      BIGINT NOT NULL
+);
+
+CREATE INDEX idx_permission_snapshot_last_used_at ON t_permission_snapshot (last_used_at);
+
+CREATE TABLE t_permission_snapshot_item
+(
+    snapshot_id     BIGINT NOT NULL,
+    data_number     BIGINT DEFAULT NULL,
+    data_string     VARCHAR(255) DEFAULT NULL
+);
+
+CREATE INDEX idx_permission_snapshot_item_number ON t_permission_snapshot_item (snapshot_id, data_number);
+CREATE INDEX idx_permission_snapshot_item_string ON t_permission_snapshot_item (snapshot_id, data_string);
@@ -0,0 +1,5 @@
+--liquibase formatted sql
+
+-- changeset leon:workflow_v1.3.2_20261018_110000
+-- comment: Add index on created_at column of the log traces for time-series data cleanup
+CREATE INDEX IF NOT EXISTS idx_flow_log_data_created_at ON "t_flow_log_data" (created_at);
@@ -0,0 +1,104 @@
+package com.milesight.beaveriot.benchmark;
+
+import com.milesight.beaveriot.context.integration.model.ExchangePayload;
+import com.milesight.beaveriot.context.integration.model.event.ExchangeEvent;
+import com.milesight.beaveriot.eventbus.EventBusDispatcher;
+import com.milesight.beaveriot.eventbus.UniqueListenerCacheKey;
+import com.milesight.beaveriot.eventbus.configuration.ExecutionOptions;
+import com.milesight.beaveriot.eventbus.interceptor.EventInterceptorChain;
+import com.milesight.beaveriot.eventbus.invoke.ListenerParameterResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.support.StaticApplicationContext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatching of an entity event through a subscription table of the given size.
+ * <p>
+ * Half of the subscriptions listen to the exact property keys of the devices and the other half to the wildcard keys
+ * of the devices, the listeners run on the calling thread so that only the dispatching itself is measured.
+ *
+ * @author leon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventBusDispatcherBenchmark {
+
+    private static final String KEY_FORMAT = "benchmark-integration.device.sensor-%05d.%s";
+
+    private static final String[] EVENT_TYPES = {ExchangeEvent.EventType.REPORT_EVENT};
+
+    @Param({"100", "1000", "10000"})
+    private int subscriptions;
+
+    private EventBusDispatcher<ExchangeEvent> dispatcher;
+
+    private StaticApplicationContext applicationContext;
+
+    private ExchangeEvent event;
+
+    private long invocations;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        applicationContext = new StaticApplicationContext();
+        applicationContext.getBeanFactory().registerSingleton(ExecutionOptions.defaultOptions().getEventBusTaskExecutor(), (Executor) Runnable::run);
+        applicationContext.refresh();
+
+        dispatcher = new EventBusDispatcher<>(ExecutionOptions.defaultOptions(), new ListenerParameterResolver(), new EventInterceptorChain<>(null));
+        dispatcher.setApplicationContext(applicationContext);
+
+        int devices = subscriptions / 2;
+        for (int i = 0; i < devices; i++) {
+            register("exact-" + i, KEY_FORMAT.formatted(i, "temperature"));
+            register("wildcard-" + i, KEY_FORMAT.formatted(i, "*"));
+        }
+
+        Map<String, Object> values = new LinkedHashMap<>();
+        int device = devices / 2;
+        values.put(KEY_FORMAT.formatted(device, "temperature"), 23.5);
+        values.put(KEY_FORMAT.formatted(device, "humidity"), 60);
+        event = ExchangeEvent.of(ExchangeEvent.EventType.REPORT_EVENT, ExchangePayload.create(values));
+    }
+
+    private void register(String id, String keyPattern) {
+        dispatcher.registerDynamicSubscribe(ExchangeEvent.class, new UniqueListenerCacheKey(id, keyPattern, EVENT_TYPES),
+                (exchangeEvent, matchMultiKeys) -> invocations += matchMultiKeys.length);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        applicationContext.close();
+    }
+
+    @Benchmark
+    public long publish() {
+        dispatcher.publish(event);
+        return invocations;
+    }
+
+    @Benchmark
+    public Object handle() {
+        return dispatcher.handle(event);
+    }
+
+}
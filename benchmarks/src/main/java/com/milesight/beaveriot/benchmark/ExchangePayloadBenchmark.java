@@ -0,0 +1,110 @@
+package com.milesight.beaveriot.benchmark;
+
+import com.milesight.beaveriot.context.integration.entity.annotation.AnnotationEntityCache;
+import com.milesight.beaveriot.context.integration.model.ExchangePayload;
+import com.milesight.beaveriot.context.integration.proxy.MapExchangePayloadProxy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filtering of an exchange payload for a listener and reading it through the annotated entity proxy, as done for
+ * every listener an event is dispatched to.
+ *
+ * @author leon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExchangePayloadBenchmark {
+
+    private static final String TEMPERATURE_KEY = "benchmark-integration.integration.temperature";
+
+    private static final String HUMIDITY_KEY = "benchmark-integration.integration.humidity";
+
+    @Param({"8", "64", "512"})
+    private int payloadSize;
+
+    private ExchangePayload payload;
+
+    private String[] assignKeys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws NoSuchFieldException {
+        AnnotationEntityCache.INSTANCE.cacheEntityMethod(BenchmarkEntities.class.getDeclaredField("temperature"), TEMPERATURE_KEY);
+        AnnotationEntityCache.INSTANCE.cacheEntityMethod(BenchmarkEntities.class.getDeclaredField("humidity"), HUMIDITY_KEY);
+
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put(TEMPERATURE_KEY, 23.5);
+        values.put(HUMIDITY_KEY, "60");
+        for (int i = values.size(); i < payloadSize; i++) {
+            values.put("benchmark-integration.integration.property-" + i, i);
+        }
+        payload = ExchangePayload.create(values);
+        assignKeys = new String[]{TEMPERATURE_KEY, HUMIDITY_KEY};
+    }
+
+    @Benchmark
+    public ExchangePayload createFrom() {
+        return ExchangePayload.createFrom(payload, assignKeys);
+    }
+
+    @Benchmark
+    public ExchangePayload createFromAll() {
+        return ExchangePayload.createFrom(payload);
+    }
+
+    @Benchmark
+    public BenchmarkEntities createProxy() {
+        return new MapExchangePayloadProxy<>(payload, BenchmarkEntities.class).proxy();
+    }
+
+    @Benchmark
+    public double createProxyAndRead() {
+        BenchmarkEntities entities = new MapExchangePayloadProxy<>(ExchangePayload.createFrom(payload, assignKeys), BenchmarkEntities.class).proxy();
+        return entities.getTemperature() + entities.getHumidity();
+    }
+
+    /**
+     * Annotated entities of an integration, the keys of the fields are registered as the entity loader does
+     */
+    public static class BenchmarkEntities extends ExchangePayload {
+
+        private Double temperature;
+
+        private Integer humidity;
+
+        public Double getTemperature() {
+            return temperature;
+        }
+
+        public void setTemperature(Double temperature) {
+            this.temperature = temperature;
+        }
+
+        public Integer getHumidity() {
+            return humidity;
+        }
+
+        public void setHumidity(Integer humidity) {
+            this.humidity = humidity;
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.milesight.beaveriot.benchmark;
+
+import com.milesight.beaveriot.rule.components.code.ExpressionEvaluator;
+import com.milesight.beaveriot.rule.components.code.LanguageRouteConfigurer;
+import com.milesight.beaveriot.rule.model.flow.ExpressionNode;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of the expression of a script code node, the GraalVM languages run on the pooled contexts as in a flow.
+ *
+ * @author leon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpressionEvaluatorBenchmark {
+
+    private static final Map<String, String> EXPRESSIONS = Map.of(
+            "js", "return temperature * 1.8 + 32;",
+            "python", "temperature * 1.8 + 32",
+            "mvel", "temperature * 1.8 + 32",
+            "groovy", "temperature * 1.8 + 32"
+    );
+
+    @Param({"js", "python", "mvel", "groovy"})
+    private String language;
+
+    private CamelContext camelContext;
+
+    private ExpressionNode expression;
+
+    private Map<String, Object> inputVariables;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        camelContext = new DefaultCamelContext();
+        new LanguageRouteConfigurer().customizeRoute(camelContext);
+        camelContext.start();
+
+        expression = ExpressionNode.create(language, EXPRESSIONS.get(language));
+        inputVariables = Map.of("temperature", 23.5);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        camelContext.stop();
+    }
+
+    @Benchmark
+    public Object evaluate() {
+        Exchange exchange = new DefaultExchange(camelContext);
+        exchange.getIn().setBody(Map.of("deviceId", "sensor-00042"));
+        return ExpressionEvaluator.evaluate(expression, exchange, inputVariables, Object.class);
+    }
+
+}
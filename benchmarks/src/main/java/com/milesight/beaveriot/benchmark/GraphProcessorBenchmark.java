@@ -0,0 +1,114 @@
+package com.milesight.beaveriot.benchmark;
+
+import com.google.common.graph.GraphBuilder;
+import com.google.common.graph.MutableGraph;
+import com.milesight.beaveriot.rule.flow.graph.GraphProcessor;
+import com.milesight.beaveriot.rule.flow.parallel.ParallelBranchExecutor;
+import org.apache.camel.AsyncProcessor;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.AsyncProcessorConverterHelper;
+import org.apache.camel.support.DefaultExchange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Execution of a workflow graph whose nodes are lightweight processors, so that the cost of walking the graph and of
+ * copying and merging the exchanges of parallel branches is measured rather than the work of the nodes.
+ * <ul>
+ *     <li>sequence: a chain of {@link #nodes} nodes</li>
+ *     <li>parallel: a fan-out into {@link #nodes} branches of two nodes each</li>
+ * </ul>
+ *
+ * @author leon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphProcessorBenchmark {
+
+    private static final String BEGIN_NODE_ID = "begin";
+
+    @Param({"sequence", "parallel"})
+    private String shape;
+
+    @Param({"4", "16"})
+    private int nodes;
+
+    private CamelContext camelContext;
+
+    private ExecutorService executor;
+
+    private GraphProcessor graphProcessor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        camelContext = new DefaultCamelContext();
+        camelContext.start();
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+        MutableGraph<String> graph = GraphBuilder.directed().build();
+        Map<String, AsyncProcessor> processors = new HashMap<>();
+        graph.addNode(BEGIN_NODE_ID);
+        if ("sequence".equals(shape)) {
+            String previous = BEGIN_NODE_ID;
+            for (int i = 0; i < nodes; i++) {
+                String nodeId = "node-" + i;
+                addNode(graph, processors, previous, nodeId);
+                previous = nodeId;
+            }
+        } else {
+            for (int i = 0; i < nodes; i++) {
+                String branchNodeId = "branch-" + i;
+                addNode(graph, processors, BEGIN_NODE_ID, branchNodeId);
+                addNode(graph, processors, branchNodeId, branchNodeId + "-next");
+            }
+        }
+
+        ParallelBranchExecutor branchExecutor = new ParallelBranchExecutor(executor, Duration.ofSeconds(30));
+        graphProcessor = new GraphProcessor(camelContext, BEGIN_NODE_ID, processors, graph, null, branchExecutor);
+    }
+
+    private static void addNode(MutableGraph<String> graph, Map<String, AsyncProcessor> processors, String parentNodeId, String nodeId) {
+        graph.putEdge(parentNodeId, nodeId);
+        processors.put(nodeId, AsyncProcessorConverterHelper.convert(exchange -> exchange.setProperty(nodeId, exchange.getIn().getBody())));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+        camelContext.stop();
+    }
+
+    @Benchmark
+    public Exchange process() {
+        Exchange exchange = new DefaultExchange(camelContext);
+        exchange.getIn().setBody(Map.of("temperature", 23.5));
+        graphProcessor.process(exchange, doneSync -> {
+        });
+        return exchange;
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.milesight.beaveriot.benchmark;
+
+import com.milesight.beaveriot.base.utils.KeyPatternMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching of an entity key against the key patterns of the event subscriptions.
+ *
+ * @author leon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyPatternMatcherBenchmark {
+
+    private static final String KEY = "benchmark-integration.device.sensor-00042.property.temperature";
+
+    @Param({
+            "benchmark-integration.device.sensor-00042.property.temperature",
+            "benchmark-integration.device.*",
+            "*.property.temperature",
+            "benchmark-integration.*.sensor-*.property.*",
+            "other.device.*,benchmark-integration.device.sensor-00041.*,*.temperature",
+            "benchmark-integration.device.sensor-00043.*",
+    })
+    private String pattern;
+
+    @Benchmark
+    public boolean match() {
+        return KeyPatternMatcher.match(pattern, KEY);
+    }
+
+}
@@ -0,0 +1,172 @@
+package com.milesight.beaveriot.benchmark;
+
+import com.milesight.beaveriot.context.mqtt.enums.MqttTopicChannel;
+import com.milesight.beaveriot.context.mqtt.listener.MqttMessageListener;
+import com.milesight.beaveriot.context.mqtt.model.MqttBrokerInfo;
+import com.milesight.beaveriot.mqtt.broker.bridge.MqttBrokerBridge;
+import com.milesight.beaveriot.mqtt.broker.bridge.auth.MqttAcl;
+import com.milesight.beaveriot.mqtt.broker.bridge.listener.MqttEventListener;
+import com.milesight.beaveriot.mqtt.broker.bridge.listener.event.MqttMessageEvent;
+import com.milesight.beaveriot.mqtt.service.MqttPubSubService;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routing of an uplink message received by the embedded broker to the subscribers of its topic.
+ * <p>
+ * The service is wired to an in-memory broker bridge that only captures the event listener of the service, the
+ * subscribers run on the calling thread. Each device has its own subscription and a wildcard subscription listens to
+ * the uplinks of all devices, as the integrations do.
+ *
+ * @author leon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MqttPubSubServiceBenchmark {
+
+    private static final String TENANT_ID = "default";
+
+    @Param({"100", "10000"})
+    private int devices;
+
+    private MqttPubSubService mqttPubSubService;
+
+    private InMemoryMqttBrokerBridge mqttBrokerBridge;
+
+    private final List<MqttMessageListener> listeners = new ArrayList<>();
+
+    private MqttMessageEvent event;
+
+    private long deliveries;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mqttBrokerBridge = new InMemoryMqttBrokerBridge();
+        mqttPubSubService = new MqttPubSubService();
+        setField("mqttBrokerBridge", mqttBrokerBridge);
+        setField("executor", (TaskExecutor) Runnable::run);
+        Method init = ReflectionUtils.findMethod(MqttPubSubService.class, "init");
+        ReflectionUtils.makeAccessible(init);
+        ReflectionUtils.invokeMethod(init, mqttPubSubService);
+        mqttPubSubService.run();
+
+        for (int i = 0; i < devices; i++) {
+            subscribe(username(i), "uplink/sensor-" + i);
+        }
+        subscribe("+", "uplink/#");
+
+        int device = devices / 2;
+        String topic = mqttPubSubService.getFullTopicName(MqttTopicChannel.DEFAULT.getTopicPrefix(), username(device), "uplink/sensor-" + device);
+        event = new MqttMessageEvent(topic, "{\"temperature\":23.5}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String username(int device) {
+        return "device-" + device + "@" + TENANT_ID;
+    }
+
+    private void subscribe(String username, String topicSubPath) {
+        MqttMessageListener listener = message -> deliveries++;
+        listeners.add(listener);
+        mqttPubSubService.subscribe(username, topicSubPath, listener);
+    }
+
+    private void setField(String name, Object value) {
+        Field field = ReflectionUtils.findField(MqttPubSubService.class, name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, mqttPubSubService, value);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        // the subscriptions of the service are static
+        listeners.forEach(mqttPubSubService::unsubscribe);
+        listeners.clear();
+    }
+
+    @Benchmark
+    public long fireEvent() {
+        mqttBrokerBridge.listener.onPublish(event);
+        return deliveries;
+    }
+
+    private static class InMemoryMqttBrokerBridge implements MqttBrokerBridge {
+
+        private MqttEventListener listener;
+
+        @Override
+        public MqttBrokerInfo getBrokerInfo() {
+            return null;
+        }
+
+        @Override
+        public void open() {
+            // nothing to open
+        }
+
+        @Override
+        public void close() {
+            // nothing to close
+        }
+
+        @Override
+        public void publish(String topic, byte[] payload, MqttQoS qos, boolean retained) {
+            listener.onPublish(new MqttMessageEvent(topic, payload));
+        }
+
+        @Override
+        public void addListener(MqttEventListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void removeListener(MqttEventListener listener) {
+            this.listener = null;
+        }
+
+        @Override
+        public void addUser(String username, String password) {
+            // authentication is not involved
+        }
+
+        @Override
+        public void deleteUser(String username) {
+            // authentication is not involved
+        }
+
+        @Override
+        public void addAcl(MqttAcl acl) {
+            // authorization is not involved
+        }
+
+        @Override
+        public void deleteAcl(String username) {
+            // authorization is not involved
+        }
+    }
+
+}
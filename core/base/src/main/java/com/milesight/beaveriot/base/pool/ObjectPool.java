@@ -16,6 +16,7 @@ import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 /**
@@ -34,6 +35,7 @@ public class ObjectPool<T> implements DisposableBean {
     private final PoolConfig config;
     private final Supplier<T> objectFactory;
     private final Consumer<T> objectDestructor;
+    private final Predicate<T> objectValidator;
     private final Queue<PooledObject<T>> idleObjects;
     private final Map<T, PooledObject<T>> objectMap;
     private final AtomicInteger totalObjects;
@@ -54,7 +56,20 @@ public class ObjectPool<T> implements DisposableBean {
                                             Supplier<T> objectFactory,
                                             Consumer<T> objectDestructor,
                                             Class<T> objectClass) {
-        return new ObjectPool<>(config, objectFactory, objectDestructor, objectClass);
+        return newPool(config, objectFactory, objectDestructor, null, objectClass);
+    }
+
+    /**
+     * Create a new object pool whose returned objects are validated before being reused
+     *
+     * @param objectValidator objects failing the validation are destroyed instead of being returned to the pool
+     */
+    public static <T> ObjectPool<T> newPool(PoolConfig config,
+                                            Supplier<T> objectFactory,
+                                            Consumer<T> objectDestructor,
+                                            Predicate<T> objectValidator,
+                                            Class<T> objectClass) {
+        return new ObjectPool<>(config, objectFactory, objectDestructor, objectValidator, objectClass);
     }
 
     /**
@@ -63,14 +78,17 @@ public class ObjectPool<T> implements DisposableBean {
      * @param config           pool configuration
      * @param objectFactory    factory for creating objects
      * @param objectDestructor destructor for destroying objects
+     * @param objectValidator  validator for returned objects
      */
     private ObjectPool(PoolConfig config,
                        Supplier<T> objectFactory,
                        Consumer<T> objectDestructor,
+                       Predicate<T> objectValidator,
                        Class<T> objectClass) {
         this.config = config;
         this.objectFactory = objectFactory;
         this.objectDestructor = objectDestructor;
+        this.objectValidator = objectValidator;
         this.idleObjects = new ConcurrentLinkedQueue<>();
         this.objectMap = new ConcurrentHashMap<>();
         this.totalObjects = new AtomicInteger(0);
@@ -191,6 +209,14 @@ public class ObjectPool<T> implements DisposableBean {
         }
 
         PooledObject<T> pooledObject = objectMap.get(object);
+        if (pooledObject != null && pooledObject.isInUse() && !isValid(object)) {
+            destroyObject(object);
+            log.debug("Pool({}) - Destroyed invalid object on return. Idle: {}, Total: {}", poolName,
+                    idleObjects.size(), totalObjects.get());
+            signalNotEmpty();
+            return;
+        }
+
         if (pooledObject != null && pooledObject.isInUse()) {
             pooledObject.markAvailable();
             idleObjects.offer(pooledObject);
@@ -200,6 +226,18 @@ public class ObjectPool<T> implements DisposableBean {
         }
     }
 
+    private boolean isValid(T object) {
+        if (objectValidator == null) {
+            return true;
+        }
+        try {
+            return objectValidator.test(object);
+        } catch (Exception e) {
+            log.warn("Pool({}) - Failed to validate object", poolName, e);
+            return false;
+        }
+    }
+
     /**
      * Create a new object
      * MUST be called with lock held or during initialization
@@ -8,6 +8,7 @@ import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicInteger
 import java.util.function.Consumer
 import java.util.function.Function
+import java.util.function.Predicate
 
 /**
  * @author Luxb
@@ -232,6 +233,113 @@ class ObjectPoolTest extends Specification {
         pool?.destroy()
     }
 
+    // ==================== validator tests ====================
+
+    def "pool should destroy objects failing the validation on return"() {
+        given:
+        def config = PoolConfig.builder()
+                .minIdle(0)
+                .maxTotal(1)
+                .build()
+        def destroyed = []
+        def pool = ObjectPool.newPool(config, { new StringBuilder() }, { destroyed << it } as Consumer,
+                { sb -> sb.length() == 0 } as Predicate, StringBuilder.class)
+
+        when:
+        def first = pool.execute({ sb ->
+            sb.append("dirty")
+            sb
+        } as Function)
+        def second = pool.execute({ sb -> sb } as Function)
+
+        then:
+        destroyed == [first]
+        !second.is(first)
+        pool.getStatistics().totalObjects() == 1
+        pool.getStatistics().idleObjects() == 1
+
+        cleanup:
+        pool?.destroy()
+    }
+
+    def "pool should reuse objects passing the validation"() {
+        given:
+        def config = PoolConfig.builder()
+                .minIdle(0)
+                .maxTotal(1)
+                .build()
+        def pool = ObjectPool.newPool(config, { new StringBuilder() }, null,
+                { sb -> true } as Predicate, StringBuilder.class)
+
+        when:
+        def first = pool.execute({ sb -> sb } as Function)
+        def second = pool.execute({ sb -> sb } as Function)
+
+        then:
+        second.is(first)
+
+        cleanup:
+        pool?.destroy()
+    }
+
+    def "pool should destroy objects whose validation throws"() {
+        given:
+        def config = PoolConfig.builder()
+                .minIdle(0)
+                .maxTotal(1)
+                .build()
+        def destroyed = []
+        def pool = ObjectPool.newPool(config, { new StringBuilder() }, { destroyed << it } as Consumer,
+                { sb -> throw new IllegalStateException("broken") } as Predicate, StringBuilder.class)
+
+        when:
+        def first = pool.execute({ sb -> sb } as Function)
+
+        then:
+        destroyed == [first]
+        pool.getStatistics().totalObjects() == 0
+
+        cleanup:
+        pool?.destroy()
+    }
+
+    def "waiting borrower should get a new object after an invalid one is destroyed"() {
+        given:
+        def config = PoolConfig.builder()
+                .minIdle(0)
+                .maxTotal(1)
+                .maxWaitTime(Duration.ofSeconds(5))
+                .build()
+        def pool = ObjectPool.newPool(config, { new StringBuilder() }, null,
+                { sb -> sb.length() == 0 } as Predicate, StringBuilder.class)
+        def borrowed = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def holder = Thread.start {
+            pool.execute({ sb ->
+                sb.append("dirty")
+                borrowed.countDown()
+                release.await(5, TimeUnit.SECONDS)
+            } as Consumer)
+        }
+        borrowed.await(5, TimeUnit.SECONDS)
+
+        when:
+        def waiter = Thread.start {
+            pool.execute({ sb -> sb } as Function)
+        }
+        release.countDown()
+        holder.join()
+        waiter.join(5000)
+
+        then:
+        !waiter.isAlive()
+        pool.getStatistics().totalObjects() == 1
+
+        cleanup:
+        release.countDown()
+        pool?.destroy()
+    }
+
     // ==================== concurrency tests ====================
 
     def "pool should handle concurrent access safely"() {
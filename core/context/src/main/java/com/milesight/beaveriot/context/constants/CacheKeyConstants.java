@@ -28,6 +28,4 @@ public class CacheKeyConstants {
 
     public static final String ENTITY_ID_TO_KEY = "entity:key:v1";
 
-    public static final String INTEGRATION_ID_TO_DEVICE = "integration:device:v1";
-
 }
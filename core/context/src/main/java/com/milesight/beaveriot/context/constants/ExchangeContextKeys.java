@@ -41,7 +41,7 @@ public class ExchangeContextKeys {
     /**
      * the key of exchange source tenant id
      */
-    public static final String SOURCE_TENANT_ID = "_sourceTenantId";
+    public static final String SOURCE_TENANT_ID = ExchangeHeaders.EXCHANGE_SOURCE_TENANT_ID;
 
     /**
      * the key of device name on add
@@ -248,6 +248,21 @@ public class ExchangePayload extends HashMap<String, Object> implements Exchange
         return ExchangePayload.create(filteredPayload, copyContext(payload), payload.getTimestamp());
     }
 
+    public static <T extends ExchangePayload> ExchangePayload createFrom(T payload, String[] assignKeys) {
+        if (ObjectUtils.isEmpty(payload) || ObjectUtils.isEmpty(assignKeys)) {
+            return createFrom(payload, List.of());
+        }
+
+        Map<String, Object> filteredPayload = new LinkedHashMap<>();
+        Map<String, Object> allPayloads = payload.getAllPayloads();
+        for (String key : assignKeys) {
+            if (allPayloads.containsKey(key)) {
+                filteredPayload.put(key, allPayloads.get(key));
+            }
+        }
+        return ExchangePayload.create(filteredPayload, copyContext(payload), payload.getTimestamp());
+    }
+
     private static <T extends ExchangePayload> Map<String, Object> copyContext(T payload) {
         Map<String, Object> newContext = new HashMap<>();
         if (!ObjectUtils.isEmpty(payload.getContext())) {
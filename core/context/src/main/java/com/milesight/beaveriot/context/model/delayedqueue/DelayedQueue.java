@@ -1,5 +1,6 @@
 package com.milesight.beaveriot.context.model.delayedqueue;
 
+import java.util.Collection;
 import java.util.function.Consumer;
 
 /**
@@ -17,6 +18,15 @@ public interface DelayedQueue<T> {
      * @param task the delayed task to add or update; must not be null and must have a non-null {@code taskId}
      */
     void offer(DelayedTask<T> task);
+    /**
+     * Adds or reschedules several delayed tasks at once, with the same semantics as {@link #offer(DelayedTask)} for
+     * each of them.
+     *
+     * @param tasks the delayed tasks to add or update; none of them may be null
+     */
+    default void offerAll(Collection<DelayedTask<T>> tasks) {
+        tasks.forEach(this::offer);
+    }
     /**
      * Cancels a previously scheduled task if it has not yet been processed.
      *
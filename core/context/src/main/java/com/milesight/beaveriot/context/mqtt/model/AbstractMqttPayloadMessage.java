@@ -0,0 +1,57 @@
+package com.milesight.beaveriot.context.mqtt.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An MQTT message carrying a raw payload. The payload is passed as is, without any charset conversion, and the same
+ * message may be handed to several consumers, so consumers must not modify the payload, {@link #getPayloadBuffer()}
+ * gives a read-only view of it.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+public abstract class AbstractMqttPayloadMessage {
+
+    private byte[] payload;
+
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private transient volatile String payloadString;
+
+    protected AbstractMqttPayloadMessage(byte[] payload) {
+        this.payload = payload;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+        this.payloadString = null;
+    }
+
+    /**
+     * @return read-only view of the payload
+     */
+    @JsonIgnore
+    public ByteBuffer getPayloadBuffer() {
+        return payload == null ? null : ByteBuffer.wrap(payload).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the payload decoded as UTF-8, decoded on the first call only
+     */
+    @JsonIgnore
+    public String getPayloadAsString() {
+        var value = payloadString;
+        if (value == null && payload != null) {
+            value = new String(payload, StandardCharsets.UTF_8);
+            payloadString = value;
+        }
+        return value;
+    }
+
+}
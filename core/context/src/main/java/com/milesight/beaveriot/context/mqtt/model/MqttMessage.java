@@ -5,11 +5,15 @@ import lombok.*;
 
 import java.util.List;
 
+/**
+ * A message received from the broker. The same message is handed to all the matched subscribers, so subscribers must
+ * not modify the payload.
+ */
 @Data
-@Builder
+@ToString(callSuper = true)
+@EqualsAndHashCode(callSuper = true)
 @NoArgsConstructor
-@AllArgsConstructor
-public class MqttMessage {
+public class MqttMessage extends AbstractMqttPayloadMessage {
 
     private String fullTopicName;
 
@@ -23,6 +27,16 @@ public class MqttMessage {
 
     private List<String> topicFragments;
 
-    private byte[] payload;
+    @Builder
+    public MqttMessage(String fullTopicName, String topicSubPath, MqttTopicChannel mqttTopicChannel, String username,
+                       String tenantId, List<String> topicFragments, byte[] payload) {
+        super(payload);
+        this.fullTopicName = fullTopicName;
+        this.topicSubPath = topicSubPath;
+        this.mqttTopicChannel = mqttTopicChannel;
+        this.username = username;
+        this.tenantId = tenantId;
+        this.topicFragments = topicFragments;
+    }
 
 }
@@ -34,8 +34,7 @@ import java.util.concurrent.Executor;
 @Slf4j
 public class EventBusDispatcher<T extends Event<? extends IdentityKey>> implements EventBus<T>, ApplicationContextAware {
 
-    private final Map<Class<T>, Map<ListenerCacheKey, List<EventInvoker<T>>>> annotationSubscribeCache = new ConcurrentHashMap<>();
-    private final Map<Class<T>, Map<UniqueListenerCacheKey, EventInvoker<T>>> dynamicSubscribeCache = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ListenerSubscriptionIndex<EventInvoker<T>>> subscriptionIndexes = new ConcurrentHashMap<>();
     private ExecutionOptions executionOptions;
     private ListenerParameterResolver parameterResolver;
     private ApplicationContext applicationContext;
@@ -127,53 +126,25 @@ public class EventBusDispatcher<T extends Event<? extends IdentityKey>> implemen
     }
 
     private List<InvocationHolder> createInvocationHolders(T event) {
-        Map<ListenerCacheKey, List<EventInvoker<T>>> listenerCacheKeyListMap = annotationSubscribeCache.get(event.getClass());
-
-        List<InvocationHolder> invocationHolders = new ArrayList<>();
-
-        //invoke annotation subscribe
-        if (!ObjectUtils.isEmpty(listenerCacheKeyListMap)) {
-            List<InvocationHolder> annotationInvocationHolders = createInvocationHoldersFromMultiInvoker(listenerCacheKeyListMap, event);
-            invocationHolders.addAll(annotationInvocationHolders);
+        ListenerSubscriptionIndex<EventInvoker<T>> subscriptionIndex = subscriptionIndexes.get(event.getClass());
+        if (subscriptionIndex == null) {
+            return new ArrayList<>();
         }
 
-        //invoke dynamic subscribe
-        if (dynamicSubscribeCache.containsKey(event.getClass())) {
-            List<InvocationHolder> dynamicInvocationHolders = createInvocationHoldersFromUniqueInvoker(dynamicSubscribeCache.get(event.getClass()), event);
-            invocationHolders.addAll(dynamicInvocationHolders);
-        }
-        return invocationHolders;
-    }
-
-    private List<InvocationHolder> createInvocationHoldersFromUniqueInvoker(Map<UniqueListenerCacheKey, EventInvoker<T>> uniqueListenerCacheKeyEventInvokerMap, T event) {
         List<InvocationHolder> invocationHolders = new ArrayList<>();
-        for (Map.Entry<UniqueListenerCacheKey, EventInvoker<T>> cacheSubscribeEntry : uniqueListenerCacheKeyEventInvokerMap.entrySet()) {
-            String[] matchMultiKeys = filterMatchMultiKeys(event, cacheSubscribeEntry.getKey());
-            if (!ObjectUtils.isEmpty(matchMultiKeys)) {
-                invocationHolders.add(new InvocationHolder(cacheSubscribeEntry.getValue(), matchMultiKeys, event));
-            }
-        }
-        return invocationHolders;
-    }
-
-    private List<InvocationHolder> createInvocationHoldersFromMultiInvoker(Map<ListenerCacheKey, List<EventInvoker<T>>> listenerCacheKeyListMap, T event) {
-        List<InvocationHolder> invocationHolders = new ArrayList<>();
-        for (Map.Entry<ListenerCacheKey, List<EventInvoker<T>>> listenerCacheKeyListEntry : listenerCacheKeyListMap.entrySet()) {
-            String[] matchMultiKeys = filterMatchMultiKeys(event, listenerCacheKeyListEntry.getKey());
-            if (!ObjectUtils.isEmpty(matchMultiKeys)) {
-                invocationHolders.addAll(listenerCacheKeyListEntry.getValue().stream().map(invoker -> new InvocationHolder(invoker, matchMultiKeys, event)).toList());
-            }
-        }
+        subscriptionIndex.match(event.getEventType(), event.getPayloadKey(),
+                (invoker, matchMultiKeys) -> invocationHolders.add(new InvocationHolder(invoker, matchMultiKeys, event)));
         return invocationHolders;
     }
 
     public void registerDynamicSubscribe(Class<T> eventClass, UniqueListenerCacheKey listenerCacheKey, EventInvoker<T> eventInvoker) {
-        dynamicSubscribeCache.computeIfAbsent(eventClass, k -> new ConcurrentHashMap<>()).put(listenerCacheKey, eventInvoker);
+        getSubscriptionIndex(eventClass).registerUnique(listenerCacheKey, eventInvoker);
     }
 
     public void deregisterDynamicSubscribe(Class<T> eventClass, UniqueListenerCacheKey listenerCacheKey) {
-        if (dynamicSubscribeCache.containsKey(eventClass)) {
-            dynamicSubscribeCache.get(eventClass).remove(listenerCacheKey);
+        ListenerSubscriptionIndex<EventInvoker<T>> subscriptionIndex = subscriptionIndexes.get(eventClass);
+        if (subscriptionIndex != null) {
+            subscriptionIndex.deregister(listenerCacheKey);
         }
     }
 
@@ -192,16 +163,11 @@ public class EventBusDispatcher<T extends Event<? extends IdentityKey>> implemen
 
         log.debug("registerAsyncSubscribe: {}, subscriber expression: {}", executeMethod, listenerCacheKey);
 
-        annotationSubscribeCache.computeIfAbsent(eventClass, k -> new ConcurrentHashMap<>());
-
-        annotationSubscribeCache.get(eventClass).computeIfAbsent(listenerCacheKey, k -> new ArrayList<>()).add(new EventSubscribeInvoker<>(bean, executeMethod, parameterTypes, parameterResolver));
+        getSubscriptionIndex(eventClass).register(listenerCacheKey, new EventSubscribeInvoker<>(bean, executeMethod, parameterTypes, parameterResolver));
     }
 
-    private String[] filterMatchMultiKeys(T event, ListenerCacheKey cacheKey) {
-        if (!cacheKey.matchEventType(event.getEventType())) {
-            return new String[0];
-        }
-        return cacheKey.matchMultiKeys(event.getPayloadKey());
+    private ListenerSubscriptionIndex<EventInvoker<T>> getSubscriptionIndex(Class<T> eventClass) {
+        return subscriptionIndexes.computeIfAbsent(eventClass, k -> new ListenerSubscriptionIndex<>());
     }
 
     @Override
@@ -0,0 +1,236 @@
+package com.milesight.beaveriot.eventbus;
+
+import com.milesight.beaveriot.base.constants.StringConstant;
+import com.milesight.beaveriot.base.utils.KeyPatternMatcher;
+import org.springframework.util.ObjectUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Precompiled subscription index of the event bus.
+ * <p>
+ * Each comma separated subscription pattern is split by {@code "."}. The leading literal segments become a path of
+ * the segment trie, the pattern itself is stored in the exact bucket of the last node, or, starting from the first
+ * segment that contains {@code "*"}, in the wildcard bucket of the last literal node. Subscriptions are partitioned
+ * by event type as well, so a lookup only walks the segments of the published keys instead of scanning every
+ * subscription. The matching semantics are the same as {@link KeyPatternMatcher}.
+ *
+ * @author leon
+ */
+public class ListenerSubscriptionIndex<V> {
+
+    private static final char SEGMENT_SEPARATOR = '.';
+
+    private final SegmentNode<V> anyEventTypeRoot = new SegmentNode<>();
+
+    private final Map<String, SegmentNode<V>> eventTypeRoots = new ConcurrentHashMap<>();
+
+    private final Map<ListenerCacheKey, List<Subscription<V>>> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * Register a listener, listeners registered with the same key are all kept
+     */
+    public synchronized void register(ListenerCacheKey cacheKey, V listener) {
+        Subscription<V> subscription = new Subscription<>(listener);
+        subscriptions.computeIfAbsent(cacheKey, k -> new ArrayList<>()).add(subscription);
+        forEachRoot(cacheKey, true, root -> forEachPattern(cacheKey, pattern -> insert(root, pattern, subscription)));
+    }
+
+    /**
+     * Register a listener, replacing the listeners previously registered with the same key
+     */
+    public synchronized void registerUnique(ListenerCacheKey cacheKey, V listener) {
+        deregister(cacheKey);
+        register(cacheKey, listener);
+    }
+
+    public synchronized void deregister(ListenerCacheKey cacheKey) {
+        List<Subscription<V>> removed = subscriptions.remove(cacheKey);
+        if (removed == null) {
+            return;
+        }
+        removed.forEach(subscription -> forEachRoot(cacheKey, false, root -> forEachPattern(cacheKey, pattern -> remove(root, pattern, 0, subscription))));
+        eventTypeRoots.entrySet().removeIf(entry -> entry.getValue().isEmpty());
+    }
+
+    public boolean isEmpty() {
+        return subscriptions.isEmpty();
+    }
+
+    public int size() {
+        return subscriptions.values().stream().mapToInt(List::size).sum();
+    }
+
+    /**
+     * Find the listeners matching the event type and payload keys
+     *
+     * @param eventType        event type
+     * @param payloadMultiKeys comma separated payload keys
+     * @param consumer         consumer of the matched listener and its matched keys, in payload key order
+     */
+    public void match(String eventType, String payloadMultiKeys, BiConsumer<V, String[]> consumer) {
+        if (subscriptions.isEmpty() || payloadMultiKeys == null) {
+            return;
+        }
+        SegmentNode<V> eventTypeRoot = eventType == null ? null : eventTypeRoots.get(eventType);
+        Map<Subscription<V>, List<String>> matched = new LinkedHashMap<>();
+        for (String payloadKey : payloadMultiKeys.split(StringConstant.COMMA)) {
+            String key = payloadKey.trim();
+            matchKey(anyEventTypeRoot, key, matched);
+            if (eventTypeRoot != null) {
+                matchKey(eventTypeRoot, key, matched);
+            }
+        }
+        matched.forEach((subscription, keys) -> consumer.accept(subscription.listener, keys.toArray(String[]::new)));
+    }
+
+    private void matchKey(SegmentNode<V> root, String key, Map<Subscription<V>, List<String>> matched) {
+        SegmentNode<V> node = root;
+        matchWildcards(node, key, key, matched);
+        int start = 0;
+        while (node != null) {
+            int end = key.indexOf(SEGMENT_SEPARATOR, start);
+            String segment = end < 0 ? key.substring(start) : key.substring(start, end);
+            node = node.children.get(segment);
+            if (node == null) {
+                return;
+            }
+            if (end < 0) {
+                node.exact.forEach(subscription -> addMatched(matched, subscription, key));
+                return;
+            }
+            start = end + 1;
+            matchWildcards(node, key.substring(start), key, matched);
+        }
+    }
+
+    private void matchWildcards(SegmentNode<V> node, String keyRemainder, String key, Map<Subscription<V>, List<String>> matched) {
+        for (WildcardEntry<V> wildcard : node.wildcards) {
+            if (wildcard.matches(keyRemainder)) {
+                addMatched(matched, wildcard.subscription, key);
+            }
+        }
+    }
+
+    private void addMatched(Map<Subscription<V>, List<String>> matched, Subscription<V> subscription, String key) {
+        List<String> keys = matched.computeIfAbsent(subscription, k -> new ArrayList<>());
+        // keys are matched one by one, so a key matched by several patterns of the same subscription is always the last one
+        if (keys.isEmpty() || !keys.get(keys.size() - 1).equals(key)) {
+            keys.add(key);
+        }
+    }
+
+    private void forEachRoot(ListenerCacheKey cacheKey, boolean create, Consumer<SegmentNode<V>> consumer) {
+        String[] eventTypes = cacheKey.getEventTypes();
+        if (ObjectUtils.isEmpty(eventTypes)) {
+            consumer.accept(anyEventTypeRoot);
+            return;
+        }
+        for (String eventType : eventTypes) {
+            SegmentNode<V> root = create ? eventTypeRoots.computeIfAbsent(eventType, k -> new SegmentNode<>()) : eventTypeRoots.get(eventType);
+            if (root != null) {
+                consumer.accept(root);
+            }
+        }
+    }
+
+    private void forEachPattern(ListenerCacheKey cacheKey, Consumer<String[]> consumer) {
+        String payloadKey = cacheKey.getPayloadKey();
+        if (payloadKey == null) {
+            return;
+        }
+        for (String pattern : payloadKey.trim().split(StringConstant.COMMA)) {
+            consumer.accept(pattern.split("\\.", -1));
+        }
+    }
+
+    private void insert(SegmentNode<V> root, String[] segments, Subscription<V> subscription) {
+        SegmentNode<V> node = root;
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i].contains(StringConstant.STAR)) {
+                node.wildcards.add(new WildcardEntry<>(joinSegments(segments, i), subscription));
+                return;
+            }
+            node = node.children.computeIfAbsent(segments[i], k -> new SegmentNode<>());
+        }
+        node.exact.add(subscription);
+    }
+
+    private void remove(SegmentNode<V> node, String[] segments, int index, Subscription<V> subscription) {
+        if (index == segments.length) {
+            node.exact.remove(subscription);
+            return;
+        }
+        if (segments[index].contains(StringConstant.STAR)) {
+            node.wildcards.removeIf(wildcard -> wildcard.subscription == subscription);
+            return;
+        }
+        SegmentNode<V> child = node.children.get(segments[index]);
+        if (child == null) {
+            return;
+        }
+        remove(child, segments, index + 1, subscription);
+        if (child.isEmpty()) {
+            node.children.remove(segments[index], child);
+        }
+    }
+
+    private static String joinSegments(String[] segments, int from) {
+        StringBuilder builder = new StringBuilder(segments[from]);
+        for (int i = from + 1; i < segments.length; i++) {
+            builder.append(SEGMENT_SEPARATOR).append(segments[i]);
+        }
+        return builder.toString();
+    }
+
+    private static class SegmentNode<V> {
+
+        private final Map<String, SegmentNode<V>> children = new ConcurrentHashMap<>();
+
+        private final List<Subscription<V>> exact = new CopyOnWriteArrayList<>();
+
+        private final List<WildcardEntry<V>> wildcards = new CopyOnWriteArrayList<>();
+
+        private boolean isEmpty() {
+            return children.isEmpty() && exact.isEmpty() && wildcards.isEmpty();
+        }
+    }
+
+    private static class WildcardEntry<V> {
+
+        private final String pattern;
+
+        private final boolean matchAll;
+
+        private final Subscription<V> subscription;
+
+        private WildcardEntry(String pattern, Subscription<V> subscription) {
+            this.pattern = pattern;
+            this.matchAll = pattern.chars().allMatch(c -> c == '*');
+            this.subscription = subscription;
+        }
+
+        private boolean matches(String keyRemainder) {
+            return matchAll || KeyPatternMatcher.match(pattern, keyRemainder);
+        }
+    }
+
+    /**
+     * Identity of a single registration, listeners are not required to implement equals
+     */
+    private static class Subscription<V> {
+
+        private final V listener;
+
+        private Subscription(V listener) {
+            this.listener = listener;
+        }
+    }
+}
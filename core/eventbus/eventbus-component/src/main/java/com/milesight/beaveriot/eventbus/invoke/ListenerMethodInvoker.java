@@ -0,0 +1,13 @@
+package com.milesight.beaveriot.eventbus.invoke;
+
+/**
+ * Compiled invocation of an event listener method, the exception thrown by the listener is rethrown as is
+ *
+ * @author leon
+ */
+@FunctionalInterface
+public interface ListenerMethodInvoker {
+
+    Object invoke(Object bean, Object event) throws Throwable;
+
+}
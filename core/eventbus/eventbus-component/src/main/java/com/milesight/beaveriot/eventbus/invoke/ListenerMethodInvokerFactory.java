@@ -0,0 +1,122 @@
+package com.milesight.beaveriot.eventbus.invoke;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Compile the listener method into a {@link ListenerMethodInvoker}.
+ * <p>
+ * Public methods of classes visible to the event bus class loader are bound through {@link LambdaMetafactory},
+ * other methods fall back to a {@link MethodHandle}, and to reflection if the method handle cannot be created.
+ *
+ * @author leon
+ */
+@Slf4j
+public class ListenerMethodInvokerFactory {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final String INVOKE_METHOD_NAME = "invoke";
+
+    private static final MethodType INVOKER_METHOD_TYPE = MethodType.methodType(Object.class, Object.class, Object.class);
+
+    private ListenerMethodInvokerFactory() {
+    }
+
+    public static ListenerMethodInvoker compile(Method method) {
+        if (method.getParameterCount() != 1) {
+            return reflective(method);
+        }
+        if (isLambdaAccessible(method)) {
+            try {
+                return compileLambda(method);
+            } catch (Throwable e) {
+                log.debug("Compile listener method by LambdaMetafactory failed, fallback to MethodHandle: {}", method.toGenericString(), e);
+            }
+        }
+        try {
+            return compileMethodHandle(method);
+        } catch (Throwable e) {
+            log.debug("Compile listener method by MethodHandle failed, fallback to reflection: {}", method.toGenericString(), e);
+        }
+        return reflective(method);
+    }
+
+    private static ListenerMethodInvoker compileLambda(Method method) throws Throwable {
+        MethodHandle implementation = LOOKUP.unreflect(method);
+        MethodType instantiatedMethodType = MethodType.methodType(method.getReturnType(), method.getDeclaringClass(), method.getParameterTypes()[0]);
+        if (method.getReturnType() == void.class) {
+            CallSite callSite = LambdaMetafactory.metafactory(LOOKUP, INVOKE_METHOD_NAME, MethodType.methodType(VoidListenerMethodInvoker.class),
+                    MethodType.methodType(void.class, Object.class, Object.class), implementation, instantiatedMethodType);
+            VoidListenerMethodInvoker invoker = (VoidListenerMethodInvoker) callSite.getTarget().invokeExact();
+            return (bean, event) -> {
+                invoker.invoke(bean, event);
+                return null;
+            };
+        }
+        CallSite callSite = LambdaMetafactory.metafactory(LOOKUP, INVOKE_METHOD_NAME, MethodType.methodType(ListenerMethodInvoker.class),
+                INVOKER_METHOD_TYPE, implementation, instantiatedMethodType);
+        return (ListenerMethodInvoker) callSite.getTarget().invokeExact();
+    }
+
+    private static ListenerMethodInvoker compileMethodHandle(Method method) throws IllegalAccessException {
+        method.trySetAccessible();
+        MethodHandle methodHandle = LOOKUP.unreflect(method);
+        if (Modifier.isStatic(method.getModifiers())) {
+            methodHandle = MethodHandles.dropArguments(methodHandle, 0, Object.class);
+        }
+        MethodHandle invoker = methodHandle.asType(INVOKER_METHOD_TYPE);
+        return (bean, event) -> (Object) invoker.invokeExact(bean, event);
+    }
+
+    private static ListenerMethodInvoker reflective(Method method) {
+        method.trySetAccessible();
+        return (bean, event) -> {
+            try {
+                return method.invoke(bean, event);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        };
+    }
+
+    private static boolean isLambdaAccessible(Method method) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        return !Modifier.isStatic(method.getModifiers())
+                && Modifier.isPublic(method.getModifiers())
+                && Modifier.isPublic(declaringClass.getModifiers())
+                && isVisible(declaringClass)
+                && isVisible(method.getParameterTypes()[0])
+                && isVisible(method.getReturnType());
+    }
+
+    /**
+     * The generated lambda class is defined in the class loader of the event bus, so every type it links
+     * against must resolve to the same class from there (integrations may be loaded by a child class loader)
+     */
+    private static boolean isVisible(Class<?> type) {
+        if (type.isPrimitive()) {
+            return true;
+        }
+        try {
+            return Class.forName(type.getName(), false, ListenerMethodInvokerFactory.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    @FunctionalInterface
+    interface VoidListenerMethodInvoker {
+
+        void invoke(Object bean, Object event) throws Throwable;
+
+    }
+}
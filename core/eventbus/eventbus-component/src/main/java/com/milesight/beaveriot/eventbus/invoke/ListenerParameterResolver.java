@@ -12,7 +12,6 @@ import org.springframework.util.Assert;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.util.List;
 
 /**
  * @author leon
@@ -22,12 +21,36 @@ public class ListenerParameterResolver {
     public ExchangeEvent resolveEvent(@NonNull Class<? extends ExchangePayload> parameterType, Event<? extends ExchangePayload> event, String[] matchMultiKeys) {
         //filter key
         ExchangePayload payload = event.getPayload();
-        ExchangePayload newPayload = ExchangePayload.createFrom(payload, List.of(matchMultiKeys));
+        ExchangePayload newPayload = ExchangePayload.createFrom(payload, matchMultiKeys);
 
-        newPayload = new ExchangePayloadProxy<>(newPayload, parameterType).proxy();
+        // the plain payload type has no annotated entity accessor, so there is nothing to proxy
+        if (parameterType != ExchangePayload.class) {
+            newPayload = new ExchangePayloadProxy<>(newPayload, parameterType).proxy();
+        }
         return ExchangeEvent.of(event.getEventType(), newPayload);
     }
 
+    /**
+     * Resolve the adapter of the listener argument once, when the listener is registered
+     *
+     * @param parameterType actual payload type of the listener event parameter, null if not declared
+     * @return payload adapter
+     */
+    @SuppressWarnings("unchecked")
+    public ListenerPayloadAdapter resolvePayloadAdapter(Class<?> parameterType) {
+        if (parameterType == null || !ExchangePayload.class.isAssignableFrom(parameterType)) {
+            return (event, matchMultiKeys) -> event;
+        }
+
+        Class<? extends ExchangePayload> payloadType = (Class<? extends ExchangePayload>) parameterType;
+        return (event, matchMultiKeys) -> {
+            if (!(event.getPayload() instanceof ExchangePayload)) {
+                return event;
+            }
+            return resolveEvent(payloadType, (Event<? extends ExchangePayload>) event, matchMultiKeys);
+        };
+    }
+
     public <T extends Event<? extends IdentityKey>> Class<T> resolveActualEventType(Method method) {
         if (method.getParameterTypes().length == 0) {
             throw new ConfigurationException("EventBus method param-number invalid, method:" + method);
@@ -0,0 +1,16 @@
+package com.milesight.beaveriot.eventbus.invoke;
+
+import com.milesight.beaveriot.eventbus.api.Event;
+import com.milesight.beaveriot.eventbus.api.IdentityKey;
+
+/**
+ * Adapt the published event to the argument of the listener method, resolved once per listener
+ *
+ * @author leon
+ */
+@FunctionalInterface
+public interface ListenerPayloadAdapter {
+
+    Object adapt(Event<? extends IdentityKey> event, String[] matchMultiKeys);
+
+}
@@ -0,0 +1,82 @@
+package com.milesight.beaveriot.eventbus
+
+import com.milesight.beaveriot.base.utils.KeyPatternMatcher
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ListenerSubscriptionIndexTest extends Specification {
+
+    @Unroll
+    def "should match key #key with pattern #pattern the same way as KeyPatternMatcher"() {
+        given:
+        def index = new ListenerSubscriptionIndex<String>()
+        index.register(new ListenerCacheKey(pattern, null), "listener")
+        def matched = [:]
+
+        when:
+        index.match("REPORT", key, { listener, keys -> matched[listener] = keys as List })
+
+        then:
+        matched.containsKey("listener") == KeyPatternMatcher.match(pattern, key)
+
+        where:
+        pattern                             | key
+        "*"                                 | "a.b.c"
+        "a.b.c"                             | "a.b.c"
+        "a.b.c"                             | "a.b"
+        "a.b"                               | "a.b.c"
+        "a.*"                               | "a.b.c"
+        "a.*"                               | "a"
+        "a.*"                               | "ab.c"
+        "a*"                                | "ab.c"
+        "a.*.c"                             | "a.b.c"
+        "a.*.c"                             | "a.b.d"
+        "a.*.c"                             | "a.b.x.c"
+        "a.b*.c"                            | "a.bb.c"
+        "*.status"                          | "a.b.status"
+        "*.status"                          | "a.b.state"
+        "x.y,a.b.*"                         | "a.b.c"
+        "x.y,a.b.*"                         | "x.y"
+        "x.y,a.b.*"                         | "x.z"
+    }
+
+    def "should return matched keys in payload order and filter by event type"() {
+        given:
+        def index = new ListenerSubscriptionIndex<String>()
+        index.register(new ListenerCacheKey("a.*,a.b", null), "any")
+        index.register(new ListenerCacheKey("a.b", ["REPORT"] as String[]), "report")
+        index.register(new ListenerCacheKey("a.b", ["SERVICE"] as String[]), "service")
+
+        when:
+        def matched = [:]
+        index.match("REPORT", "a.c, a.b,x.y", { listener, keys -> matched[listener] = keys as List })
+
+        then:
+        matched == [any: ["a.c", "a.b"], report: ["a.b"]]
+    }
+
+    def "should replace and deregister unique subscriptions"() {
+        given:
+        def index = new ListenerSubscriptionIndex<String>()
+        def cacheKey = new UniqueListenerCacheKey("flow-1", "a.b.*", null)
+
+        when:
+        index.registerUnique(cacheKey, "first")
+        index.registerUnique(cacheKey, "second")
+        def matched = []
+        index.match(null, "a.b.c", { listener, keys -> matched << listener })
+
+        then:
+        matched == ["second"]
+        index.size() == 1
+
+        when:
+        index.deregister(cacheKey)
+        matched.clear()
+        index.match(null, "a.b.c", { listener, keys -> matched << listener })
+
+        then:
+        matched.isEmpty()
+        index.isEmpty()
+    }
+}
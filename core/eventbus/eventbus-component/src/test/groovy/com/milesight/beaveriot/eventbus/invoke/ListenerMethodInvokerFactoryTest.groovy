@@ -0,0 +1,224 @@
+package com.milesight.beaveriot.eventbus.invoke
+
+import com.milesight.beaveriot.context.integration.model.ExchangePayload
+import com.milesight.beaveriot.context.integration.model.event.ExchangeEvent
+import com.milesight.beaveriot.eventbus.api.EventResponse
+import groovy.transform.PackageScope
+import org.aopalliance.intercept.MethodInterceptor
+import org.springframework.aop.framework.ProxyFactory
+import spock.lang.Specification
+
+import java.lang.reflect.InvocationHandler
+import java.lang.reflect.Proxy
+
+/**
+ * @author leon
+ */
+class ListenerMethodInvokerFactoryTest extends Specification {
+
+    static ExchangeEvent event = ExchangeEvent.of("REPORT", ExchangePayload.create("a", 1))
+
+    /**
+     * @return the compile step of the invoker that called the listener, lambda classes are hidden from the stack trace
+     */
+    static String compiledBy(StackTraceElement[] stackTrace) {
+        def frame = stackTrace.find { it.className == ListenerMethodInvokerFactory.name }
+        return frame == null ? "compileLambda" : frame.methodName.split('\\$')[1]
+    }
+
+    static class PublicListener {
+
+        StackTraceElement[] stackTrace
+
+        Object received
+
+        EventResponse onResponse(ExchangeEvent event) {
+            stackTrace = new Throwable().stackTrace
+            received = event
+            return EventResponse.of("handled", true)
+        }
+
+        void onVoid(ExchangeEvent event) {
+            stackTrace = new Throwable().stackTrace
+            received = event
+        }
+
+        Object onObject(Object event) {
+            stackTrace = new Throwable().stackTrace
+            return event
+        }
+
+        private EventResponse onPrivate(ExchangeEvent event) {
+            stackTrace = new Throwable().stackTrace
+            return EventResponse.of("private", true)
+        }
+
+        static EventResponse onStatic(ExchangeEvent event) {
+            return EventResponse.of("static", true)
+        }
+
+        void onFailure(ExchangeEvent event) throws IOException {
+            throw new IOException("listener failed")
+        }
+    }
+
+    @PackageScope
+    static class PackageListener {
+
+        StackTraceElement[] stackTrace
+
+        EventResponse onResponse(ExchangeEvent event) {
+            stackTrace = new Throwable().stackTrace
+            return EventResponse.of("package", true)
+        }
+    }
+
+    static interface ListenerApi {
+
+        EventResponse onResponse(ExchangeEvent event)
+    }
+
+    def "public method of a public class should be compiled by LambdaMetafactory"() {
+        given:
+        def listener = new PublicListener()
+
+        when:
+        def response = ListenerMethodInvokerFactory.compile(PublicListener.getMethod(methodName, parameterType)).invoke(listener, event)
+
+        then:
+        compiledBy(listener.stackTrace) == "compileLambda"
+        response == expected
+
+        where:
+        methodName   | parameterType | expected
+        "onResponse" | ExchangeEvent | EventResponse.of("handled", true)
+        "onObject"   | Object        | event
+    }
+
+    def "void listener should be invoked and return null"() {
+        given:
+        def listener = new PublicListener()
+
+        when:
+        def response = ListenerMethodInvokerFactory.compile(PublicListener.getMethod("onVoid", ExchangeEvent)).invoke(listener, event)
+
+        then:
+        compiledBy(listener.stackTrace) == "compileLambda"
+        response == null
+        listener.received.is(event)
+    }
+
+    def "non public method or class should fall back to MethodHandle"() {
+        when:
+        def response = ListenerMethodInvokerFactory.compile(method).invoke(listener, event)
+
+        then:
+        compiledBy(listener.stackTrace) == "compileMethodHandle"
+        response == expected
+
+        where:
+        listener              | method                                                         | expected
+        new PublicListener()  | PublicListener.getDeclaredMethod("onPrivate", ExchangeEvent)   | EventResponse.of("private", true)
+        new PackageListener() | PackageListener.getDeclaredMethod("onResponse", ExchangeEvent) | EventResponse.of("package", true)
+    }
+
+    def "static method should be invoked without the bean"() {
+        expect:
+        ListenerMethodInvokerFactory.compile(PublicListener.getMethod("onStatic", ExchangeEvent)).invoke(null, event) == EventResponse.of("static", true)
+    }
+
+    def "class not visible to the event bus class loader should fall back to MethodHandle"() {
+        given:
+        // like an integration loaded by a child class loader
+        def loader = new GroovyClassLoader(ListenerMethodInvokerFactoryTest.classLoader)
+        def listenerClass = loader.parseClass("""
+            class IsolatedListener {
+                StackTraceElement[] stackTrace
+                Object onObject(Object event) {
+                    stackTrace = new Throwable().stackTrace
+                    return event
+                }
+            }
+        """)
+        def listener = listenerClass.getDeclaredConstructor().newInstance()
+
+        when:
+        def response = ListenerMethodInvokerFactory.compile(listenerClass.getMethod("onObject", Object)).invoke(listener, event)
+
+        then:
+        compiledBy(listener.stackTrace) == "compileMethodHandle"
+        response.is(event)
+
+        cleanup:
+        loader?.close()
+    }
+
+    def "method whose MethodHandle cannot be created should fall back to reflection"() {
+        given: "a public method of a non public class in a package not opened to the event bus"
+        def collection = Collections.unmodifiableCollection(["a"])
+        def method = collection.class.getMethod("contains", Object)
+
+        when:
+        ListenerMethodInvokerFactory.compile(method).invoke(collection, "a")
+
+        then:
+        def e = thrown(IllegalAccessException)
+        compiledBy(e.stackTrace) == "reflective"
+    }
+
+    def "method of a JDK proxied bean should be invoked through the proxy"() {
+        given:
+        def invoked = []
+        def bean = Proxy.newProxyInstance(ListenerApi.classLoader, [ListenerApi] as Class[], { proxy, method, args ->
+            invoked << method.name
+            return EventResponse.of("proxy", args[0])
+        } as InvocationHandler)
+
+        when:
+        def response = ListenerMethodInvokerFactory.compile(ListenerApi.getMethod("onResponse", ExchangeEvent)).invoke(bean, event)
+
+        then:
+        invoked == ["onResponse"]
+        response == EventResponse.of("proxy", event)
+    }
+
+    def "method of a class proxied bean should be invoked through the advice of the proxy"() {
+        given:
+        def target = new PublicListener()
+        def advised = []
+        def factory = new ProxyFactory(target)
+        factory.proxyTargetClass = true
+        factory.addAdvice({ invocation ->
+            advised << invocation.method.name
+            return invocation.proceed()
+        } as MethodInterceptor)
+        def bean = factory.proxy
+
+        when:
+        def response = ListenerMethodInvokerFactory.compile(PublicListener.getMethod("onResponse", ExchangeEvent)).invoke(bean, event)
+
+        then:
+        advised == ["onResponse"]
+        target.received.is(event)
+        response == EventResponse.of("handled", true)
+    }
+
+    def "checked exception thrown by the listener should be rethrown as is"() {
+        given:
+        def listener = new PublicListener()
+
+        when:
+        compiled.invoke(listener, event)
+
+        then:
+        def e = thrown(IOException)
+        e.message == "listener failed"
+
+        where:
+        compiled << [
+                ListenerMethodInvokerFactory.compile(PublicListener.getMethod("onFailure", ExchangeEvent)),
+                ListenerMethodInvokerFactory.compileMethodHandle(PublicListener.getMethod("onFailure", ExchangeEvent)),
+                ListenerMethodInvokerFactory.reflective(PublicListener.getMethod("onFailure", ExchangeEvent))
+        ]
+    }
+}
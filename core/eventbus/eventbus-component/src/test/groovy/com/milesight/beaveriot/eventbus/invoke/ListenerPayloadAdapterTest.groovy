@@ -0,0 +1,67 @@
+package com.milesight.beaveriot.eventbus.invoke
+
+import com.milesight.beaveriot.context.integration.model.ExchangePayload
+import com.milesight.beaveriot.context.integration.model.event.ExchangeEvent
+import com.milesight.beaveriot.eventbus.api.Event
+import spock.lang.Specification
+
+/**
+ * @author leon
+ */
+class ListenerPayloadAdapterTest extends Specification {
+
+    ListenerParameterResolver resolver = new ListenerParameterResolver()
+
+    static class TestPayload extends ExchangePayload {
+    }
+
+    static ExchangeEvent event() {
+        return ExchangeEvent.of("REPORT", ExchangePayload.create([a: 1, b: 2, c: 3]))
+    }
+
+    def "event should be passed as is when the listener does not declare an exchange payload"() {
+        given:
+        def event = event()
+
+        expect:
+        resolver.resolvePayloadAdapter(parameterType).adapt(event, ["a"] as String[]).is(event)
+
+        where:
+        parameterType << [null, String]
+    }
+
+    def "event without an exchange payload should be passed as is"() {
+        given:
+        Event event = Mock()
+
+        expect:
+        resolver.resolvePayloadAdapter(ExchangePayload).adapt(event, ["a"] as String[]).is(event)
+    }
+
+    def "exchange payload should be narrowed to the matched keys without a proxy"() {
+        given:
+        def event = event()
+
+        when:
+        def adapted = (ExchangeEvent) resolver.resolvePayloadAdapter(ExchangePayload).adapt(event, ["c", "a"] as String[])
+
+        then:
+        !adapted.is(event)
+        adapted.eventType == "REPORT"
+        adapted.payload.getClass() == ExchangePayload
+        adapted.payload.getAllPayloads() == [c: 3, a: 1]
+        event.payload.getAllPayloads() == [a: 1, b: 2, c: 3]
+    }
+
+    def "exchange payload should be proxied to the declared payload type"() {
+        given:
+        def event = event()
+
+        when:
+        def adapted = (ExchangeEvent) resolver.resolvePayloadAdapter(TestPayload).adapt(event, ["b"] as String[])
+
+        then:
+        adapted.payload instanceof TestPayload
+        adapted.payload.getAllPayloads() == [b: 2]
+    }
+}
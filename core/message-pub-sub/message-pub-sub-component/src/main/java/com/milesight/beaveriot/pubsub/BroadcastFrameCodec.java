@@ -0,0 +1,139 @@
+package com.milesight.beaveriot.pubsub;
+
+import com.milesight.beaveriot.base.utils.JsonUtils;
+import com.milesight.beaveriot.pubsub.api.message.PubSubMessage;
+import com.milesight.beaveriot.pubsub.api.message.RemoteBroadcastMessage;
+import lombok.extern.slf4j.*;
+import lombok.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binary envelope of a batch of broadcast messages.
+ * <p>
+ * A frame starts with a type table listing the class names of the messages in the frame, each message then refers to
+ * its type by its index in the table and carries its JSON body as raw bytes, so a message is serialized once and a
+ * class name is sent once per frame. Received class names are resolved once and cached.
+ * <pre>
+ * magic(1) version(1) typeCount(2) [className(UTF)]... messageCount(4) [typeIndex(2) bodyLength(4) body]...
+ * </pre>
+ */
+@Slf4j
+class BroadcastFrameCodec {
+
+    static final byte MAGIC = (byte) 0xBE;
+
+    static final byte VERSION = 1;
+
+    private static final Map<String, Optional<Class<? extends PubSubMessage>>> typeCache = new ConcurrentHashMap<>();
+
+    private BroadcastFrameCodec() {
+    }
+
+    static EncodedMessage encodeMessage(RemoteBroadcastMessage message) {
+        try {
+            return new EncodedMessage(message.getClass().getName(), JsonUtils.getObjectMapper().writeValueAsBytes(message));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static byte[] encodeFrame(List<EncodedMessage> messages) {
+        val typeIndexes = new HashMap<String, Integer>();
+        val typeNames = new ArrayList<String>();
+        var bodySize = 0;
+        for (EncodedMessage message : messages) {
+            typeIndexes.computeIfAbsent(message.className(), className -> {
+                typeNames.add(className);
+                return typeNames.size() - 1;
+            });
+            bodySize += message.body().length + 6;
+        }
+
+        val output = new ByteArrayOutputStream(bodySize + typeNames.size() * 64 + 8);
+        try (val data = new DataOutputStream(output)) {
+            data.writeByte(MAGIC);
+            data.writeByte(VERSION);
+            data.writeShort(typeNames.size());
+            for (String typeName : typeNames) {
+                data.writeUTF(typeName);
+            }
+            data.writeInt(messages.size());
+            for (EncodedMessage message : messages) {
+                data.writeShort(typeIndexes.get(message.className()));
+                data.writeInt(message.body().length);
+                data.write(message.body());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output.toByteArray();
+    }
+
+    static boolean isFrame(byte[] bytes) {
+        return bytes != null && bytes.length > 1 && bytes[0] == MAGIC;
+    }
+
+    /**
+     * Decode the messages of a frame, the messages of unknown types are skipped
+     */
+    static List<PubSubMessage> decodeFrame(byte[] frame) throws IOException {
+        val data = new DataInputStream(new ByteArrayInputStream(frame));
+        data.readByte();
+        val version = data.readByte();
+        if (version != VERSION) {
+            throw new IOException("unsupported broadcast frame version: " + version);
+        }
+
+        val typeCount = data.readUnsignedShort();
+        val types = new ArrayList<Class<? extends PubSubMessage>>(typeCount);
+        for (int i = 0; i < typeCount; i++) {
+            types.add(resolveType(data.readUTF()));
+        }
+
+        val messageCount = data.readInt();
+        val messages = new ArrayList<PubSubMessage>(messageCount);
+        var offset = frame.length - data.available();
+        for (int i = 0; i < messageCount; i++) {
+            val type = types.get(data.readUnsignedShort());
+            val bodyLength = data.readInt();
+            offset += 6;
+            if (type != null) {
+                messages.add(JsonUtils.getObjectMapper().readValue(frame, offset, bodyLength, type));
+            }
+            data.skipNBytes(bodyLength);
+            offset += bodyLength;
+        }
+        return messages;
+    }
+
+    static Class<? extends PubSubMessage> resolveType(String className) {
+        return typeCache.computeIfAbsent(className, name -> {
+            try {
+                val clazz = Class.forName(name);
+                if (PubSubMessage.class.isAssignableFrom(clazz)) {
+                    return Optional.of(clazz.asSubclass(PubSubMessage.class));
+                }
+                log.error("class is not a message: {}", name);
+            } catch (ClassNotFoundException e) {
+                log.error("class not found: {}", name);
+            }
+            return Optional.empty();
+        }).orElse(null);
+    }
+
+    record EncodedMessage(String className, byte[] body) {
+    }
+
+}
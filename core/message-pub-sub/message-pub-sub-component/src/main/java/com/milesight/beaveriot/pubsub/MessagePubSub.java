@@ -2,28 +2,55 @@ package com.milesight.beaveriot.pubsub;
 
 
 import com.milesight.beaveriot.base.utils.JsonUtils;
-import com.milesight.beaveriot.base.utils.snowflake.SnowflakeUtil;
 import com.milesight.beaveriot.context.security.TenantContext;
 import com.milesight.beaveriot.pubsub.api.message.LocalUnicastMessage;
 import com.milesight.beaveriot.pubsub.api.message.PubSubMessage;
 import com.milesight.beaveriot.pubsub.api.message.RemoteBroadcastMessage;
+import jakarta.annotation.PreDestroy;
 import lombok.*;
 import lombok.extern.slf4j.*;
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
  * A simple pub/sub implementation for broadcasting message between peers.
  * Notice that it's not designed for peer to peer communication.
+ * <p>
+ * Broadcast messages published within a short window are sent together in one binary frame, see {@link BroadcastFrameCodec}.
  */
 @Slf4j
-@RequiredArgsConstructor
 public abstract class MessagePubSub {
 
+    private static final long BATCH_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private static final int MAX_BATCH_SIZE = 500;
+
+    private static final int MAX_BATCH_BYTES = 512 * 1024;
+
+    private static final int MAX_PENDING_MESSAGES = 10000;
+
     private final MessageRouter messageRouter;
 
+    private final BlockingQueue<BroadcastFrameCodec.EncodedMessage> pendingBroadcasts = new LinkedBlockingQueue<>(MAX_PENDING_MESSAGES);
+
+    private final Object flusherLock = new Object();
+
+    private Thread flusher;
+
+    private volatile boolean closed;
+
+    protected MessagePubSub(MessageRouter messageRouter) {
+        this.messageRouter = messageRouter;
+    }
+
     public <T extends PubSubMessage> void subscribe(Class<T> clazz, Consumer<T> listener) {
         messageRouter.subscribe(clazz, listener);
     }
@@ -56,13 +83,7 @@ public abstract class MessagePubSub {
         }
 
         if (message instanceof RemoteBroadcastMessage remoteBroadcastMessage) {
-            var serializableMessage = new SerializableMessage(
-                    message.getClass().getName(),
-                    SnowflakeUtil.nextId(),
-                    System.currentTimeMillis(),
-                    JsonUtils.toJSON(remoteBroadcastMessage)
-            );
-            remoteBroadcast(JsonUtils.toJSON(serializableMessage));
+            enqueueBroadcast(BroadcastFrameCodec.encodeMessage(remoteBroadcastMessage));
         } else if (message instanceof LocalUnicastMessage localUnicastMessage) {
             localPublish(localUnicastMessage);
         } else {
@@ -74,9 +95,124 @@ public abstract class MessagePubSub {
         messageRouter.dispatch(message);
     }
 
-    protected abstract void remoteBroadcast(String serializedMessage);
+    private void enqueueBroadcast(BroadcastFrameCodec.EncodedMessage message) {
+        if (closed || !pendingBroadcasts.offer(message)) {
+            // the flusher is gone or lagging behind, send the message by the caller
+            sendBroadcast(List.of(message));
+            return;
+        }
+        startFlusherIfAbsent();
+    }
 
-    protected void onRemoteBroadcastMessage(String serializedMessage) {
+    private void startFlusherIfAbsent() {
+        if (flusher != null) {
+            return;
+        }
+        synchronized (flusherLock) {
+            if (flusher == null && !closed) {
+                var thread = new Thread(this::flushBroadcasts, "pubsub-broadcast-flusher");
+                thread.setDaemon(true);
+                thread.start();
+                flusher = thread;
+            }
+        }
+    }
+
+    private void flushBroadcasts() {
+        var batch = new ArrayList<BroadcastFrameCodec.EncodedMessage>();
+        while (!closed || !pendingBroadcasts.isEmpty()) {
+            try {
+                var first = pendingBroadcasts.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                var batchBytes = first.body().length;
+                var deadline = System.nanoTime() + BATCH_WINDOW_NANOS;
+                while (batch.size() < MAX_BATCH_SIZE && batchBytes < MAX_BATCH_BYTES) {
+                    var next = pendingBroadcasts.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    batchBytes += next.body().length;
+                }
+                sendBroadcast(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void sendBroadcast(List<BroadcastFrameCodec.EncodedMessage> messages) {
+        try {
+            remoteBroadcast(BroadcastFrameCodec.encodeFrame(messages));
+        } catch (Exception e) {
+            log.error("broadcast {} messages failed.", messages.size(), e);
+        }
+    }
+
+    /**
+     * Send the pending broadcast messages before shutting down
+     */
+    @PreDestroy
+    public void destroy() {
+        closed = true;
+        Thread thread;
+        synchronized (flusherLock) {
+            thread = flusher;
+        }
+        if (thread != null) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        var remaining = new ArrayList<BroadcastFrameCodec.EncodedMessage>();
+        pendingBroadcasts.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            sendBroadcast(remaining);
+        }
+    }
+
+    /**
+     * Broadcast a frame of one or more messages to all peers, including the current one
+     */
+    protected abstract void remoteBroadcast(byte[] frame);
+
+    protected void onRemoteBroadcastMessage(byte[] payload) {
+        if (payload == null || payload.length == 0) {
+            log.error("broadcast payload is empty");
+            return;
+        }
+        if (!BroadcastFrameCodec.isFrame(payload)) {
+            // sent by a peer of a previous version
+            onRemoteBroadcastMessage(new String(payload, StandardCharsets.UTF_8));
+            return;
+        }
+
+        List<PubSubMessage> messages;
+        try {
+            messages = BroadcastFrameCodec.decodeFrame(payload);
+        } catch (Exception e) {
+            log.error("decode broadcast frame failed.", e);
+            return;
+        }
+        log.debug("onRemoteBroadcastMessage: {} messages", messages.size());
+        for (PubSubMessage message : messages) {
+            try {
+                messageRouter.dispatch(message);
+            } catch (Exception e) {
+                log.error("handle RemoteBroadcastMessage failed.", e);
+            }
+        }
+    }
+
+    private void onRemoteBroadcastMessage(String serializedMessage) {
         log.debug("onRemoteBroadcastMessage: {}", serializedMessage);
         try {
             var rawMessage = JsonUtils.fromJSON(serializedMessage, SerializableMessage.class);
@@ -96,17 +232,17 @@ public abstract class MessagePubSub {
             log.error("className is null or empty");
             return;
         }
-        Class<?> clazz;
-        try {
-            clazz = Class.forName(className);
-        } catch (ClassNotFoundException e) {
-            log.error("class not found: {}", className);
+        var clazz = BroadcastFrameCodec.resolveType(className);
+        if (clazz == null) {
             return;
         }
-        var message = (PubSubMessage) JsonUtils.fromJSON(rawMessage.json, clazz);
+        var message = JsonUtils.fromJSON(rawMessage.json, clazz);
         messageRouter.dispatch(message);
     }
 
+    /**
+     * Envelope of the JSON broadcast format of previous versions
+     */
     private record SerializableMessage(String className, Long id, Long timestamp, String json) {
     }
 
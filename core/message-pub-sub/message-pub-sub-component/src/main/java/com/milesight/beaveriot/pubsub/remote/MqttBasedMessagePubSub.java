@@ -23,15 +23,16 @@ public class MqttBasedMessagePubSub extends MessagePubSub {
     }
 
     @Override
-    protected void remoteBroadcast(String message) {
-        mqttBrokerBridge.publish(INTERNAL_BROADCAST_TOPIC, message.getBytes(), MqttQoS.AT_LEAST_ONCE, true);
+    protected void remoteBroadcast(byte[] frame) {
+        // not retained, a peer joining later must not replay a stale broadcast
+        mqttBrokerBridge.publish(INTERNAL_BROADCAST_TOPIC, frame, MqttQoS.AT_LEAST_ONCE, false);
     }
 
     @PostConstruct
     private void init() {
         mqttBrokerBridge.addListener((MqttBroadcastListener) event -> {
             if (event.getTopic().startsWith(INTERNAL_BROADCAST_TOPIC)) {
-                onRemoteBroadcastMessage(new String(event.getPayload()));
+                onRemoteBroadcastMessage(event.getPayload());
             }
         });
     }
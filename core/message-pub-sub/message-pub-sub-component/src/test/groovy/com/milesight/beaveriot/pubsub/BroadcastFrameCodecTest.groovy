@@ -0,0 +1,59 @@
+package com.milesight.beaveriot.pubsub
+
+import com.milesight.beaveriot.pubsub.api.message.RemoteBroadcastMessage
+import spock.lang.Specification
+
+class BroadcastFrameCodecTest extends Specification {
+
+    def "decodeFrame should return the messages of the frame in order"() {
+        given:
+        def messages = [
+                new FirstMessage(tenantId: "t1", data: "a"),
+                new SecondMessage(tenantId: "t2", count: 2),
+                new FirstMessage(tenantId: "t1", data: "b"),
+        ]
+
+        when:
+        def frame = BroadcastFrameCodec.encodeFrame(messages.collect { BroadcastFrameCodec.encodeMessage(it) })
+        def decoded = BroadcastFrameCodec.decodeFrame(frame)
+
+        then:
+        BroadcastFrameCodec.isFrame(frame)
+        decoded*.class == [FirstMessage, SecondMessage, FirstMessage]
+        decoded*.tenantId == ["t1", "t2", "t1"]
+        decoded[0].data == "a"
+        decoded[1].count == 2
+        decoded[2].data == "b"
+    }
+
+    def "decodeFrame should skip the messages of unknown types"() {
+        given:
+        def frame = BroadcastFrameCodec.encodeFrame([
+                new BroadcastFrameCodec.EncodedMessage("com.example.MissingMessage", '{"tenantId":"t1"}'.bytes),
+                BroadcastFrameCodec.encodeMessage(new FirstMessage(tenantId: "t1", data: "a")),
+        ])
+
+        when:
+        def decoded = BroadcastFrameCodec.decodeFrame(frame)
+
+        then:
+        decoded*.class == [FirstMessage]
+        decoded[0].data == "a"
+    }
+
+    def "isFrame should not match the legacy JSON envelope"() {
+        expect:
+        !BroadcastFrameCodec.isFrame('{"className":"a","json":"{}"}'.bytes)
+    }
+
+    static class FirstMessage extends RemoteBroadcastMessage {
+        String tenantId
+        String data
+    }
+
+    static class SecondMessage extends RemoteBroadcastMessage {
+        String tenantId
+        Integer count
+    }
+
+}
@@ -39,6 +39,11 @@ public interface ExchangeHeaders {
 
     String EXCHANGE_LATEST_TRACE_ID = "CamelExchangeLatestNodeId";
 
+    /**
+     * Cancellation of the parallel branch the exchange is running in
+     */
+    String GRAPH_PARALLEL_CANCELLATION = "CamelGraphParallelCancellation";
+
     String EXCHANGE_DONE_ADVICE_FLAG = "CamelExchangeDoneAdviceFlag";
 
     /**
@@ -48,6 +53,11 @@ public interface ExchangeHeaders {
 
     String EXCHANGE_ROOT_FLOW_ID = "CamelExchangeRootFlowId";
 
+    /**
+     * Tenant the exchange is run for
+     */
+    String EXCHANGE_SOURCE_TENANT_ID = "_sourceTenantId";
+
     /**
      * Supports custom log input variable definitions. When obtaining logs,
      * the variable value defined here is preferred, and stored in Map, where the Key is the node ID.
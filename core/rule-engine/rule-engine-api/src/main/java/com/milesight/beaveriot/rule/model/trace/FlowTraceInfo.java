@@ -4,8 +4,8 @@ import com.milesight.beaveriot.rule.enums.ExecutionStatus;
 import lombok.Data;
 import org.springframework.util.ObjectUtils;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * @author leon
@@ -23,7 +23,10 @@ public class FlowTraceInfo {
 
     private String message;
 
-    private List<NodeTraceInfo> traceInfos = new ArrayList<>();
+    /**
+     * Node traces, appended concurrently by the parallel branches of a flow
+     */
+    private List<NodeTraceInfo> traceInfos = new CopyOnWriteArrayList<>();
 
     public boolean isEmpty() {
         return ObjectUtils.isEmpty(traceInfos);
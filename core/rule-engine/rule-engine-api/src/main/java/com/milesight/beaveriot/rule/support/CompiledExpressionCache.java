@@ -0,0 +1,133 @@
+package com.milesight.beaveriot.rule.support;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.SneakyThrows;
+import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.UnaryOperator;
+
+import static org.apache.camel.support.builder.ExpressionBuilder.languageExpression;
+
+/**
+ * Cache of compiled and initialized language expressions, keyed by language and the compiled source, that is the
+ * expression text after the source transformation of the caller.
+ * <p>
+ * The cached expressions are shared by all exchanges, which is safe for every language of the rule engine: the
+ * expressions of SpEL, Groovy and MVEL keep no state between evaluations, and the JavaScript and Python expressions
+ * evaluate in a pooled or new script context each time. A language keeping state in its expression objects must not be
+ * evaluated through this cache. Entries compiled for a flow are invalidated when the flow is removed or redeployed,
+ * and forgotten by their flow when they are evicted.
+ *
+ * @author leon
+ */
+public class CompiledExpressionCache {
+
+    private static final long MAXIMUM_SIZE = 4096;
+
+    /**
+     * Cached expressions of each flow, the entries are removed together with the cached expressions
+     */
+    private static final Map<String, Map<ExpressionKey, CompiledExpression>> FLOW_EXPRESSIONS = new ConcurrentHashMap<>();
+
+    private static final Cache<ExpressionKey, CompiledExpression> EXPRESSION_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .recordStats()
+            .removalListener(CompiledExpressionCache::onRemoval)
+            .build();
+
+    private CompiledExpressionCache() {
+    }
+
+    public static Expression getExpression(Exchange exchange, String language, String expression) {
+        return getExpression(exchange, language, expression, UnaryOperator.identity());
+    }
+
+    /**
+     * Get the compiled expression, compiling and initializing it on a cache miss
+     *
+     * @param exchange          current exchange, providing the camel context and the flow id of the expression
+     * @param language          expression language
+     * @param expression        expression text
+     * @param sourceTransformer transformation of the expression text applied before compiling, e.g. wrapping
+     * @return compiled expression
+     */
+    @SneakyThrows
+    public static Expression getExpression(Exchange exchange, String language, String expression, UnaryOperator<String> sourceTransformer) {
+        // the same text compiled with and without a transformation are different expressions
+        String source = sourceTransformer.apply(expression);
+        ExpressionKey key = new ExpressionKey(language, source);
+        try {
+            return EXPRESSION_CACHE.get(key, () -> {
+                Expression languageExpression = languageExpression(language, source);
+                languageExpression.init(exchange.getContext());
+                CompiledExpression compiled = new CompiledExpression(languageExpression, exchange.getFromRouteId());
+                if (compiled.flowId() != null) {
+                    FLOW_EXPRESSIONS.compute(compiled.flowId(), (k, expressions) -> {
+                        Map<ExpressionKey, CompiledExpression> flowExpressions = expressions != null ? expressions : new ConcurrentHashMap<>();
+                        flowExpressions.put(key, compiled);
+                        return flowExpressions;
+                    });
+                }
+                return compiled;
+            }).expression();
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            // rethrow the compilation failure as is, e.g. ExpressionIllegalSyntaxException
+            throw e.getCause() != null ? e.getCause() : e;
+        }
+    }
+
+    public static void invalidateFlow(String flowId) {
+        if (flowId == null) {
+            return;
+        }
+        Map<ExpressionKey, CompiledExpression> expressions = FLOW_EXPRESSIONS.remove(flowId);
+        if (expressions != null) {
+            EXPRESSION_CACHE.invalidateAll(expressions.keySet());
+        }
+    }
+
+    public static void invalidateAll() {
+        FLOW_EXPRESSIONS.clear();
+        EXPRESSION_CACHE.invalidateAll();
+    }
+
+    /**
+     * Forget the removed expression in its flow, unless the flow already tracks a newer compilation of it
+     */
+    private static void onRemoval(RemovalNotification<ExpressionKey, CompiledExpression> notification) {
+        CompiledExpression compiled = notification.getValue();
+        if (compiled == null || compiled.flowId() == null) {
+            return;
+        }
+        FLOW_EXPRESSIONS.computeIfPresent(compiled.flowId(), (k, expressions) -> {
+            expressions.remove(notification.getKey(), compiled);
+            return expressions.isEmpty() ? null : expressions;
+        });
+    }
+
+    /**
+     * Hit and miss statistics of the cache
+     */
+    public static CacheStats getStats() {
+        return EXPRESSION_CACHE.stats();
+    }
+
+    public static Cache<?, ?> getCache() {
+        return EXPRESSION_CACHE;
+    }
+
+    private record ExpressionKey(String language, String source) {
+    }
+
+    private record CompiledExpression(Expression expression, String flowId) {
+    }
+}
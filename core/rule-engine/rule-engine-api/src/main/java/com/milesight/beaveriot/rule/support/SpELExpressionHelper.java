@@ -16,8 +16,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import static org.apache.camel.support.builder.ExpressionBuilder.languageExpression;
-
 /**
  * @author leon
  */
@@ -50,8 +48,7 @@ public class SpELExpressionHelper {
             return expressionValue;
         }
         if (containSpELExpression(expressionValue)) {
-            Expression expression = languageExpression(ExpressionLanguage.spel.name(), (String) expressionValue);
-            expression.init(exchange.getContext());
+            Expression expression = CompiledExpressionCache.getExpression(exchange, ExpressionLanguage.spel.name(), (String) expressionValue);
             return expression.evaluate(exchange, Object.class);
         } else {
             return expressionValue;
@@ -0,0 +1,141 @@
+package com.milesight.beaveriot.rule.support
+
+import org.apache.camel.CamelContext
+import org.apache.camel.Exchange
+import org.apache.camel.Expression
+import org.apache.camel.Predicate
+import org.apache.camel.spi.Language
+import spock.lang.Specification
+
+import java.util.function.UnaryOperator
+
+/**
+ * @author leon
+ */
+class CompiledExpressionCacheTest extends Specification {
+
+    CamelContext camelContext
+
+    Language language
+
+    List<String> compiledSources = []
+
+    def setup() {
+        CompiledExpressionCache.invalidateAll()
+        language = Mock(Language) {
+            createPredicate(_) >> Mock(Predicate)
+            createExpression(_) >> { String source ->
+                if (source.contains("illegal")) {
+                    throw new IllegalArgumentException("Illegal expression: " + source)
+                }
+                compiledSources << source
+                return Mock(Expression)
+            }
+        }
+        camelContext = Mock(CamelContext) {
+            resolveLanguage("test") >> language
+        }
+    }
+
+    def cleanup() {
+        CompiledExpressionCache.invalidateAll()
+    }
+
+    Exchange exchange(String flowId) {
+        return Mock(Exchange) {
+            getContext() >> camelContext
+            getFromRouteId() >> flowId
+        }
+    }
+
+    static Map<String, Map> flowExpressions() {
+        return CompiledExpressionCache.FLOW_EXPRESSIONS
+    }
+
+    def "expression should be compiled once per language and text"() {
+        when:
+        def first = CompiledExpressionCache.getExpression(exchange("flow-1"), "test", "a")
+        def second = CompiledExpressionCache.getExpression(exchange("flow-2"), "test", "a")
+        def other = CompiledExpressionCache.getExpression(exchange("flow-1"), "test", "b")
+
+        then:
+        first.is(second)
+        !first.is(other)
+        compiledSources == ["a", "b"]
+    }
+
+    def "source should be transformed before compiling"() {
+        when:
+        CompiledExpressionCache.getExpression(exchange("flow-1"), "test", "a", { "wrapped(" + it + ")" } as UnaryOperator)
+
+        then:
+        compiledSources == ["wrapped(a)"]
+    }
+
+    def "same text should be compiled separately with and without the transformation"() {
+        given:
+        def wrap = { "wrapped(" + it + ")" } as UnaryOperator
+
+        when:
+        def plain = CompiledExpressionCache.getExpression(exchange("flow-1"), "test", "a")
+        def wrapped = CompiledExpressionCache.getExpression(exchange("flow-1"), "test", "a", wrap)
+        def wrappedAgain = CompiledExpressionCache.getExpression(exchange("flow-2"), "test", "a", wrap)
+        def plainAgain = CompiledExpressionCache.getExpression(exchange("flow-2"), "test", "a")
+
+        then:
+        !plain.is(wrapped)
+        wrapped.is(wrappedAgain)
+        plain.is(plainAgain)
+        compiledSources == ["a", "wrapped(a)"]
+    }
+
+    def "compilation failure should be thrown as it is and not cached"() {
+        when:
+        CompiledExpressionCache.getExpression(exchange("flow-1"), "test", "illegal")
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Illegal expression: illegal"
+        CompiledExpressionCache.getCache().size() == 0
+        flowExpressions().isEmpty()
+    }
+
+    def "only the expressions of the invalidated flow should be compiled again"() {
+        given:
+        CompiledExpressionCache.getExpression(exchange("flow-1"), "test", "a")
+        CompiledExpressionCache.getExpression(exchange("flow-2"), "test", "b")
+
+        when:
+        CompiledExpressionCache.invalidateFlow("flow-1")
+        CompiledExpressionCache.getExpression(exchange("flow-1"), "test", "a")
+        CompiledExpressionCache.getExpression(exchange("flow-2"), "test", "b")
+
+        then:
+        compiledSources == ["a", "b", "a"]
+        flowExpressions().keySet() == ["flow-1", "flow-2"].toSet()
+    }
+
+    def "evicted expressions should be forgotten by their flow"() {
+        when:
+        (0..<5000).each { CompiledExpressionCache.getExpression(exchange("flow-1"), "test", "e" + it) }
+
+        then:
+        CompiledExpressionCache.getCache().size() <= 4096
+        flowExpressions()["flow-1"].size() == CompiledExpressionCache.getCache().size()
+
+        when:
+        CompiledExpressionCache.getCache().invalidateAll()
+
+        then:
+        flowExpressions().isEmpty()
+    }
+
+    def "expression compiled without a flow should not be tracked"() {
+        when:
+        CompiledExpressionCache.getExpression(exchange(null), "test", "a")
+
+        then:
+        CompiledExpressionCache.getCache().size() == 1
+        flowExpressions().isEmpty()
+    }
+}
@@ -2,12 +2,12 @@ package com.milesight.beaveriot.rule.components.code;
 
 import com.milesight.beaveriot.rule.enums.ExpressionLanguage;
 import com.milesight.beaveriot.rule.model.flow.ExpressionNode;
+import com.milesight.beaveriot.rule.support.CompiledExpressionCache;
 import org.apache.camel.Exchange;
 import org.apache.camel.Expression;
 
 import java.util.Map;
-
-import static org.apache.camel.support.builder.ExpressionBuilder.languageExpression;
+import java.util.function.UnaryOperator;
 
 /**
  * @author leon
@@ -16,29 +16,22 @@ public class ExpressionEvaluator {
 
     public static final String HEADER_INPUT_VARIABLES = "_inputVariables";
 
+    private static final UnaryOperator<String> JS_FUNCTION_WRAPPER = expression -> "(()=>{ " +
+            expression +
+            "      })()";
+
     private ExpressionEvaluator() {
     }
 
     public static <T> T evaluate(ExpressionNode expression, Exchange exchange, Map<String, Object> inputVariables, Class<T> type) {
 
-        ExpressionNode wrapperExpressionNode = prepareEvaluationContext(expression, exchange, inputVariables);
-
-        Expression languageExpression = languageExpression(wrapperExpressionNode.getLanguage(), wrapperExpressionNode.getExpression());
+        exchange.getIn().setHeader(HEADER_INPUT_VARIABLES, inputVariables);
 
-        languageExpression.init(exchange.getContext());
+        // compiled once per expression text, the js expression is wrapped into a function on compiling
+        UnaryOperator<String> sourceTransformer = ExpressionLanguage.js.name().equals(expression.getLanguage()) ? JS_FUNCTION_WRAPPER : UnaryOperator.identity();
+        Expression languageExpression = CompiledExpressionCache.getExpression(exchange, expression.getLanguage(), expression.getExpression(), sourceTransformer);
 
         return languageExpression.evaluate(exchange, type);
     }
 
-    private static ExpressionNode prepareEvaluationContext(ExpressionNode expression, Exchange exchange, Map<String, Object> inputVariables) {
-        exchange.getIn().setHeader(HEADER_INPUT_VARIABLES, inputVariables);
-        if (expression.getLanguage().equals(ExpressionLanguage.js.name())) {
-            String wrapperExpression = "(()=>{ " +
-                    expression.getExpression() +
-                    "      })()";
-            return ExpressionNode.create(expression.getLanguage(), wrapperExpression);
-        }
-        return expression;
-    }
-
 }
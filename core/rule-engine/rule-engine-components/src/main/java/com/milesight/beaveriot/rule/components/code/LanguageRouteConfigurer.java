@@ -4,12 +4,15 @@ import com.milesight.beaveriot.rule.RuleEngineRouteConfigurer;
 import com.milesight.beaveriot.rule.components.code.language.CustomizedJavaScriptLanguage;
 import com.milesight.beaveriot.rule.components.code.language.CustomizedMvelLanguage;
 import com.milesight.beaveriot.rule.components.code.language.CustomizedPythonLanguage;
+import com.milesight.beaveriot.rule.components.code.language.LanguageContextPool;
+import com.milesight.beaveriot.rule.components.code.language.LanguageContextPoolProperties;
 import com.milesight.beaveriot.rule.components.code.language.LanguageWarmUp;
 import groovy.lang.GroovyShell;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.camel.CamelContext;
 import org.apache.camel.Exchange;
 import org.apache.camel.language.groovy.GroovyShellFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.util.ObjectUtils;
 
@@ -24,8 +27,13 @@ import java.util.Map;
 public class LanguageRouteConfigurer implements RuleEngineRouteConfigurer {
     public static final String WARM_UP_THREAD_NAME_PREFIX = "Language-WarmUp-";
 
+    @Autowired
+    private LanguageContextPoolProperties languageContextPoolProperties;
+
     @Override
     public void customizeRoute(CamelContext context) {
+        LanguageContextPool.configure(languageContextPoolProperties);
+
         bindRegistry(context, "groovyShellFactory", new CustomizedGroovyShellFactory());
         bindRegistry(context, "mvel-language", new CustomizedMvelLanguage());
         bindRegistry(context, "js-language", new CustomizedJavaScriptLanguage());
@@ -1,12 +1,9 @@
 package com.milesight.beaveriot.rule.components.code.language;
 
 import com.milesight.beaveriot.rule.components.code.ExpressionEvaluator;
-import com.milesight.beaveriot.rule.components.code.language.module.JavaScriptJsonModule;
 import com.milesight.beaveriot.rule.components.code.language.module.LanguageModule;
 import org.apache.camel.Exchange;
 import org.apache.camel.support.ExpressionSupport;
-import org.graalvm.polyglot.Context;
-import org.graalvm.polyglot.Source;
 import org.graalvm.polyglot.Value;
 import org.springframework.util.ObjectUtils;
 
@@ -26,10 +23,10 @@ public class CustomizedJavaScriptExpression extends ExpressionSupport {
     @SuppressWarnings("unchecked")
     @Override
     public <T> T evaluate(Exchange exchange, Class<T> type) {
-        try (Context cx = LanguageHelper.newContext(LANG_ID)) {
-            LanguageModule jsonModule = new JavaScriptJsonModule(cx);
+        return LanguageContextPool.of(LANG_ID).execute(cx -> {
+            LanguageModule jsonModule = cx.getJsonModule();
 
-            Value b = cx.getBindings(LANG_ID);
+            Value b = cx.getBindings();
 
             b.putMember("exchange", exchange);
             b.putMember("context", exchange.getContext());
@@ -50,11 +47,10 @@ public class CustomizedJavaScriptExpression extends ExpressionSupport {
                 exchange.getIn().removeHeader(ExpressionEvaluator.HEADER_INPUT_VARIABLES);
             }
 
-            Source source = Source.create(LANG_ID, expressionString);
-            Value o = cx.eval(source);
+            Value o = cx.eval(LanguageContextPool.of(LANG_ID).getSource(expressionString));
 
             return (T) LanguageHelper.convertResultValue(o, exchange, type);
-        }
+        });
     }
 
     @Override
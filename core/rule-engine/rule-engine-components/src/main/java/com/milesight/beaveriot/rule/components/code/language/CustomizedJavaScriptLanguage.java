@@ -1,11 +1,8 @@
 package com.milesight.beaveriot.rule.components.code.language;
 
-import com.milesight.beaveriot.rule.components.code.language.module.JavaScriptJsonModule;
-import com.milesight.beaveriot.rule.components.code.language.module.LanguageModule;
 import org.apache.camel.Predicate;
 import org.apache.camel.spi.ScriptingLanguage;
 import org.apache.camel.support.TypedLanguageSupport;
-import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.Value;
 
 import java.util.Map;
@@ -26,21 +23,19 @@ public class CustomizedJavaScriptLanguage extends TypedLanguageSupport implement
 
     @Override
     public <T> T evaluate(String script, Map<String, Object> bindings, Class<T> resultType) {
-        script = loadResource(script);
-        try (Context cx = LanguageHelper.newContext(CustomizedJavaScriptExpression.LANG_ID)) {
-            Value b = cx.getBindings(CustomizedJavaScriptExpression.LANG_ID);
+        String source = loadResource(script);
+        LanguageContextPool contextPool = LanguageContextPool.of(CustomizedJavaScriptExpression.LANG_ID);
+        return contextPool.execute(cx -> {
+            Value b = cx.getBindings();
             bindings.forEach(b::putMember);
-            Value o = cx.eval(CustomizedJavaScriptExpression.LANG_ID, script);
+            Value o = cx.eval(contextPool.getSource(source));
             Object answer = o != null ? o.as(resultType) : null;
             return resultType.cast(answer);
-        }
+        });
     }
 
     @Override
     public void warmUp() {
-        try (Context cx = LanguageHelper.newContext(CustomizedJavaScriptExpression.LANG_ID)) {
-            LanguageModule jsonModule = new JavaScriptJsonModule(cx);
-            jsonModule.init();
-        }
+        LanguageContextPool.of(CustomizedJavaScriptExpression.LANG_ID).warmUp();
     }
 }
@@ -1,11 +1,8 @@
 package com.milesight.beaveriot.rule.components.code.language;
 
-import com.milesight.beaveriot.rule.components.code.language.module.LanguageModule;
-import com.milesight.beaveriot.rule.components.code.language.module.PythonJsonModule;
 import org.apache.camel.Predicate;
 import org.apache.camel.spi.ScriptingLanguage;
 import org.apache.camel.support.TypedLanguageSupport;
-import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.Value;
 
 import java.util.Map;
@@ -27,21 +24,19 @@ public class CustomizedPythonLanguage extends TypedLanguageSupport implements Sc
 
     @Override
     public <T> T evaluate(String script, Map<String, Object> bindings, Class<T> resultType) {
-        script = loadResource(script);
-        try (Context cx = LanguageHelper.newContext(CustomizedPythonExpression.LANG_ID)) {
-            Value b = cx.getBindings(CustomizedPythonExpression.LANG_ID);
+        String source = loadResource(script);
+        LanguageContextPool contextPool = LanguageContextPool.of(CustomizedPythonExpression.LANG_ID);
+        return contextPool.execute(cx -> {
+            Value b = cx.getBindings();
             bindings.forEach(b::putMember);
-            Value o = cx.eval(CustomizedPythonExpression.LANG_ID, script);
+            Value o = cx.eval(contextPool.getSource(source));
             Object answer = o != null ? o.as(resultType) : null;
             return resultType.cast(answer);
-        }
+        });
     }
 
     @Override
     public void warmUp() {
-        try (Context cx = LanguageHelper.newContext(CustomizedPythonExpression.LANG_ID)) {
-            LanguageModule jsonModule = new PythonJsonModule(cx);
-            jsonModule.init();
-        }
+        LanguageContextPool.of(CustomizedPythonExpression.LANG_ID).warmUp();
     }
 }
@@ -0,0 +1,149 @@
+package com.milesight.beaveriot.rule.components.code.language;
+
+import com.milesight.beaveriot.rule.components.code.language.LanguageContextPool.PooledContext;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Contexts pooled per isolation key, such as the tenant, a context only serves the executions of the key it was
+ * created for.
+ * <p>
+ * At most {@value #MAX_IDLE_CONTEXTS} contexts are kept idle per key and {@code maxTotal} contexts are pooled in total,
+ * idle or in use. Once the total is reached, the least recently used idle context of any key is discarded to make
+ * room. Idle contexts are discarded after {@link #MAX_IDLE_TIME}.
+ *
+ * @author leon
+ */
+class KeyedContextPool {
+
+    static final int MAX_IDLE_CONTEXTS = 2;
+
+    static final Duration MAX_IDLE_TIME = Duration.ofMinutes(10);
+
+    private final int maxTotal;
+
+    private final Supplier<PooledContext> contextFactory;
+
+    private final Object lock = new Object();
+
+    /**
+     * Idle contexts per key, the most recently used last, guarded by {@link #lock}
+     */
+    private final Map<String, Deque<PooledContext>> idleContexts = new HashMap<>();
+
+    /**
+     * Idle contexts of all the keys, the least recently used first, guarded by {@link #lock}
+     */
+    private final LinkedHashMap<PooledContext, Idle> idleContextsOfAll = new LinkedHashMap<>();
+
+    /**
+     * Number of pooled contexts, idle or in use, guarded by {@link #lock}
+     */
+    private int pooledContexts;
+
+    KeyedContextPool(int maxTotal, Supplier<PooledContext> contextFactory) {
+        this.maxTotal = maxTotal;
+        this.contextFactory = contextFactory;
+    }
+
+    /**
+     * Take an idle context of the key, or create a pooled one if the total allows it
+     *
+     * @return null if all the pooled contexts are in use
+     */
+    PooledContext borrow(String key) {
+        PooledContext evicted = null;
+        synchronized (lock) {
+            Deque<PooledContext> contexts = idleContexts.get(key);
+            if (contexts != null) {
+                PooledContext context = contexts.pollLast();
+                if (contexts.isEmpty()) {
+                    idleContexts.remove(key);
+                }
+                idleContextsOfAll.remove(context);
+                return context;
+            }
+
+            if (pooledContexts < maxTotal) {
+                pooledContexts++;
+            } else {
+                // take over the place of the least recently used idle context
+                Iterator<Map.Entry<PooledContext, Idle>> iterator = idleContextsOfAll.entrySet().iterator();
+                if (!iterator.hasNext()) {
+                    return null;
+                }
+                Map.Entry<PooledContext, Idle> eldest = iterator.next();
+                iterator.remove();
+                evicted = eldest.getKey();
+                removeIdle(eldest.getValue().key(), evicted);
+            }
+        }
+
+        if (evicted != null) {
+            evicted.close();
+        }
+        try {
+            return contextFactory.get();
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                pooledContexts--;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Return a context borrowed for the key, it is discarded if it is not reusable or enough contexts of the key are
+     * idle
+     */
+    void release(String key, PooledContext context) {
+        long now = System.nanoTime();
+        List<PooledContext> discarded = new ArrayList<>();
+        synchronized (lock) {
+            Deque<PooledContext> contexts = idleContexts.computeIfAbsent(key, k -> new ArrayDeque<>());
+            if (context.isReusable() && contexts.size() < MAX_IDLE_CONTEXTS) {
+                contexts.addLast(context);
+                idleContextsOfAll.put(context, new Idle(key, now));
+            } else {
+                if (contexts.isEmpty()) {
+                    idleContexts.remove(key);
+                }
+                pooledContexts--;
+                discarded.add(context);
+            }
+
+            Iterator<Map.Entry<PooledContext, Idle>> iterator = idleContextsOfAll.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<PooledContext, Idle> eldest = iterator.next();
+                if (now - eldest.getValue().since() < MAX_IDLE_TIME.toNanos()) {
+                    break;
+                }
+                iterator.remove();
+                removeIdle(eldest.getValue().key(), eldest.getKey());
+                pooledContexts--;
+                discarded.add(eldest.getKey());
+            }
+        }
+        discarded.forEach(PooledContext::close);
+    }
+
+    private void removeIdle(String key, PooledContext context) {
+        Deque<PooledContext> contexts = idleContexts.get(key);
+        contexts.remove(context);
+        if (contexts.isEmpty()) {
+            idleContexts.remove(key);
+        }
+    }
+
+    private record Idle(String key, long since) {
+    }
+}
@@ -0,0 +1,401 @@
+package com.milesight.beaveriot.rule.components.code.language;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.milesight.beaveriot.base.pool.ObjectPool;
+import com.milesight.beaveriot.base.pool.PoolConfig;
+import com.milesight.beaveriot.rule.components.code.language.module.JavaScriptJsonModule;
+import com.milesight.beaveriot.rule.components.code.language.module.LanguageModule;
+import com.milesight.beaveriot.rule.components.code.language.module.PythonJsonModule;
+import lombok.Getter;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.ResourceLimits;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Bounded pool of warmed contexts per language.
+ * <p>
+ * All contexts of a language share the cached {@link org.graalvm.polyglot.Engine}, and parsed {@link Source}s are kept
+ * in an LRU keyed by script, so the engine code cache is hit across contexts. A pooled JavaScript context serves the
+ * flows of all tenants, as its global state is guarded:
+ * <ul>
+ *     <li>the built-in objects and everything reachable from them, such as the prototypes, are frozen when the context
+ *     is created, scripts can't patch them</li>
+ *     <li>the properties of the global object are restored after every execution: the added ones are removed, the
+ *     reassigned or redefined ones are set back to their initial values</li>
+ * </ul>
+ * A context is discarded if its global object can't be restored, for example after a top level {@code var} or
+ * {@code let} declaration, or if it was cancelled or exhausted its resource limits.
+ * <p>
+ * The modules of Python can't be frozen, so a pooled Python context only serves the flows of one tenant, see
+ * {@link #execute(String, Function)}. The variables added to its main module are removed and the reassigned ones are
+ * set back after every execution, while a patched module stays patched for the later flows of the tenant. Python
+ * executions without a tenant get a new context each time.
+ * <p>
+ * No execution waits for a pooled context longer than the configured {@code maxWaitTime}, a one-off context is used
+ * once it is exceeded.
+ *
+ * @author leon
+ */
+@Slf4j
+public class LanguageContextPool {
+
+    private static final int MAX_CACHED_SOURCES = 1024;
+
+    private static final int STATEMENT_LIMIT = 2000;
+
+    private static final String JS_LANG_ID = "js";
+
+    /**
+     * Freezes the built-in objects and returns the function restoring the global object, which returns false if it
+     * can't be restored
+     */
+    private static final Source JS_GLOBAL_GUARD = Source.newBuilder(JS_LANG_ID, """
+                    (() => {
+                        const global = globalThis;
+                        const { freeze, getPrototypeOf, getOwnPropertyDescriptor, defineProperty, isExtensible, is } = Object;
+                        const { ownKeys, deleteProperty } = Reflect;
+                        const frozen = new Set();
+                        const pending = [];
+                        const push = (value) => {
+                            if (value !== null && (typeof value === 'object' || typeof value === 'function')
+                                    && value !== global && !frozen.has(value)) {
+                                frozen.add(value);
+                                pending.push(value);
+                            }
+                        };
+                        const pushDescriptor = (descriptor) => {
+                            if ('value' in descriptor) {
+                                push(descriptor.value);
+                            } else {
+                                push(descriptor.get);
+                                push(descriptor.set);
+                            }
+                        };
+                        const prototype = getPrototypeOf(global);
+                        const snapshot = ownKeys(global).map((key) => [key, getOwnPropertyDescriptor(global, key)]);
+                        const initialKeys = new Set(snapshot.map((entry) => entry[0]));
+                        snapshot.forEach((entry) => pushDescriptor(entry[1]));
+                        // intrinsics not reachable from the global object
+                        [prototype,
+                            getPrototypeOf([][Symbol.iterator]()),
+                            getPrototypeOf(new Map()[Symbol.iterator]()),
+                            getPrototypeOf(new Set()[Symbol.iterator]()),
+                            getPrototypeOf(''[Symbol.iterator]()),
+                            getPrototypeOf(/./[Symbol.matchAll]('')),
+                            getPrototypeOf(function* () {}),
+                            getPrototypeOf(async function () {}),
+                            getPrototypeOf(async function* () {}),
+                            getPrototypeOf(Int8Array)].forEach(push);
+                        while (pending.length > 0) {
+                            const value = pending.pop();
+                            freeze(value);
+                            push(getPrototypeOf(value));
+                            ownKeys(value).forEach((key) => pushDescriptor(getOwnPropertyDescriptor(value, key)));
+                        }
+                        const changed = (current, initial) => current === undefined
+                            || !is(current.value, initial.value) || current.get !== initial.get || current.set !== initial.set
+                            || current.writable !== initial.writable || current.enumerable !== initial.enumerable
+                            || current.configurable !== initial.configurable;
+                        return () => {
+                            if (getPrototypeOf(global) !== prototype || !isExtensible(global)) {
+                                return false;
+                            }
+                            const keys = ownKeys(global);
+                            for (let i = 0; i < keys.length; i++) {
+                                if (!initialKeys.has(keys[i]) && !deleteProperty(global, keys[i])) {
+                                    return false;
+                                }
+                            }
+                            for (let i = 0; i < snapshot.length; i++) {
+                                const key = snapshot[i][0];
+                                const descriptor = snapshot[i][1];
+                                if (changed(getOwnPropertyDescriptor(global, key), descriptor)) {
+                                    try {
+                                        defineProperty(global, key, descriptor);
+                                    } catch (e) {
+                                        return false;
+                                    }
+                                }
+                            }
+                            return true;
+                        };
+                    })()
+                    """, "global_guard.js")
+            .internal(true)
+            .buildLiteral();
+
+    private static final Map<String, LanguageContextPool> pools = new ConcurrentHashMap<>();
+
+    private static volatile LanguageContextPoolProperties properties = new LanguageContextPoolProperties();
+
+    private final String lang;
+
+    /**
+     * Null if the contexts of the language are not shared by all tenants
+     */
+    private final ObjectPool<PooledContext> contextPool;
+
+    /**
+     * Null if the contexts of the language are not pooled per tenant
+     */
+    private final KeyedContextPool tenantContextPool;
+
+    private final Cache<String, Source> sourceCache = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_SOURCES)
+            .build();
+
+    private LanguageContextPool(String lang) {
+        this.lang = lang;
+        LanguageContextPoolProperties settings = properties;
+        if (JS_LANG_ID.equals(lang)) {
+            PoolConfig config = PoolConfig.builder()
+                    .minIdle(1)
+                    .maxTotal(settings.getMaxTotal())
+                    .maxIdleTime(Duration.ofMinutes(10))
+                    .evictionCheckInterval(Duration.ofMinutes(1))
+                    .maxWaitTime(settings.getMaxWaitTime())
+                    .build();
+            this.contextPool = ObjectPool.newPool(config, () -> createContext(true), PooledContext::close, PooledContext::isReusable, PooledContext.class);
+            this.tenantContextPool = null;
+        } else if (CustomizedPythonExpression.LANG_ID.equals(lang)) {
+            this.contextPool = null;
+            this.tenantContextPool = new KeyedContextPool(settings.getMaxTotal(), () -> createContext(true));
+        } else {
+            this.contextPool = null;
+            this.tenantContextPool = null;
+        }
+    }
+
+    public static LanguageContextPool of(String lang) {
+        return pools.computeIfAbsent(lang, LanguageContextPool::new);
+    }
+
+    /**
+     * Apply the settings to the pools created afterwards, it is called before any script is evaluated
+     */
+    public static void configure(LanguageContextPoolProperties poolProperties) {
+        properties = poolProperties;
+    }
+
+    /**
+     * Execute the operation with a context borrowed from the pool. Polyglot values must not escape the operation,
+     * convert them to host values before returning.
+     */
+    public <R> R execute(Function<PooledContext, R> operation) {
+        if (contextPool != null) {
+            try {
+                return contextPool.execute(context -> {
+                    return executeIn(context, operation, true);
+                });
+            } catch (Exception e) {
+                if (!(e instanceof TimeoutException)) {
+                    throw e;
+                }
+                log.debug("All pooled {} contexts are in use, execute in a one-off context", lang);
+            }
+        }
+
+        PooledContext context = createContext(false);
+        try {
+            return executeIn(context, operation, false);
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Execute the operation for the tenant. The languages pooled per tenant use a context only reused by the executions
+     * of the tenant, or a one-off context if the tenant is unknown or all the pooled contexts are in use, the other
+     * languages are executed as {@link #execute(Function)}.
+     */
+    public <R> R execute(String tenantId, Function<PooledContext, R> operation) {
+        if (tenantContextPool == null) {
+            return execute(operation);
+        }
+
+        PooledContext context = tenantId == null ? null : tenantContextPool.borrow(tenantId);
+        if (context == null) {
+            log.debug("No pooled {} context for tenant {}, execute in a one-off context", lang, tenantId);
+            context = createContext(false);
+            try {
+                return executeIn(context, operation, false);
+            } finally {
+                context.close();
+            }
+        }
+
+        try {
+            return executeIn(context, operation, true);
+        } finally {
+            tenantContextPool.release(tenantId, context);
+        }
+    }
+
+    private static <R> R executeIn(PooledContext context, Function<PooledContext, R> operation, boolean pooled) {
+        context.prepare();
+        try {
+            return operation.apply(context);
+        } catch (PolyglotException e) {
+            if (e.isCancelled() || e.isResourceExhausted() || e.isInternalError() || e.isExit()) {
+                context.markBroken();
+            }
+            throw e;
+        } finally {
+            if (pooled) {
+                context.reset();
+            }
+        }
+    }
+
+    @SneakyThrows
+    public Source getSource(String script) {
+        return sourceCache.get(script, () -> Source.create(lang, script));
+    }
+
+    /**
+     * Create the pooled contexts eagerly, and compile the shared modules into the engine
+     */
+    public void warmUp() {
+        execute(context -> {
+            context.getJsonModule().input(Map.of());
+            return null;
+        });
+    }
+
+    private PooledContext createContext(boolean pooled) {
+        if (!pooled) {
+            Context context = LanguageHelper.newContext(lang);
+            return new PooledContext(context, newJsonModule(context), context.getBindings(lang), null);
+        }
+
+        // the statements of the global guard are not counted
+        ResourceLimits limits = ResourceLimits.newBuilder()
+                .statementLimit(STATEMENT_LIMIT, source -> !source.isInternal())
+                .build();
+        Context context = LanguageHelper.newContext(lang, limits);
+        try {
+            LanguageModule jsonModule = newJsonModule(context);
+            Value globalRestorer = JS_LANG_ID.equals(lang) ? context.eval(JS_GLOBAL_GUARD) : null;
+            return new PooledContext(context, jsonModule, context.getBindings(lang), globalRestorer);
+        } catch (RuntimeException e) {
+            context.close(true);
+            throw e;
+        }
+    }
+
+    private LanguageModule newJsonModule(Context context) {
+        LanguageModule jsonModule = CustomizedPythonExpression.LANG_ID.equals(lang) ? new PythonJsonModule(context) : new JavaScriptJsonModule(context);
+        jsonModule.init();
+        return jsonModule;
+    }
+
+    public static class PooledContext {
+
+        @Getter
+        private final Context context;
+
+        @Getter
+        private final LanguageModule jsonModule;
+
+        @Getter
+        private final Value bindings;
+
+        /**
+         * Null if the global state can't be guarded, only the bindings are restored
+         */
+        private final Value globalRestorer;
+
+        private final Map<String, Value> initialMembers;
+
+        private volatile boolean broken;
+
+        private PooledContext(Context context, LanguageModule jsonModule, Value bindings, Value globalRestorer) {
+            this.context = context;
+            this.jsonModule = jsonModule;
+            this.bindings = bindings;
+            this.globalRestorer = globalRestorer;
+            this.initialMembers = new HashMap<>();
+            bindings.getMemberKeys().forEach(key -> initialMembers.put(key, bindings.getMember(key)));
+        }
+
+        public Value eval(Source source) {
+            return context.eval(source);
+        }
+
+        private void markBroken() {
+            broken = true;
+        }
+
+        boolean isReusable() {
+            return !broken;
+        }
+
+        private void prepare() {
+            context.resetLimits();
+        }
+
+        private void reset() {
+            if (broken) {
+                return;
+            }
+            try {
+                // members left in the bindings are global declarations, which can't be removed
+                boolean restored = globalRestorer == null
+                        ? restoreBindings()
+                        : globalRestorer.execute().asBoolean() && initialMembers.keySet().containsAll(bindings.getMemberKeys());
+                if (!restored) {
+                    log.debug("Global state of the language context can't be restored, it will be discarded");
+                    markBroken();
+                }
+            } catch (Exception e) {
+                log.debug("Reset language context failed, it will be discarded", e);
+                markBroken();
+            }
+        }
+
+        /**
+         * Remove the members added to the bindings and set back the reassigned or removed ones
+         *
+         * @return false if they can't be restored
+         */
+        private boolean restoreBindings() {
+            for (String key : new ArrayList<>(bindings.getMemberKeys())) {
+                Value initial = initialMembers.get(key);
+                if (initial == null) {
+                    if (!bindings.removeMember(key)) {
+                        return false;
+                    }
+                } else if (!initial.equals(bindings.getMember(key))) {
+                    bindings.putMember(key, initial);
+                }
+            }
+            initialMembers.forEach((key, initial) -> {
+                if (!bindings.hasMember(key)) {
+                    bindings.putMember(key, initial);
+                }
+            });
+            return true;
+        }
+
+        void close() {
+            try {
+                context.close(true);
+            } catch (Exception e) {
+                log.debug("Close language context failed", e);
+            }
+        }
+    }
+}
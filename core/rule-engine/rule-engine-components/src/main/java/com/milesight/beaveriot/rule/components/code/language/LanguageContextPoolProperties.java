@@ -0,0 +1,30 @@
+package com.milesight.beaveriot.rule.components.code.language;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of the pooled script contexts, see {@link LanguageContextPool}.
+ *
+ * @author leon
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "camel.rule.script-context-pool")
+public class LanguageContextPoolProperties {
+
+    /**
+     * Maximum number of pooled contexts per language, for Python those of all the tenants. Default is twice the number
+     * of processors, at least 4.
+     */
+    private int maxTotal = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * Maximum time to wait for a pooled context when all of them are in use, a one-off context is created once it is
+     * exceeded. Default is 0, not waiting.
+     */
+    private Duration maxWaitTime = Duration.ZERO;
+}
@@ -0,0 +1,151 @@
+package com.milesight.beaveriot.rule.components.code.language
+
+import org.graalvm.polyglot.PolyglotException
+import spock.lang.Specification
+
+import java.util.function.Function
+
+/**
+ * @author leon
+ */
+class LanguageContextPoolTest extends Specification {
+
+    static Object eval(String lang, String script) {
+        def pool = LanguageContextPool.of(lang)
+        return pool.execute({ cx ->
+            def value = cx.eval(pool.getSource(script))
+            return value.isBoolean() ? value.asBoolean() : value.isString() ? value.asString() : value.toString()
+        } as Function)
+    }
+
+    static Object python(String tenantId, String script) {
+        def pool = LanguageContextPool.of("python")
+        return pool.execute(tenantId, { cx ->
+            def value = cx.eval(pool.getSource(script))
+            return value.isBoolean() ? value.asBoolean() : value.toString()
+        } as Function)
+    }
+
+    static Object js(String script) {
+        return eval("js", script)
+    }
+
+    def "global assigned by a script should be removed"() {
+        when:
+        js("leaked = 'secret'; 1")
+
+        then:
+        js("typeof leaked") == "undefined"
+    }
+
+    def "bindings put by the caller should be removed"() {
+        given:
+        def pool = LanguageContextPool.of("js")
+
+        when:
+        pool.execute({ cx ->
+            cx.getBindings().putMember("tenantValue", "secret")
+            return null
+        } as Function)
+
+        then:
+        js("typeof tenantValue") == "undefined"
+    }
+
+    def "reassigned built-in should be restored"() {
+        when:
+        js("JSON = { parse: () => 'patched' }; Math = null; parseInt = () => 0; 1")
+
+        then:
+        js("JSON.parse('1') === 1 && Math !== null && parseInt('7') === 7") == true
+    }
+
+    def "built-in prototypes should not be patched"() {
+        when:
+        js("Array.prototype.leak = 'secret'; Object.prototype.leak = 'secret'; Array.prototype.map = () => []; 1")
+
+        then:
+        js("[].leak === undefined && ({}).leak === undefined && [1].map((x) => x * 2)[0] === 2") == true
+    }
+
+    def "patching a built-in prototype in strict mode should fail the script"() {
+        when:
+        js("'use strict'; String.prototype.trim = () => 'patched'")
+
+        then:
+        thrown(PolyglotException)
+        js("' a '.trim()") == "a"
+    }
+
+    def "context with a global declaration should be discarded"() {
+        when:
+        js("var declared = 'secret'; let lexical = 'secret'; 1")
+
+        then:
+        js("typeof declared") == "undefined"
+        js("typeof lexical") == "undefined"
+        js("let lexical = 'mine'; lexical") == "mine"
+    }
+
+    def "global object prototype should not be replaced"() {
+        when:
+        js("Object.setPrototypeOf(globalThis, { leak: 'secret' }); 1")
+
+        then:
+        js("typeof leak") == "undefined"
+    }
+
+    def "function wrapped expressions should be evaluated in the pooled contexts repeatedly"() {
+        expect:
+        3.times {
+            assert js("(()=>{ const value = 20; let result = value + 1; return result; })()") == "21"
+        }
+    }
+
+    def "python should be evaluated in a new context every time"() {
+        when:
+        eval("python", "import json\njson.loads = lambda s: 'patched'\nleaked = 'secret'\n1")
+
+        then:
+        eval("python", "import json\n'leaked' not in globals() and json.loads('1') == 1") == true
+    }
+
+    def "python context should only be reused by the same tenant"() {
+        given:
+        def pool = LanguageContextPool.of("python")
+        def contextOf = { String tenantId -> pool.execute(tenantId, { cx -> cx.context } as Function) }
+
+        when:
+        def first = contextOf("tenant-a")
+        def second = contextOf("tenant-a")
+        def other = contextOf("tenant-b")
+
+        then:
+        first.is(second)
+        !other.is(first)
+    }
+
+    def "python variables should be removed or set back between the executions of a tenant"() {
+        when:
+        python("tenant-a", "leaked = 'secret'\n__name__ = 'patched'\n1")
+
+        then:
+        python("tenant-a", "'leaked' not in globals() and __name__ == '__main__'") == true
+    }
+
+    def "python module patched by a tenant should not be seen by another tenant"() {
+        when:
+        python("tenant-a", "import json\njson.leak = 'secret'\n1")
+
+        then:
+        python("tenant-b", "import json\nnot hasattr(json, 'leak')") == true
+    }
+
+    def "python without a tenant should be evaluated in a new context every time"() {
+        when:
+        python(null, "import json\njson.leak = 'secret'\n1")
+
+        then:
+        python(null, "import json\nnot hasattr(json, 'leak')") == true
+    }
+}
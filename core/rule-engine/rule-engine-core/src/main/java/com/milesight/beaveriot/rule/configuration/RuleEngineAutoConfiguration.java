@@ -9,14 +9,17 @@ import com.milesight.beaveriot.rule.flow.definition.AnnotationComponentDefinitio
 import com.milesight.beaveriot.rule.flow.definition.CamelComponentDefinitionLoader;
 import com.milesight.beaveriot.rule.flow.definition.ComponentDefinitionLoader;
 import com.milesight.beaveriot.rule.flow.definition.CustomizeJsonComponentDefinitionLoader;
+import com.milesight.beaveriot.rule.flow.parallel.ParallelBranchExecutor;
 import com.milesight.beaveriot.rule.flow.parallel.ParallelSplitter;
 import org.apache.camel.CamelContext;
 import org.apache.camel.spi.Tracer;
 import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
 
 /**
  * @author leon
@@ -74,6 +77,12 @@ public class RuleEngineAutoConfiguration {
         return new ComponentDefinitionCache();
     }
 
+    @Bean
+    @ConditionalOnMissingBean
+    public ParallelBranchExecutor parallelBranchExecutor(@Qualifier(ParallelBranchExecutor.TASK_EXECUTOR_NAME) ObjectProvider<TaskExecutor> taskExecutorProvider, RuleProperties ruleProperties) {
+        return new ParallelBranchExecutor(taskExecutorProvider.getIfAvailable(), ruleProperties.getParallelBranchTimeout());
+    }
+
     @Bean(RuleNodeNames.innerParallelSplitter)
     @ConditionalOnMissingBean
     public ParallelSplitter parallelSplitter() {
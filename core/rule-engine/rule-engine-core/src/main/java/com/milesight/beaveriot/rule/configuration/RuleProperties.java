@@ -14,6 +14,7 @@ import org.springframework.context.ApplicationContextAware;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.util.ObjectUtils;
 
+import java.time.Duration;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -60,6 +61,12 @@ public class RuleProperties implements SmartInitializingSingleton, ApplicationCo
      */
     private String traceNodePrefix = FLOW_ID_PREFIX;
 
+    /**
+     * Maximum time from a parallel fan-out until all its branches are finished. Default is 1 minute.
+     * The branches run on the task executor named "rule-engine-parallel", or one by one if it is not configured.
+     */
+    private Duration parallelBranchTimeout = Duration.ofMinutes(1);
+
     public List<String> getComponentNames() {
         if (ObjectUtils.isEmpty(components)) {
             return List.of();
@@ -13,6 +13,7 @@ import com.milesight.beaveriot.rule.model.flow.config.RuleNodeConfig;
 import com.milesight.beaveriot.rule.model.flow.route.FromNodeDefinition;
 import com.milesight.beaveriot.rule.model.trace.FlowTraceInfo;
 import com.milesight.beaveriot.rule.model.trace.NodeTraceInfo;
+import com.milesight.beaveriot.rule.support.CompiledExpressionCache;
 import com.milesight.beaveriot.rule.support.RuleFlowIdGenerator;
 import com.milesight.beaveriot.rule.trace.RuleNodeLogVariablesSupport;
 import lombok.SneakyThrows;
@@ -62,6 +63,8 @@ public class DefaultRuleEngineLifecycleManager implements RuleEngineLifecycleMan
     private void deployFlow(RuleFlowConfig ruleFlowConfig, RuleNodeDefinitionInterceptor ruleNodeDefinitionInterceptor) {
         Assert.notNull(ruleFlowConfig.getFlowId(), "Rule flow id must not be null");
 
+        CompiledExpressionCache.invalidateFlow(ruleFlowConfig.getFlowId());
+
         camelContext.getCamelContextExtension().getContextPlugin(Model.class)
                 .addRouteDefinitions(GraphRouteDefinitionGenerator.generateRouteDefinition(ruleFlowConfig, ruleNodeDefinitionInterceptor));
     }
@@ -72,6 +75,7 @@ public class DefaultRuleEngineLifecycleManager implements RuleEngineLifecycleMan
             throw new RuleEngineException("YAML content is empty: " + flowRouteYaml);
         }
 
+        CompiledExpressionCache.invalidateFlow(flowId);
         try {
             Resource stringResource = ResourceHelper.fromString(flowId + ".yaml", flowRouteYaml);
             RoutesBuilder routesBuilder = loader.loadRoutesBuilder(stringResource);
@@ -103,6 +107,7 @@ public class DefaultRuleEngineLifecycleManager implements RuleEngineLifecycleMan
     public boolean removeFlow(String flowId) {
         try {
             RuleNodeLogVariablesSupport.removeLogVariables(flowId);
+            CompiledExpressionCache.invalidateFlow(flowId);
             camelContext.stopRoute(flowId);
             return camelContext.removeRoute(flowId);
         } catch (Exception e) {
@@ -113,6 +118,7 @@ public class DefaultRuleEngineLifecycleManager implements RuleEngineLifecycleMan
     @Override
     public boolean removeFlowImmediately(String flowId) {
         try {
+            CompiledExpressionCache.invalidateFlow(flowId);
             return camelContext.removeRoute(flowId);
         } catch (Exception e) {
             throw new RuleEngineException("Remove Flow Exception:", e);
@@ -3,21 +3,21 @@ package com.milesight.beaveriot.rule.flow.graph;
 import com.google.common.graph.MutableGraph;
 import com.milesight.beaveriot.rule.constants.ExchangeHeaders;
 import com.milesight.beaveriot.rule.exception.RuleEngineException;
-import lombok.SneakyThrows;
+import com.milesight.beaveriot.rule.flow.parallel.ParallelBranchExecutor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.camel.*;
 import org.apache.camel.impl.engine.DefaultChannel;
-import org.apache.camel.spi.AsyncProcessorAwaitManager;
 import org.apache.camel.spi.IdAware;
 import org.apache.camel.spi.InterceptableProcessor;
 import org.apache.camel.spi.RouteIdAware;
 import org.apache.camel.support.AsyncProcessorSupport;
-import org.apache.camel.support.PluginHelper;
 import org.apache.camel.support.service.ServiceHelper;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -33,13 +33,15 @@ public class GraphProcessor extends AsyncProcessorSupport implements Traceable,
     private final String beginNodeId;
     private final CamelContext camelContext;
     private final String outputNodeId;
+    private final ParallelBranchExecutor branchExecutor;
 
-    public GraphProcessor(CamelContext camelContext, String beginNodeId, Map<String, AsyncProcessor> processors, MutableGraph<String> graphStructure, String outputNodeId) {
+    public GraphProcessor(CamelContext camelContext, String beginNodeId, Map<String, AsyncProcessor> processors, MutableGraph<String> graphStructure, String outputNodeId, ParallelBranchExecutor branchExecutor) {
         this.processors = processors;
         this.graphStructure = graphStructure;
         this.beginNodeId = beginNodeId;
         this.camelContext = camelContext;
         this.outputNodeId = outputNodeId;
+        this.branchExecutor = branchExecutor;
     }
 
     public boolean isEndProcessor() {
@@ -50,7 +52,7 @@ public class GraphProcessor extends AsyncProcessorSupport implements Traceable,
 
         Set<String> successors = graphStructure.successors(beginNodeId);
 
-        GraphTaskExecutor graphTaskExecutor = GraphTaskExecutor.create(beginNodeId, successors, graphStructure, processors, camelContext, outputNodeId);
+        GraphTaskExecutor graphTaskExecutor = GraphTaskExecutor.create(beginNodeId, successors, graphStructure, processors, camelContext, outputNodeId, branchExecutor);
 
         graphTaskExecutor.execute(exchange, callback);
 
@@ -136,19 +138,21 @@ public class GraphProcessor extends AsyncProcessorSupport implements Traceable,
         protected final Map<String, AsyncProcessor> processors;
         protected final CamelContext context;
         protected final String outputNodeId;
+        protected final ParallelBranchExecutor branchExecutor;
 
-        protected GraphTaskExecutor(MutableGraph<String> graphStructure, Map<String, AsyncProcessor> processors, CamelContext context, String outputNodeId) {
+        protected GraphTaskExecutor(MutableGraph<String> graphStructure, Map<String, AsyncProcessor> processors, CamelContext context, String outputNodeId, ParallelBranchExecutor branchExecutor) {
             this.graphStructure = graphStructure;
             this.processors = processors;
             this.context = context;
             this.outputNodeId = outputNodeId;
+            this.branchExecutor = branchExecutor;
         }
 
-        public static GraphTaskExecutor create(String parentNodeId, Set<String> successors, MutableGraph<String> graphStructure, Map<String, AsyncProcessor> processors, CamelContext context, String outputNodeId) {
+        public static GraphTaskExecutor create(String parentNodeId, Set<String> successors, MutableGraph<String> graphStructure, Map<String, AsyncProcessor> processors, CamelContext context, String outputNodeId, ParallelBranchExecutor branchExecutor) {
             if (successors.size() == 1) {
-                return new SequenceTaskExecutor(parentNodeId, successors.iterator().next(), graphStructure, processors, context, outputNodeId);
+                return new SequenceTaskExecutor(parentNodeId, successors.iterator().next(), graphStructure, processors, context, outputNodeId, branchExecutor);
             } else {
-                return new ParallelTaskExecutor(parentNodeId, successors, graphStructure, processors, context, outputNodeId);
+                return new ParallelTaskExecutor(parentNodeId, successors, graphStructure, processors, context, outputNodeId, branchExecutor);
             }
         }
 
@@ -157,7 +161,7 @@ public class GraphProcessor extends AsyncProcessorSupport implements Traceable,
         protected boolean doExecute(String successor, Exchange exchange, AsyncCallback asyncCallback) {
 
             try {
-                if (exchange.getException() != null) {
+                if (exchange.getException() != null || isCancelled(exchange)) {
                     return true;
                 }
                 if (successor.equals(outputNodeId)) {
@@ -178,7 +182,7 @@ public class GraphProcessor extends AsyncProcessorSupport implements Traceable,
                     setExchangeTraceId(exchange, exchange.getExchangeId(), successor);
                     doExecute(nextSuccessor, exchange, asyncCallback);
                 } else {
-                    GraphTaskExecutor graphTaskExecutor = GraphTaskExecutor.create(successor, successors, graphStructure, processors, context, outputNodeId);
+                    GraphTaskExecutor graphTaskExecutor = GraphTaskExecutor.create(successor, successors, graphStructure, processors, context, outputNodeId, branchExecutor);
                     graphTaskExecutor.execute(exchange, asyncCallback);
                 }
 
@@ -189,6 +193,11 @@ public class GraphProcessor extends AsyncProcessorSupport implements Traceable,
             return true;
         }
 
+        protected boolean isCancelled(Exchange exchange) {
+            ParallelBranchExecutor.Cancellation cancellation = exchange.getProperty(ExchangeHeaders.GRAPH_PARALLEL_CANCELLATION, ParallelBranchExecutor.Cancellation.class);
+            return cancellation != null && cancellation.isCancelled();
+        }
+
         protected void setExchangeTraceId(Exchange exchange, String parentExchangeId, String parentNodeId) {
             String traceId = parentExchangeId + "-" + parentNodeId;
             exchange.getIn().setHeader(ExchangeHeaders.EXCHANGE_LATEST_TRACE_ID, traceId);
@@ -216,8 +225,8 @@ public class GraphProcessor extends AsyncProcessorSupport implements Traceable,
         private String successor;
         private final String parentNodeId;
 
-        public SequenceTaskExecutor(String parentNodeId, String successor, MutableGraph<String> graphStructure, Map<String, AsyncProcessor> processors, CamelContext context, String outputNodeId) {
-            super(graphStructure, processors, context, outputNodeId);
+        public SequenceTaskExecutor(String parentNodeId, String successor, MutableGraph<String> graphStructure, Map<String, AsyncProcessor> processors, CamelContext context, String outputNodeId, ParallelBranchExecutor branchExecutor) {
+            super(graphStructure, processors, context, outputNodeId, branchExecutor);
             this.successor = successor;
             this.parentNodeId = parentNodeId;
         }
@@ -235,68 +244,106 @@ public class GraphProcessor extends AsyncProcessorSupport implements Traceable,
 
         private final String parentNodeId;
         private final Set<String> successors;
-        private final AsyncProcessorAwaitManager awaitManager;
 
-
-        public ParallelTaskExecutor(String parentNodeId, Set<String> successors, MutableGraph<String> graphStructure, Map<String, AsyncProcessor> processors, CamelContext context, String outputNodeId) {
-            super(graphStructure, processors, context, outputNodeId);
+        public ParallelTaskExecutor(String parentNodeId, Set<String> successors, MutableGraph<String> graphStructure, Map<String, AsyncProcessor> processors, CamelContext context, String outputNodeId, ParallelBranchExecutor branchExecutor) {
+            super(graphStructure, processors, context, outputNodeId, branchExecutor);
             this.successors = successors;
             this.parentNodeId = parentNodeId;
-            this.awaitManager = PluginHelper.getAsyncProcessorAwaitManager(context);
         }
 
-        @SneakyThrows
         @Override
         public boolean execute(Exchange exchange, AsyncCallback asyncCallback) {
 
+            ParallelBranchExecutor.Cancellation parentCancellation = exchange.getProperty(ExchangeHeaders.GRAPH_PARALLEL_CANCELLATION, ParallelBranchExecutor.Cancellation.class);
+            List<GraphBranch> branches = new ArrayList<>(successors.size());
+            for (String successor : successors) {
+                Exchange copyExchange = exchange.copy();
+                copyExchange.getIn().setMessageId(null);
+                setExchangeTraceId(copyExchange, exchange.getExchangeId(), parentNodeId);
+                ParallelBranchExecutor.Cancellation cancellation = new ParallelBranchExecutor.Cancellation(parentCancellation);
+                copyExchange.setProperty(ExchangeHeaders.GRAPH_PARALLEL_CANCELLATION, cancellation);
+                branches.add(new GraphBranch(successor, copyExchange, cancellation, asyncCallback));
+            }
+
             try {
-                // force synchronous processing using await manager
-                awaitManager.process(new AsyncProcessorSupport() {
-                    @Override
-                    public boolean process(Exchange exchange, AsyncCallback callback) {
-                        Exception caughtException = null;
-                        for (String successor : successors) {
-                            Exchange copyExchange = exchange.copy();
-                            copyExchange.getIn().setMessageId(null);
-                            try {
-                                setExchangeTraceId(copyExchange, exchange.getExchangeId(), parentNodeId);
-                                doExecute(successor, copyExchange, callback);
-                            } catch (Exception ex) {
-                                catchExceptionIfNecessary(copyExchange, ex);
-                            } finally {
-                                if (copyExchange.getException() != null) {
-                                    caughtException = copyExchange.getException();
-                                }
-                                copyPropertiesResult(exchange, copyExchange);
-                                callback.done(true);
+                List<ParallelBranchExecutor.BranchState> states = branchExecutor.invokeAll(branches);
+
+                Exception caughtException = null;
+                List<String> timedOutSuccessors = new ArrayList<>();
+                for (int i = 0; i < branches.size(); i++) {
+                    GraphBranch branch = branches.get(i);
+                    switch (states.get(i)) {
+                        case COMPLETED, FAILED -> {
+                            if (caughtException == null && branch.exchange.getException() != null) {
+                                caughtException = branch.exchange.getException();
                             }
+                            copyPropertiesResult(exchange, branch.exchange);
                         }
-
-                        if (caughtException != null) {
-                            exchange.setException(caughtException);
+                        case TIMED_OUT -> timedOutSuccessors.add(branch.successor);
+                        default -> {
+                            // cancelled because a sibling failed, the result is discarded
                         }
-
-                        return true;
-                    }
-
-                    private void copyPropertiesResult(Exchange target, Exchange source) {
-                        if (source.hasProperties()) {
-                            target.getProperties().putAll(source.getProperties());
-                        }
-
-                        final ExchangeExtension sourceExtension = source.getExchangeExtension();
-                        sourceExtension.copyInternalProperties(target);
-
-                        final ExchangeExtension resultExtension = target.getExchangeExtension();
-                        sourceExtension.copySafeCopyPropertiesTo(resultExtension);
                     }
+                }
+                // the merged properties must not replace the cancellation of this exchange
+                if (parentCancellation != null) {
+                    exchange.setProperty(ExchangeHeaders.GRAPH_PARALLEL_CANCELLATION, parentCancellation);
+                } else {
+                    exchange.removeProperty(ExchangeHeaders.GRAPH_PARALLEL_CANCELLATION);
+                }
 
-                }, exchange);
+                if (caughtException != null) {
+                    exchange.setException(caughtException);
+                } else if (!timedOutSuccessors.isEmpty()) {
+                    exchange.setException(new RuleEngineException("Parallel branches " + timedOutSuccessors
+                            + " were not finished within " + branchExecutor.getBranchTimeout()));
+                }
             } catch (Exception e) {
                 catchExceptionIfNecessary(exchange, e);
             }
             return true;
         }
 
+        private void copyPropertiesResult(Exchange target, Exchange source) {
+            if (source.hasProperties()) {
+                target.getProperties().putAll(source.getProperties());
+            }
+
+            final ExchangeExtension sourceExtension = source.getExchangeExtension();
+            sourceExtension.copyInternalProperties(target);
+
+            final ExchangeExtension resultExtension = target.getExchangeExtension();
+            sourceExtension.copySafeCopyPropertiesTo(resultExtension);
+        }
+
+        private class GraphBranch implements ParallelBranchExecutor.Branch {
+
+            private final String successor;
+            private final Exchange exchange;
+            private final ParallelBranchExecutor.Cancellation cancellation;
+            private final AsyncCallback asyncCallback;
+
+            private GraphBranch(String successor, Exchange exchange, ParallelBranchExecutor.Cancellation cancellation, AsyncCallback asyncCallback) {
+                this.successor = successor;
+                this.exchange = exchange;
+                this.cancellation = cancellation;
+                this.asyncCallback = asyncCallback;
+            }
+
+            @Override
+            public boolean run() {
+                try {
+                    doExecute(successor, exchange, asyncCallback);
+                } catch (Exception ex) {
+                    catchExceptionIfNecessary(exchange, ex);
+                }
+                return exchange.getException() == null;
+            }
+
+            @Override
+            public void cancel() {
+                cancellation.cancel();
+            }
+        }
     }
-}
\ No newline at end of file
+}
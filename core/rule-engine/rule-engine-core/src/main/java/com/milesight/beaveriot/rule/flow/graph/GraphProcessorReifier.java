@@ -1,5 +1,7 @@
 package com.milesight.beaveriot.rule.flow.graph;
 
+import com.milesight.beaveriot.rule.configuration.RuleProperties;
+import com.milesight.beaveriot.rule.flow.parallel.ParallelBranchExecutor;
 import com.milesight.beaveriot.rule.support.RuleFlowIdGenerator;
 import org.apache.camel.AsyncProcessor;
 import org.apache.camel.Channel;
@@ -45,7 +47,16 @@ public class GraphProcessorReifier extends ProcessorReifier<GraphProcessorDefini
 
         String originFromId = RuleFlowIdGenerator.removeNamespacedId(flowGraph.getFlowId(), flowGraph.getFromDefinition().getId());
 
-        return new GraphProcessor(getCamelContext(), originFromId, processors, flowGraph.getGraphStructure(), flowGraph.outputNodeId);
+        ParallelBranchExecutor branchExecutor = getCamelContext().getRegistry().findSingleByType(ParallelBranchExecutor.class);
+        if (branchExecutor == null) {
+            RuleProperties ruleProperties = getCamelContext().getRegistry().findSingleByType(RuleProperties.class);
+            if (ruleProperties == null) {
+                ruleProperties = new RuleProperties();
+            }
+            branchExecutor = new ParallelBranchExecutor(null, ruleProperties.getParallelBranchTimeout());
+        }
+
+        return new GraphProcessor(getCamelContext(), originFromId, processors, flowGraph.getGraphStructure(), flowGraph.outputNodeId, branchExecutor);
     }
 
     protected AsyncProcessor createChannel(ProcessorDefinition<?> value) {
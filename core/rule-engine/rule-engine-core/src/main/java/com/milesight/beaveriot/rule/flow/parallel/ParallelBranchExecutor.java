@@ -0,0 +1,273 @@
+package com.milesight.beaveriot.rule.flow.parallel;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor of the branches of a flow graph fan-out.
+ * <p>
+ * Branches are submitted to a bounded, tenant-aware pool and joined by the calling thread. The calling thread also
+ * runs the branches that no pool thread has picked up yet, including those rejected by a saturated pool, so nested
+ * fan-outs cannot starve the pool. Once a branch fails or the branch timeout elapses, the unfinished branches are
+ * cancelled, they stop before their next node and their result is abandoned.
+ * <p>
+ * Cancellation is cooperative, the threads running the branches are never interrupted. They belong to the pool or to
+ * the caller, and an interruption would close any NIO channel a node is blocked on. A pool thread blocked in a node
+ * is abandoned and the fan-out returns at its deadline, a branch run by the calling thread ends once its current node
+ * returns.
+ *
+ * @author leon
+ */
+@Slf4j
+public class ParallelBranchExecutor {
+
+    /**
+     * Name of the task executor running the branches
+     */
+    public static final String TASK_EXECUTOR_NAME = "rule-engine-parallel";
+
+    private static final ScheduledThreadPoolExecutor TIMEOUT_SCHEDULER = newTimeoutScheduler();
+
+    private final Executor executor;
+
+    private final Duration branchTimeout;
+
+    /**
+     * @param executor      executor of the branches, branches are run one by one by the calling thread if null
+     * @param branchTimeout maximum time from the fan-out until all branches are finished
+     */
+    public ParallelBranchExecutor(Executor executor, Duration branchTimeout) {
+        this.executor = executor;
+        this.branchTimeout = branchTimeout;
+    }
+
+    public Duration getBranchTimeout() {
+        return branchTimeout;
+    }
+
+    /**
+     * Run the branches and wait until all of them are finished, one of them has failed or the branch timeout has
+     * elapsed. The unfinished branches are cancelled before returning.
+     *
+     * @return final state of each branch, in the order of the given branches
+     */
+    public List<BranchState> invokeAll(List<? extends Branch> branches) {
+        long deadline = System.nanoTime() + branchTimeout.toNanos();
+        Join join = new Join(branches.size());
+        List<BranchTask> tasks = new ArrayList<>(branches.size());
+        for (Branch branch : branches) {
+            tasks.add(new BranchTask(branch, join, deadline));
+        }
+
+        ScheduledFuture<?> timeout = TIMEOUT_SCHEDULER.schedule(() -> tasks.forEach(BranchTask::timeout),
+                branchTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        boolean timedOut;
+        try {
+            if (executor != null) {
+                for (int i = 1; i < tasks.size(); i++) {
+                    try {
+                        executor.execute(tasks.get(i));
+                    } catch (RejectedExecutionException e) {
+                        log.debug("Parallel branch rejected by the executor, run it in the calling thread");
+                    }
+                }
+            }
+            // run the first branch here, then help with the branches still waiting in the queue
+            tasks.forEach(BranchTask::run);
+
+            timedOut = !join.await(deadline);
+        } finally {
+            timeout.cancel(false);
+        }
+
+        List<BranchState> states = new ArrayList<>(tasks.size());
+        for (BranchTask task : tasks) {
+            BranchState state = task.complete(timedOut);
+            timedOut |= state == BranchState.TIMED_OUT;
+            states.add(state);
+        }
+        if (timedOut) {
+            log.warn("Parallel branches not finished within {}, states: {}", branchTimeout, states);
+        }
+        return states;
+    }
+
+    private static ScheduledThreadPoolExecutor newTimeoutScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "rule-engine-parallel-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // most fan-outs finish long before their timeout
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    public enum BranchState {
+        COMPLETED, FAILED, CANCELLED, TIMED_OUT
+    }
+
+    public interface Branch {
+
+        /**
+         * Run the branch
+         *
+         * @return true if the branch succeeded
+         */
+        boolean run();
+
+        /**
+         * Request the branch to stop, the branch is not waited for and its result is discarded
+         */
+        void cancel();
+    }
+
+    /**
+     * Cancellation flag of a branch, a branch is also cancelled when the branch it is nested in is cancelled
+     */
+    public static final class Cancellation {
+
+        private final Cancellation parent;
+
+        private volatile boolean cancelled;
+
+        public Cancellation(Cancellation parent) {
+            this.parent = parent;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled || (parent != null && parent.isCancelled());
+        }
+    }
+
+    private static class Join {
+
+        private final AtomicInteger remaining;
+
+        private final CompletableFuture<Void> finished = new CompletableFuture<>();
+
+        private Join(int size) {
+            this.remaining = new AtomicInteger(size);
+            if (size == 0) {
+                finished.complete(null);
+            }
+        }
+
+        private void onFinished(boolean succeeded) {
+            if (!succeeded || remaining.decrementAndGet() == 0) {
+                finished.complete(null);
+            }
+        }
+
+        private boolean isFailed() {
+            return finished.isDone() && remaining.get() > 0;
+        }
+
+        /**
+         * @return false if the deadline elapsed first
+         */
+        private boolean await(long deadline) {
+            try {
+                finished.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                return true;
+            } catch (TimeoutException e) {
+                return false;
+            } catch (InterruptedException e) {
+                // interrupted by the owner of the calling thread, keep its flag and cancel the unfinished branches
+                Thread.currentThread().interrupt();
+                finished.complete(null);
+                return true;
+            } catch (ExecutionException e) {
+                // never completed exceptionally
+                return true;
+            }
+        }
+    }
+
+    private static class BranchTask implements Runnable {
+
+        private final Branch branch;
+
+        private final Join join;
+
+        private final long deadline;
+
+        private final AtomicInteger claimed = new AtomicInteger();
+
+        private boolean timedOut;
+
+        private volatile BranchState finalState;
+
+        private BranchTask(Branch branch, Join join, long deadline) {
+            this.branch = branch;
+            this.join = join;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(0, 1)) {
+                return;
+            }
+            synchronized (this) {
+                if (timedOut || join.isFailed() || deadline - System.nanoTime() <= 0) {
+                    // skipped, the state is decided by the joining thread
+                    return;
+                }
+            }
+            boolean succeeded = false;
+            try {
+                succeeded = branch.run();
+            } catch (Exception e) {
+                log.warn("Parallel branch failed", e);
+            } finally {
+                synchronized (this) {
+                    finalState = timedOut ? BranchState.TIMED_OUT : succeeded ? BranchState.COMPLETED : BranchState.FAILED;
+                }
+                join.onFinished(succeeded);
+            }
+        }
+
+        /**
+         * Cancel the branch once the branch timeout elapsed, the thread running it is left to finish its current node
+         */
+        private synchronized void timeout() {
+            if (finalState != null || timedOut) {
+                return;
+            }
+            timedOut = true;
+            branch.cancel();
+        }
+
+        /**
+         * Decide the final state once the branches are joined, the unfinished branch is cancelled
+         */
+        private synchronized BranchState complete(boolean joinTimedOut) {
+            if (finalState != null) {
+                return finalState;
+            }
+            if (joinTimedOut || timedOut) {
+                timeout();
+                return BranchState.TIMED_OUT;
+            }
+            branch.cancel();
+            return BranchState.CANCELLED;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.milesight.beaveriot.rule.flow.parallel
+
+import com.milesight.beaveriot.rule.flow.parallel.ParallelBranchExecutor.BranchState
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.nio.ByteBuffer
+import java.nio.channels.ClosedByInterruptException
+import java.nio.channels.Pipe
+import java.time.Duration
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+
+/**
+ * @author leon
+ */
+@Timeout(10)
+class ParallelBranchExecutorTest extends Specification {
+
+    ExecutorService pool
+
+    def cleanup() {
+        pool?.shutdownNow()
+    }
+
+    static class TestBranch implements ParallelBranchExecutor.Branch {
+
+        final Closure<Boolean> body
+
+        volatile Thread thread
+
+        volatile boolean cancelled
+
+        volatile boolean interrupted
+
+        TestBranch(Closure<Boolean> body) {
+            this.body = body
+        }
+
+        @Override
+        boolean run() {
+            thread = Thread.currentThread()
+            try {
+                return body.call()
+            } catch (InterruptedException | ClosedByInterruptException e) {
+                interrupted = true
+                throw e
+            } finally {
+                interrupted |= Thread.currentThread().isInterrupted()
+            }
+        }
+
+        @Override
+        void cancel() {
+            cancelled = true
+        }
+    }
+
+    static TestBranch branch(Closure<Boolean> body = { true }) {
+        return new TestBranch(body)
+    }
+
+    def "branches should be run one by one by the calling thread without an executor"() {
+        given:
+        def executor = new ParallelBranchExecutor(null, Duration.ofSeconds(5))
+        def branches = [branch(), branch(), branch()]
+
+        when:
+        def states = executor.invokeAll(branches)
+
+        then:
+        states == [BranchState.COMPLETED] * 3
+        branches.every { it.thread == Thread.currentThread() }
+    }
+
+    def "branches rejected or not picked up by the executor should be run by the calling thread"() {
+        given:
+        def executor = new ParallelBranchExecutor(taskExecutor, Duration.ofSeconds(5))
+        def branches = [branch(), branch(), branch()]
+
+        when:
+        def states = executor.invokeAll(branches)
+
+        then:
+        states == [BranchState.COMPLETED] * 3
+        branches.every { it.thread == Thread.currentThread() }
+
+        where:
+        taskExecutor << [
+                { Runnable task -> throw new RejectedExecutionException() } as Executor,
+                { Runnable task -> } as Executor
+        ]
+    }
+
+    def "branches should be run by the executor"() {
+        given:
+        pool = Executors.newFixedThreadPool(2)
+        def executor = new ParallelBranchExecutor(pool, Duration.ofSeconds(5))
+        def started = new CountDownLatch(3)
+        def branches = (1..3).collect {
+            branch {
+                started.countDown()
+                started.await(5, TimeUnit.SECONDS)
+            }
+        }
+
+        when:
+        def states = executor.invokeAll(branches)
+
+        then:
+        states == [BranchState.COMPLETED] * 3
+        branches[0].thread == Thread.currentThread()
+        branches[1].thread != Thread.currentThread()
+        branches[2].thread != Thread.currentThread()
+    }
+
+    def "unfinished branches should be cancelled once a branch failed"() {
+        given:
+        def executor = new ParallelBranchExecutor(null, Duration.ofSeconds(5))
+        def failed = branch { false }
+        def skipped = branch()
+
+        when:
+        def states = executor.invokeAll([failed, skipped])
+
+        then:
+        states == [BranchState.FAILED, BranchState.CANCELLED]
+        skipped.thread == null
+        skipped.cancelled
+        !failed.cancelled
+    }
+
+    def "branch throwing an exception should be failed"() {
+        given:
+        def executor = new ParallelBranchExecutor(null, Duration.ofSeconds(5))
+
+        expect:
+        executor.invokeAll([branch { throw new IllegalStateException("failed") }]) == [BranchState.FAILED]
+    }
+
+    def "branch run by the calling thread should be abandoned once its node returns after the timeout"() {
+        given:
+        def executor = new ParallelBranchExecutor(null, Duration.ofMillis(200))
+        def blocked = branch {
+            Thread.sleep(600)
+            true
+        }
+        def skipped = branch()
+
+        when:
+        long start = System.nanoTime()
+        def states = executor.invokeAll([blocked, skipped])
+        long elapsed = System.nanoTime() - start
+
+        then:
+        states == [BranchState.TIMED_OUT, BranchState.TIMED_OUT]
+        !blocked.interrupted
+        blocked.cancelled
+        skipped.cancelled
+        skipped.thread == null
+        elapsed >= TimeUnit.MILLISECONDS.toNanos(600)
+        !Thread.currentThread().isInterrupted()
+    }
+
+    def "branch blocked in I/O should be abandoned without interrupting its thread while the executor keeps running"() {
+        given:
+        pool = Executors.newFixedThreadPool(2)
+        def executor = new ParallelBranchExecutor(pool, Duration.ofMillis(200))
+        def pipe = Pipe.open()
+        def reading = new CountDownLatch(1)
+        def read = new CountDownLatch(1)
+        def blocked = branch {
+            reading.countDown()
+            pipe.source().read(ByteBuffer.allocate(1))
+            read.countDown()
+            true
+        }
+
+        when:
+        long start = System.nanoTime()
+        def states = executor.invokeAll([branch { reading.await(5, TimeUnit.SECONDS) }, blocked])
+        long elapsed = System.nanoTime() - start
+
+        then:
+        states == [BranchState.COMPLETED, BranchState.TIMED_OUT]
+        elapsed < TimeUnit.SECONDS.toNanos(3)
+        blocked.cancelled
+        blocked.thread != Thread.currentThread()
+        pipe.source().isOpen()
+
+        when: "another fan-out runs while the branch is still blocked"
+        def nextStates = executor.invokeAll([branch(), branch()])
+
+        then:
+        nextStates == [BranchState.COMPLETED] * 2
+        read.count == 1
+
+        when: "the I/O of the abandoned branch completes"
+        pipe.sink().write(ByteBuffer.wrap([1] as byte[]))
+
+        then:
+        read.await(3, TimeUnit.SECONDS)
+        !blocked.interrupted
+        pipe.source().isOpen()
+
+        cleanup:
+        pipe?.sink()?.close()
+        pipe?.source()?.close()
+    }
+}
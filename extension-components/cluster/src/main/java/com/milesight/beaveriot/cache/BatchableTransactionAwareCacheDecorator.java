@@ -0,0 +1,46 @@
+package com.milesight.beaveriot.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import java.util.List;
+
+/**
+ * Transaction aware decorator which keeps the batch operations of the target cache visible to the batch cache aspect.
+ * Like the single key evictions, batch evictions are deferred until the transaction is committed.
+ *
+ * @author leon
+ */
+public class BatchableTransactionAwareCacheDecorator extends TransactionAwareCacheDecorator implements BatchableCache {
+
+    public BatchableTransactionAwareCacheDecorator(Cache targetCache) {
+        super(targetCache);
+        Assert.isInstanceOf(BatchableCache.class, targetCache, "Target cache must be batchable");
+    }
+
+    @Override
+    public List<Object> multiGet(Object[] keys) {
+        return ((BatchableCache) getTargetCache()).multiGet(keys);
+    }
+
+    /**
+     * Evict the keys, the evicted count is 0 if the eviction is deferred until the transaction is committed
+     */
+    @Override
+    public Long multiEvict(Object[] keys) {
+        BatchableCache targetCache = (BatchableCache) getTargetCache();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    targetCache.multiEvict(keys);
+                }
+            });
+            return 0L;
+        }
+        return targetCache.multiEvict(keys);
+    }
+}
@@ -1,7 +1,9 @@
 package com.milesight.beaveriot.cache.autoconfigure;
 
+import com.milesight.beaveriot.cache.layered.NearCacheInvalidator;
 import com.milesight.beaveriot.cache.redis.CustomizeRedisCacheManager;
 import lombok.SneakyThrows;
+import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.AutoConfigureBefore;
@@ -38,9 +40,11 @@ public class CustomizeCacheAutoConfiguration {
     @ConditionalOnExpression("!'${spring.data.redis.host:}'.isEmpty()")
     CustomizeRedisCacheManager cacheManger(CacheProperties cacheProperties,CustomizeCacheProperties customizeCacheProperties,
                                   ObjectProvider<org.springframework.data.redis.cache.RedisCacheConfiguration> redisCacheConfiguration,
-                                  RedisConnectionFactory redisConnectionFactory, ResourceLoader resourceLoader) {
+                                  RedisConnectionFactory redisConnectionFactory, ResourceLoader resourceLoader,
+                                  ObjectProvider<NearCacheInvalidator> nearCacheInvalidator) {
         CustomizeRedisCacheManager.CustomizeRedisCacheManagerBuilder builder = CustomizeRedisCacheManager.customizeBuilder(redisConnectionFactory, customizeCacheProperties)
                 .transactionAware(true)
+                .nearCache(nearCacheInvalidator.getIfAvailable())
                 .cacheDefaults(
                         determineConfiguration(cacheProperties, customizeCacheProperties, redisCacheConfiguration, resourceLoader.getClassLoader()));
         List<String> cacheNames = cacheProperties.getCacheNames();
@@ -53,6 +57,12 @@ public class CustomizeCacheAutoConfiguration {
         return builder.build();
     }
 
+    @Bean
+    @ConditionalOnExpression("!'${spring.data.redis.host:}'.isEmpty() && ${spring.cache.near-cache.enabled:false}")
+    NearCacheInvalidator nearCacheInvalidator(RedissonClient redissonClient) {
+        return new NearCacheInvalidator(redissonClient);
+    }
+
     private org.springframework.data.redis.cache.RedisCacheConfiguration determineConfiguration(
             CacheProperties cacheProperties, CustomizeCacheProperties customizeCacheProperties,
             ObjectProvider<org.springframework.data.redis.cache.RedisCacheConfiguration> redisCacheConfiguration,
@@ -7,7 +7,9 @@ import org.springframework.lang.Nullable;
 
 import java.time.Duration;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @author leon
@@ -25,6 +27,11 @@ public class CustomizeCacheProperties {
 
     private Specs specs = new Specs();
 
+    /**
+     * Local cache in front of the Redis caches
+     */
+    private NearCacheConfig nearCache = new NearCacheConfig();
+
 
     @Data
     public static class Specs {
@@ -69,4 +76,39 @@ public class CustomizeCacheProperties {
 
     }
 
+    @Data
+    public static class NearCacheConfig {
+
+        /**
+         * Whether to keep a bounded local cache in front of the Redis caches, invalidated across nodes by pub/sub
+         */
+        private boolean enabled = false;
+
+        /**
+         * Maximum number of entries of each local cache
+         */
+        private long maximumSize = 10000;
+
+        /**
+         * Maximum time an entry is kept locally, which bounds the staleness if an invalidation message is lost
+         */
+        private Duration timeToLive = Duration.ofMinutes(1);
+
+        /**
+         * Names of the caches kept locally, all caches when empty. Support prefix matching, for example: entity:*
+         */
+        private Set<String> cacheNames = new LinkedHashSet<>();
+
+        public boolean isNearCached(String cacheName) {
+            return cacheNames.isEmpty() || cacheNames.stream().anyMatch(name -> {
+                String unwrapName = Specs.unwrapPrefixAndSubfix(name);
+                if (unwrapName.endsWith(StringConstant.STAR)) {
+                    return cacheName.startsWith(unwrapName.substring(0, unwrapName.length() - 1));
+                } else {
+                    return cacheName.equals(unwrapName);
+                }
+            });
+        }
+    }
+
 }
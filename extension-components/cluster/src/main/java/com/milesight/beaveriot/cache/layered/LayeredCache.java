@@ -0,0 +1,167 @@
+package com.milesight.beaveriot.cache.layered;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.milesight.beaveriot.cache.BatchableCache;
+import com.milesight.beaveriot.cache.redis.BatchableRedisCache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+
+/**
+ * Two level cache with a bounded local caffeine cache in front of the redis cache.
+ * <p>
+ * Reads are served from the local cache and fall back to redis on a miss. Writes go to redis first, then the local
+ * entries are updated or invalidated, and the invalidation is broadcast so that the other nodes drop their local copies.
+ * Local entries expire after a bounded time, which limits staleness if an invalidation message is lost.
+ *
+ * @author leon
+ */
+public class LayeredCache extends AbstractValueAdaptingCache implements BatchableCache {
+
+    private final BatchableRedisCache remoteCache;
+
+    private final Cache<Object, Object> localCache;
+
+    private final NearCacheInvalidator invalidator;
+
+    public LayeredCache(BatchableRedisCache remoteCache, Cache<Object, Object> localCache, NearCacheInvalidator invalidator) {
+        super(remoteCache.isAllowNullValues());
+        this.remoteCache = remoteCache;
+        this.localCache = localCache;
+        this.invalidator = invalidator;
+        invalidator.register(this);
+    }
+
+    @Override
+    public String getName() {
+        return remoteCache.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remoteCache.getNativeCache();
+    }
+
+    @Override
+    @Nullable
+    protected Object lookup(Object key) {
+        Object storeValue = localCache.getIfPresent(key);
+        if (storeValue != null) {
+            return storeValue;
+        }
+        ValueWrapper remoteValue = remoteCache.get(key);
+        if (remoteValue == null) {
+            return null;
+        }
+        storeValue = toStoreValue(remoteValue.get());
+        localCache.put(key, storeValue);
+        return storeValue;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return (T) fromStoreValue(localCache.get(key, k -> toStoreValue(remoteCache.get(k, valueLoader))));
+    }
+
+    @Override
+    public void put(Object key, @Nullable Object value) {
+        remoteCache.put(key, value);
+        localCache.put(key, toStoreValue(value));
+        invalidator.publish(getName(), List.of(key));
+    }
+
+    @Override
+    @Nullable
+    public ValueWrapper putIfAbsent(Object key, @Nullable Object value) {
+        ValueWrapper existingValue = remoteCache.putIfAbsent(key, value);
+        localCache.invalidate(key);
+        if (existingValue == null) {
+            invalidator.publish(getName(), List.of(key));
+        }
+        return existingValue;
+    }
+
+    @Override
+    public void evict(Object key) {
+        remoteCache.evict(key);
+        localCache.invalidate(key);
+        invalidator.publish(getName(), List.of(key));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean evicted = remoteCache.evictIfPresent(key);
+        localCache.invalidate(key);
+        invalidator.publish(getName(), List.of(key));
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        remoteCache.clear();
+        localCache.invalidateAll();
+        invalidator.publish(getName(), null);
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean invalidated = remoteCache.invalidate();
+        localCache.invalidateAll();
+        invalidator.publish(getName(), null);
+        return invalidated;
+    }
+
+    @Override
+    public List<Object> multiGet(Object[] keys) {
+        Object[] values = new Object[keys.length];
+        List<Integer> missingIndexes = new ArrayList<>();
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null) {
+                continue;
+            }
+            values[i] = localCache.getIfPresent(keys[i]);
+            if (values[i] == null) {
+                missingIndexes.add(i);
+            }
+        }
+        if (!missingIndexes.isEmpty()) {
+            Object[] missingKeys = missingIndexes.stream().map(i -> keys[i]).toArray();
+            List<Object> remoteValues = remoteCache.multiGet(missingKeys);
+            if (remoteValues != null) {
+                for (int i = 0; i < missingIndexes.size() && i < remoteValues.size(); i++) {
+                    Object remoteValue = remoteValues.get(i);
+                    if (remoteValue != null) {
+                        int index = missingIndexes.get(i);
+                        values[index] = remoteValue;
+                        localCache.put(keys[index], remoteValue);
+                    }
+                }
+            }
+        }
+        return Arrays.asList(values);
+    }
+
+    @Override
+    public Long multiEvict(Object[] keys) {
+        Long evicted = remoteCache.multiEvict(keys);
+        List<Object> evictKeys = Arrays.stream(keys).filter(Objects::nonNull).toList();
+        localCache.invalidateAll(evictKeys);
+        invalidator.publish(getName(), evictKeys);
+        return evicted;
+    }
+
+    void evictLocal(Collection<?> keys) {
+        localCache.invalidateAll(keys);
+    }
+
+    void clearLocal() {
+        localCache.invalidateAll();
+    }
+}
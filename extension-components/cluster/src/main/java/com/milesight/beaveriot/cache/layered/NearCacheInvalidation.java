@@ -0,0 +1,35 @@
+package com.milesight.beaveriot.cache.layered;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Invalidation of near cache entries broadcast to the other nodes.
+ *
+ * @author leon
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearCacheInvalidation implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Node publishing the invalidation, which has already invalidated its own near cache
+     */
+    private String nodeId;
+
+    private String cacheName;
+
+    /**
+     * Keys to invalidate, null to invalidate the whole cache
+     */
+    private List<Object> keys;
+}
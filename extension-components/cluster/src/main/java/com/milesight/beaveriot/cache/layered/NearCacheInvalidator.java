@@ -0,0 +1,90 @@
+package com.milesight.beaveriot.cache.layered;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.BaseStatusListener;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Broadcast near cache invalidations to the other nodes through redis pub/sub.
+ * <p>
+ * Messages published by the current node are ignored on receipt, since the local entries are invalidated before
+ * publishing. When the topic is resubscribed, e.g. after a reconnection, all near caches are cleared because
+ * invalidations may have been missed in the meantime.
+ *
+ * @author leon
+ */
+@Slf4j
+public class NearCacheInvalidator implements Closeable {
+
+    private static final String TOPIC_NAME = "cache:near-cache-invalidation";
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Map<String, LayeredCache> caches = new ConcurrentHashMap<>();
+
+    private final RTopic topic;
+
+    private final int messageListenerId;
+
+    private final int statusListenerId;
+
+    public NearCacheInvalidator(RedissonClient redissonClient) {
+        this.topic = redissonClient.getTopic(TOPIC_NAME);
+        this.messageListenerId = topic.addListener(NearCacheInvalidation.class, (channel, msg) -> onInvalidation(msg));
+        this.statusListenerId = topic.addListener(new BaseStatusListener() {
+            @Override
+            public void onSubscribe(String channel) {
+                caches.values().forEach(LayeredCache::clearLocal);
+            }
+        });
+    }
+
+    void register(LayeredCache cache) {
+        caches.put(cache.getName(), cache);
+    }
+
+    /**
+     * Publish the invalidation of the keys, or of the whole cache if keys is null
+     */
+    public void publish(String cacheName, Collection<?> keys) {
+        NearCacheInvalidation invalidation = new NearCacheInvalidation(nodeId, cacheName, keys == null ? null : new ArrayList<>(keys));
+        topic.publishAsync(invalidation).whenComplete((receivers, e) -> {
+            if (e == null) {
+                return;
+            }
+            log.warn("Publish near cache invalidation of {} failed", cacheName, e);
+            if (keys != null) {
+                // the keys may not be serializable, fall back to invalidating the whole cache
+                publish(cacheName, null);
+            }
+        });
+    }
+
+    private void onInvalidation(NearCacheInvalidation invalidation) {
+        if (nodeId.equals(invalidation.getNodeId())) {
+            return;
+        }
+        LayeredCache cache = caches.get(invalidation.getCacheName());
+        if (cache == null) {
+            return;
+        }
+        if (invalidation.getKeys() == null) {
+            cache.clearLocal();
+        } else {
+            cache.evictLocal(invalidation.getKeys());
+        }
+    }
+
+    @Override
+    public void close() {
+        topic.removeListener(messageListenerId, statusListenerId);
+    }
+}
@@ -1,6 +1,11 @@
 package com.milesight.beaveriot.cache.redis;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.milesight.beaveriot.cache.BatchableTransactionAwareCacheDecorator;
 import com.milesight.beaveriot.cache.autoconfigure.CustomizeCacheProperties;
+import com.milesight.beaveriot.cache.layered.LayeredCache;
+import com.milesight.beaveriot.cache.layered.NearCacheInvalidator;
+import org.springframework.cache.Cache;
 import org.springframework.data.redis.cache.*;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.lang.Nullable;
@@ -16,12 +21,52 @@ public class CustomizeRedisCacheManager extends RedisCacheManager {
 
     private final RedisConnectionFactory redisConnectionFactory;
 
+    @Nullable
+    private final CustomizeCacheProperties.NearCacheConfig nearCacheConfig;
+
+    @Nullable
+    private final NearCacheInvalidator nearCacheInvalidator;
+
     public CustomizeRedisCacheManager(RedisConnectionFactory redisConnectionFactory, RedisCacheWriter redisCacheManager, RedisCacheConfiguration redisCacheConfiguration, Map<String, RedisCacheConfiguration> initialCacheConfiguration, boolean allowInFlightCacheCreation , CustomizeCacheProperties.Specs redisConfig) {
+        this(redisConnectionFactory, redisCacheManager, redisCacheConfiguration, initialCacheConfiguration, allowInFlightCacheCreation, redisConfig, null, null);
+    }
+
+    public CustomizeRedisCacheManager(RedisConnectionFactory redisConnectionFactory, RedisCacheWriter redisCacheManager, RedisCacheConfiguration redisCacheConfiguration, Map<String, RedisCacheConfiguration> initialCacheConfiguration, boolean allowInFlightCacheCreation , CustomizeCacheProperties.Specs redisConfig,
+                                      @Nullable CustomizeCacheProperties.NearCacheConfig nearCacheConfig, @Nullable NearCacheInvalidator nearCacheInvalidator) {
         super(redisCacheManager, redisCacheConfiguration,initialCacheConfiguration,allowInFlightCacheCreation);
         this.redisConfig = redisConfig;
         this.redisConnectionFactory = redisConnectionFactory;
+        this.nearCacheConfig = nearCacheConfig;
+        this.nearCacheInvalidator = nearCacheInvalidator;
     }
-    
+
+    /**
+     * Put the near cache in front of the redis cache if enabled, the batch operations of the near cache are kept
+     * visible through the transaction aware decorator, so that the batch evictions reach the near caches
+     */
+    @Override
+    protected Cache decorateCache(Cache cache) {
+        if (nearCacheInvalidator != null && nearCacheConfig != null && cache instanceof BatchableRedisCache redisCache
+                && nearCacheConfig.isNearCached(cache.getName())) {
+            LayeredCache layeredCache = createLayeredCache(redisCache);
+            return isTransactionAware() ? new BatchableTransactionAwareCacheDecorator(layeredCache) : layeredCache;
+        }
+        return super.decorateCache(cache);
+    }
+
+    private LayeredCache createLayeredCache(BatchableRedisCache redisCache) {
+        Duration localTimeToLive = nearCacheConfig.getTimeToLive();
+        Duration remoteTimeToLive = redisConfig == null ? null : redisConfig.getMatchTimeToLive(redisCache.getName());
+        if (remoteTimeToLive != null && !remoteTimeToLive.isZero() && remoteTimeToLive.compareTo(localTimeToLive) < 0) {
+            localTimeToLive = remoteTimeToLive;
+        }
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> localCache = Caffeine.newBuilder()
+                .maximumSize(nearCacheConfig.getMaximumSize())
+                .expireAfterWrite(localTimeToLive)
+                .build();
+        return new LayeredCache(redisCache, localCache, nearCacheInvalidator);
+    }
+
     @Override
     protected RedisCache createRedisCache(String name, @Nullable RedisCacheConfiguration cacheConfig) {
         if(redisConfig != null){
@@ -45,6 +90,7 @@ public class CustomizeRedisCacheManager extends RedisCacheManager {
 
         private CustomizeCacheProperties redisConfig;
         private RedisConnectionFactory connectionFactory;
+        private @Nullable NearCacheInvalidator nearCacheInvalidator;
         public static CustomizeRedisCacheManagerBuilder fromConnectionFactory(RedisConnectionFactory connectionFactory, CustomizeCacheProperties redisConfig) {
 
             Assert.notNull(connectionFactory, "ConnectionFactory must not be null");
@@ -116,6 +162,14 @@ public class CustomizeRedisCacheManager extends RedisCacheManager {
             return this;
         }
 
+        /**
+         * Enable the near cache with the invalidator, it is only applied if the near cache is enabled in the properties
+         */
+        public CustomizeRedisCacheManagerBuilder nearCache(@Nullable NearCacheInvalidator nearCacheInvalidator) {
+            this.nearCacheInvalidator = nearCacheInvalidator;
+            return this;
+        }
+
         public CustomizeRedisCacheManagerBuilder withCacheConfiguration(String cacheName,
                                                                                  RedisCacheConfiguration cacheConfiguration) {
 
@@ -144,7 +198,10 @@ public class CustomizeRedisCacheManager extends RedisCacheManager {
         }
 
         private CustomizeRedisCacheManager newRedisCacheManager(RedisCacheWriter cacheWriter) {
-            return new CustomizeRedisCacheManager(connectionFactory, cacheWriter, cacheDefaults(), this.initialCaches,this.allowRuntimeCacheCreation, this.redisConfig.getSpecs());
+            CustomizeCacheProperties.NearCacheConfig nearCacheConfig = this.redisConfig.getNearCache();
+            NearCacheInvalidator invalidator = nearCacheConfig != null && nearCacheConfig.isEnabled() ? this.nearCacheInvalidator : null;
+            return new CustomizeRedisCacheManager(connectionFactory, cacheWriter, cacheDefaults(), this.initialCaches,this.allowRuntimeCacheCreation, this.redisConfig.getSpecs(),
+                    nearCacheConfig, invalidator);
         }
     }
 }
\ No newline at end of file
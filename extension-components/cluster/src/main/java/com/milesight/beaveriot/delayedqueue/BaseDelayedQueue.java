@@ -18,6 +18,8 @@ import org.springframework.util.CollectionUtils;
 
 import java.text.MessageFormat;
 import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
@@ -27,6 +29,13 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 /**
+ * Delayed queue dispatching expired tasks to the consumers registered for their topic.
+ * <p>
+ * With a {@link ReschedulableDelayedQueueWrapper} the wrapper keeps one entry per task id and renewals move the
+ * deadline in place, so offers and cancellations need neither a lock nor an expire time map, and due tasks are taken in
+ * batches. Other wrappers keep one entry per offer, the latest expire time of each task is then tracked in the expire
+ * time map under a per-task lock and stale entries are skipped at take time.
+ *
  * author: Luxb
  * create: 2025/11/13 13:52
  **/
@@ -36,16 +45,26 @@ public class BaseDelayedQueue<T> implements DelayedQueue<T>, DisposableBean {
     protected final String queueName;
     protected DelayedQueueWrapper<T> delayQueue;
     protected Map<String, Long> taskExpireTimeMap;
+    protected ReschedulableDelayedQueueWrapper<T> reschedulableDelayQueue;
     protected volatile Map<String, Map<String, DelayedConsumer<T>>> topicDelayedConsumersMap;
     protected ExecutorService listenerExecutor;
     protected ExecutorService consumerExecutor;
     protected final AtomicBoolean isListening;
     protected final AtomicLong listenerStartTime;
 
+    public BaseDelayedQueue(@NonNull String queueName, @NonNull ReschedulableDelayedQueueWrapper<T> delayQueue) {
+        this(queueName, delayQueue, null, delayQueue);
+    }
+
     public BaseDelayedQueue(@NonNull String queueName, @NonNull DelayedQueueWrapper<T> delayQueue, @NonNull Map<String, Long> taskExpireTimeMap) {
+        this(queueName, delayQueue, taskExpireTimeMap, null);
+    }
+
+    private BaseDelayedQueue(String queueName, DelayedQueueWrapper<T> delayQueue, Map<String, Long> taskExpireTimeMap, ReschedulableDelayedQueueWrapper<T> reschedulableDelayQueue) {
         this.queueName = queueName;
         this.delayQueue = delayQueue;
         this.taskExpireTimeMap = taskExpireTimeMap;
+        this.reschedulableDelayQueue = reschedulableDelayQueue;
         this.topicDelayedConsumersMap = new ConcurrentHashMap<>();
         this.isListening = new AtomicBoolean(false);
         this.listenerStartTime = new AtomicLong();
@@ -59,6 +78,11 @@ public class BaseDelayedQueue<T> implements DelayedQueue<T>, DisposableBean {
         validateTask(task);
 
         startListener();
+        if (reschedulableDelayQueue != null) {
+            reschedulableDelayQueue.offer(task.renew());
+            log.debug("Delayed queue '{}' offered task '{}'", queueName, task.getId());
+            return;
+        }
         doWithLock(task.getId(), () -> {
             Long existingExpireTime = taskExpireTimeMap.put(task.getId(), task.renew().getExpireTime());
             delayQueue.offer(task);
@@ -70,31 +94,58 @@ public class BaseDelayedQueue<T> implements DelayedQueue<T>, DisposableBean {
         });
     }
 
+    @Override
+    public void offerAll(Collection<DelayedTask<T>> tasks) {
+        if (CollectionUtils.isEmpty(tasks)) {
+            return;
+        }
+        if (reschedulableDelayQueue == null) {
+            tasks.forEach(this::offer);
+            return;
+        }
+
+        tasks.forEach(this::validateTask);
+        startListener();
+        tasks.forEach(DelayedTask::renew);
+        reschedulableDelayQueue.offerAll(tasks);
+        log.debug("Delayed queue '{}' offered {} tasks", queueName, tasks.size());
+    }
+
     @Override
     public void cancel(String taskId) {
         if (taskId == null) {
             return;
         }
 
-        Long expireTime = taskExpireTimeMap.remove(taskId);
-        if (expireTime != null) {
+        boolean cancelled = reschedulableDelayQueue != null
+                ? reschedulableDelayQueue.remove(taskId)
+                : taskExpireTimeMap.remove(taskId) != null;
+        if (cancelled) {
             log.debug("Delayed queue '{}' cancelled task '{}'", queueName, taskId);
         }
     }
 
     private void requeue(DelayedTask<T> task) {
+        if (reschedulableDelayQueue != null) {
+            // a renewal offered in the meantime wins over the requeued task
+            reschedulableDelayQueue.offerIfAbsent(task);
+            return;
+        }
         doWithLock(task.getId(), () -> {
             taskExpireTimeMap.putIfAbsent(task.getId(), task.getExpireTime());
             delayQueue.offer(task);
         });
     }
 
-    private DelayedTask<T> doTake() throws InterruptedException {
+    private List<DelayedTask<T>> doTake() throws InterruptedException {
+        if (reschedulableDelayQueue != null) {
+            return reschedulableDelayQueue.take(Constants.TAKE_BATCH_SIZE);
+        }
         while (true) {
             DelayedTask<T> task = delayQueue.take();
 
             if (isReallyExpired(task)) {
-                return task;
+                return List.of(task);
             }
         }
     }
@@ -157,39 +208,7 @@ public class BaseDelayedQueue<T> implements DelayedQueue<T>, DisposableBean {
             listenerExecutor.execute(() -> {
                 while(!Thread.currentThread().isInterrupted()) {
                     try {
-                        DelayedTask<T> task = doTake();
-
-                        if (task.getTopic() == null) {
-                            continue;
-                        }
-
-                        Map<String, DelayedConsumer<T>> delayedConsumers = topicDelayedConsumersMap.get(task.getTopic());
-                        if (CollectionUtils.isEmpty(delayedConsumers)) {
-                            if (System.currentTimeMillis() - listenerStartTime.get() > Constants.TASK_RETENTION_PERIOD.toMillis()) {
-                                if (task.getRequeueCount() >= Constants.MAX_REQUEUE_COUNT) {
-                                    log.warn("Task '{}' has reached max requeue count and will be discarded because there is still no consumer registered for topic '{}' in queue '{}'",
-                                            task.getId(), task.getTopic(), queueName);
-                                    continue;
-                                }
-                            }
-
-                            task.incrementRequeueCount();
-                            CompletableFuture.delayedExecutor(Constants.REQUEUE_DELAY_TIME.toSeconds(), TimeUnit.SECONDS).execute(() -> requeue(task));
-                            continue;
-                        }
-
-                        log.debug("Delayed queue '{}' consumed task '{}'", queueName, task.getId());
-                        delayedConsumers.forEach((consumerId, delayedConsumer) -> CompletableFuture.runAsync(() -> {
-                            try {
-                                initConsumerContext(task);
-                                delayedConsumer.getConsumer().accept(task);
-                                if (delayedConsumer.isConsumeOnce()) {
-                                    unregisterConsumer(task.getTopic(), consumerId);
-                                }
-                            } catch (Exception e) {
-                                log.error("Error occurred while consuming task '{}' by consumer '{}' for queue '{}'", task.getId(), consumerId, queueName, e);
-                            }
-                        }, consumerExecutor));
+                        doTake().forEach(this::dispatch);
                     } catch (InterruptedException e) {
                         Thread.currentThread().interrupt();
                         log.warn("Delayed queue listener interrupted, shutting down for queue '{}'", queueName);
@@ -205,6 +224,40 @@ public class BaseDelayedQueue<T> implements DelayedQueue<T>, DisposableBean {
         }
     }
 
+    private void dispatch(DelayedTask<T> task) {
+        if (task.getTopic() == null) {
+            return;
+        }
+
+        Map<String, DelayedConsumer<T>> delayedConsumers = topicDelayedConsumersMap.get(task.getTopic());
+        if (CollectionUtils.isEmpty(delayedConsumers)) {
+            if (System.currentTimeMillis() - listenerStartTime.get() > Constants.TASK_RETENTION_PERIOD.toMillis()) {
+                if (task.getRequeueCount() >= Constants.MAX_REQUEUE_COUNT) {
+                    log.warn("Task '{}' has reached max requeue count and will be discarded because there is still no consumer registered for topic '{}' in queue '{}'",
+                            task.getId(), task.getTopic(), queueName);
+                    return;
+                }
+            }
+
+            task.incrementRequeueCount();
+            CompletableFuture.delayedExecutor(Constants.REQUEUE_DELAY_TIME.toSeconds(), TimeUnit.SECONDS).execute(() -> requeue(task));
+            return;
+        }
+
+        log.debug("Delayed queue '{}' consumed task '{}'", queueName, task.getId());
+        delayedConsumers.forEach((consumerId, delayedConsumer) -> CompletableFuture.runAsync(() -> {
+            try {
+                initConsumerContext(task);
+                delayedConsumer.getConsumer().accept(task);
+                if (delayedConsumer.isConsumeOnce()) {
+                    unregisterConsumer(task.getTopic(), consumerId);
+                }
+            } catch (Exception e) {
+                log.error("Error occurred while consuming task '{}' by consumer '{}' for queue '{}'", task.getId(), consumerId, queueName, e);
+            }
+        }, consumerExecutor));
+    }
+
     private void initConsumerContext(DelayedTask<T> task) {
         String tenantId = (String) task.getContextValue(DelayedTask.ContextKey.TENANT);
         if (tenantId != null) {
@@ -339,5 +392,6 @@ public class BaseDelayedQueue<T> implements DelayedQueue<T>, DisposableBean {
         public static final Duration TASK_RETENTION_PERIOD = Duration.ofMinutes(3);
         public static final long MAX_REQUEUE_COUNT = 3;
         public static final Duration REQUEUE_DELAY_TIME = Duration.ofSeconds(1);
+        public static final int TAKE_BATCH_SIZE = 100;
     }
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.milesight.beaveriot.delayedqueue;
+
+import com.milesight.beaveriot.context.model.delayedqueue.DelayedTask;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Delayed queue keyed by task id.
+ * <p>
+ * Offering a task whose id is already queued replaces the queued task and moves its deadline in place, so the queue
+ * holds at most one entry per task and renewals leave no stale entries behind. All operations are atomic on their own,
+ * callers need no lock.
+ *
+ * author: Luxb
+ * create: 2026/10/18 10:12
+ **/
+public interface ReschedulableDelayedQueueWrapper<T> extends DelayedQueueWrapper<T> {
+
+    /**
+     * Add the tasks, or reschedule them to their current expire time if they are already queued
+     */
+    void offerAll(Collection<DelayedTask<T>> tasks);
+
+    /**
+     * Add the task only if no task with the same id is queued
+     */
+    void offerIfAbsent(DelayedTask<T> task);
+
+    /**
+     * Remove the queued task
+     *
+     * @return true if the task was queued
+     */
+    boolean remove(String taskId);
+
+    /**
+     * Remove and return the due tasks, waiting until at least one task is due
+     *
+     * @param maxTasks maximum number of tasks to take
+     * @return due tasks ordered by expire time, never empty
+     */
+    List<DelayedTask<T>> take(int maxTasks) throws InterruptedException;
+
+    @Override
+    default void offer(DelayedTask<T> task) {
+        offerAll(List.of(task));
+    }
+
+    @Override
+    default DelayedTask<T> take() throws InterruptedException {
+        return take(1).get(0);
+    }
+}
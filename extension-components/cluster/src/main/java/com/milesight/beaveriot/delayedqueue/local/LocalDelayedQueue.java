@@ -3,8 +3,6 @@ package com.milesight.beaveriot.delayedqueue.local;
 import com.milesight.beaveriot.delayedqueue.BaseDelayedQueue;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.concurrent.ConcurrentHashMap;
-
 /**
  * author: Luxb
  * create: 2025/11/13 9:25
@@ -12,6 +10,6 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 public class LocalDelayedQueue<T> extends BaseDelayedQueue<T> {
     public LocalDelayedQueue(String queueName) {
-        super(queueName, new LocalDelayedQueueWrapper<>(), new ConcurrentHashMap<>());
+        super(queueName, new LocalDelayedQueueWrapper<>());
     }
-}
\ No newline at end of file
+}
@@ -1,33 +1,118 @@
 package com.milesight.beaveriot.delayedqueue.local;
 
 import com.milesight.beaveriot.context.model.delayedqueue.DelayedTask;
-import com.milesight.beaveriot.delayedqueue.DelayedQueueWrapper;
+import com.milesight.beaveriot.delayedqueue.ReschedulableDelayedQueueWrapper;
 
-import java.util.concurrent.DelayQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
+ * In-memory delayed queue, indexed by task id so that a renewal moves the deadline of the queued task in place.
+ *
  * author: Luxb
  * create: 2025/11/14 10:38
  **/
-public class LocalDelayedQueueWrapper<T> implements DelayedQueueWrapper<T> {
-    private final DelayQueue<DelayedTask<T>> innerDelayedQueue;
+public class LocalDelayedQueueWrapper<T> implements ReschedulableDelayedQueueWrapper<T> {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Map<String, Entry<T>> entries = new HashMap<>();
+    private final TreeSet<Entry<T>> deadlines = new TreeSet<>(Comparator.<Entry<T>>comparingLong(Entry::expireTime).thenComparingLong(Entry::sequence));
+    private long sequence;
 
-    public LocalDelayedQueueWrapper() {
-        this.innerDelayedQueue = new DelayQueue<>();
+    @Override
+    public void offerAll(Collection<DelayedTask<T>> tasks) {
+        lock.lock();
+        try {
+            tasks.forEach(this::put);
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void offerIfAbsent(DelayedTask<T> task) {
+        lock.lock();
+        try {
+            if (!entries.containsKey(task.getId())) {
+                put(task);
+                available.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-    public void offer(DelayedTask<T> task) {
-        innerDelayedQueue.offer(task);
+    public boolean remove(String taskId) {
+        lock.lock();
+        try {
+            Entry<T> entry = entries.remove(taskId);
+            if (entry == null) {
+                return false;
+            }
+            deadlines.remove(entry);
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-    public DelayedTask<T> take() throws InterruptedException {
-        return innerDelayedQueue.take();
+    public List<DelayedTask<T>> take(int maxTasks) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                if (deadlines.isEmpty()) {
+                    available.await();
+                    continue;
+                }
+                long delay = deadlines.first().expireTime() - System.currentTimeMillis();
+                if (delay > 0) {
+                    available.await(delay, TimeUnit.MILLISECONDS);
+                    continue;
+                }
+                long now = System.currentTimeMillis();
+                List<DelayedTask<T>> tasks = new ArrayList<>();
+                while (tasks.size() < maxTasks && !deadlines.isEmpty() && deadlines.first().expireTime() <= now) {
+                    Entry<T> entry = deadlines.pollFirst();
+                    entries.remove(entry.task().getId());
+                    tasks.add(entry.task());
+                }
+                return tasks;
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public boolean isEmpty() {
-        return innerDelayedQueue.isEmpty();
+        lock.lock();
+        try {
+            return entries.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(DelayedTask<T> task) {
+        Entry<T> entry = new Entry<>(task, task.getExpireTime(), sequence++);
+        Entry<T> previous = entries.put(task.getId(), entry);
+        if (previous != null) {
+            deadlines.remove(previous);
+        }
+        deadlines.add(entry);
+    }
+
+    private record Entry<T>(DelayedTask<T> task, long expireTime, long sequence) {
     }
 }
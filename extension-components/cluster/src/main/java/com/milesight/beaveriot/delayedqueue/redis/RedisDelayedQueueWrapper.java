@@ -1,38 +1,217 @@
 package com.milesight.beaveriot.delayedqueue.redis;
 
 import com.milesight.beaveriot.context.model.delayedqueue.DelayedTask;
-import com.milesight.beaveriot.delayedqueue.DelayedQueueWrapper;
-import org.redisson.api.RBlockingQueue;
-import org.redisson.api.RDelayedQueue;
+import com.milesight.beaveriot.delayedqueue.ReschedulableDelayedQueueWrapper;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RMapAsync;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RScoredSortedSetAsync;
+import org.redisson.api.RScript;
+import org.redisson.api.RTopic;
 import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.BaseCodec;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.codec.LongCodec;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.client.protocol.Decoder;
+import org.redisson.client.protocol.Encoder;
+import org.redisson.codec.CompositeCodec;
 
-import java.util.concurrent.TimeUnit;
+import java.util.Collection;
+import java.util.List;
 
 /**
+ * Redis delayed queue backed by a sorted set of task ids scored by expire time and a hash of the tasks.
+ * <p>
+ * Both keys share the hash tag of the queue, so that offers and removals are applied atomically in one transaction
+ * and due tasks are popped atomically by a script, without any lock. A renewal overwrites the score of the task id,
+ * so the queue size grows with the number of live tasks only.
+ * <p>
+ * The taker sleeps until the earliest deadline without polling. An offer that becomes the earliest task publishes its
+ * expire time on the wake-up topic of the queue, which wakes the takers of all nodes waiting for a later deadline. The
+ * deadlines are still checked periodically in case a notification is lost, e.g. on reconnection.
+ *
  * author: Luxb
  * create: 2025/11/14 10:46
  **/
-public class RedisDelayedQueueWrapper<T> implements DelayedQueueWrapper<T> {
-    private final RBlockingQueue<DelayedTask<T>> innerBlockingQueue;
-    private final RDelayedQueue<DelayedTask<T>> innerDelayedQueue;
+public class RedisDelayedQueueWrapper<T> implements ReschedulableDelayedQueueWrapper<T> {
+    private static final String TAKE_DUE_TASKS_SCRIPT = """
+            local ids = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[2]))
+            if #ids == 0 then
+                return {}
+            end
+            redis.call('zrem', KEYS[1], unpack(ids))
+            local tasks = redis.call('hmget', KEYS[2], unpack(ids))
+            redis.call('hdel', KEYS[2], unpack(ids))
+            local result = {}
+            for _, task in ipairs(tasks) do
+                if task then
+                    table.insert(result, task)
+                end
+            end
+            return result
+            """;
+
+    private final RedissonClient redissonClient;
+    private final String deadlinesName;
+    private final String tasksName;
+    private final Codec tasksCodec;
+    private final RScoredSortedSet<String> deadlines;
+    private final RScript script;
+    private final RTopic wakeUps;
+    private final Object signal = new Object();
+
+    /**
+     * Time the taker sleeps until, lowered by the offers of earlier tasks, guarded by the signal
+     */
+    private long wakeUpTime = Long.MAX_VALUE;
+
+    private volatile boolean subscribed;
 
     public RedisDelayedQueueWrapper(RedissonClient redissonClient, String queueName) {
-        this.innerBlockingQueue = redissonClient.getBlockingQueue(queueName);
-        this.innerDelayedQueue = redissonClient.getDelayedQueue(innerBlockingQueue);
+        this.redissonClient = redissonClient;
+        this.deadlinesName = String.format(Constants.DEADLINES_NAME_FORMAT, queueName);
+        this.tasksName = String.format(Constants.TASKS_NAME_FORMAT, queueName);
+        Codec codec = redissonClient.getConfig().getCodec();
+        this.tasksCodec = new CompositeCodec(StringCodec.INSTANCE, codec, codec);
+        this.deadlines = redissonClient.getScoredSortedSet(deadlinesName, StringCodec.INSTANCE);
+        this.script = redissonClient.getScript(new ScriptCodec(codec));
+        this.wakeUps = redissonClient.getTopic(String.format(Constants.WAKE_UPS_NAME_FORMAT, queueName), LongCodec.INSTANCE);
     }
 
     @Override
-    public void offer(DelayedTask<T> task) {
-        innerDelayedQueue.offer(task, task.getDelay(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+    public void offerAll(Collection<DelayedTask<T>> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        RBatch batch = createAtomicBatch();
+        RMapAsync<String, DelayedTask<T>> batchTasks = batch.getMap(tasksName, tasksCodec);
+        RScoredSortedSetAsync<String> batchDeadlines = batch.getScoredSortedSet(deadlinesName, StringCodec.INSTANCE);
+        long minExpireTime = Long.MAX_VALUE;
+        for (DelayedTask<T> task : tasks) {
+            batchTasks.fastPutAsync(task.getId(), task);
+            batchDeadlines.addAsync(task.getExpireTime(), task.getId());
+            minExpireTime = Math.min(minExpireTime, task.getExpireTime());
+        }
+        var firstScore = batchDeadlines.firstScoreAsync();
+        batch.execute();
+        notifyIfFirst(minExpireTime, firstScore.toCompletableFuture().join());
     }
 
     @Override
-    public DelayedTask<T> take() throws InterruptedException {
-        return innerBlockingQueue.take();
+    public void offerIfAbsent(DelayedTask<T> task) {
+        RBatch batch = createAtomicBatch();
+        batch.<String, DelayedTask<T>>getMap(tasksName, tasksCodec).fastPutIfAbsentAsync(task.getId(), task);
+        RScoredSortedSetAsync<String> batchDeadlines = batch.getScoredSortedSet(deadlinesName, StringCodec.INSTANCE);
+        batchDeadlines.addIfAbsentAsync(task.getExpireTime(), task.getId());
+        var firstScore = batchDeadlines.firstScoreAsync();
+        batch.execute();
+        notifyIfFirst(task.getExpireTime(), firstScore.toCompletableFuture().join());
+    }
+
+    @Override
+    public boolean remove(String taskId) {
+        RBatch batch = createAtomicBatch();
+        batch.getMap(tasksName, tasksCodec).fastRemoveAsync(taskId);
+        var removed = batch.<String>getScoredSortedSet(deadlinesName, StringCodec.INSTANCE).removeAsync(taskId);
+        batch.execute();
+        return Boolean.TRUE.equals(removed.toCompletableFuture().join());
+    }
+
+    @Override
+    public List<DelayedTask<T>> take(int maxTasks) throws InterruptedException {
+        subscribe();
+        while (true) {
+            // earlier tasks offered from now on lower the wake-up time
+            synchronized (signal) {
+                wakeUpTime = Long.MAX_VALUE;
+            }
+            List<DelayedTask<T>> tasks = script.eval(RScript.Mode.READ_WRITE, TAKE_DUE_TASKS_SCRIPT, RScript.ReturnType.MULTI,
+                    List.<Object>of(deadlinesName, tasksName), String.valueOf(System.currentTimeMillis()), String.valueOf(maxTasks));
+            if (!tasks.isEmpty()) {
+                return tasks;
+            }
+
+            Double nextExpireTime = deadlines.firstScore();
+            long now = System.currentTimeMillis();
+            long recheckTime = now + Constants.MAX_WAIT_MILLIS;
+            synchronized (signal) {
+                wakeUpTime = Math.min(wakeUpTime, nextExpireTime == null ? recheckTime : Math.min(nextExpireTime.longValue(), recheckTime));
+                while (wakeUpTime > now) {
+                    signal.wait(wakeUpTime - now);
+                    now = System.currentTimeMillis();
+                }
+            }
+        }
     }
 
     @Override
     public boolean isEmpty() {
-        return innerDelayedQueue.isEmpty() && innerBlockingQueue.isEmpty();
+        return deadlines.isEmpty();
+    }
+
+    private RBatch createAtomicBatch() {
+        return redissonClient.createBatch(BatchOptions.defaults().executionMode(BatchOptions.ExecutionMode.IN_MEMORY_ATOMIC));
+    }
+
+    private void subscribe() {
+        if (subscribed) {
+            return;
+        }
+        synchronized (this) {
+            if (!subscribed) {
+                wakeUps.addListener(Long.class, (channel, expireTime) -> wakeUp(expireTime));
+                subscribed = true;
+            }
+        }
+    }
+
+    /**
+     * Wake up the takers if one of the offered tasks is the earliest task of the queue
+     */
+    private void notifyIfFirst(long minExpireTime, Double firstScore) {
+        if (firstScore == null || firstScore.longValue() != minExpireTime) {
+            return;
+        }
+        wakeUp(minExpireTime);
+        wakeUps.publishAsync(minExpireTime);
+    }
+
+    private void wakeUp(long expireTime) {
+        synchronized (signal) {
+            if (expireTime < wakeUpTime) {
+                wakeUpTime = expireTime;
+                signal.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Script arguments are plain strings, script results are tasks encoded by the codec of the client
+     */
+    private static class ScriptCodec extends BaseCodec {
+        private final Codec tasksCodec;
+
+        private ScriptCodec(Codec tasksCodec) {
+            this.tasksCodec = tasksCodec;
+        }
+
+        @Override
+        public Decoder<Object> getValueDecoder() {
+            return tasksCodec.getValueDecoder();
+        }
+
+        @Override
+        public Encoder getValueEncoder() {
+            return StringCodec.INSTANCE.getValueEncoder();
+        }
+    }
+
+    private static class Constants {
+        private static final String DEADLINES_NAME_FORMAT = "delayed-queue:{%s}:deadlines";
+        private static final String TASKS_NAME_FORMAT = "delayed-queue:{%s}:tasks";
+        private static final String WAKE_UPS_NAME_FORMAT = "delayed-queue:{%s}:wake-ups";
+        private static final long MAX_WAIT_MILLIS = 30_000;
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,8 @@
 package com.milesight.beaveriot.semaphore;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * author: Luxb
@@ -10,4 +12,21 @@ public interface DistributedSemaphore {
     void initPermits(String key, int permits);
     String acquire(String key, Duration timeout);
     void release(String key, String permitId);
+
+    /**
+     * Acquire up to the given number of permits without waiting
+     *
+     * @return acquired permits, empty if no permit is available
+     */
+    default List<String> tryAcquire(String key, int permits) {
+        List<String> permitIds = new ArrayList<>(permits);
+        for (int i = 0; i < permits; i++) {
+            String permitId = acquire(key, Duration.ZERO);
+            if (permitId == null) {
+                break;
+            }
+            permitIds.add(permitId);
+        }
+        return permitIds;
+    }
 }
\ No newline at end of file
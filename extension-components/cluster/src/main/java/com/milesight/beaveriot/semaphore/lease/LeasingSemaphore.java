@@ -0,0 +1,194 @@
+package com.milesight.beaveriot.semaphore.lease;
+
+import com.google.common.collect.Maps;
+import com.milesight.beaveriot.semaphore.DistributedSemaphore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Semaphore handing out permits leased in blocks from a distributed semaphore.
+ * <p>
+ * A permit released by its holder goes back to the local pool of the node instead of the distributed semaphore, so
+ * the next acquisition on the same node is served from memory. When the pool is empty, a block of permits is borrowed
+ * at once without waiting. A node never leases more than its fair share of the permits of a key, above that share
+ * permits are acquired from and released to the distributed semaphore one by one, so the other nodes can still get
+ * theirs. While threads of the node wait for such a permit, the leased permits released on the node are returned to
+ * the distributed semaphore too, which hands them to the waiters. Pooled permits unused for the idle timeout are
+ * returned to the distributed semaphore by a timer. Leased permits are real permits of the distributed semaphore, the
+ * concurrency limit of a key is enforced across the cluster as before.
+ *
+ * author: Luxb
+ * create: 2026/10/18 14:05
+ **/
+@Slf4j
+public class LeasingSemaphore implements DistributedSemaphore {
+    private final DistributedSemaphore delegate;
+    private final int blockSize;
+    private final double maxShare;
+    private final Duration idleTimeout;
+    private final Map<String, KeyLease> keyLeases;
+    private final ScheduledExecutorService leaseReturner;
+    private volatile boolean closed;
+
+    /**
+     * @param delegate    distributed semaphore to lease the permits from
+     * @param blockSize   maximum number of permits borrowed at once
+     * @param maxShare    maximum share of the permits of a key leased by this node, between 0 and 1
+     * @param idleTimeout time after which an unused leased permit is returned
+     */
+    public LeasingSemaphore(DistributedSemaphore delegate, int blockSize, double maxShare, Duration idleTimeout) {
+        this.delegate = delegate;
+        this.blockSize = Math.max(1, blockSize);
+        this.maxShare = maxShare;
+        this.idleTimeout = idleTimeout;
+        this.keyLeases = Maps.newConcurrentMap();
+        this.leaseReturner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "semaphore-lease-returner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, idleTimeout.toMillis() / 2);
+        this.leaseReturner.scheduleWithFixedDelay(this::returnIdlePermits, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void initPermits(String key, int permits) {
+        delegate.initPermits(key, permits);
+        keyLeases.computeIfAbsent(key, k -> new KeyLease()).fairShare = Math.max(1, (int) Math.ceil(permits * maxShare));
+    }
+
+    @Override
+    public String acquire(String key, Duration timeout) {
+        KeyLease keyLease = keyLeases.computeIfAbsent(key, k -> new KeyLease());
+        IdlePermit idlePermit = keyLease.idlePermits.pollFirst();
+        if (idlePermit != null) {
+            return idlePermit.permitId;
+        }
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        String permitId = borrow(key, keyLease);
+        if (permitId != null) {
+            return permitId;
+        }
+
+        // the fair share is used up, wait for a permit of the distributed semaphore, the leased permits released on
+        // this node meanwhile are returned to it
+        keyLease.waiters.incrementAndGet();
+        try {
+            // pooled before this thread was counted as a waiter
+            idlePermit = keyLease.idlePermits.pollFirst();
+            if (idlePermit != null) {
+                return idlePermit.permitId;
+            }
+            return delegate.acquire(key, Duration.ofNanos(Math.max(0, deadline - System.nanoTime())));
+        } finally {
+            keyLease.waiters.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void release(String key, String permitId) {
+        KeyLease keyLease = keyLeases.get(key);
+        if (keyLease == null || !keyLease.leasedPermitIds.contains(permitId)) {
+            delegate.release(key, permitId);
+            return;
+        }
+        if (closed) {
+            keyLease.leasedPermitIds.remove(permitId);
+            delegate.release(key, permitId);
+            return;
+        }
+        IdlePermit idlePermit = new IdlePermit(permitId, System.nanoTime());
+        keyLease.idlePermits.offerFirst(idlePermit);
+        // checked after pooling, a thread counted as a waiter before that polls the pool first
+        if (keyLease.waiters.get() > 0 && keyLease.idlePermits.removeFirstOccurrence(idlePermit)) {
+            keyLease.leasedPermitIds.remove(permitId);
+            delegate.release(key, permitId);
+        }
+    }
+
+    /**
+     * Borrow a block of permits without waiting
+     *
+     * @return one of the borrowed permits, the others are pooled, or null if no permit can be borrowed
+     */
+    private String borrow(String key, KeyLease keyLease) {
+        keyLease.lock.lock();
+        try {
+            // another thread may have borrowed in the meantime
+            IdlePermit idlePermit = keyLease.idlePermits.pollFirst();
+            if (idlePermit != null) {
+                return idlePermit.permitId;
+            }
+
+            int count = Math.min(blockSize, keyLease.fairShare - keyLease.leasedPermitIds.size());
+            if (count <= 0) {
+                return null;
+            }
+            String first = null;
+            long now = System.nanoTime();
+            for (String permitId : delegate.tryAcquire(key, count)) {
+                keyLease.leasedPermitIds.add(permitId);
+                if (first == null) {
+                    first = permitId;
+                } else {
+                    keyLease.idlePermits.offerLast(new IdlePermit(permitId, now));
+                }
+            }
+            if (first != null) {
+                log.debug("Leased permits of semaphore {}, total leased: {}", key, keyLease.leasedPermitIds.size());
+            }
+            return first;
+        } finally {
+            keyLease.lock.unlock();
+        }
+    }
+
+    private void returnIdlePermits() {
+        long now = System.nanoTime();
+        keyLeases.forEach((key, keyLease) -> {
+            IdlePermit idlePermit;
+            // the pool is used as a stack, the least recently released permits are at the tail
+            while ((idlePermit = keyLease.idlePermits.peekLast()) != null
+                    && (closed || now - idlePermit.idleSince >= idleTimeout.toNanos())) {
+                if (!keyLease.idlePermits.removeLastOccurrence(idlePermit)) {
+                    continue;
+                }
+                keyLease.leasedPermitIds.remove(idlePermit.permitId);
+                try {
+                    delegate.release(key, idlePermit.permitId);
+                } catch (Exception e) {
+                    log.warn("Failed to return leased permit {} of semaphore {}", idlePermit.permitId, key, e);
+                }
+            }
+        });
+    }
+
+    public void destroy() {
+        closed = true;
+        leaseReturner.shutdownNow();
+        returnIdlePermits();
+    }
+
+    private static class KeyLease {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Set<String> leasedPermitIds = ConcurrentHashMap.newKeySet();
+        private final Deque<IdlePermit> idlePermits = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger waiters = new AtomicInteger();
+        private volatile int fairShare = 1;
+    }
+
+    private record IdlePermit(String permitId, long idleSince) {
+    }
+}
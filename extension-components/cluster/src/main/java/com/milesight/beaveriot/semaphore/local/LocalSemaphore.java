@@ -5,6 +5,7 @@ import com.milesight.beaveriot.semaphore.DistributedSemaphore;
 
 import java.time.Duration;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
@@ -24,7 +25,7 @@ public class LocalSemaphore implements DistributedSemaphore {
     public String acquire(String key, Duration timeout) {
         Semaphore semaphore = semaphores.get(key);
         try {
-            return semaphore.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS) ? key : null;
+            return semaphore.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS) ? UUID.randomUUID().toString() : null;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
@@ -9,6 +9,7 @@ import org.redisson.api.RPermitExpirableSemaphore;
 import org.redisson.api.RedissonClient;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.*;
@@ -59,6 +60,29 @@ public class RedisSemaphore implements DistributedSemaphore {
         return null;
     }
 
+    /**
+     * Acquire the permits in one call, or a single one if not all of them are available
+     */
+    @Override
+    public List<String> tryAcquire(String key, int permits) {
+        if (permits <= 1) {
+            return DistributedSemaphore.super.tryAcquire(key, permits);
+        }
+
+        RPermitExpirableSemaphore semaphore = redissonClient.getPermitExpirableSemaphore(key);
+        try {
+            List<String> permitIds = semaphore.tryAcquire(permits, 0, DEFAULT_DURATION_LEASE.toMillis(), TimeUnit.MILLISECONDS);
+            if (permitIds == null || permitIds.isEmpty()) {
+                return DistributedSemaphore.super.tryAcquire(key, 1);
+            }
+            permitIds.forEach(permitId -> startWatchDog(semaphore, permitId));
+            return permitIds;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return List.of();
+    }
+
     private void startWatchDog(RPermitExpirableSemaphore semaphore, String permitId) {
         WatchDog watchDog = keyWatchDogs.computeIfAbsent(semaphore.getName(), k -> WatchDog.create(sharedLeaseReNewer, semaphore));
         watchDog.addPermitId(permitId);
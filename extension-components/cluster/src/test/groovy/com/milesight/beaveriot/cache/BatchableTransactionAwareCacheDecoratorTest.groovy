@@ -0,0 +1,68 @@
+package com.milesight.beaveriot.cache
+
+import org.springframework.cache.Cache
+import org.springframework.transaction.support.TransactionSynchronizationManager
+import spock.lang.Specification
+
+/**
+ * @author leon
+ */
+class BatchableTransactionAwareCacheDecoratorTest extends Specification {
+
+    interface BatchableTargetCache extends Cache, BatchableCache {
+    }
+
+    BatchableTargetCache targetCache = Mock(BatchableTargetCache)
+
+    BatchableTransactionAwareCacheDecorator decorator = new BatchableTransactionAwareCacheDecorator(targetCache)
+
+    def cleanup() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization()
+        }
+    }
+
+    def "multiGet should read the target cache"() {
+        when:
+        def values = decorator.multiGet(["k1", "k2"] as Object[])
+
+        then:
+        1 * targetCache.multiGet(["k1", "k2"] as Object[]) >> ["v1", null]
+        values == ["v1", null]
+    }
+
+    def "multiEvict should evict right away without a transaction"() {
+        when:
+        def evicted = decorator.multiEvict(["k1"] as Object[])
+
+        then:
+        1 * targetCache.multiEvict(["k1"] as Object[]) >> 1L
+        evicted == 1L
+    }
+
+    def "multiEvict should be deferred until the transaction is committed"() {
+        given:
+        TransactionSynchronizationManager.initSynchronization()
+
+        when:
+        def evicted = decorator.multiEvict(["k1"] as Object[])
+
+        then:
+        0 * targetCache.multiEvict(_)
+        evicted == 0L
+
+        when:
+        TransactionSynchronizationManager.getSynchronizations().each { it.afterCommit() }
+
+        then:
+        1 * targetCache.multiEvict(["k1"] as Object[])
+    }
+
+    def "target cache should be batchable"() {
+        when:
+        new BatchableTransactionAwareCacheDecorator(Mock(Cache))
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,155 @@
+package com.milesight.beaveriot.cache.layered
+
+import com.github.benmanes.caffeine.cache.Caffeine
+import com.milesight.beaveriot.cache.redis.BatchableRedisCache
+import org.redisson.api.RTopic
+import org.redisson.api.RedissonClient
+import org.redisson.api.listener.MessageListener
+import org.redisson.api.listener.StatusListener
+import org.springframework.cache.support.SimpleValueWrapper
+import spock.lang.Specification
+
+/**
+ * @author leon
+ */
+class LayeredCacheTest extends Specification {
+
+    BatchableRedisCache remoteCache
+    RTopic topic
+    MessageListener<NearCacheInvalidation> messageListener
+    StatusListener statusListener
+    NearCacheInvalidator invalidator
+    LayeredCache cache
+
+    def setup() {
+        remoteCache = Mock(BatchableRedisCache)
+        remoteCache.getName() >> "devices"
+        topic = Mock(RTopic)
+        topic.addListener(NearCacheInvalidation, _ as MessageListener) >> { args ->
+            messageListener = args[1]
+            return 1
+        }
+        topic.addListener(_ as StatusListener) >> { args ->
+            statusListener = args[0]
+            return 2
+        }
+        def redissonClient = Mock(RedissonClient)
+        redissonClient.getTopic(_ as String) >> topic
+        invalidator = new NearCacheInvalidator(redissonClient)
+        cache = new LayeredCache(remoteCache, Caffeine.newBuilder().maximumSize(100).build(), invalidator)
+    }
+
+    def "miss should be loaded from redis once and then served locally"() {
+        when:
+        def first = cache.get("k1")
+        def second = cache.get("k1")
+
+        then:
+        1 * remoteCache.get("k1") >> new SimpleValueWrapper("v1")
+        first.get() == "v1"
+        second.get() == "v1"
+    }
+
+    def "put should write redis and broadcast the invalidation of the key"() {
+        when:
+        cache.put("k1", "v1")
+        def value = cache.get("k1")
+
+        then:
+        1 * remoteCache.put("k1", "v1")
+        1 * topic.publishAsync({ NearCacheInvalidation invalidation -> invalidation.cacheName == "devices" && invalidation.keys == ["k1"] })
+        0 * remoteCache.get(_)
+        value.get() == "v1"
+    }
+
+    def "invalidation from another node should evict the local entries"() {
+        given:
+        cache.put("k1", "v1")
+        cache.put("k2", "v2")
+
+        when:
+        messageListener.onMessage("channel", new NearCacheInvalidation("other-node", "devices", ["k1"]))
+        def k1 = cache.get("k1")
+        def k2 = cache.get("k2")
+
+        then:
+        1 * remoteCache.get("k1") >> new SimpleValueWrapper("v1-changed")
+        0 * remoteCache.get("k2")
+        k1.get() == "v1-changed"
+        k2.get() == "v2"
+    }
+
+    def "invalidation of the whole cache from another node should clear the local entries"() {
+        given:
+        cache.put("k1", "v1")
+
+        when:
+        messageListener.onMessage("channel", new NearCacheInvalidation("other-node", "devices", null))
+        cache.get("k1")
+
+        then:
+        1 * remoteCache.get("k1") >> new SimpleValueWrapper("v1")
+    }
+
+    def "invalidation published by the node itself should be ignored"() {
+        given:
+        NearCacheInvalidation published = null
+        topic.publishAsync(_) >> { args -> published = args[0]; null }
+        cache.put("k1", "v1")
+
+        when:
+        messageListener.onMessage("channel", published)
+        cache.get("k1")
+
+        then:
+        0 * remoteCache.get(_)
+    }
+
+    def "resubscription should clear the local entries"() {
+        given:
+        cache.put("k1", "v1")
+
+        when:
+        statusListener.onSubscribe("channel")
+        cache.get("k1")
+
+        then:
+        1 * remoteCache.get("k1") >> new SimpleValueWrapper("v1")
+    }
+
+    def "multiGet should only read the local misses from redis"() {
+        given:
+        cache.put("k1", "v1")
+
+        when:
+        def values = cache.multiGet(["k1", "k2", null, "k3"] as Object[])
+
+        then:
+        1 * remoteCache.multiGet(["k2", "k3"] as Object[]) >> ["v2", null]
+        values == ["v1", "v2", null, null]
+
+        when:
+        def cached = cache.multiGet(["k2", "k1"] as Object[])
+
+        then:
+        0 * remoteCache.multiGet(_)
+        cached == ["v2", "v1"]
+    }
+
+    def "multiEvict should evict the local entries and broadcast their invalidation"() {
+        given:
+        cache.put("k1", "v1")
+        cache.put("k2", "v2")
+
+        when:
+        cache.multiEvict(["k1", null] as Object[])
+        cache.get("k1")
+        cache.get("k2")
+
+        then:
+        1 * remoteCache.multiEvict(["k1", null] as Object[]) >> 1L
+        1 * topic.publishAsync({ NearCacheInvalidation invalidation -> invalidation.keys == ["k1"] })
+        1 * remoteCache.get("k1") >> null
+        0 * remoteCache.get("k2")
+    }
+}
@@ -0,0 +1,61 @@
+package com.milesight.beaveriot.cache.redis
+
+import com.milesight.beaveriot.cache.BatchableTransactionAwareCacheDecorator
+import com.milesight.beaveriot.cache.autoconfigure.CustomizeCacheProperties
+import com.milesight.beaveriot.cache.layered.LayeredCache
+import com.milesight.beaveriot.cache.layered.NearCacheInvalidator
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator
+import org.springframework.data.redis.cache.RedisCacheConfiguration
+import org.springframework.data.redis.connection.RedisConnectionFactory
+import spock.lang.Specification
+
+/**
+ * @author leon
+ */
+class CustomizeRedisCacheManagerTest extends Specification {
+
+    CustomizeCacheProperties properties = new CustomizeCacheProperties()
+
+    CustomizeRedisCacheManager buildManager(NearCacheInvalidator invalidator) {
+        def manager = CustomizeRedisCacheManager.customizeBuilder(Mock(RedisConnectionFactory), properties)
+                .transactionAware(true)
+                .nearCache(invalidator)
+                .cacheDefaults(RedisCacheConfiguration.defaultCacheConfig())
+                .build()
+        manager.afterPropertiesSet()
+        return manager
+    }
+
+    def "redis caches should keep the plain transaction aware decorator without the near cache"() {
+        when:
+        def cache = buildManager(null).getCache("devices")
+
+        then:
+        cache.class == TransactionAwareCacheDecorator
+        ((TransactionAwareCacheDecorator) cache).targetCache instanceof BatchableRedisCache
+    }
+
+    def "near cached caches should be layered and keep their batch operations"() {
+        given:
+        properties.nearCache.enabled = true
+        properties.nearCache.cacheNames = ["devices*"] as Set
+
+        when:
+        def manager = buildManager(Mock(NearCacheInvalidator))
+        def nearCached = manager.getCache("devices:by-id")
+        def notNearCached = manager.getCache("entities")
+
+        then:
+        nearCached instanceof BatchableTransactionAwareCacheDecorator
+        ((BatchableTransactionAwareCacheDecorator) nearCached).targetCache instanceof LayeredCache
+        notNearCached.class == TransactionAwareCacheDecorator
+    }
+
+    def "invalidator should be ignored if the near cache is disabled"() {
+        when:
+        def cache = buildManager(Mock(NearCacheInvalidator)).getCache("devices")
+
+        then:
+        cache.class == TransactionAwareCacheDecorator
+    }
+}
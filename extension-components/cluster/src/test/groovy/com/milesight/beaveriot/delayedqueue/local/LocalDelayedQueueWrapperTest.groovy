@@ -0,0 +1,68 @@
+package com.milesight.beaveriot.delayedqueue.local
+
+import com.milesight.beaveriot.context.model.delayedqueue.DelayedTask
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.time.Duration
+
+class LocalDelayedQueueWrapperTest extends Specification {
+
+    LocalDelayedQueueWrapper<String> wrapper = new LocalDelayedQueueWrapper<>()
+
+    @Timeout(5)
+    def "offer should reschedule a queued task in place"() {
+        given:
+        def task = DelayedTask.of("task-1", "topic", "first", Duration.ofMillis(50)).renew()
+        wrapper.offer(task)
+
+        when:
+        def renewed = DelayedTask.of("task-1", "topic", "second", Duration.ofMillis(300)).renew()
+        wrapper.offer(renewed)
+        def start = System.currentTimeMillis()
+        def taken = wrapper.take(10)
+
+        then:
+        taken*.payload == ["second"]
+        System.currentTimeMillis() - start >= 200
+        wrapper.isEmpty()
+    }
+
+    def "offerIfAbsent should not override a queued task"() {
+        given:
+        wrapper.offer(DelayedTask.of("task-1", "topic", "queued", Duration.ZERO).renew())
+
+        when:
+        wrapper.offerIfAbsent(DelayedTask.of("task-1", "topic", "requeued", Duration.ZERO).renew())
+
+        then:
+        wrapper.take(10)*.payload == ["queued"]
+    }
+
+    def "remove should drop the queued task"() {
+        given:
+        wrapper.offer(DelayedTask.of("task-1", "topic", "payload", Duration.ZERO).renew())
+
+        expect:
+        wrapper.remove("task-1")
+        !wrapper.remove("task-1")
+        wrapper.isEmpty()
+    }
+
+    @Timeout(5)
+    def "take should return the due tasks in deadline order up to the batch size"() {
+        given:
+        wrapper.offerAll([
+                DelayedTask.of("task-3", "topic", "3", Duration.ofMillis(30)).renew(),
+                DelayedTask.of("task-1", "topic", "1", Duration.ofMillis(10)).renew(),
+                DelayedTask.of("task-2", "topic", "2", Duration.ofMillis(20)).renew(),
+                DelayedTask.of("task-4", "topic", "4", Duration.ofMinutes(1)).renew()
+        ])
+        Thread.sleep(100)
+
+        expect:
+        wrapper.take(2)*.payload == ["1", "2"]
+        wrapper.take(10)*.payload == ["3"]
+        !wrapper.isEmpty()
+    }
+}
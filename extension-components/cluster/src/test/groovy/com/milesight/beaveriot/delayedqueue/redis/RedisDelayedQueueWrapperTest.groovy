@@ -0,0 +1,127 @@
+package com.milesight.beaveriot.delayedqueue.redis
+
+import com.milesight.beaveriot.context.model.delayedqueue.DelayedTask
+import org.redisson.api.RBatch
+import org.redisson.api.RFuture
+import org.redisson.api.RMapAsync
+import org.redisson.api.RScoredSortedSet
+import org.redisson.api.RScoredSortedSetAsync
+import org.redisson.api.RScript
+import org.redisson.api.RTopic
+import org.redisson.api.RedissonClient
+import org.redisson.api.listener.MessageListener
+import org.redisson.client.codec.StringCodec
+import org.redisson.config.Config
+import org.redisson.misc.CompletableFutureWrapper
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.atomic.AtomicInteger
+
+class RedisDelayedQueueWrapperTest extends Specification {
+
+    RedissonClient redissonClient = Mock()
+
+    RScoredSortedSet<String> deadlines = Mock()
+
+    RScript script = Mock()
+
+    RTopic wakeUps = Mock()
+
+    RBatch batch = Mock()
+
+    RScoredSortedSetAsync<String> batchDeadlines = Mock()
+
+    RedisDelayedQueueWrapper<String> wrapper
+
+    def setup() {
+        redissonClient.getConfig() >> new Config().setCodec(StringCodec.INSTANCE)
+        redissonClient.getScoredSortedSet("delayed-queue:{test}:deadlines", StringCodec.INSTANCE) >> deadlines
+        redissonClient.getScript(_) >> script
+        redissonClient.getTopic("delayed-queue:{test}:wake-ups", _) >> wakeUps
+        redissonClient.createBatch(_) >> batch
+        batch.getMap(_, _) >> Mock(RMapAsync)
+        batch.getScoredSortedSet(_, _) >> batchDeadlines
+        wrapper = new RedisDelayedQueueWrapper<>(redissonClient, "test")
+    }
+
+    static RFuture<Double> completed(Double value) {
+        return new CompletableFutureWrapper<>(value)
+    }
+
+    static DelayedTask<String> task(String id, Duration delay) {
+        return DelayedTask.of(id, "topic", id, delay).renew()
+    }
+
+    def "offer becoming the earliest task should publish a wake-up"() {
+        given:
+        def task = task("task-1", Duration.ofSeconds(1))
+
+        when:
+        wrapper.offer(task)
+
+        then:
+        1 * batchDeadlines.firstScoreAsync() >> completed(task.expireTime as double)
+        1 * wakeUps.publishAsync(task.expireTime)
+    }
+
+    def "offer behind the earliest task should not publish a wake-up"() {
+        given:
+        def task = task("task-1", Duration.ofSeconds(1))
+
+        when:
+        wrapper.offerIfAbsent(task)
+
+        then:
+        1 * batchDeadlines.firstScoreAsync() >> completed((task.expireTime - 500) as double)
+        0 * wakeUps.publishAsync(_)
+    }
+
+    @Timeout(5)
+    def "take should wait for a wake-up instead of polling an empty queue"() {
+        given:
+        def task = task("task-1", Duration.ZERO)
+        def evals = new AtomicInteger()
+        MessageListener<Long> listener = null
+        wakeUps.addListener(Long, _) >> { args ->
+            listener = args[1]
+            return 0
+        }
+        script.eval(*_) >> { evals.incrementAndGet() == 1 ? [] : [task] }
+        deadlines.firstScore() >> null
+
+        when:
+        def taken = CompletableFuture.supplyAsync { wrapper.take(10) }
+        Thread.sleep(500)
+
+        then:
+        evals.get() == 1
+        !taken.isDone()
+
+        when:
+        listener.onMessage("delayed-queue:{test}:wake-ups", System.currentTimeMillis())
+
+        then:
+        taken.get()*.payload == ["task-1"]
+        evals.get() == 2
+    }
+
+    @Timeout(5)
+    def "take should sleep until the earliest deadline"() {
+        given:
+        def task = task("task-1", Duration.ofMillis(300))
+        def evals = new AtomicInteger()
+        script.eval(*_) >> { evals.incrementAndGet() == 1 ? [] : [task] }
+        deadlines.firstScore() >> (task.expireTime as double)
+
+        when:
+        def taken = wrapper.take(10)
+
+        then:
+        taken*.payload == ["task-1"]
+        System.currentTimeMillis() >= task.expireTime
+        evals.get() == 2
+    }
+}
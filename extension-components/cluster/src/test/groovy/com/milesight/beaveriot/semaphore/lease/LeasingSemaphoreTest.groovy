@@ -0,0 +1,170 @@
+package com.milesight.beaveriot.semaphore.lease
+
+import com.milesight.beaveriot.semaphore.DistributedSemaphore
+import com.milesight.beaveriot.semaphore.local.LocalSemaphore
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class LeasingSemaphoreTest extends Specification {
+
+    CountingSemaphore delegate = new CountingSemaphore()
+
+    LeasingSemaphore semaphore
+
+    def cleanup() {
+        semaphore?.destroy()
+    }
+
+    def "released permits should be reused locally without the distributed semaphore"() {
+        given:
+        semaphore = new LeasingSemaphore(delegate, 2, 1, Duration.ofMinutes(1))
+        semaphore.initPermits("key", 4)
+
+        when:
+        def first = semaphore.acquire("key", Duration.ZERO)
+        semaphore.release("key", first)
+        def second = semaphore.acquire("key", Duration.ZERO)
+        semaphore.release("key", second)
+
+        then:
+        delegate.acquired.size() == 2
+        delegate.released.isEmpty()
+        second == first
+    }
+
+    def "block of permits should be borrowed at once"() {
+        given:
+        semaphore = new LeasingSemaphore(delegate, 3, 1, Duration.ofMinutes(1))
+        semaphore.initPermits("key", 4)
+
+        when:
+        def permits = (1..3).collect { semaphore.acquire("key", Duration.ZERO) }
+
+        then:
+        delegate.batches == [3]
+        permits.toSet() == delegate.acquired.toSet()
+    }
+
+    def "permit released on the node should be handed to a waiting thread"() {
+        given:
+        semaphore = new LeasingSemaphore(delegate, 2, 1, Duration.ofMinutes(1))
+        semaphore.initPermits("key", 2)
+        def permits = (1..2).collect { semaphore.acquire("key", Duration.ZERO) }
+
+        when:
+        def waiting = CompletableFuture.supplyAsync { semaphore.acquire("key", Duration.ofSeconds(10)) }
+        Thread.sleep(200)
+        semaphore.release("key", permits[0])
+
+        then:
+        waiting.get(2, TimeUnit.SECONDS) != null
+        delegate.released == [permits[0]]
+        delegate.acquireCalls.get() == 1
+    }
+
+    def "concurrency limit should still be enforced"() {
+        given:
+        semaphore = new LeasingSemaphore(delegate, 2, 1, Duration.ofMinutes(1))
+        semaphore.initPermits("key", 3)
+
+        when:
+        def permits = (1..3).collect { semaphore.acquire("key", Duration.ZERO) }
+
+        then:
+        permits.every { it != null }
+        permits.toSet().size() == 3
+        semaphore.acquire("key", Duration.ofMillis(100)) == null
+
+        when:
+        semaphore.release("key", permits[0])
+
+        then:
+        semaphore.acquire("key", Duration.ZERO) == permits[0]
+    }
+
+    def "permits above the fair share should be released to the distributed semaphore"() {
+        given:
+        semaphore = new LeasingSemaphore(delegate, 4, 0.5, Duration.ofMinutes(1))
+        semaphore.initPermits("key", 4)
+
+        when:
+        def leased = (1..2).collect { semaphore.acquire("key", Duration.ZERO) }
+        def direct = semaphore.acquire("key", Duration.ZERO)
+        semaphore.release("key", direct)
+        leased.each { semaphore.release("key", it) }
+
+        then:
+        delegate.released == [direct]
+    }
+
+    def "idle leased permits should be returned"() {
+        given:
+        semaphore = new LeasingSemaphore(delegate, 2, 1, Duration.ofMillis(100))
+        semaphore.initPermits("key", 2)
+
+        when:
+        def permit = semaphore.acquire("key", Duration.ZERO)
+        semaphore.release("key", permit)
+        Thread.sleep(500)
+
+        then:
+        delegate.released.toSet() == delegate.acquired.toSet()
+        delegate.released.size() == 2
+    }
+
+    static class CountingSemaphore implements DistributedSemaphore {
+
+        final LocalSemaphore local = new LocalSemaphore()
+
+        final List<String> acquired = Collections.synchronizedList([])
+
+        final List<String> released = Collections.synchronizedList([])
+
+        final List<Integer> batches = Collections.synchronizedList([])
+
+        final AtomicInteger acquireCalls = new AtomicInteger()
+
+        @Override
+        void initPermits(String key, int permits) {
+            local.initPermits(key, permits)
+        }
+
+        @Override
+        String acquire(String key, Duration timeout) {
+            acquireCalls.incrementAndGet()
+            return acquireFromLocal(key, timeout)
+        }
+
+        @Override
+        List<String> tryAcquire(String key, int permits) {
+            batches << permits
+            def permitIds = []
+            for (int i = 0; i < permits; i++) {
+                def permitId = acquireFromLocal(key, Duration.ZERO)
+                if (permitId == null) {
+                    break
+                }
+                permitIds << permitId
+            }
+            return permitIds
+        }
+
+        private String acquireFromLocal(String key, Duration timeout) {
+            def permitId = local.acquire(key, timeout)
+            if (permitId != null) {
+                acquired << permitId
+            }
+            return permitId
+        }
+
+        @Override
+        void release(String key, String permitId) {
+            released << permitId
+            local.release(key, permitId)
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.milesight.beaveriot.data.api;
 
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateBucket;
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateQuery;
 import com.milesight.beaveriot.data.model.TimeSeriesPeriodQuery;
 import com.milesight.beaveriot.data.model.TimeSeriesResult;
 import com.milesight.beaveriot.data.model.TimeSeriesTimePointQuery;
@@ -17,5 +19,10 @@ public interface TimeSeriesRepository<T> {
 
     TimeSeriesResult<T> findByPeriod(TimeSeriesPeriodQuery query);
 
+    /**
+     * Aggregate a value column in the database, buckets are ordered by timestamp
+     */
+    TimeSeriesResult<TimeSeriesAggregateBucket> aggregate(TimeSeriesAggregateQuery query);
+
     void save(List<T> itemList);
 }
@@ -0,0 +1,31 @@
+package com.milesight.beaveriot.data.model;
+
+import lombok.Data;
+
+/**
+ * TimeSeriesAggregateBucket class.
+ *
+ * @author leon
+ */
+@Data
+public class TimeSeriesAggregateBucket {
+    /**
+     * Start of the window, or start of the period if the query is not windowed
+     */
+    private Long timestamp;
+
+    private Object value;
+
+    /**
+     * Number of points with a value in the window
+     */
+    private Long count;
+
+    public static TimeSeriesAggregateBucket of(Long timestamp, Object value, Long count) {
+        TimeSeriesAggregateBucket bucket = new TimeSeriesAggregateBucket();
+        bucket.setTimestamp(timestamp);
+        bucket.setValue(value);
+        bucket.setCount(count);
+        return bucket;
+    }
+}
@@ -0,0 +1,40 @@
+package com.milesight.beaveriot.data.model;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * TimeSeriesAggregateQuery class.
+ * <p>
+ * Aggregate the value column of the points in [startTimestamp, endTimestamp). If windowMillis is set, the period is
+ * split into windows aligned to the epoch and one aggregate is returned for every window containing points.
+ *
+ * @author leon
+ */
+@EqualsAndHashCode(callSuper = true)
+@Data
+public class TimeSeriesAggregateQuery extends TimeSeriesBaseQuery {
+    private Long startTimestamp;
+
+    private Long endTimestamp;
+
+    private String valueColumn;
+
+    private TimeSeriesAggregation aggregation;
+
+    private Long windowMillis;
+
+    public void validate() {
+        if (startTimestamp == null || endTimestamp == null || endTimestamp < startTimestamp) {
+            throw new IllegalArgumentException("Invalid aggregate period");
+        }
+
+        if (valueColumn == null || aggregation == null) {
+            throw new IllegalArgumentException("valueColumn and aggregation cannot be null");
+        }
+
+        if (windowMillis != null && windowMillis <= 0) {
+            throw new IllegalArgumentException("windowMillis must be larger than zero");
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.milesight.beaveriot.data.model;
+
+/**
+ * Aggregation of a time series value column.
+ *
+ * @author leon
+ */
+public enum TimeSeriesAggregation {
+    /**
+     * Value of the latest point
+     */
+    LAST,
+    MIN,
+    MAX,
+    AVG,
+    SUM,
+    /**
+     * Number of points with a value
+     */
+    COUNT
+}
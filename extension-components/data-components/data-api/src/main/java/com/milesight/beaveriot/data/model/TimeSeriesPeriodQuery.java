@@ -21,6 +21,4 @@ public class TimeSeriesPeriodQuery extends TimeSeriesBaseQuery {
     private Long pageSize = 10L;
 
     private TimeSeriesCursor cursor;
-
-    // NEXT: Aggregation
 }
@@ -0,0 +1,99 @@
+package com.milesight.beaveriot.data.support;
+
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateBucket;
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateQuery;
+import com.milesight.beaveriot.data.model.TimeSeriesAggregation;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Incremental aggregation of streamed points, for databases that cannot aggregate on the server side.
+ * Only the state of each window is kept, the points are not retained.
+ *
+ * @author leon
+ */
+public class TimeSeriesAggregateAccumulator {
+
+    private final TimeSeriesAggregation aggregation;
+
+    private final long startTimestamp;
+
+    private final Long windowMillis;
+
+    private final Map<Long, WindowState> windows = new TreeMap<>();
+
+    public TimeSeriesAggregateAccumulator(TimeSeriesAggregateQuery query) {
+        this.aggregation = query.getAggregation();
+        this.startTimestamp = query.getStartTimestamp();
+        this.windowMillis = query.getWindowMillis();
+    }
+
+    public void accept(long timestamp, Object value) {
+        if (value == null) {
+            return;
+        }
+        long window = windowMillis == null ? startTimestamp : timestamp - Math.floorMod(timestamp, windowMillis);
+        windows.computeIfAbsent(window, k -> new WindowState()).accept(timestamp, value);
+    }
+
+    public List<TimeSeriesAggregateBucket> getBuckets() {
+        List<TimeSeriesAggregateBucket> buckets = new ArrayList<>(windows.size());
+        windows.forEach((window, state) -> buckets.add(TimeSeriesAggregateBucket.of(window, state.getValue(aggregation), state.count)));
+        return buckets;
+    }
+
+    private static class WindowState {
+
+        private long count;
+
+        private Comparable<Object> min;
+
+        private Comparable<Object> max;
+
+        private Object last;
+
+        private long lastTimestamp = Long.MIN_VALUE;
+
+        private BigDecimal sum;
+
+        private boolean integral = true;
+
+        @SuppressWarnings("unchecked")
+        private void accept(long timestamp, Object value) {
+            count++;
+            if (timestamp >= lastTimestamp) {
+                lastTimestamp = timestamp;
+                last = value;
+            }
+            if (value instanceof Comparable<?> comparable) {
+                Comparable<Object> comparableValue = (Comparable<Object>) comparable;
+                if (min == null || comparableValue.compareTo(min) < 0) {
+                    min = comparableValue;
+                }
+                if (max == null || comparableValue.compareTo(max) > 0) {
+                    max = comparableValue;
+                }
+            }
+            if (value instanceof Number number) {
+                integral &= number instanceof Long || number instanceof Integer;
+                BigDecimal decimal = new BigDecimal(number.toString());
+                sum = sum == null ? decimal : sum.add(decimal);
+            }
+        }
+
+        private Object getValue(TimeSeriesAggregation aggregation) {
+            return switch (aggregation) {
+                case LAST -> last;
+                case MIN -> min;
+                case MAX -> max;
+                case COUNT -> count;
+                case SUM -> sum == null ? null : (integral ? (Object) sum.longValue() : (Object) sum.doubleValue());
+                case AVG -> sum == null ? null : sum.doubleValue() / count;
+            };
+        }
+    }
+}
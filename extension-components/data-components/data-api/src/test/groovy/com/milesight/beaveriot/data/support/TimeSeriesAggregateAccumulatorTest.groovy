@@ -0,0 +1,71 @@
+package com.milesight.beaveriot.data.support
+
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateQuery
+import com.milesight.beaveriot.data.model.TimeSeriesAggregation
+import spock.lang.Specification
+
+/**
+ * @author leon
+ */
+class TimeSeriesAggregateAccumulatorTest extends Specification {
+
+    static TimeSeriesAggregateAccumulator accumulate(TimeSeriesAggregation aggregation, Long windowMillis, Map<Long, Object> points) {
+        def query = new TimeSeriesAggregateQuery()
+        query.startTimestamp = 1000L
+        query.endTimestamp = 7000L
+        query.valueColumn = "value"
+        query.aggregation = aggregation
+        query.windowMillis = windowMillis
+        def accumulator = new TimeSeriesAggregateAccumulator(query)
+        points.each { timestamp, value -> accumulator.accept(timestamp, value) }
+        return accumulator
+    }
+
+    def "whole range should be aggregated into one bucket at the start of the period"() {
+        when:
+        def buckets = accumulate(aggregation, null, [1000L: 3L, 2000L: 1L, 3500L: null, 4000L: 5L, 6500L: 2L]).buckets
+
+        then:
+        buckets.size() == 1
+        buckets[0].timestamp == 1000L
+        buckets[0].value == expected
+        buckets[0].count == 4L
+
+        where:
+        aggregation                 | expected
+        TimeSeriesAggregation.LAST  | 2L
+        TimeSeriesAggregation.MIN   | 1L
+        TimeSeriesAggregation.MAX   | 5L
+        TimeSeriesAggregation.SUM   | 11L
+        TimeSeriesAggregation.AVG   | 2.75d
+        TimeSeriesAggregation.COUNT | 4L
+    }
+
+    def "points should be aggregated in epoch aligned windows"() {
+        when:
+        def buckets = accumulate(aggregation, 2000L, [1000L: 3L, 2000L: 1L, 3500L: 4L, 6500L: 2L]).buckets
+
+        then:
+        buckets*.timestamp == [0L, 2000L, 6000L]
+        buckets*.value == expected
+        buckets*.count == [1L, 2L, 1L]
+
+        where:
+        aggregation                 | expected
+        TimeSeriesAggregation.LAST  | [3L, 4L, 2L]
+        TimeSeriesAggregation.MIN   | [3L, 1L, 2L]
+        TimeSeriesAggregation.MAX   | [3L, 4L, 2L]
+        TimeSeriesAggregation.SUM   | [3L, 5L, 2L]
+        TimeSeriesAggregation.AVG   | [3.0d, 2.5d, 2.0d]
+    }
+
+    def "sum of decimal values should not lose precision"() {
+        expect:
+        accumulate(TimeSeriesAggregation.SUM, null, [1000L: 0.1d, 2000L: 0.2d]).buckets[0].value == 0.3d
+    }
+
+    def "period without values should have no bucket"() {
+        expect:
+        accumulate(TimeSeriesAggregation.COUNT, 2000L, [1000L: null]).buckets.isEmpty()
+    }
+}
@@ -1,22 +1,49 @@
 package com.milesight.beaveriot.data.jpa;
 
+import com.milesight.beaveriot.data.filterable.Filterable;
 import com.milesight.beaveriot.data.jpa.repository.BaseJpaRepository;
+import com.milesight.beaveriot.data.jpa.support.SpecificationConverter;
+import com.milesight.beaveriot.data.jpa.support.TupleQueryCustomizer;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
 
 import java.io.Serializable;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * @author leon
  */
 public class BaseJpaRepositoryImpl<T, ID extends Serializable> extends SimpleJpaRepository<T, ID> implements BaseJpaRepository<T, ID>, Serializable {
 
+    private final transient EntityManager entityManager;
+
     public BaseJpaRepositoryImpl(JpaEntityInformation<T, ?> entityInformation, EntityManager entityManager) {
         super(entityInformation, entityManager);
+        this.entityManager = entityManager;
     }
 
     public BaseJpaRepositoryImpl(Class<T> domainClass, EntityManager entityManager) {
         super(domainClass, entityManager);
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<Tuple> findTuples(Consumer<Filterable> filterable, TupleQueryCustomizer<T> customizer) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        Root<T> root = query.from(getDomainClass());
+        Predicate predicate = SpecificationConverter.<T>toSpecification(filterable).toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        customizer.customize(root, query, criteriaBuilder);
+        return entityManager.createQuery(query).getResultList();
     }
 }
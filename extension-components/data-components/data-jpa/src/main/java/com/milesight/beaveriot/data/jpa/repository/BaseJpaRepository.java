@@ -3,6 +3,8 @@ package com.milesight.beaveriot.data.jpa.repository;
 import com.milesight.beaveriot.data.api.BaseRepository;
 import com.milesight.beaveriot.data.filterable.Filterable;
 import com.milesight.beaveriot.data.jpa.support.SpecificationConverter;
+import com.milesight.beaveriot.data.jpa.support.TupleQueryCustomizer;
+import jakarta.persistence.Tuple;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -91,4 +93,14 @@ public interface BaseJpaRepository<T,ID extends Serializable> extends JpaReposit
     default Long count(Consumer<Filterable> filterable){
         return count(SpecificationConverter.toSpecification(filterable));
     }
+
+    /**
+     * Query tuples of the rows matching the filter, e.g. aggregates calculated by the database.
+     * It is executed by the repository, so the repository aspects such as the tenant filter are applied.
+     *
+     * @param filterable filter of the rows
+     * @param customizer selection, grouping and ordering of the query
+     * @return result tuples
+     */
+    List<Tuple> findTuples(Consumer<Filterable> filterable, TupleQueryCustomizer<T> customizer);
 }
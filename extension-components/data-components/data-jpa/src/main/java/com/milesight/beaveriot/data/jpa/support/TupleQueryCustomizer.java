@@ -0,0 +1,18 @@
+package com.milesight.beaveriot.data.jpa.support;
+
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+
+/**
+ * Define the selection, grouping and ordering of a tuple query
+ *
+ * @author leon
+ */
+@FunctionalInterface
+public interface TupleQueryCustomizer<T> {
+
+    void customize(Root<T> root, CriteriaQuery<Tuple> query, CriteriaBuilder criteriaBuilder);
+
+}
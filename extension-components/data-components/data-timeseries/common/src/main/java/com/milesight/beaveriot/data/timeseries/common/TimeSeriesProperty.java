@@ -45,6 +45,25 @@ public class TimeSeriesProperty {
          */
         private int batchSize = 1000;
 
+        /**
+         * Pause between two deletion batches, leaving room to the other statements on the tables.
+         * Default: 10ms
+         */
+        private Duration batchPause = Duration.ofMillis(10);
+
+        /**
+         * Maximum duration of a cleanup run, the remaining expired data is deleted by the next run.
+         * Default: 10m
+         */
+        private Duration timeBudget = Duration.ofMinutes(10);
+
+        /**
+         * Whether to drop the expired partitions of the tables partitioned by time (PostgreSQL only)
+         * before deleting the remaining expired rows.
+         * Default: true
+         */
+        private boolean dropPartitions = true;
+
         /**
          * Whether to log cleanup statistics.
          * Default: true
@@ -2,10 +2,14 @@ package com.milesight.beaveriot.data.timeseries.influxdb;
 
 import com.milesight.beaveriot.base.utils.StringUtils;
 import com.milesight.beaveriot.data.api.TimeSeriesRepository;
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateBucket;
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateQuery;
 import com.milesight.beaveriot.data.model.TimeSeriesCursor;
 import com.milesight.beaveriot.data.model.TimeSeriesPeriodQuery;
+import com.milesight.beaveriot.data.model.TimeSeriesQueryOrder;
 import com.milesight.beaveriot.data.model.TimeSeriesResult;
 import com.milesight.beaveriot.data.model.TimeSeriesTimePointQuery;
+import com.milesight.beaveriot.data.support.TimeSeriesAggregateAccumulator;
 import com.milesight.beaveriot.data.support.TimeSeriesDataConverter;
 import com.milesight.beaveriot.data.timeseries.common.TimeSeriesProperty;
 import jakarta.annotation.PostConstruct;
@@ -198,6 +202,41 @@ public class DynamoDbTimeSeriesRepository<T> implements TimeSeriesRepository<T>
         return TimeSeriesResult.of(poList, cursor);
     }
 
+    /**
+     * DynamoDB has no aggregation, the points of the period are streamed page by page and folded into the window
+     * aggregates, so the heap only holds one page and the window states.
+     */
+    @Override
+    public TimeSeriesResult<TimeSeriesAggregateBucket> aggregate(TimeSeriesAggregateQuery query) {
+        query.validate();
+        query.validate(indexedColumns);
+        if (query.getEndTimestamp() <= query.getStartTimestamp()) {
+            return TimeSeriesResult.of();
+        }
+
+        String valueColumn = StringUtils.toSnakeCase(query.getValueColumn());
+        QueryRequest request = new DynamoDbQueryBuilder(tableName)
+                .indexedColumns(indexedColumns)
+                .indexedKeyValues(query.getIndexedKeyValues())
+                .timeColumn(timeColumn)
+                .start(query.getStartTimestamp())
+                // the key condition is inclusive
+                .end(query.getEndTimestamp() - 1)
+                .filter(query.getFilterable())
+                .order(TimeSeriesQueryOrder.ASC)
+                .build();
+
+        TimeSeriesAggregateAccumulator accumulator = new TimeSeriesAggregateAccumulator(query);
+        client.queryPaginator(request).items().forEach(item -> {
+            AttributeValue time = item.get(timeColumn);
+            if (time == null) {
+                return;
+            }
+            accumulator.accept(Long.parseLong(time.n()), DynamoDbSupport.toValue(item.get(valueColumn)));
+        });
+        return TimeSeriesResult.of(accumulator.getBuckets());
+    }
+
     @Override
     public void save(List<T> itemList) {
         if (CollectionUtils.isEmpty(itemList)) {
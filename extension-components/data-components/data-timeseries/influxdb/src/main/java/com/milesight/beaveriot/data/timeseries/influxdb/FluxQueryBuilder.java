@@ -52,6 +52,12 @@ public class FluxQueryBuilder {
 
     private TimeSeriesCursor cursor;
 
+    private String aggregateField;
+
+    private String aggregateFunction;
+
+    private Long aggregateWindowMillis;
+
     public FluxQueryBuilder filter(Consumer<Filterable> filter) {
         this.filter = filter;
         return this;
@@ -76,6 +82,16 @@ public class FluxQueryBuilder {
         return this;
     }
 
+    /**
+     * Aggregate the field by the flux function, in epoch aligned windows if the window is set
+     */
+    public FluxQueryBuilder aggregate(String field, String function, Long windowMillis) {
+        this.aggregateField = field;
+        this.aggregateFunction = function;
+        this.aggregateWindowMillis = windowMillis;
+        return this;
+    }
+
     public FluxQueryBuilder indexedKeyValues(Map<String, Object> indexedKeyValues) {
         this.indexedKeyValues = indexedKeyValues;
         return this;
@@ -136,6 +152,16 @@ public class FluxQueryBuilder {
         String filterExpression = buildFilterExpression(queryFilter);
         sb.append(" and ").append(filterExpression).append(")\n");
 
+        if (aggregateFunction != null) {
+            sb.append(String.format("  |> filter(fn: (r) => r[\"_field\"] == \"%s\")\n", aggregateField));
+            if (aggregateWindowMillis == null) {
+                sb.append(String.format("  |> %s()\n", aggregateFunction));
+            } else {
+                sb.append(String.format("  |> aggregateWindow(every: %dms, fn: %s, timeSrc: \"_start\", createEmpty: false)\n", aggregateWindowMillis, aggregateFunction));
+            }
+            return sb.toString();
+        }
+
         if (cursor != null && !cursor.getIndexedKeyValues().isEmpty()) {
             sb.append("  |> filter(fn: (r) => ").append(getSortKeyFilter()).append(")\n");
         }
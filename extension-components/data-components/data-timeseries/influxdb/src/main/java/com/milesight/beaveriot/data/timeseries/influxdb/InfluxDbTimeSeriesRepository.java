@@ -4,6 +4,7 @@ import com.influxdb.client.domain.WritePrecision;
 import com.influxdb.client.write.Point;
 import com.influxdb.query.FluxRecord;
 import com.influxdb.query.FluxTable;
+import com.milesight.beaveriot.base.utils.StringUtils;
 import com.milesight.beaveriot.data.api.TimeSeriesRepository;
 import com.milesight.beaveriot.data.filterable.Filterable;
 import com.milesight.beaveriot.data.model.*;
@@ -123,6 +124,44 @@ public class InfluxDbTimeSeriesRepository<T> implements TimeSeriesRepository<T>
         return TimeSeriesResult.of(result, nextCursor);
     }
 
+    @Override
+    public TimeSeriesResult<TimeSeriesAggregateBucket> aggregate(TimeSeriesAggregateQuery query) {
+        query.validate();
+        query.validate(indexedColumns);
+
+        String function = switch (query.getAggregation()) {
+            case LAST -> "last";
+            case MIN -> "min";
+            case MAX -> "max";
+            case AVG -> "mean";
+            case SUM -> "sum";
+            case COUNT -> "count";
+        };
+        List<FluxTable> tables = this.client.getQueryApi().query(new FluxQueryBuilder(bucket, tableName)
+                .indexedColumns(indexedColumns)
+                .indexedKeyValues(query.getIndexedKeyValues())
+                .start(query.getStartTimestamp())
+                .end(query.getEndTimestamp())
+                .filter(query.getFilterable())
+                .aggregate(StringUtils.toSnakeCase(query.getValueColumn()), function, query.getWindowMillis())
+                .build());
+
+        // the point count is only known for the count aggregation
+        List<TimeSeriesAggregateBucket> buckets = new ArrayList<>();
+        for (FluxTable table : tables) {
+            for (FluxRecord rec : table.getRecords()) {
+                if (rec.getValue() == null) {
+                    continue;
+                }
+                Long timestamp = query.getWindowMillis() == null || rec.getTime() == null ? query.getStartTimestamp() : rec.getTime().toEpochMilli();
+                Long count = query.getAggregation() == TimeSeriesAggregation.COUNT ? ((Number) rec.getValue()).longValue() : null;
+                buckets.add(TimeSeriesAggregateBucket.of(timestamp, rec.getValue(), count));
+            }
+        }
+        buckets.sort(Comparator.comparing(TimeSeriesAggregateBucket::getTimestamp));
+        return TimeSeriesResult.of(buckets);
+    }
+
     @Override
     public void save(List<T> itemList) {
         this.client.getWriteApi().writePoints(bucket, client.getOrgName(), itemList.stream().map(po -> {
@@ -6,10 +6,13 @@ import com.milesight.beaveriot.data.api.SupportTimeSeries;
 import com.milesight.beaveriot.data.api.TimeSeriesRepository;
 import com.milesight.beaveriot.data.timeseries.common.TimeSeriesProperty;
 import com.milesight.beaveriot.permission.helper.TenantValidationBypass;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.annotation.PostConstruct;
-import jakarta.persistence.Table;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -22,21 +25,36 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Scheduled task for cleaning up expired time-series data in JPA repositories.
  * This scheduler only runs when 'timeseries.database' is set to "jpa" and cleanup is enabled.
  */
 @Slf4j
-@RequiredArgsConstructor
 @Component
 @EnableScheduling
 @ConditionalOnProperty(name = "timeseries.database", havingValue = "jpa")
 public class JpaTimeSeriesDataCleanupScheduler {
 
+    private static final String METRIC_PREFIX = "timeseries.cleanup";
+
     private final TimeSeriesProperty timeSeriesProperty;
     private final List<TimeSeriesRepository<?>> repositories;
+    private final MeterRegistry meterRegistry;
     private final Map<String, Collection<String>> categoryToTableNamesMap = new HashMap<>();
+    private final Timer runTimer;
+    private final Counter budgetExhaustedCounter;
+
+    public JpaTimeSeriesDataCleanupScheduler(TimeSeriesProperty timeSeriesProperty,
+                                             List<TimeSeriesRepository<?>> repositories,
+                                             ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.timeSeriesProperty = timeSeriesProperty;
+        this.repositories = repositories;
+        this.meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        this.runTimer = meterRegistry.timer(METRIC_PREFIX + ".run");
+        this.budgetExhaustedCounter = meterRegistry.counter(METRIC_PREFIX + ".budget.exhausted");
+    }
 
     @PostConstruct
     public void init() {
@@ -62,7 +80,7 @@ public class JpaTimeSeriesDataCleanupScheduler {
     private void buildCategoryToTableNamesMap() {
         for (TimeSeriesRepository<?> timeSeriesRepository : repositories) {
             if (!(timeSeriesRepository instanceof JpaTimeSeriesRepository<?> repository)) {
-                return;
+                continue;
             }
 
             Class<?> entityClass = repository.getEntityClass();
@@ -71,7 +89,7 @@ public class JpaTimeSeriesDataCleanupScheduler {
             SupportTimeSeries annotation = entityClass.getAnnotation(SupportTimeSeries.class);
             if (annotation != null) {
                 String category = annotation.category();
-                String tableName = getTableNameFromRepository(repository);
+                String tableName = repository.getTableName();
 
                 // Add table name to the list for this category
                 categoryToTableNamesMap.computeIfAbsent(category, k -> new HashSet<>()).add(tableName);
@@ -86,7 +104,7 @@ public class JpaTimeSeriesDataCleanupScheduler {
      * Note: No @Transactional here - each batch deletion will be in its own transaction.
      */
     @Scheduled(cron = "${timeseries.cleanup.cron:0 0 2 * * ?}")
-    @DistributedLock(name = "jpa-timeseries-cleanup", lockAtLeastFor = "59s", lockAtMostFor = "59s", scope = LockScope.GLOBAL, throwOnLockFailure = false)
+    @DistributedLock(name = "jpa-timeseries-cleanup", lockAtLeastFor = "59s", lockAtMostFor = "15m", scope = LockScope.GLOBAL, throwOnLockFailure = false)
     public void cleanupExpiredData() {
         if (!timeSeriesProperty.getCleanup().isEnabled()) {
             return;
@@ -102,26 +120,38 @@ public class JpaTimeSeriesDataCleanupScheduler {
 
         TenantValidationBypass.run(() -> {
             long startTime = System.currentTimeMillis();
+            long deadline = startTime + timeSeriesProperty.getCleanup().getTimeBudget().toMillis();
             int totalDeleted = 0;
-            
+            boolean completed = true;
+
             for (Map.Entry<String, Duration> entry : retentionPolicies.entrySet()) {
                 String category = entry.getKey();
                 Duration retention = entry.getValue();
 
                 try {
-                    int deleted = cleanupByCategory(category, retention);
-                    totalDeleted += deleted;
+                    CleanupResult result = cleanupByCategory(category, retention, deadline);
+                    totalDeleted += result.deleted();
 
-                    if (timeSeriesProperty.getCleanup().isLogStatistics() && deleted > 0) {
+                    if (timeSeriesProperty.getCleanup().isLogStatistics() && result.deleted() > 0) {
                         log.info("Cleaned up {} records from category '{}' with retention policy {}",
-                                deleted, category, retention);
+                                result.deleted(), category, retention);
+                    }
+                    if (!result.completed()) {
+                        completed = false;
+                        break;
                     }
                 } catch (Exception e) {
                     log.error("Failed to cleanup category '{}': {}", category, e.getMessage(), e);
                 }
             }
-            
+
             long elapsed = System.currentTimeMillis() - startTime;
+            runTimer.record(elapsed, TimeUnit.MILLISECONDS);
+            if (!completed) {
+                budgetExhaustedCounter.increment();
+                log.warn("Time-series data cleanup stopped after its time budget of {}, the remaining expired data is deleted by the next run",
+                        timeSeriesProperty.getCleanup().getTimeBudget());
+            }
             if (timeSeriesProperty.getCleanup().isLogStatistics()) {
                 log.info("Time-series data cleanup completed. Total deleted: {}, Time elapsed: {} ms",
                         totalDeleted, elapsed);
@@ -134,19 +164,21 @@ public class JpaTimeSeriesDataCleanupScheduler {
      *
      * @param category  the category name from retention configuration (e.g., "beaver_iot_telemetry")
      * @param retention the retention duration
-     * @return the number of deleted records
+     * @param deadline  the time in epoch millis at which the run stops
+     * @return the number of deleted records, and whether all expired records of the category are deleted
      */
-    private int cleanupByCategory(String category, Duration retention) {
+    private CleanupResult cleanupByCategory(String category, Duration retention, long deadline) {
         // Resolve category to actual table names (can be multiple tables)
         Collection<String> tableNames = categoryToTableNamesMap.get(category);
 
         if (tableNames == null || tableNames.isEmpty()) {
             log.warn("No table mapping found for category '{}', skipping cleanup", category);
-            return 0;
+            return new CleanupResult(0, true);
         }
 
         long expirationTimestamp = Instant.now().minus(retention).toEpochMilli();
         int batchSize = timeSeriesProperty.getCleanup().getBatchSize();
+        long batchPauseMillis = timeSeriesProperty.getCleanup().getBatchPause().toMillis();
         int totalDeleted = 0;
 
         // Clean up all tables associated with this category
@@ -159,19 +191,41 @@ public class JpaTimeSeriesDataCleanupScheduler {
                 continue;
             }
 
+            Counter deletedCounter = meterRegistry.counter(METRIC_PREFIX + ".deleted.rows", "category", category, "table", tableName);
             try {
+                if (timeSeriesProperty.getCleanup().isDropPartitions()) {
+                    List<String> droppedPartitions = repository.dropPartitionsBefore(expirationTimestamp);
+                    if (!droppedPartitions.isEmpty()) {
+                        meterRegistry.counter(METRIC_PREFIX + ".dropped.partitions", "category", category, "table", tableName)
+                                .increment(droppedPartitions.size());
+                        log.info("Dropped expired partitions {} of table '{}'", droppedPartitions, tableName);
+                    }
+                }
+
                 int deleted = 0;
                 int deletedInBatch;
 
                 do {
+                    if (System.currentTimeMillis() >= deadline) {
+                        log.debug("Deleted {} records from category '{}' (table: '{}') before the time budget ran out",
+                                deleted, category, tableName);
+                        return new CleanupResult(totalDeleted + deleted, false);
+                    }
+                    if (deleted > 0 && batchPauseMillis > 0) {
+                        Thread.sleep(batchPauseMillis);
+                    }
                     // Each batch deletion runs in its own transaction
                     deletedInBatch = repository.deleteByTimeBefore(expirationTimestamp, batchSize);
                     deleted += deletedInBatch;
+                    deletedCounter.increment(deletedInBatch);
                 } while (deletedInBatch == batchSize);
 
                 totalDeleted += deleted;
                 log.debug("Deleted {} records from category '{}' (table: '{}') using batch size {}",
                         deleted, category, tableName, batchSize);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new CleanupResult(totalDeleted, false);
             } catch (Exception e) {
                 log.error("Error deleting expired data from category '{}' (table: '{}'): {}",
                         category, tableName, e.getMessage(), e);
@@ -179,7 +233,7 @@ public class JpaTimeSeriesDataCleanupScheduler {
             }
         }
 
-        return totalDeleted;
+        return new CleanupResult(totalDeleted, true);
     }
 
     /**
@@ -194,9 +248,7 @@ public class JpaTimeSeriesDataCleanupScheduler {
                 continue;
             }
 
-            String repoTableName = getTableNameFromRepository(repo);
-
-            if (tableName.equals(repoTableName)) {
+            if (tableName.equals(repo.getTableName())) {
                 return repo;
             }
         }
@@ -205,22 +257,7 @@ public class JpaTimeSeriesDataCleanupScheduler {
         return null;
     }
 
-    /**
-     * Extract table name from repository's entity class.
-     *
-     * @param repository the JPA time series repository
-     * @return the table name
-     */
-    private String getTableNameFromRepository(JpaTimeSeriesRepository<?> repository) {
-        Class<?> entityClass = repository.getEntityClass();
-
-        // Try to get from @Table annotation
-        Table tableAnnotation = entityClass.getAnnotation(Table.class);
-        if (tableAnnotation == null || tableAnnotation.name().isEmpty()) {
-            throw new IllegalArgumentException("Cannot find table name for entity class: " + entityClass.getName());
-        }
-
-        return tableAnnotation.name();
+    private record CleanupResult(int deleted, boolean completed) {
     }
 
 }
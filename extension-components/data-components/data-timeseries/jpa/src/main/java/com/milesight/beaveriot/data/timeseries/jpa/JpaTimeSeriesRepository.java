@@ -1,9 +1,13 @@
 package com.milesight.beaveriot.data.timeseries.jpa;
 
 import com.milesight.beaveriot.base.utils.StringUtils;
+import com.milesight.beaveriot.data.api.SupportTimeSeries;
 import com.milesight.beaveriot.data.api.TimeSeriesRepository;
 import com.milesight.beaveriot.data.filterable.Filterable;
 import com.milesight.beaveriot.data.jpa.repository.BaseJpaRepository;
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateBucket;
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateQuery;
+import com.milesight.beaveriot.data.model.TimeSeriesAggregation;
 import com.milesight.beaveriot.data.model.TimeSeriesCursor;
 import com.milesight.beaveriot.data.model.TimeSeriesPeriodQuery;
 import com.milesight.beaveriot.data.model.TimeSeriesQueryOrder;
@@ -12,11 +16,18 @@ import com.milesight.beaveriot.data.model.TimeSeriesTimePointQuery;
 import com.milesight.beaveriot.data.support.TimeSeriesDataConverter;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
+import jakarta.persistence.Table;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
 import lombok.Getter;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.ResolvableType;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
@@ -26,6 +37,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.function.Consumer;
 
 /**
@@ -35,6 +47,22 @@ import java.util.function.Consumer;
  * @date 2025/10/11
  */
 public class JpaTimeSeriesRepository<T> implements TimeSeriesRepository<T> {
+    private static final String SELECT_PARTITION_KEY_SQL = """
+            SELECT pg_get_partkeydef(p.oid)
+            FROM pg_partitioned_table pt
+            JOIN pg_class p ON p.oid = pt.partrelid
+            WHERE p.relname = ? AND p.relnamespace = current_schema()::regnamespace
+            """;
+
+    private static final String SELECT_PARTITIONS_SQL = """
+            SELECT quote_ident(n.nspname) || '.' || quote_ident(c.relname), pg_get_expr(c.relpartbound, c.oid)
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            JOIN pg_namespace n ON n.oid = c.relnamespace
+            JOIN pg_class p ON p.oid = i.inhparent
+            WHERE p.relname = ? AND p.relnamespace = current_schema()::regnamespace
+            """;
+
     @Resource
     ApplicationContext applicationContext;
     private BaseJpaRepository<T, ?> jpaRepository;
@@ -43,6 +71,11 @@ public class JpaTimeSeriesRepository<T> implements TimeSeriesRepository<T> {
     private final String timeColumn;
     private final List<String> indexedColumns;
     private final TimeSeriesDataConverter converter;
+    @Getter
+    private final String tableName;
+    private final String timeColumnName;
+    private JdbcTemplate jdbcTemplate;
+    private volatile String databaseProductName;
 
     public JpaTimeSeriesRepository(
             Class<T> entityClass,
@@ -54,6 +87,21 @@ public class JpaTimeSeriesRepository<T> implements TimeSeriesRepository<T> {
         this.timeColumn = timeColumn;
         this.indexedColumns = indexedColumns;
         this.converter = converter;
+        this.tableName = resolveTableName(entityClass);
+        this.timeColumnName = StringUtils.toSnakeCase(timeColumn);
+    }
+
+    private static String resolveTableName(Class<?> entityClass) {
+        SupportTimeSeries supportTimeSeries = entityClass.getAnnotation(SupportTimeSeries.class);
+        if (supportTimeSeries != null && !supportTimeSeries.tableName().isEmpty()) {
+            return supportTimeSeries.tableName();
+        }
+
+        Table table = entityClass.getAnnotation(Table.class);
+        if (table == null || table.name().isEmpty()) {
+            throw new IllegalArgumentException("Cannot find table name for entity class: " + entityClass.getName());
+        }
+        return table.name();
     }
 
     @PostConstruct
@@ -61,6 +109,7 @@ public class JpaTimeSeriesRepository<T> implements TimeSeriesRepository<T> {
     private void initJpaRepo() {
         String beanName = applicationContext.getBeanNamesForType(ResolvableType.forClassWithGenerics(BaseJpaRepository.class, entityClass, Long.class))[0];
         jpaRepository = (BaseJpaRepository<T, ?>) applicationContext.getBean(beanName);
+        jdbcTemplate = applicationContext.getBean(JdbcTemplate.class);
     }
 
     @Override
@@ -146,6 +195,107 @@ public class JpaTimeSeriesRepository<T> implements TimeSeriesRepository<T> {
         return TimeSeriesResult.of(result, nextCursor);
     }
 
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimeSeriesResult<TimeSeriesAggregateBucket> aggregate(TimeSeriesAggregateQuery query) {
+        query.validate();
+        query.validate(indexedColumns);
+
+        Consumer<Filterable> filterable = toIndexFilterable(query.getIndexedKeyValues())
+                .andThen(fe -> fe.ge(timeColumn, query.getStartTimestamp()).lt(timeColumn, query.getEndTimestamp()));
+        if (query.getFilterable() != null) {
+            filterable = filterable.andThen(query.getFilterable());
+        }
+
+        String valueColumn = StringUtils.toCamelCase(query.getValueColumn());
+        Long windowMillis = query.getWindowMillis();
+        if (query.getAggregation() == TimeSeriesAggregation.LAST) {
+            return aggregateLast(filterable, valueColumn, query.getStartTimestamp(), windowMillis);
+        }
+
+        List<Tuple> tuples = jpaRepository.findTuples(filterable, (root, criteriaQuery, cb) -> {
+            Path value = root.get(valueColumn);
+            Expression<?> aggregate = switch (query.getAggregation()) {
+                case MIN -> cb.least((Expression<Comparable>) value);
+                case MAX -> cb.greatest((Expression<Comparable>) value);
+                case AVG -> cb.avg((Expression<Number>) value);
+                case SUM -> cb.sum((Expression<Number>) value);
+                case COUNT -> cb.count(value);
+                default -> throw new IllegalArgumentException("Unsupported aggregation: " + query.getAggregation());
+            };
+            if (windowMillis == null) {
+                criteriaQuery.multiselect(aggregate, cb.count(value));
+            } else {
+                Expression<Long> window = toWindow(cb, root.get(timeColumn), windowMillis);
+                Expression<Long> windowStart = cb.min(window);
+                criteriaQuery.multiselect(windowStart, aggregate, cb.count(value)).groupBy(window).orderBy(cb.asc(windowStart));
+            }
+        });
+
+        List<TimeSeriesAggregateBucket> buckets = new ArrayList<>();
+        for (Tuple tuple : tuples) {
+            int offset = windowMillis == null ? 0 : 1;
+            Long count = (Long) tuple.get(offset + 1);
+            if (count == null || count == 0) {
+                continue;
+            }
+            Long timestamp = windowMillis == null ? query.getStartTimestamp() : ((Number) tuple.get(0)).longValue();
+            buckets.add(TimeSeriesAggregateBucket.of(timestamp, tuple.get(offset), count));
+        }
+        return TimeSeriesResult.of(buckets);
+    }
+
+    /**
+     * The value of the latest point of each window, found by the latest timestamp of the window
+     */
+    private TimeSeriesResult<TimeSeriesAggregateBucket> aggregateLast(Consumer<Filterable> filterable, String valueColumn, Long startTimestamp, Long windowMillis) {
+        Consumer<Filterable> valueFilterable = filterable.andThen(fe -> fe.isNotNull(valueColumn));
+        if (windowMillis == null) {
+            List<T> latest = jpaRepository.findAll(valueFilterable, PageRequest.of(0, 1, Sort.by(Sort.Order.desc(timeColumn)))).getContent();
+            if (latest.isEmpty()) {
+                return TimeSeriesResult.of();
+            }
+            Object value = toLowerCamelCaseKeys(converter.toMap(latest.get(0))).get(valueColumn);
+            Long count = jpaRepository.count(valueFilterable);
+            return TimeSeriesResult.of(new ArrayList<>(List.of(TimeSeriesAggregateBucket.of(startTimestamp, value, count))));
+        }
+
+        List<Tuple> tuples = jpaRepository.findTuples(valueFilterable, (root, criteriaQuery, cb) -> {
+            Expression<Long> window = toWindow(cb, root.get(timeColumn), windowMillis);
+            Expression<Long> windowStart = cb.min(window);
+            criteriaQuery.multiselect(windowStart, cb.max(root.get(timeColumn)), cb.count(root)).groupBy(window).orderBy(cb.asc(windowStart));
+        });
+        if (tuples.isEmpty()) {
+            return TimeSeriesResult.of();
+        }
+
+        Long[] latestTimestamps = tuples.stream().map(tuple -> ((Number) tuple.get(1)).longValue()).toArray(Long[]::new);
+        Map<Long, Object> timestampToValue = new HashMap<>();
+        jpaRepository.findAll(valueFilterable.andThen(fe -> fe.in(timeColumn, latestTimestamps))).forEach(item -> {
+            Map<String, Object> map = toLowerCamelCaseKeys(converter.toMap(item));
+            timestampToValue.putIfAbsent(((Number) map.get(timeColumn)).longValue(), map.get(valueColumn));
+        });
+
+        List<TimeSeriesAggregateBucket> buckets = tuples.stream()
+                .map(tuple -> TimeSeriesAggregateBucket.of(((Number) tuple.get(0)).longValue(),
+                        timestampToValue.get(((Number) tuple.get(1)).longValue()), (Long) tuple.get(2)))
+                .filter(bucket -> Objects.nonNull(bucket.getValue()))
+                .toList();
+        return TimeSeriesResult.of(new ArrayList<>(buckets));
+    }
+
+    /**
+     * Start of the epoch aligned window of the time column.
+     * <p>
+     * The window is only used as grouping expression, the start of a group is selected as the minimum of the window
+     * expression over the group. Selecting the window expression itself would require the database to prove it
+     * identical to the grouped one, which PostgreSQL can't do when the window width is bound as a separate parameter
+     * in each clause.
+     */
+    private static Expression<Long> toWindow(CriteriaBuilder cb, Expression<Long> time, long windowMillis) {
+        return cb.diff(time, cb.function("mod", Long.class, time, cb.literal(windowMillis)));
+    }
+
     @Override
     public void save(List<T> ditemList) {
         jpaRepository.saveAll(ditemList);
@@ -172,6 +322,7 @@ public class JpaTimeSeriesRepository<T> implements TimeSeriesRepository<T> {
     /**
      * Delete a single batch of records before the specified timestamp in a new transaction.
      * Using REQUIRES_NEW to ensure each batch is in its own independent transaction.
+     * The rows are deleted by one set-based statement, they are not loaded into the persistence context.
      *
      * @param timestamp the timestamp before which data should be deleted
      * @param limit the limit size for this deletion operation
@@ -179,14 +330,86 @@ public class JpaTimeSeriesRepository<T> implements TimeSeriesRepository<T> {
      */
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public int deleteByTimeBefore(long timestamp, int limit) {
-        Consumer<Filterable> filterable = fe -> fe.lt(timeColumn, timestamp);
-        List<T> toDelete = jpaRepository.findAll(filterable, PageRequest.of(0, limit)).stream().toList();
+        return jdbcTemplate.update(deleteBatchSql(isPostgres(), tableName, timeColumnName), timestamp, limit);
+    }
+
+    static String deleteBatchSql(boolean postgres, String tableName, String timeColumnName) {
+        // the time column is qualified, as it may be named like a keyword, e.g. "timestamp"
+        return postgres
+                // (tableoid, ctid) identifies a row of a partitioned table as well
+                ? "DELETE FROM " + tableName + " WHERE (tableoid, ctid) IN (SELECT t.tableoid, t.ctid FROM " + tableName
+                        + " t WHERE t." + timeColumnName + " < ? LIMIT ?)"
+                : "DELETE FROM " + tableName + " t WHERE t." + timeColumnName + " < ? FETCH FIRST ? ROWS ONLY";
+    }
+
+    /**
+     * Drop the partitions of the table whose upper bound is not after the specified timestamp.
+     * Only applies to a PostgreSQL table of the current schema partitioned by range of the time column, nothing is
+     * dropped for other tables.
+     *
+     * @param timestamp the timestamp before which data should be deleted
+     * @return the qualified names of the dropped partitions
+     */
+    public List<String> dropPartitionsBefore(long timestamp) {
+        if (!isPostgres()) {
+            return List.of();
+        }
+
+        List<String> partitionKeys = jdbcTemplate.queryForList(SELECT_PARTITION_KEY_SQL, String.class, tableName);
+        if (partitionKeys.size() != 1 || !isRangePartitionedBy(partitionKeys.get(0), timeColumnName)) {
+            return List.of();
+        }
 
-        if (!toDelete.isEmpty()) {
-            jpaRepository.deleteAll(toDelete);
+        List<String> dropped = new ArrayList<>();
+        jdbcTemplate.query(SELECT_PARTITIONS_SQL, rs -> {
+            String partitionName = rs.getString(1);
+            Long upperBound = parseUpperBound(rs.getString(2));
+            if (upperBound != null && upperBound <= timestamp) {
+                dropped.add(partitionName);
+            }
+        }, tableName);
+
+        dropped.forEach(partitionName -> jdbcTemplate.execute("DROP TABLE IF EXISTS " + partitionName));
+        return dropped;
+    }
+
+    /**
+     * Whether the partition key, e.g. "RANGE (\"timestamp\")", is the range of the column
+     */
+    static boolean isRangePartitionedBy(String partitionKeyDefinition, String columnName) {
+        if (partitionKeyDefinition == null) {
+            return false;
+        }
+        String normalized = partitionKeyDefinition.replace("\"", "").replaceAll("\\s+", "").toLowerCase();
+        return normalized.equals("range(" + columnName.toLowerCase() + ")");
+    }
+
+    /**
+     * Parse the upper bound of a range partition, e.g. "FOR VALUES FROM ('0') TO ('1000')"
+     *
+     * @return the upper bound, or null for the default partition and unbounded ranges
+     */
+    static Long parseUpperBound(String partitionBound) {
+        if (partitionBound == null) {
+            return null;
         }
+        int toIndex = partitionBound.lastIndexOf(" TO (");
+        if (toIndex < 0) {
+            return null;
+        }
+        String upperBound = partitionBound.substring(toIndex + 5, partitionBound.lastIndexOf(')')).replace("'", "").trim();
+        try {
+            return Long.valueOf(upperBound);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
 
-        return toDelete.size();
+    private boolean isPostgres() {
+        if (databaseProductName == null) {
+            databaseProductName = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        }
+        return "PostgreSQL".equalsIgnoreCase(databaseProductName);
     }
 
 }
@@ -0,0 +1,142 @@
+package com.milesight.beaveriot.data.timeseries.jpa
+
+import com.milesight.beaveriot.data.jpa.BaseJpaRepositoryImpl
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateQuery
+import com.milesight.beaveriot.data.model.TimeSeriesAggregation
+import com.milesight.beaveriot.data.support.TimeSeriesDataConverter
+import jakarta.persistence.Column
+import jakarta.persistence.Entity
+import jakarta.persistence.EntityManager
+import jakarta.persistence.Id
+import jakarta.persistence.Table
+import org.hibernate.SessionFactory
+import org.hibernate.boot.MetadataSources
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder
+import spock.lang.Specification
+
+/**
+ * @author leon
+ */
+class JpaTimeSeriesAggregateTest extends Specification {
+
+    @Entity
+    @Table(name = "t_test_aggregate")
+    static class TestPoint {
+        @Id
+        Long id
+
+        Long deviceId
+
+        @Column(name = "point_time")
+        Long timestamp
+
+        Long valueLong
+    }
+
+    static class TestPointConverter extends TimeSeriesDataConverter {
+        @Override
+        Map<String, Object> toMap(Object po) {
+            def point = (TestPoint) po
+            return [id: point.id, deviceId: point.deviceId, timestamp: point.timestamp, valueLong: point.valueLong]
+        }
+    }
+
+    SessionFactory sessionFactory
+
+    EntityManager entityManager
+
+    JpaTimeSeriesRepository<TestPoint> repository
+
+    def setup() {
+        def registry = new StandardServiceRegistryBuilder()
+                .applySetting("hibernate.connection.url", "jdbc:h2:mem:aggregate;MODE=PostgreSQL;DB_CLOSE_DELAY=-1")
+                .applySetting("hibernate.connection.username", "sa")
+                .applySetting("hibernate.connection.password", "")
+                .applySetting("hibernate.hbm2ddl.auto", "create-drop")
+                .build()
+        sessionFactory = new MetadataSources(registry).addAnnotatedClass(TestPoint).buildMetadata().buildSessionFactory()
+        entityManager = sessionFactory.createEntityManager()
+
+        // device 1 has a value every second from 1s to 6s, 5s has no value, device 2 is not aggregated
+        entityManager.transaction.begin()
+        [1000L: 3L, 2000L: 1L, 3000L: 4L, 4000L: 1L, 5000L: null, 6000L: 5L].eachWithIndex { timestamp, value, index ->
+            entityManager.persist(new TestPoint(id: (index + 1) as Long, deviceId: 1L, timestamp: timestamp, valueLong: value))
+        }
+        entityManager.persist(new TestPoint(id: 100L, deviceId: 2L, timestamp: 2000L, valueLong: 100L))
+        entityManager.transaction.commit()
+
+        repository = new JpaTimeSeriesRepository<>(TestPoint, "timestamp", ["deviceId"], new TestPointConverter())
+        repository.@jpaRepository = new BaseJpaRepositoryImpl<TestPoint, Long>(TestPoint, entityManager)
+    }
+
+    def cleanup() {
+        entityManager.close()
+        sessionFactory.close()
+    }
+
+    TimeSeriesAggregateQuery query(TimeSeriesAggregation aggregation, Long windowMillis) {
+        def query = new TimeSeriesAggregateQuery()
+        query.indexedKeyValues = [deviceId: 1L]
+        query.startTimestamp = 1000L
+        query.endTimestamp = 7000L
+        query.valueColumn = "value_long"
+        query.aggregation = aggregation
+        query.windowMillis = windowMillis
+        return query
+    }
+
+    def "whole range should be aggregated into one bucket at the start of the period"() {
+        when:
+        def buckets = repository.aggregate(query(aggregation, null)).content
+
+        then:
+        buckets.size() == 1
+        buckets[0].timestamp == 1000L
+        buckets[0].value == expected
+        buckets[0].count == 5L
+
+        where:
+        aggregation                 | expected
+        TimeSeriesAggregation.LAST  | 5L
+        TimeSeriesAggregation.MIN   | 1L
+        TimeSeriesAggregation.MAX   | 5L
+        TimeSeriesAggregation.SUM   | 14L
+        TimeSeriesAggregation.AVG   | 2.8d
+        TimeSeriesAggregation.COUNT | 5L
+    }
+
+    def "points should be aggregated in epoch aligned windows"() {
+        when:
+        def buckets = repository.aggregate(query(aggregation, 2000L)).content
+
+        then:
+        buckets*.timestamp == [0L, 2000L, 4000L, 6000L]
+        buckets*.value == expected
+        buckets*.count == [1L, 2L, 1L, 1L]
+
+        where:
+        aggregation                 | expected
+        TimeSeriesAggregation.LAST  | [3L, 4L, 1L, 5L]
+        TimeSeriesAggregation.MIN   | [3L, 1L, 1L, 5L]
+        TimeSeriesAggregation.MAX   | [3L, 4L, 1L, 5L]
+        TimeSeriesAggregation.SUM   | [3L, 5L, 1L, 5L]
+        TimeSeriesAggregation.COUNT | [1L, 2L, 1L, 1L]
+    }
+
+    def "period without points should have no bucket"() {
+        given:
+        def emptyQuery = query(aggregation, windowMillis)
+        emptyQuery.startTimestamp = 10_000L
+        emptyQuery.endTimestamp = 20_000L
+
+        expect:
+        repository.aggregate(emptyQuery).content.isEmpty()
+
+        where:
+        aggregation                | windowMillis
+        TimeSeriesAggregation.SUM  | null
+        TimeSeriesAggregation.SUM  | 2000L
+        TimeSeriesAggregation.LAST | null
+        TimeSeriesAggregation.LAST | 2000L
+    }
+}
@@ -0,0 +1,101 @@
+package com.milesight.beaveriot.data.timeseries.jpa
+
+import jakarta.persistence.Table
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.jdbc.datasource.SingleConnectionDataSource
+import spock.lang.Specification
+
+/**
+ * @author leon
+ */
+class JpaTimeSeriesRepositoryTest extends Specification {
+
+    @Table(name = "t_test_series")
+    static class TestSeries {
+    }
+
+    JdbcTemplate jdbcTemplate
+
+    SingleConnectionDataSource dataSource
+
+    JpaTimeSeriesRepository<TestSeries> repository
+
+    def setup() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:timeseries;DB_CLOSE_DELAY=-1", "sa", "", true)
+        jdbcTemplate = new JdbcTemplate(dataSource)
+        jdbcTemplate.execute("CREATE TABLE t_test_series (id BIGINT PRIMARY KEY, \"TIMESTAMP\" BIGINT NOT NULL)")
+        (1..10).each { jdbcTemplate.update("INSERT INTO t_test_series VALUES (?, ?)", it, it * 1000L) }
+
+        repository = new JpaTimeSeriesRepository<>(TestSeries, "timestamp", [], null)
+        repository.jdbcTemplate = jdbcTemplate
+    }
+
+    def cleanup() {
+        jdbcTemplate.execute("DROP TABLE t_test_series")
+        dataSource.destroy()
+    }
+
+    def "should delete the rows before the timestamp in batches"() {
+        expect:
+        repository.deleteByTimeBefore(8000L, 3) == 3
+        repository.deleteByTimeBefore(8000L, 3) == 3
+        repository.deleteByTimeBefore(8000L, 3) == 1
+        repository.deleteByTimeBefore(8000L, 3) == 0
+        jdbcTemplate.queryForList("SELECT \"TIMESTAMP\" FROM t_test_series ORDER BY 1", Long) == [8000L, 9000L, 10000L]
+    }
+
+    def "should build the batch delete of postgres by row identity"() {
+        expect:
+        JpaTimeSeriesRepository.deleteBatchSql(true, "t_test_series", "timestamp") ==
+                "DELETE FROM t_test_series WHERE (tableoid, ctid) IN (SELECT t.tableoid, t.ctid FROM t_test_series t WHERE t.timestamp < ? LIMIT ?)"
+    }
+
+    def "should run the postgres batch delete shape on h2 with row ids"() {
+        given: "h2 has no tableoid and ctid, _ROWID_ stands for the row identity"
+        def sql = JpaTimeSeriesRepository.deleteBatchSql(true, "t_test_series", "timestamp")
+                .replace("(tableoid, ctid)", "_ROWID_")
+                .replace("t.tableoid, t.ctid", "t._ROWID_")
+
+        expect:
+        jdbcTemplate.update(sql, 5000L, 2) == 2
+        jdbcTemplate.update(sql, 5000L, 10) == 2
+        jdbcTemplate.queryForObject("SELECT COUNT(*) FROM t_test_series", Long) == 6L
+    }
+
+    def "should not drop partitions of other databases"() {
+        expect:
+        repository.dropPartitionsBefore(Long.MAX_VALUE) == []
+        jdbcTemplate.queryForObject("SELECT COUNT(*) FROM t_test_series", Long) == 10L
+    }
+
+    def "should parse the upper bound of a range partition"() {
+        expect:
+        JpaTimeSeriesRepository.parseUpperBound(bound) == expected
+
+        where:
+        bound                                                    | expected
+        "FOR VALUES FROM ('0') TO ('1000')"                      | 1000L
+        "FOR VALUES FROM ('1700000000000') TO ('1700086400000')" | 1700086400000L
+        "FOR VALUES FROM (MINVALUE) TO ('5')"                    | 5L
+        "FOR VALUES FROM ('0') TO (MAXVALUE)"                    | null
+        "DEFAULT"                                                | null
+        "FOR VALUES IN ('a')"                                    | null
+        null                                                     | null
+    }
+
+    def "should only accept a range partition key of the time column"() {
+        expect:
+        JpaTimeSeriesRepository.isRangePartitionedBy(definition, "timestamp") == expected
+
+        where:
+        definition              | expected
+        "RANGE (\"timestamp\")" | true
+        "RANGE (timestamp)"     | true
+        "range ( timestamp )"   | true
+        "RANGE (id)"            | false
+        "LIST (timestamp)"      | false
+        "HASH (timestamp)"      | false
+        "RANGE (timestamp, id)" | false
+        null                    | false
+    }
+}
@@ -1,7 +1,9 @@
 package com.milesight.beaveriot.metrics.autoconfigure;
 
 import com.milesight.beaveriot.metrics.camel.CamelMicrometerRoutePolicy;
+import com.milesight.beaveriot.rule.support.CompiledExpressionCache;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
 import org.apache.camel.CamelContext;
 import org.apache.camel.NamedNode;
 import org.apache.camel.component.micrometer.eventnotifier.MicrometerRouteEventNotifier;
@@ -20,6 +22,8 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class CamelMetricsAutoConfiguration {
 
+    private static final String EXPRESSION_CACHE_NAME = "rule-expression";
+
     public CamelMetricsAutoConfiguration(CamelContext camelContext, CamelMetricsConfiguration configuration, MeterRegistry meterRegistry, ApplicationEventPublisher applicationEventPublisher) {
         if (meterRegistry != null) {
             configureMicrometer(camelContext, configuration, meterRegistry, applicationEventPublisher);
@@ -54,6 +58,8 @@ public class CamelMetricsAutoConfiguration {
             notifier.setMeterRegistry(meterRegistry);
             managementStrategy.addEventNotifier(notifier);
         }
+
+        GuavaCacheMetrics.monitor(meterRegistry, CompiledExpressionCache.getCache(), EXPRESSION_CACHE_NAME);
     }
 
 }
@@ -16,14 +16,16 @@ import io.moquette.interception.AbstractInterceptHandler;
 import io.moquette.interception.messages.InterceptConnectMessage;
 import io.moquette.interception.messages.InterceptConnectionLostMessage;
 import io.moquette.interception.messages.InterceptPublishMessage;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.handler.codec.mqtt.MqttMessageBuilders;
 import io.netty.handler.codec.mqtt.MqttQoS;
 import lombok.extern.slf4j.*;
 import lombok.*;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Properties;
 
@@ -58,17 +60,29 @@ public class EmbeddedMqttBrokerBridge extends AbstractMqttBrokerBridge {
 
     @Override
     public void publish(String topic, byte[] payload, MqttQoS qos, boolean retained) {
+        // the broker releases the buffer once the message is delivered to all the sessions
+        val buffer = toDirectBuffer(payload);
         val message = MqttMessageBuilders.publish()
                 .topicName(topic)
                 .retained(retained)
                 .qos(qos)
-                .payload(Unpooled.copiedBuffer(payload))
+                .payload(buffer)
                 .build();
-        mqttBroker.internalPublish(message, "ADMIN");
+        try {
+            mqttBroker.internalPublish(message, "ADMIN");
+        } catch (RuntimeException e) {
+            ReferenceCountUtil.safeRelease(buffer);
+            throw e;
+        }
 
         // internal publish won't trigger publish listener, so we need to trigger it manually
-        onPublish(new MqttMessageEvent(topic, payload));
-        onBroadcast(new MqttMessageEvent(topic, payload));
+        val event = new MqttMessageEvent(topic, payload);
+        onPublish(event);
+        onBroadcast(event);
+    }
+
+    ByteBuf toDirectBuffer(byte[] payload) {
+        return PooledByteBufAllocator.DEFAULT.directBuffer(payload.length).writeBytes(payload);
     }
 
     @Override
@@ -96,10 +110,14 @@ public class EmbeddedMqttBrokerBridge extends AbstractMqttBrokerBridge {
         @Override
         public void onPublish(InterceptPublishMessage msg) {
             val topic = msg.getTopicName();
-            val payload = msg.getPayload().toString(StandardCharsets.UTF_8);
-            log.debug("Received on topic: '" + topic + "', content: '" + payload + "'");
-            EmbeddedMqttBrokerBridge.this.onPublish(new MqttMessageEvent(topic, payload.getBytes()));
-            EmbeddedMqttBrokerBridge.this.onBroadcast(new MqttMessageEvent(topic, payload.getBytes()));
+            // the only copy of the payload, the buffer is released when this method returns while the listeners
+            // are run asynchronously
+            val event = new MqttMessageEvent(topic, ByteBufUtil.getBytes(msg.getPayload()));
+            if (log.isDebugEnabled()) {
+                log.debug("Received on topic: '{}', content: '{}'", topic, event.getPayloadAsString());
+            }
+            EmbeddedMqttBrokerBridge.this.onPublish(event);
+            EmbeddedMqttBrokerBridge.this.onBroadcast(event);
             super.onPublish(msg);
         }
 
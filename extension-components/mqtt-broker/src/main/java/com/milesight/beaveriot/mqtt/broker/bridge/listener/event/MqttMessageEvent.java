@@ -1,15 +1,24 @@
 package com.milesight.beaveriot.mqtt.broker.bridge.listener.event;
 
+import com.milesight.beaveriot.context.mqtt.model.AbstractMqttPayloadMessage;
 import lombok.*;
 
+/**
+ * A message published to the broker. The same event may be handed to several listeners, so listeners must not modify
+ * the payload.
+ */
 @Data
-@Builder
+@ToString(callSuper = true)
+@EqualsAndHashCode(callSuper = true)
 @NoArgsConstructor
-@AllArgsConstructor
-public class MqttMessageEvent {
+public class MqttMessageEvent extends AbstractMqttPayloadMessage {
 
     String topic;
 
-    byte[] payload;
+    @Builder
+    public MqttMessageEvent(String topic, byte[] payload) {
+        super(payload);
+        this.topic = topic;
+    }
 
 }
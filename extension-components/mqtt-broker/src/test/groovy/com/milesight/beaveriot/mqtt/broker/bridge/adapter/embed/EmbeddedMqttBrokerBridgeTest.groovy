@@ -0,0 +1,130 @@
+package com.milesight.beaveriot.mqtt.broker.bridge.adapter.embed
+
+import com.milesight.beaveriot.mqtt.broker.bridge.AbstractMqttBrokerBridge
+import com.milesight.beaveriot.mqtt.broker.bridge.auth.MqttAuthProvider
+import com.milesight.beaveriot.mqtt.broker.bridge.listener.MqttEventListener
+import com.milesight.beaveriot.mqtt.broker.bridge.listener.event.MqttMessageEvent
+import io.moquette.interception.AbstractInterceptHandler
+import io.moquette.interception.messages.InterceptPublishMessage
+import io.netty.buffer.ByteBuf
+import io.netty.buffer.Unpooled
+import io.netty.handler.codec.mqtt.MqttMessageBuilders
+import io.netty.handler.codec.mqtt.MqttQoS
+import org.springframework.core.task.TaskExecutor
+import spock.lang.Specification
+
+import java.nio.ReadOnlyBufferException
+
+/**
+ * @author leon
+ */
+class EmbeddedMqttBrokerBridgeTest extends Specification {
+
+    static final byte[] NON_UTF8_PAYLOAD = [0xC3, 0x28, 0xFF, 0x00, 0x80] as byte[]
+
+    EmbeddedMqttBrokerBridge bridge
+
+    List<MqttMessageEvent> published = []
+
+    List<MqttMessageEvent> broadcast = []
+
+    def setup() {
+        bridge = new EmbeddedMqttBrokerBridge(Mock(MqttAuthProvider), new Properties())
+        def executor = AbstractMqttBrokerBridge.getDeclaredField("executor")
+        executor.accessible = true
+        executor.set(bridge, { Runnable task -> task.run() } as TaskExecutor)
+        bridge.addListener(new MqttEventListener() {
+            @Override
+            void onPublish(MqttMessageEvent event) {
+                published << event
+            }
+
+            @Override
+            void onBroadcast(MqttMessageEvent event) {
+                broadcast << event
+            }
+        })
+    }
+
+    void receive(String topic, ByteBuf payload) {
+        def message = MqttMessageBuilders.publish()
+                .topicName(topic)
+                .qos(MqttQoS.AT_MOST_ONCE)
+                .payload(payload)
+                .build()
+        def interceptHandler = EmbeddedMqttBrokerBridge.getDeclaredField("interceptHandler")
+        interceptHandler.accessible = true
+        ((AbstractInterceptHandler) interceptHandler.get(bridge)).onPublish(new InterceptPublishMessage(message, "client-1", "user-1"))
+    }
+
+    def "received payload should be copied once and shared by all the listeners"() {
+        given:
+        def payload = Unpooled.copiedBuffer("hello" as byte[])
+        payload.retain()
+
+        when:
+        receive("beaver-iot/test", payload)
+        payload.setByte(0, (int) 'j' as char)
+
+        then:
+        published.size() == 1
+        broadcast.size() == 1
+        published[0].is(broadcast[0])
+        published[0].topic == "beaver-iot/test"
+        published[0].payload == "hello" as byte[]
+        published[0].payloadAsString == "hello"
+
+        cleanup:
+        payload.release(payload.refCnt())
+    }
+
+    def "payload that is not UTF-8 should be passed without conversion"() {
+        when:
+        receive("beaver-iot/test", Unpooled.wrappedBuffer(NON_UTF8_PAYLOAD.clone()))
+        def event = published[0]
+        def buffer = event.payloadBuffer
+        def bytes = new byte[buffer.remaining()]
+        buffer.get(bytes)
+
+        then:
+        event.payload == NON_UTF8_PAYLOAD
+        bytes == NON_UTF8_PAYLOAD
+    }
+
+    def "payload buffer should be a read-only view"() {
+        given:
+        receive("beaver-iot/test", Unpooled.wrappedBuffer("hello" as byte[]))
+        def buffer = published[0].payloadBuffer
+
+        when:
+        buffer.put(0, (byte) 0)
+
+        then:
+        buffer.isReadOnly()
+        thrown(ReadOnlyBufferException)
+        published[0].payload == "hello" as byte[]
+    }
+
+    def "pooled direct buffer should be released when the broker fails to publish"() {
+        given: "a broker that is not started"
+        List<ByteBuf> allocated = []
+        def failing = new EmbeddedMqttBrokerBridge(Mock(MqttAuthProvider), new Properties()) {
+            @Override
+            ByteBuf toDirectBuffer(byte[] payload) {
+                def buffer = super.toDirectBuffer(payload)
+                allocated << buffer
+                return buffer
+            }
+        }
+        failing.addListener(Mock(MqttEventListener))
+
+        when:
+        failing.publish("beaver-iot/test", NON_UTF8_PAYLOAD, MqttQoS.AT_MOST_ONCE, false)
+
+        then:
+        thrown(IllegalStateException)
+        allocated.size() == 1
+        allocated[0].isDirect()
+        allocated[0].refCnt() == 0
+    }
+}
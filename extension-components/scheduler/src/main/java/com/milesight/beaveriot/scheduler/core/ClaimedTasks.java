@@ -0,0 +1,30 @@
+package com.milesight.beaveriot.scheduler.core;
+
+import com.milesight.beaveriot.scheduler.core.model.ScheduledTask;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tasks claimed by this node
+ *
+ * @param tasks          claimed tasks, to be run by this node
+ * @param lastTaskIds    ids of the tasks without next execution, their callbacks are terminated once run
+ * @param pendingTaskIds ids of the tasks whose next executions are not created yet, they are created when the tasks
+ *                       are run
+ */
+public record ClaimedTasks(List<ScheduledTask> tasks, Set<Long> lastTaskIds, Set<Long> pendingTaskIds) {
+
+    public static final ClaimedTasks EMPTY = new ClaimedTasks(List.of(), Set.of(), Set.of());
+
+    /**
+     * @return whether the task has no next execution, null if its next executions are not created yet
+     */
+    public Boolean isLastTask(ScheduledTask task) {
+        if (pendingTaskIds.contains(task.getId())) {
+            return null;
+        }
+        return lastTaskIds.contains(task.getId());
+    }
+
+}
@@ -19,6 +19,7 @@ import lombok.val;
 import net.javacrumbs.shedlock.core.LockProvider;
 import net.javacrumbs.shedlock.spring.aop.ScopedLockConfiguration;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
@@ -27,7 +28,6 @@ import org.springframework.util.CollectionUtils;
 
 import java.time.Duration;
 import java.time.ZonedDateTime;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -42,6 +42,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class ScheduledTaskExecutor {
 
     public static final int MAX_ATTEMPTS = 3;
+    public static final long TICK_DURATION_MILLIS = 100;
     public static final long PRE_FETCH_RANGE = TimeUnit.MINUTES.toSeconds(1);
 
     public static final long TASK_EXPIRATION = TimeUnit.MINUTES.toSeconds(15);
@@ -52,9 +53,15 @@ public class ScheduledTaskExecutor {
             .concurrencyLevel(4)
             .build();
     private static final ExecutorService taskExecutor = new ThreadPoolExecutor(1, 20, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
-    private static final HashedWheelTimer hashedWheelTimer = new HashedWheelTimer(Executors.defaultThreadFactory(), 1000, TimeUnit.MILLISECONDS, 512, true, -1, taskExecutor);
+    private static final HashedWheelTimer hashedWheelTimer = new HashedWheelTimer(Executors.defaultThreadFactory(), TICK_DURATION_MILLIS, TimeUnit.MILLISECONDS, 512, true, -1, taskExecutor);
     private final AtomicBoolean running = new AtomicBoolean(true);
 
+    @Value("${scheduler.scan-interval:PT10S}")
+    private Duration scanInterval;
+
+    @Autowired
+    private SchedulerNodeRegistry schedulerNodeRegistry;
+
     @Autowired
     private ScheduledTaskRepository scheduledTaskRepository;
 
@@ -75,49 +82,26 @@ public class ScheduledTaskExecutor {
         taskIds.forEach(taskId -> cancelledTaskIds.put(taskId, taskKey));
     }
 
-    @Transactional
-    @Scheduled(cron = "0 * * * * *")
-    @DistributedLock(name = "scheduler", lockAtLeastFor = "59s", lockAtMostFor = "59s", scope = LockScope.GLOBAL, throwOnLockFailure = false)
+    /**
+     * Claim the due tasks of the shards owned by this node, and run them at their execution time
+     */
+    @Scheduled(initialDelayString = "${scheduler.scan-interval:PT10S}", fixedDelayString = "${scheduler.scan-interval:PT10S}")
     public void runTasks() {
         if (!running.get()) {
             log.warn("scheduler is not running");
             return;
         }
 
-        val currentDateTime = ZonedDateTime.now()
-                .withSecond(0)
-                .withNano(0);
-        val currentEpochSecond = currentDateTime.toEpochSecond();
-        log.info("run scheduled tasks: {}", currentEpochSecond);
-
-        scheduler.scanScheduledTasksByChunk(0L, currentEpochSecond + PRE_FETCH_RANGE, 500, tasks -> {
-            tasks = tasks.stream()
-                    // filter out tasks that are running
-                    .filter(t -> t.getAttempts() == 0 || t.getExecutionEpochSecond() < currentEpochSecond - PRE_FETCH_RANGE)
-                    .toList();
-
-            log.info("{} available tasks found", tasks.size());
-
-            val failedTaskIds = new ArrayList<Long>();
-            val runningTaskIds = new ArrayList<Long>();
-            tasks.forEach(task -> {
-                if (task.getAttempts() >= MAX_ATTEMPTS) {
-                    log.info("scheduled task '{}' was failed after {} attempts", task.getId(), task.getAttempts());
-                    failedTaskIds.add(task.getId());
-                    return;
-                }
-                runningTaskIds.add(task.getId());
-                task.setAttempts(task.getAttempts() + 1);
-                runTask(currentDateTime, task);
-            });
+        // a node missing three heartbeats in a row is considered dead
+        val shards = schedulerNodeRegistry.heartbeat(scanInterval.multipliedBy(3));
+        if (shards.isEmpty()) {
+            return;
+        }
 
-            if (!failedTaskIds.isEmpty()) {
-                markAsFailed(failedTaskIds);
-            }
-            if (!runningTaskIds.isEmpty()) {
-                markAsRunning(runningTaskIds);
-            }
-        });
+        val currentEpochSecond = nowEpochSecond();
+        log.debug("run scheduled tasks: {}, shards: {}", currentEpochSecond, shards.size());
+        val claimedTasks = scheduler.claimDueTasks(shards, currentEpochSecond);
+        claimedTasks.tasks().forEach(task -> runTask(ZonedDateTime.now(), task, claimedTasks.isLastTask(task)));
     }
 
     @Transactional
@@ -128,31 +112,29 @@ public class ScheduledTaskExecutor {
     }
 
 
-    private void markAsRunning(ArrayList<Long> runningTaskIds) {
-        scheduledTaskRepository.increaseAttemptsByIds(runningTaskIds);
-    }
-
-    private void markAsFailed(ArrayList<Long> failedTaskIds) {
-        scheduledTaskRepository.updateTriggeredAtAndAttemptsByIds(failedTaskIds, nowEpochSecond());
+    public void runTask(ZonedDateTime taskExecutionDateTime, ScheduledTask task) {
+        runTask(taskExecutionDateTime, task, null);
     }
 
-    public void runTask(ZonedDateTime taskExecutionDateTime, ScheduledTask task) {
-        val now = nowEpochSecond();
-        val delay = task.getExecutionEpochSecond() - now;
+    /**
+     * @param lastTask whether the task has no next execution, null if its next executions are not created yet
+     */
+    private void runTask(ZonedDateTime taskExecutionDateTime, ScheduledTask task, Boolean lastTask) {
+        val delayMillis = task.getExecutionEpochSecond() * 1000 - System.currentTimeMillis();
         try {
-            if (delay <= 1) {
+            if (delayMillis <= TICK_DURATION_MILLIS) {
                 log.debug("run scheduled task immediately '{}'({})", task.getTaskKey(), task.getId());
-                taskExecutor.submit(() -> doRunTask(taskExecutionDateTime, task));
+                taskExecutor.submit(() -> doRunTask(taskExecutionDateTime, task, lastTask));
             } else {
-                log.debug("scheduled task '{}'({}) will be executed after {} seconds", task.getTaskKey(), task.getId(), delay);
-                hashedWheelTimer.newTimeout(timeout -> taskExecutor.submit(() -> doRunTask(taskExecutionDateTime.plusSeconds(delay), task)), delay, TimeUnit.SECONDS);
+                log.debug("scheduled task '{}'({}) will be executed after {} ms", task.getTaskKey(), task.getId(), delayMillis);
+                hashedWheelTimer.newTimeout(timeout -> taskExecutor.submit(() -> doRunTask(taskExecutionDateTime.plus(Duration.ofMillis(delayMillis)), task, lastTask)), delayMillis, TimeUnit.MILLISECONDS);
             }
         } catch (Exception e) {
             log.error("submit task failed: '{}'", task.getTaskKey(), e);
         }
     }
 
-    private void doRunTask(ZonedDateTime taskExecutionDateTime, ScheduledTask task) {
+    private void doRunTask(ZonedDateTime taskExecutionDateTime, ScheduledTask task, Boolean lastTask) {
         if (cancelledTaskIds.getIfPresent(task.getId()) != null) {
             log.info("scheduled task '{}'({}) was cancelled", task.getTaskKey(), task.getId());
             return;
@@ -161,7 +143,7 @@ public class ScheduledTaskExecutor {
         try {
             val callback = scheduler.getCallback(task.getTaskKey());
             if (callback != null) {
-                triggerTaskCallback(task, taskExecutionDateTime, callback);
+                triggerTaskCallback(task, taskExecutionDateTime, callback, lastTask);
             } else {
                 // the callback may be registered on other nodes
                 log.debug("scheduled task callback was not found in local: '{}'", task.getTaskKey());
@@ -172,8 +154,13 @@ public class ScheduledTaskExecutor {
         }
     }
 
-    private void markAsTriggered(ScheduledTask task) {
-        scheduledTaskRepository.updateTriggeredAtByIds(List.of(task.getId()), nowEpochSecond());
+    /**
+     * Mark the task as triggered before its callback is run
+     *
+     * @return false if the task was triggered already, e.g. by a node that claimed it before
+     */
+    private boolean markAsTriggered(ScheduledTask task) {
+        return scheduledTaskRepository.markAsTriggered(task.getId(), nowEpochSecond()) > 0;
     }
 
     @MessageListener
@@ -196,7 +183,7 @@ public class ScheduledTaskExecutor {
                     .build();
             lockProvider.lock(lockConfiguration).ifPresentOrElse(lock -> {
                 try {
-                    triggerTaskCallback(scheduledTask, taskExecutionDateTime, callback);
+                    triggerTaskCallback(scheduledTask, taskExecutionDateTime, callback, null);
                 } catch (Exception e) {
                     log.error("execute task '{}' failed", scheduledTask.getTaskKey(), e);
                 } finally {
@@ -207,9 +194,16 @@ public class ScheduledTaskExecutor {
 
     }
 
-    private void triggerTaskCallback(ScheduledTask scheduledTask, ZonedDateTime taskExecutionDateTime, ScheduledTaskCallback callback) {
-        val nextExecution = scheduler.createNextTask(scheduledTask, taskExecutionDateTime);
-        markAsTriggered(scheduledTask);
+    private void triggerTaskCallback(ScheduledTask scheduledTask, ZonedDateTime taskExecutionDateTime, ScheduledTaskCallback callback, Boolean lastTask) {
+        if (lastTask == null) {
+            val nextTasks = scheduler.createNextTasks(scheduledTask, taskExecutionDateTime);
+            nextTasks.tasks().forEach(task -> runTask(ZonedDateTime.now(), task, nextTasks.isLastTask(task)));
+            lastTask = nextTasks.isLastTask(scheduledTask);
+        }
+        if (!markAsTriggered(scheduledTask)) {
+            log.info("scheduled task '{}'({}) was triggered already", scheduledTask.getTaskKey(), scheduledTask.getId());
+            return;
+        }
 
         if (taskExecutionDateTime.toEpochSecond() - scheduledTask.getExecutionEpochSecond() > TASK_EXPIRATION) {
             log.info("scheduled task '{}'({}) was expired", scheduledTask.getTaskKey(), scheduledTask.getId());
@@ -227,7 +221,7 @@ public class ScheduledTaskExecutor {
 
             callback.accept(scheduledTask);
 
-            if (nextExecution == null) {
+            if (Boolean.TRUE.equals(lastTask)) {
                 // unregister callback
                 messagePubSub.publishAfterCommit(new ScheduledTaskCallbackTerminatedEvent(List.of(scheduledTask.getTaskKey())));
             }
@@ -2,40 +2,54 @@ package com.milesight.beaveriot.scheduler.core;
 
 import com.milesight.beaveriot.data.jpa.repository.BaseJpaRepository;
 import com.milesight.beaveriot.scheduler.core.model.ScheduledTaskPO;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 
 public interface ScheduledTaskRepository extends BaseJpaRepository<ScheduledTaskPO, Long> {
 
-    ScheduledTaskPO findFirstByTaskKeyAndExecutionEpochSecond(String taskKey, Long executionEpochSecond);
-
     @Query("select t from ScheduledTaskPO t where t.taskKey = :taskKey and t.triggeredAt = 0 order by t.executionEpochSecond asc")
     List<ScheduledTaskPO> findAllByTaskKey(@Param("taskKey") String taskKey);
 
-    @Query("select t from ScheduledTaskPO t where t.executionEpochSecond >= :startEpochSecond and t.executionEpochSecond < :endEpochSecond and t.triggeredAt = 0")
-    Page<ScheduledTaskPO> findAllTasksByExecutionEpochSecondBetween(@Param("startEpochSecond") Long startEpochSecond, @Param("endEpochSecond") Long endEpochSecond, Pageable pageable);
+    @Query("select t from ScheduledTaskPO t where t.taskKey in :taskKeys and t.triggeredAt = 0")
+    List<ScheduledTaskPO> findAllByTaskKeyIn(@Param("taskKeys") Collection<String> taskKeys);
+
+    List<ScheduledTaskPO> findAllByClaimToken(Long claimToken);
 
+    /**
+     * Claim the available tasks of the shards which are due before the end time, in one conditional update.
+     * A task is available if it has never been attempted, or if its last attempt is stale and has attempts left.
+     */
     @Modifying
     @Transactional
-    @Query("update ScheduledTaskPO t set t.attempts = t.attempts + 1 where t.id in :ids")
-    void increaseAttemptsByIds(@Param("ids") List<Long> ids);
+    @Query("update ScheduledTaskPO t set t.attempts = t.attempts + 1, t.claimToken = :claimToken " +
+            "where t.shard in :shards and t.triggeredAt = 0 and t.executionEpochSecond < :endEpochSecond " +
+            "and t.attempts < :maxAttempts and (t.attempts = 0 or t.executionEpochSecond < :staleEpochSecond)")
+    int claimDueTasks(@Param("shards") Collection<Integer> shards, @Param("claimToken") Long claimToken,
+                      @Param("endEpochSecond") Long endEpochSecond, @Param("staleEpochSecond") Long staleEpochSecond,
+                      @Param("maxAttempts") Integer maxAttempts);
 
     @Modifying
     @Transactional
-    @Query("update ScheduledTaskPO t set t.triggeredAt = :triggeredAt where t.id in :ids")
-    void updateTriggeredAtByIds(@Param("ids") List<Long> ids, @Param("triggeredAt") Long triggeredAt);
+    @Query("update ScheduledTaskPO t set t.triggeredAt = :triggeredAt, t.attempts = t.attempts + 1 " +
+            "where t.shard in :shards and t.triggeredAt = 0 and t.attempts >= :maxAttempts and t.executionEpochSecond < :staleEpochSecond")
+    int failExhaustedTasks(@Param("shards") Collection<Integer> shards, @Param("staleEpochSecond") Long staleEpochSecond,
+                           @Param("maxAttempts") Integer maxAttempts, @Param("triggeredAt") Long triggeredAt);
 
+    /**
+     * Mark the task as triggered if it was not triggered yet
+     *
+     * @return 1 if the task is marked by this call, 0 if it was triggered or deleted already
+     */
     @Modifying
     @Transactional
-    @Query("update ScheduledTaskPO t set t.triggeredAt = :triggeredAt, t.attempts = t.attempts + 1 where t.id in :ids")
-    void updateTriggeredAtAndAttemptsByIds(@Param("ids") List<Long> ids, @Param("triggeredAt") Long triggeredAt);
+    @Query("update ScheduledTaskPO t set t.triggeredAt = :triggeredAt where t.id = :id and t.triggeredAt = 0")
+    int markAsTriggered(@Param("id") Long id, @Param("triggeredAt") Long triggeredAt);
 
     @Modifying
     @Transactional
@@ -5,12 +5,14 @@ import com.cronutils.model.definition.CronDefinitionBuilder;
 import com.cronutils.model.time.ExecutionTime;
 import com.cronutils.parser.CronParser;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import com.milesight.beaveriot.base.annotations.shedlock.DistributedLock;
 import com.milesight.beaveriot.base.annotations.shedlock.LockScope;
 import com.milesight.beaveriot.base.enums.ErrorCode;
 import com.milesight.beaveriot.base.exception.AcquiredLockException;
 import com.milesight.beaveriot.base.exception.ServiceException;
 import com.milesight.beaveriot.base.utils.JsonUtils;
+import com.milesight.beaveriot.base.utils.TransactionUtils;
 import com.milesight.beaveriot.base.utils.snowflake.SnowflakeUtil;
 import com.milesight.beaveriot.context.security.TenantContext;
 import com.milesight.beaveriot.pubsub.MessagePubSub;
@@ -26,28 +28,28 @@ import com.milesight.beaveriot.scheduler.core.model.ScheduledTaskUpdatedEvent;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
+import net.javacrumbs.shedlock.core.LockProvider;
+import net.javacrumbs.shedlock.spring.aop.ScopedLockConfiguration;
 import org.springframework.aop.framework.AopContext;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Consumer;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Component
@@ -57,6 +59,19 @@ public class Scheduler {
 
     private static final CronParser cronParser = new CronParser(CronDefinitionBuilder.instanceDefinitionFor(CronType.SPRING));
 
+    private static final int QUERY_CHUNK_SIZE = 500;
+
+    /**
+     * Maximum number of next executions of a task created at once
+     */
+    private static final int MAX_MATERIALIZED_EXECUTIONS = 120;
+
+    /**
+     * Name of the lock held while the tasks of a task key are changed, it is the same as the lock of
+     * {@link #schedule(String, ScheduleSettings)}, {@link #cancel(String)} and {@link #createNextTasks}
+     */
+    private static final String SCHEDULE_LOCK_NAME = "SCHEDULE(%s)";
+
     @Autowired
     private ScheduledTaskRepository scheduledTaskRepository;
 
@@ -66,27 +81,171 @@ public class Scheduler {
     @Autowired
     private MessagePubSub messagePubSub;
 
-    public void scanScheduledTasksByChunk(Long startEpochSecondInclusive, Long endEpochSecondExclusive, Integer chunkSize,
-                                          Consumer<List<ScheduledTask>> chunkConsumer) {
-        Pageable pageable = PageRequest.of(0, chunkSize, Sort.by(Sort.Direction.ASC, "executionEpochSecond"));
-        while (!pageable.isUnpaged()) {
-            log.debug("scan scheduled tasks, chunk number: {}, chunk size: {}, start: {}, end: {}",
-                    pageable.getPageNumber(), pageable.getPageSize(), startEpochSecondInclusive, endEpochSecondExclusive);
-
-            val page = scheduledTaskRepository.findAllTasksByExecutionEpochSecondBetween(
-                    startEpochSecondInclusive, endEpochSecondExclusive, pageable);
-            val taskKeys = page.getContent().stream()
-                    .map(ScheduledTaskPO::getTaskKey)
-                    .collect(Collectors.toSet());
-            val taskKeyToScheduleSetting = scheduleSettingsRepository.findAllByTaskKeyIn(taskKeys)
-                    .stream()
-                    .collect(Collectors.toMap(ScheduleSettingsPO::getTaskKey, Function.identity(), (v1, v2) -> v1));
-            val chunk = page.getContent().stream()
-                    .map(po -> buildScheduledTask(po, taskKeyToScheduleSetting.get(po.getTaskKey())))
-                    .toList();
-            chunkConsumer.accept(chunk);
-            pageable = page.nextPageable();
+    @Autowired
+    private LockProvider lockProvider;
+
+    /**
+     * Claim the due tasks of the shards and materialize their next executions.
+     * <p>
+     * The next executions of a task key are only materialized if its lock is acquired without waiting, the lock is
+     * held until the claim is committed so that a concurrent reschedule or cancellation can't be undone. The next
+     * executions of the other tasks are created when they are run.
+     *
+     * @param shards         shards owned by this node
+     * @param nowEpochSecond current time
+     * @return tasks due before the pre-fetch range elapses, including the materialized next executions in that range
+     */
+    @Transactional
+    public ClaimedTasks claimDueTasks(Collection<Integer> shards, long nowEpochSecond) {
+        val endEpochSecond = nowEpochSecond + ScheduledTaskExecutor.PRE_FETCH_RANGE;
+        val staleEpochSecond = nowEpochSecond - ScheduledTaskExecutor.PRE_FETCH_RANGE;
+        val failedCount = scheduledTaskRepository.failExhaustedTasks(shards, staleEpochSecond, ScheduledTaskExecutor.MAX_ATTEMPTS, nowEpochSecond);
+        if (failedCount > 0) {
+            log.info("{} scheduled tasks were failed after {} attempts", failedCount, ScheduledTaskExecutor.MAX_ATTEMPTS);
+        }
+
+        val claimToken = SnowflakeUtil.nextId();
+        val claimedCount = scheduledTaskRepository.claimDueTasks(shards, claimToken, endEpochSecond, staleEpochSecond, ScheduledTaskExecutor.MAX_ATTEMPTS);
+        if (claimedCount == 0) {
+            return ClaimedTasks.EMPTY;
+        }
+
+        val tasks = buildScheduledTasks(scheduledTaskRepository.findAllByClaimToken(claimToken));
+        log.info("{} scheduled tasks claimed", tasks.size());
+        val lockedTaskKeys = new HashMap<String, Boolean>();
+        val lockedTasks = new ArrayList<ScheduledTask>(tasks.size());
+        val pendingTaskIds = new HashSet<Long>();
+        for (val task : tasks) {
+            if (lockedTaskKeys.computeIfAbsent(task.getTaskKey(), this::tryLockUntilCompletion)) {
+                lockedTasks.add(task);
+            } else {
+                pendingTaskIds.add(task.getId());
+            }
+        }
+        if (!pendingTaskIds.isEmpty()) {
+            log.debug("{} scheduled tasks are locked, their next executions are created when they are run", pendingTaskIds.size());
+        }
+
+        val nextTasks = materializeNextTasks(lockedTasks, claimToken, endEpochSecond, nowEpochSecond);
+        val claimedTasks = new ArrayList<ScheduledTask>(tasks.size() + nextTasks.tasks().size());
+        claimedTasks.addAll(tasks);
+        claimedTasks.addAll(nextTasks.tasks());
+        return new ClaimedTasks(claimedTasks, nextTasks.lastTaskIds(), pendingTaskIds);
+    }
+
+    private boolean tryLockUntilCompletion(String taskKey) {
+        val lockConfiguration = ScopedLockConfiguration.builder(LockScope.GLOBAL)
+                .name(SCHEDULE_LOCK_NAME.formatted(taskKey))
+                .lockAtMostFor(Duration.ofSeconds(30))
+                .lockAtLeastFor(Duration.ZERO)
+                .throwOnLockFailure(false)
+                .build();
+        return lockProvider.lock(lockConfiguration)
+                .map(lock -> {
+                    TransactionUtils.executeAfterCompletion(lock::unlock);
+                    return true;
+                })
+                .orElse(false);
+    }
+
+    private List<ScheduledTask> buildScheduledTasks(List<ScheduledTaskPO> taskPOs) {
+        val taskKeyToScheduleSetting = new HashMap<String, ScheduleSettingsPO>();
+        val taskKeys = taskPOs.stream()
+                .map(ScheduledTaskPO::getTaskKey)
+                .distinct()
+                .toList();
+        Lists.partition(taskKeys, QUERY_CHUNK_SIZE).forEach(keys -> scheduleSettingsRepository.findAllByTaskKeyIn(keys)
+                .forEach(po -> taskKeyToScheduleSetting.putIfAbsent(po.getTaskKey(), po)));
+        return taskPOs.stream()
+                .filter(po -> {
+                    if (!taskKeyToScheduleSetting.containsKey(po.getTaskKey())) {
+                        log.warn("schedule settings of task '{}'({}) not found", po.getTaskKey(), po.getId());
+                        return false;
+                    }
+                    return true;
+                })
+                .map(po -> buildScheduledTask(po, taskKeyToScheduleSetting.get(po.getTaskKey())))
+                .toList();
+    }
+
+    /**
+     * Create the next executions of the tasks in bulk. The executions before the end time are claimed with the given
+     * claim token, the chain of each task stops at its first execution after the end time, which is left to the
+     * owner of its shard. The caller must hold the locks of the task keys.
+     *
+     * @return the claimed next executions, and the tasks without next execution
+     */
+    private ClaimedTasks materializeNextTasks(List<ScheduledTask> previousTasks, long claimToken, long endEpochSecond, long nowEpochSecond) {
+        if (previousTasks.isEmpty()) {
+            return ClaimedTasks.EMPTY;
+        }
+
+        val existingExecutions = new HashSet<String>();
+        val taskKeys = previousTasks.stream()
+                .map(ScheduledTask::getTaskKey)
+                .distinct()
+                .toList();
+        Lists.partition(taskKeys, QUERY_CHUNK_SIZE).forEach(keys -> scheduledTaskRepository.findAllByTaskKeyIn(keys)
+                .forEach(po -> existingExecutions.add(executionKey(po.getTaskKey(), po.getExecutionEpochSecond()))));
+
+        val nowDateTime = ZonedDateTime.ofInstant(Instant.ofEpochSecond(nowEpochSecond), ZoneId.systemDefault());
+        val nextTaskPOs = new ArrayList<ScheduledTaskPO>();
+        val claimedTasks = new ArrayList<ScheduledTask>();
+        val lastTaskIds = new HashSet<Long>();
+        for (val previousTask : previousTasks) {
+            var previous = previousTask;
+            for (int i = 0; i < MAX_MATERIALIZED_EXECUTIONS; i++) {
+                val nextExecutionEpochSecond = getNextExecutionEpochSecond(previous, nowDateTime);
+                if (nextExecutionEpochSecond == null) {
+                    lastTaskIds.add(previous.getId());
+                    break;
+                }
+                if (!existingExecutions.add(executionKey(previous.getTaskKey(), nextExecutionEpochSecond))) {
+                    // the next execution was created by the previous claim of the chain
+                    break;
+                }
+
+                val claimed = nextExecutionEpochSecond < endEpochSecond && i < MAX_MATERIALIZED_EXECUTIONS - 1;
+                val taskPO = ScheduledTaskPO.builder()
+                        .id(SnowflakeUtil.nextId())
+                        .taskKey(previous.getTaskKey())
+                        .executionEpochSecond(nextExecutionEpochSecond)
+                        .attempts(claimed ? 1 : 0)
+                        .iteration(previous.getIteration() + 1)
+                        .triggeredAt(0L)
+                        .shard(SchedulerNodeRegistry.shardOf(previous.getTaskKey()))
+                        .claimToken(claimed ? claimToken : null)
+                        .build();
+                nextTaskPOs.add(taskPO);
+                if (!claimed) {
+                    break;
+                }
+
+                val task = convertToScheduledTask(taskPO);
+                task.setScheduleSettings(previous.getScheduleSettings());
+                task.setTenantId(previous.getTenantId());
+                claimedTasks.add(task);
+                previous = task;
+            }
+        }
+
+        if (!nextTaskPOs.isEmpty()) {
+            scheduledTaskRepository.saveAll(nextTaskPOs);
+            log.debug("{} next scheduled tasks created, {} claimed", nextTaskPOs.size(), claimedTasks.size());
         }
+        return new ClaimedTasks(claimedTasks, lastTaskIds, Set.of());
+    }
+
+    private Long getNextExecutionEpochSecond(ScheduledTask previousTask, ZonedDateTime nowDateTime) {
+        val scheduleSettings = previousTask.getScheduleSettings();
+        val previousExecutionDateTime = ZonedDateTime.ofInstant(Instant.ofEpochSecond(previousTask.getExecutionEpochSecond()), nowDateTime.getZone());
+        // tasks claimed ahead of time are continued from their own execution time
+        val currentDateTime = previousExecutionDateTime.isAfter(nowDateTime) ? previousExecutionDateTime : nowDateTime;
+        return getNextExecutionEpochSecond(scheduleSettings.getScheduleType(), scheduleSettings.getScheduleRule(), previousExecutionDateTime, currentDateTime);
+    }
+
+    private static String executionKey(String taskKey, Long executionEpochSecond) {
+        return taskKey + "@" + executionEpochSecond;
     }
 
     private ScheduledTask buildScheduledTask(ScheduledTaskPO taskPO, ScheduleSettingsPO scheduleSettingsPO) {
@@ -166,6 +325,7 @@ public class Scheduler {
         scheduleTaskPO.setExecutionEpochSecond(nextExecutionEpochSecond);
         scheduleTaskPO.setTriggeredAt(0L);
         scheduleTaskPO.setIteration(0);
+        scheduleTaskPO.setShard(SchedulerNodeRegistry.shardOf(taskKey));
 
         if (shouldFireNow(nextExecutionEpochSecond, nowDateTime)) {
             scheduleTaskPO.setAttempts(1);
@@ -228,49 +388,15 @@ public class Scheduler {
         return existingTaskIds;
     }
 
+    /**
+     * Create the next executions of a task triggered outside a claim, i.e. the first execution of a new schedule or a
+     * task triggered by a remote node. The next executions in the pre-fetch range are claimed for this node.
+     */
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     @DistributedLock(name = "SCHEDULE(#{#p0.taskKey})", waitForLock = "3s", scope = LockScope.GLOBAL)
-    public ScheduledTask createNextTask(ScheduledTask previousTask, ZonedDateTime currentDateTime) {
-        val scheduleSettings = previousTask.getScheduleSettings();
-        val scheduleType = scheduleSettings.getScheduleType();
-        if (ScheduleType.ONCE.equals(scheduleType)) {
-            return null;
-        }
-
-        val rule = scheduleSettings.getScheduleRule();
-        val previousExecutionDateTime = currentDateTime.toEpochSecond() == previousTask.getExecutionEpochSecond()
-                ? currentDateTime
-                : ZonedDateTime.ofInstant(Instant.ofEpochSecond(previousTask.getExecutionEpochSecond()), currentDateTime.getZone());
-        val nextExecutionEpochSecond = getNextExecutionEpochSecond(scheduleType, rule, previousExecutionDateTime, currentDateTime);
-        if (nextExecutionEpochSecond == null) {
-            log.info("next execution time not found: '{}'", previousTask.getTaskKey());
-            return null;
-        }
-
-        var taskPO = scheduledTaskRepository.findFirstByTaskKeyAndExecutionEpochSecond(previousTask.getTaskKey(), nextExecutionEpochSecond);
-        boolean taskExists = taskPO != null;
-        if (taskExists) {
-            log.debug("schedule task '{}' next execution {} already exists", previousTask.getTaskKey(), nextExecutionEpochSecond);
-        } else {
-            log.debug("schedule task '{}' create next execution: {}", previousTask.getTaskKey(), nextExecutionEpochSecond);
-            taskPO = scheduledTaskRepository.save(ScheduledTaskPO.builder()
-                    .id(SnowflakeUtil.nextId())
-                    .taskKey(previousTask.getTaskKey())
-                    .executionEpochSecond(nextExecutionEpochSecond)
-                    .attempts(shouldFireNow(nextExecutionEpochSecond, currentDateTime) ? 1 : 0)
-                    .iteration(previousTask.getIteration() + 1)
-                    .triggeredAt(0L)
-                    .build());
-        }
-
-        val task = convertToScheduledTask(taskPO);
-        task.setScheduleSettings(scheduleSettings);
-        task.setTenantId(previousTask.getTenantId());
-
-        if (!taskExists && taskPO.getAttempts() > 0) {
-            messagePubSub.publishAfterCommit(new ScheduledTaskUpdatedEvent(task.getTenantId(), task, Collections.emptyList()));
-        }
-        return task;
+    public ClaimedTasks createNextTasks(ScheduledTask previousTask, ZonedDateTime currentDateTime) {
+        val nowEpochSecond = currentDateTime.toEpochSecond();
+        return materializeNextTasks(List.of(previousTask), SnowflakeUtil.nextId(), nowEpochSecond + ScheduledTaskExecutor.PRE_FETCH_RANGE, nowEpochSecond);
     }
 
     public Long getNextExecutionEpochSecond(ScheduleType scheduleType, ScheduleRule scheduleRule, ZonedDateTime previousExecutionDateTime, ZonedDateTime currentDateTime) {
@@ -0,0 +1,94 @@
+package com.milesight.beaveriot.scheduler.core;
+
+import com.google.common.hash.Hashing;
+import com.milesight.beaveriot.scheduler.core.model.SchedulerNodePO;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Registry of the live scheduler nodes and owner of the task shards.
+ * <p>
+ * Task keys are hashed into a fixed number of shards. Every node heartbeats into the node table on each scan and
+ * derives the shards it owns from the live nodes by rendezvous hashing, so all nodes agree on the owners without
+ * coordination and only the shards of a joining or leaving node move. While the nodes disagree, e.g. during a
+ * heartbeat timeout, a shard may be scanned by two nodes, the conditional claim of the due tasks keeps each task
+ * claimed once.
+ */
+@Slf4j
+@Component
+public class SchedulerNodeRegistry {
+
+    public static final int SHARD_COUNT = 64;
+
+    private static final int NODE_EXPIRATION_FACTOR = 10;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private volatile Set<Integer> ownedShards = Set.of();
+
+    @Autowired
+    private SchedulerNodeRepository schedulerNodeRepository;
+
+    public static int shardOf(String taskKey) {
+        return Math.floorMod(Hashing.murmur3_32_fixed().hashString(taskKey, StandardCharsets.UTF_8).asInt(), SHARD_COUNT);
+    }
+
+    /**
+     * Refresh the heartbeat of this node and compute the shards it owns
+     *
+     * @param nodeTimeout time without heartbeat after which a node is considered dead
+     * @return shards owned by this node
+     */
+    @Transactional
+    public Set<Integer> heartbeat(Duration nodeTimeout) {
+        val now = System.currentTimeMillis();
+        schedulerNodeRepository.save(new SchedulerNodePO(nodeId, now));
+        schedulerNodeRepository.deleteAllByHeartbeatAtBefore(now - nodeTimeout.toMillis() * NODE_EXPIRATION_FACTOR);
+        val liveNodeIds = schedulerNodeRepository.findAllNodeIdsByHeartbeatAtSince(now - nodeTimeout.toMillis());
+
+        val shards = ownedShards(nodeId, liveNodeIds);
+        if (!shards.equals(ownedShards)) {
+            log.info("scheduler node '{}' owns {} of {} shards, live nodes: {}", nodeId, shards.size(), SHARD_COUNT, liveNodeIds.size());
+            ownedShards = shards;
+        }
+        return shards;
+    }
+
+    static Set<Integer> ownedShards(String nodeId, Collection<String> liveNodeIds) {
+        val shards = new HashSet<Integer>();
+        for (int shard = 0; shard < SHARD_COUNT; shard++) {
+            String owner = nodeId;
+            long ownerWeight = weight(nodeId, shard);
+            for (String liveNodeId : liveNodeIds) {
+                long weight = weight(liveNodeId, shard);
+                if (weight > ownerWeight || (weight == ownerWeight && liveNodeId.compareTo(owner) < 0)) {
+                    owner = liveNodeId;
+                    ownerWeight = weight;
+                }
+            }
+            if (owner.equals(nodeId)) {
+                shards.add(shard);
+            }
+        }
+        return shards;
+    }
+
+    private static long weight(String nodeId, int shard) {
+        return Hashing.murmur3_128().newHasher()
+                .putString(nodeId, StandardCharsets.UTF_8)
+                .putInt(shard)
+                .hash()
+                .asLong();
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.milesight.beaveriot.scheduler.core;
+
+import com.milesight.beaveriot.data.jpa.repository.BaseJpaRepository;
+import com.milesight.beaveriot.scheduler.core.model.SchedulerNodePO;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+
+public interface SchedulerNodeRepository extends BaseJpaRepository<SchedulerNodePO, String> {
+
+    @Query("select n.nodeId from SchedulerNodePO n where n.heartbeatAt >= :heartbeatAt")
+    List<String> findAllNodeIdsByHeartbeatAtSince(@Param("heartbeatAt") Long heartbeatAt);
+
+    @Modifying
+    @Transactional
+    @Query("delete from SchedulerNodePO n where n.heartbeatAt < :heartbeatAt")
+    void deleteAllByHeartbeatAtBefore(@Param("heartbeatAt") Long heartbeatAt);
+
+}
@@ -45,6 +45,16 @@ public class ScheduledTaskPO {
     @NonNegative
     private Long triggeredAt;
 
+    /**
+     * Shard of the task key, the due tasks of a shard are claimed by the node owning the shard
+     */
+    private Integer shard;
+
+    /**
+     * Token of the claim that last picked the task up
+     */
+    private Long claimToken;
+
     @CreatedDate
     private Long createdAt;
 
@@ -0,0 +1,25 @@
+package com.milesight.beaveriot.scheduler.core.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldNameConstants;
+
+
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldNameConstants
+@Table(name = "t_scheduler_node")
+public class SchedulerNodePO {
+
+    @Id
+    private String nodeId;
+
+    private Long heartbeatAt;
+
+}
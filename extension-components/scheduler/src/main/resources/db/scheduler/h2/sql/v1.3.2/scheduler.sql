@@ -0,0 +1,17 @@
+--liquibase formatted sql
+
+--changeset Maglitch65:scheduler_v1.3.2_20261018_150000
+ALTER TABLE `t_scheduled_task`
+    ADD COLUMN shard INTEGER not null DEFAULT 0;
+ALTER TABLE `t_scheduled_task`
+    ADD COLUMN claim_token BIGINT;
+CREATE INDEX idx_shard_time ON `t_scheduled_task` (shard, triggered_at, execution_epoch_second);
+CREATE INDEX idx_claim_token ON `t_scheduled_task` (claim_token);
+
+
+--changeset Maglitch65:scheduler_v1.3.2_20261018_150001
+CREATE TABLE `t_scheduler_node`
+(
+    node_id      VARCHAR(64) PRIMARY KEY,
+    heartbeat_at BIGINT      not null
+);
@@ -0,0 +1,112 @@
+package com.milesight.beaveriot.scheduler.core
+
+import com.milesight.beaveriot.data.jpa.BaseJpaRepositoryImpl
+import com.milesight.beaveriot.scheduler.core.model.ScheduledTaskPO
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.SpringBootConfiguration
+import org.springframework.boot.autoconfigure.domain.EntityScan
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories
+import spock.lang.Specification
+
+/**
+ * @author leon
+ */
+@DataJpaTest(properties = ["spring.liquibase.enabled=false", "spring.jpa.hibernate.ddl-auto=create-drop"])
+class ScheduledTaskRepositoryTest extends Specification {
+
+    static final long NOW = 1_700_000_000L
+
+    static final long END = NOW + ScheduledTaskExecutor.PRE_FETCH_RANGE
+
+    static final long STALE = NOW - ScheduledTaskExecutor.PRE_FETCH_RANGE
+
+    @SpringBootConfiguration
+    @EntityScan(basePackageClasses = ScheduledTaskPO)
+    @EnableJpaRepositories(basePackageClasses = ScheduledTaskRepository, repositoryBaseClass = BaseJpaRepositoryImpl)
+    static class TestConfiguration {
+    }
+
+    @Autowired
+    ScheduledTaskRepository scheduledTaskRepository
+
+    @Autowired
+    TestEntityManager entityManager
+
+    def save(long id, int shard, long executionEpochSecond, int attempts = 0, long triggeredAt = 0L) {
+        scheduledTaskRepository.saveAndFlush(ScheduledTaskPO.builder()
+                .id(id)
+                .taskKey("task-$id")
+                .executionEpochSecond(executionEpochSecond)
+                .attempts(attempts)
+                .iteration(0)
+                .triggeredAt(triggeredAt)
+                .shard(shard)
+                .build())
+        // the bulk updates bypass the persistence context
+        entityManager.clear()
+    }
+
+    def claimedIds(long claimToken) {
+        return scheduledTaskRepository.findAllByClaimToken(claimToken)*.id as Set
+    }
+
+    def "should claim the due tasks of the owned shards only"() {
+        given:
+        save(1, 1, NOW)
+        save(2, 1, END - 1)
+        save(3, 1, END)
+        save(4, 2, NOW)
+        save(5, 1, NOW - 10, 0, NOW - 5)
+
+        when:
+        def count = scheduledTaskRepository.claimDueTasks([1], 100L, END, STALE, ScheduledTaskExecutor.MAX_ATTEMPTS)
+
+        then:
+        count == 2
+        claimedIds(100L) == [1L, 2L] as Set
+        scheduledTaskRepository.findAllByClaimToken(100L)*.attempts == [1, 1]
+    }
+
+    def "should claim a task once until its attempt is stale"() {
+        given:
+        save(1, 1, NOW)
+
+        expect:
+        scheduledTaskRepository.claimDueTasks([1], 100L, END, STALE, ScheduledTaskExecutor.MAX_ATTEMPTS) == 1
+        scheduledTaskRepository.claimDueTasks([1], 101L, END, STALE, ScheduledTaskExecutor.MAX_ATTEMPTS) == 0
+
+        and: "claimed again once the attempt is older than the pre-fetch range"
+        scheduledTaskRepository.claimDueTasks([1], 102L, END + 61, STALE + 61, ScheduledTaskExecutor.MAX_ATTEMPTS) == 1
+        claimedIds(102L) == [1L] as Set
+        scheduledTaskRepository.findById(1L).get().attempts == 2
+    }
+
+    def "should fail the exhausted tasks instead of claiming them"() {
+        given:
+        save(1, 1, STALE - 1, ScheduledTaskExecutor.MAX_ATTEMPTS)
+        save(2, 1, STALE - 1, ScheduledTaskExecutor.MAX_ATTEMPTS - 1)
+
+        when:
+        def failed = scheduledTaskRepository.failExhaustedTasks([1], STALE, ScheduledTaskExecutor.MAX_ATTEMPTS, NOW)
+        def claimed = scheduledTaskRepository.claimDueTasks([1], 100L, END, STALE, ScheduledTaskExecutor.MAX_ATTEMPTS)
+
+        then:
+        failed == 1
+        scheduledTaskRepository.findById(1L).get().triggeredAt == NOW
+        claimed == 1
+        claimedIds(100L) == [2L] as Set
+    }
+
+    def "should mark a task as triggered once"() {
+        given:
+        save(1, 1, NOW, 1)
+
+        expect:
+        scheduledTaskRepository.markAsTriggered(1L, NOW) == 1
+        scheduledTaskRepository.markAsTriggered(1L, NOW + 1) == 0
+        scheduledTaskRepository.markAsTriggered(2L, NOW) == 0
+        scheduledTaskRepository.findById(1L).get().triggeredAt == NOW
+    }
+}
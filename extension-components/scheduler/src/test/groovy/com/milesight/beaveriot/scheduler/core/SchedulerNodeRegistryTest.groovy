@@ -0,0 +1,51 @@
+package com.milesight.beaveriot.scheduler.core
+
+import spock.lang.Specification
+
+/**
+ * @author leon
+ */
+class SchedulerNodeRegistryTest extends Specification {
+
+    def "a single node should own all shards"() {
+        expect:
+        SchedulerNodeRegistry.ownedShards("node-1", ["node-1"]) == (0..<SchedulerNodeRegistry.SHARD_COUNT) as Set
+        SchedulerNodeRegistry.ownedShards("node-1", []) == (0..<SchedulerNodeRegistry.SHARD_COUNT) as Set
+    }
+
+    def "live nodes should own disjoint shards covering all of them"() {
+        given:
+        def nodes = (1..5).collect { "node-$it".toString() }
+
+        when:
+        def owned = nodes.collect { SchedulerNodeRegistry.ownedShards(it, nodes) }
+
+        then:
+        owned.sum { it.size() } == SchedulerNodeRegistry.SHARD_COUNT
+        owned.flatten() as Set == (0..<SchedulerNodeRegistry.SHARD_COUNT) as Set
+        owned.every { !it.isEmpty() }
+    }
+
+    def "only the shards of a leaving node should move"() {
+        given:
+        def nodes = (1..4).collect { "node-$it".toString() }
+        def before = nodes.collectEntries { [(it): SchedulerNodeRegistry.ownedShards(it, nodes)] }
+        def remaining = nodes - "node-4"
+
+        when:
+        def after = remaining.collectEntries { [(it): SchedulerNodeRegistry.ownedShards(it, remaining)] }
+
+        then:
+        remaining.every { after[it].containsAll(before[it]) }
+        remaining.sum { after[it].size() - before[it].size() } == before["node-4"].size()
+    }
+
+    def "shard of a task key should be stable and in range"() {
+        expect:
+        SchedulerNodeRegistry.shardOf("task-1") == SchedulerNodeRegistry.shardOf("task-1")
+        (1..1000).every {
+            def shard = SchedulerNodeRegistry.shardOf("task-$it")
+            shard >= 0 && shard < SchedulerNodeRegistry.SHARD_COUNT
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.milesight.beaveriot.scheduler.core
+
+import com.milesight.beaveriot.base.utils.JsonUtils
+import com.milesight.beaveriot.pubsub.MessagePubSub
+import com.milesight.beaveriot.scheduler.core.model.ScheduleRule
+import com.milesight.beaveriot.scheduler.core.model.ScheduleSettingsPO
+import com.milesight.beaveriot.scheduler.core.model.ScheduleType
+import com.milesight.beaveriot.scheduler.core.model.ScheduledTaskPO
+import net.javacrumbs.shedlock.core.LockProvider
+import net.javacrumbs.shedlock.core.SimpleLock
+import spock.lang.Specification
+
+/**
+ * @author leon
+ */
+class SchedulerTest extends Specification {
+
+    static final long NOW = 1_700_000_000L
+
+    ScheduledTaskRepository scheduledTaskRepository = Mock()
+
+    ScheduleSettingsRepository scheduleSettingsRepository = Mock()
+
+    LockProvider lockProvider = Mock()
+
+    Scheduler scheduler = new Scheduler()
+
+    def setup() {
+        scheduler.scheduledTaskRepository = scheduledTaskRepository
+        scheduler.scheduleSettingsRepository = scheduleSettingsRepository
+        scheduler.messagePubSub = Mock(MessagePubSub)
+        scheduler.lockProvider = lockProvider
+    }
+
+    static ScheduledTaskPO taskPO(long id, String taskKey, long executionEpochSecond) {
+        return ScheduledTaskPO.builder()
+                .id(id)
+                .taskKey(taskKey)
+                .executionEpochSecond(executionEpochSecond)
+                .attempts(1)
+                .iteration(0)
+                .triggeredAt(0L)
+                .shard(SchedulerNodeRegistry.shardOf(taskKey))
+                .build()
+    }
+
+    static ScheduleSettingsPO settingsPO(String taskKey, ScheduleType type, ScheduleRule rule) {
+        return ScheduleSettingsPO.builder()
+                .id(1L)
+                .taskKey(taskKey)
+                .scheduleType(type)
+                .scheduleRule(JsonUtils.toJSON(rule))
+                .build()
+    }
+
+    def "should claim the due tasks and materialize their next executions in the pre-fetch range"() {
+        given:
+        def shards = [1, 2] as Set
+        def savedTasks = []
+        Long claimToken = null
+        def lock = Mock(SimpleLock)
+
+        when:
+        def claimed = scheduler.claimDueTasks(shards, NOW)
+
+        then:
+        1 * scheduledTaskRepository.failExhaustedTasks(shards, NOW - 60, ScheduledTaskExecutor.MAX_ATTEMPTS, NOW) >> 0
+        1 * scheduledTaskRepository.claimDueTasks(shards, _, NOW + 60, NOW - 60, ScheduledTaskExecutor.MAX_ATTEMPTS) >> { args ->
+            claimToken = args[1]
+            return 2
+        }
+        1 * scheduledTaskRepository.findAllByClaimToken({ it == claimToken }) >> [taskPO(1L, "rate", NOW), taskPO(2L, "once", NOW)]
+        1 * scheduleSettingsRepository.findAllByTaskKeyIn(_) >> [
+                settingsPO("rate", ScheduleType.FIXED_RATE, new ScheduleRule(periodSecond: 10L)),
+                settingsPO("once", ScheduleType.ONCE, new ScheduleRule(startEpochSecond: NOW))]
+        2 * lockProvider.lock({ it.name in ["SCHEDULE(rate)", "SCHEDULE(once)"] }) >> Optional.of(lock)
+        2 * lock.unlock()
+        1 * scheduledTaskRepository.findAllByTaskKeyIn(_) >> []
+        1 * scheduledTaskRepository.saveAll(_) >> { args -> savedTasks.addAll(args[0]); args[0] }
+
+        and: "the executions before the end of the range are claimed, the chain stops at the first one after it"
+        savedTasks*.executionEpochSecond == [NOW + 10, NOW + 20, NOW + 30, NOW + 40, NOW + 50, NOW + 60]
+        savedTasks.every { it.taskKey == "rate" && it.shard == SchedulerNodeRegistry.shardOf("rate") }
+        savedTasks.findAll { it.claimToken == claimToken && it.attempts == 1 }.size() == 5
+        savedTasks.last().claimToken == null
+        savedTasks.last().attempts == 0
+        savedTasks*.iteration == [1, 2, 3, 4, 5, 6]
+
+        and:
+        claimed.tasks()*.executionEpochSecond == [NOW, NOW, NOW + 10, NOW + 20, NOW + 30, NOW + 40, NOW + 50]
+        claimed.isLastTask(claimed.tasks().find { it.taskKey == "once" })
+        !claimed.isLastTask(claimed.tasks()[0])
+    }
+
+    def "should not create the next executions which exist already"() {
+        given:
+        def lock = Mock(SimpleLock)
+        def savedTasks = []
+
+        when:
+        scheduler.claimDueTasks([1] as Set, NOW)
+
+        then:
+        1 * scheduledTaskRepository.claimDueTasks(*_) >> 1
+        1 * scheduledTaskRepository.findAllByClaimToken(_) >> [taskPO(1L, "rate", NOW)]
+        1 * scheduleSettingsRepository.findAllByTaskKeyIn(_) >> [settingsPO("rate", ScheduleType.FIXED_RATE, new ScheduleRule(periodSecond: 30L))]
+        1 * lockProvider.lock(_) >> Optional.of(lock)
+        1 * scheduledTaskRepository.findAllByTaskKeyIn(_) >> [taskPO(3L, "rate", NOW + 60)]
+        1 * scheduledTaskRepository.saveAll(_) >> { args -> savedTasks.addAll(args[0]); args[0] }
+        savedTasks*.executionEpochSecond == [NOW + 30]
+    }
+
+    def "should leave the next executions of a locked task key to the run of the task"() {
+        when:
+        def claimed = scheduler.claimDueTasks([1] as Set, NOW)
+
+        then:
+        1 * scheduledTaskRepository.claimDueTasks(*_) >> 2
+        1 * scheduledTaskRepository.findAllByClaimToken(_) >> [taskPO(1L, "rate", NOW), taskPO(2L, "rate", NOW + 30)]
+        1 * scheduleSettingsRepository.findAllByTaskKeyIn(_) >> [settingsPO("rate", ScheduleType.FIXED_RATE, new ScheduleRule(periodSecond: 10L))]
+        1 * lockProvider.lock(_) >> Optional.empty()
+        0 * scheduledTaskRepository.saveAll(_)
+
+        and:
+        claimed.tasks()*.id == [1L, 2L]
+        claimed.tasks().every { claimed.isLastTask(it) == null }
+    }
+
+    def "should return nothing if no task is claimed"() {
+        when:
+        def claimed = scheduler.claimDueTasks([1] as Set, NOW)
+
+        then:
+        1 * scheduledTaskRepository.claimDueTasks(*_) >> 0
+        0 * scheduledTaskRepository.findAllByClaimToken(_)
+        0 * lockProvider.lock(_)
+        claimed.tasks().isEmpty()
+    }
+}
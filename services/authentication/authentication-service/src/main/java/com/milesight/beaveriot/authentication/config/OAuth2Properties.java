@@ -21,6 +21,7 @@ public class OAuth2Properties {
     private String[] ignoreUrls;
     private RsaKey rsa;
     private Duration refreshCoolDown;
+    private AuthorizationCache authorizationCache = new AuthorizationCache();
 
     @Data
     public static class RsaKey {
@@ -28,4 +29,13 @@ public class OAuth2Properties {
         private String privateKey;
     }
 
+    @Data
+    public static class AuthorizationCache {
+        /**
+         * Maximum time an authorization is cached on a node without checking the store
+         */
+        private Duration timeToLive = Duration.ofSeconds(30);
+        private int maximumSize = 10000;
+    }
+
 }
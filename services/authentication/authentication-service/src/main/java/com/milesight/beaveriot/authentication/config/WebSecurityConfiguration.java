@@ -8,6 +8,7 @@ import com.milesight.beaveriot.authentication.filter.SecurityUserContextCleanupF
 import com.milesight.beaveriot.authentication.handler.CustomOAuth2AccessTokenResponseHandler;
 import com.milesight.beaveriot.authentication.provider.*;
 import com.milesight.beaveriot.authentication.util.OAuth2EndpointUtils;
+import com.milesight.beaveriot.pubsub.MessagePubSub;
 import com.milesight.beaveriot.user.facade.IUserFacade;
 import com.nimbusds.jose.jwk.JWKSet;
 import com.nimbusds.jose.jwk.RSAKey;
@@ -74,6 +75,8 @@ public class WebSecurityConfiguration {
     OAuth2Properties oAuth2Properties;
     @Autowired
     IUserFacade userFacade;
+    @Autowired
+    MessagePubSub messagePubSub;
 
     @Bean
     @Order(3)
@@ -161,7 +164,10 @@ public class WebSecurityConfiguration {
     @Bean
     public CustomOAuth2AuthorizationService authorizationService() {
 //        return new InMemoryOAuth2AuthorizationService();
-        return new CustomJdbcOAuth2AuthorizationService(jdbcTemplate, registeredClientRepository());
+        return new CachingOAuth2AuthorizationService(
+                new CustomJdbcOAuth2AuthorizationService(jdbcTemplate, registeredClientRepository()),
+                oAuth2Properties.getAuthorizationCache(),
+                messagePubSub);
     }
 
     @Bean
@@ -0,0 +1,95 @@
+package com.milesight.beaveriot.authentication.provider;
+
+import com.milesight.beaveriot.authentication.config.OAuth2Properties;
+import com.milesight.beaveriot.pubsub.MessagePubSub;
+import com.milesight.beaveriot.pubsub.api.annotation.MessageListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+
+/**
+ * Near cache in front of the shared authorization store.
+ * <p>
+ * The authorizations found in the store are kept in a local {@link CustomInMemoryOAuth2AuthorizationService} for a
+ * short time, so authenticating a request does not query the store for each request. Saving or removing an
+ * authorization evicts it locally and broadcasts an {@link OAuth2AuthorizationRevokedEvent} after commit, so the other
+ * nodes evict it as well. An authorization loaded concurrently with its revocation is kept at most the time to live
+ * of the cache.
+ *
+ * @author leon
+ */
+@Slf4j
+public class CachingOAuth2AuthorizationService implements CustomOAuth2AuthorizationService {
+
+    private final CustomOAuth2AuthorizationService delegate;
+
+    private final CustomInMemoryOAuth2AuthorizationService nearCache;
+
+    private final MessagePubSub messagePubSub;
+
+    public CachingOAuth2AuthorizationService(CustomOAuth2AuthorizationService delegate,
+                                             OAuth2Properties.AuthorizationCache properties,
+                                             MessagePubSub messagePubSub) {
+        this.delegate = delegate;
+        this.nearCache = new CustomInMemoryOAuth2AuthorizationService(properties.getTimeToLive(), properties.getMaximumSize());
+        this.messagePubSub = messagePubSub;
+    }
+
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        delegate.save(authorization);
+        revoke(authorization.getId());
+    }
+
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+        delegate.remove(authorization);
+        revoke(authorization.getId());
+    }
+
+    @Nullable
+    @Override
+    public OAuth2Authorization findById(String id) {
+        OAuth2Authorization authorization = nearCache.findById(id);
+        if (authorization == null) {
+            authorization = delegate.findById(id);
+            if (authorization != null) {
+                nearCache.save(authorization);
+            }
+        }
+        return authorization;
+    }
+
+    @Nullable
+    @Override
+    public OAuth2Authorization findByToken(String token, @Nullable OAuth2TokenType tokenType) {
+        OAuth2Authorization authorization = nearCache.findByToken(token, tokenType);
+        if (authorization == null) {
+            authorization = delegate.findByToken(token, tokenType);
+            if (authorization != null) {
+                nearCache.save(authorization);
+            }
+        }
+        return authorization;
+    }
+
+    @Override
+    public void removeByPrincipalName(String principalName) {
+        // Only the authorizations with an expired access token are removed, no other node can still authenticate with them
+        delegate.removeByPrincipalName(principalName);
+        nearCache.removeByPrincipalName(principalName);
+    }
+
+    @MessageListener
+    public void onAuthorizationRevoked(OAuth2AuthorizationRevokedEvent event) {
+        log.debug("Evict cached authorization {}", event.getAuthorizationId());
+        nearCache.removeById(event.getAuthorizationId());
+    }
+
+    private void revoke(String authorizationId) {
+        nearCache.removeById(authorizationId);
+        messagePubSub.publishAfterCommit(new OAuth2AuthorizationRevokedEvent(authorizationId));
+    }
+
+}
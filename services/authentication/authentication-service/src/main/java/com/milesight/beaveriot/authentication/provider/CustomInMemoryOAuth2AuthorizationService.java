@@ -1,6 +1,7 @@
 package com.milesight.beaveriot.authentication.provider;
 
 import org.springframework.lang.Nullable;
+import org.springframework.security.oauth2.core.AbstractOAuth2Token;
 import org.springframework.security.oauth2.core.OAuth2AccessToken;
 import org.springframework.security.oauth2.core.OAuth2DeviceCode;
 import org.springframework.security.oauth2.core.OAuth2RefreshToken;
@@ -13,7 +14,9 @@ import org.springframework.security.oauth2.server.authorization.OAuth2Authorizat
 import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
 import org.springframework.util.Assert;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -23,27 +26,50 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Rewrite InCacheOAuth2Authorization Service
+ * <p>
+ * The authorizations are indexed by each of their tokens, so finding an authorization by token does not depend on the
+ * number of stored authorizations. An authorization expires with the last of its tokens, or after the maximum time to
+ * live if one is set. Expired authorizations are no longer found and are swept on later saves.
  *
  * @author loong
  * @date 2024/10/29 13:10
  */
 public class CustomInMemoryOAuth2AuthorizationService implements CustomOAuth2AuthorizationService {
 
+    /*
+     * Time to live of the authorizations without any expiring token, e.g. the "initialized" authorizations with a state only.
+     */
+    private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(10);
+
+    private static final Duration SWEEP_INTERVAL = Duration.ofMinutes(1);
+
     private int maxInitializedAuthorizations = 100;
 
+    private int maxAuthorizations = Integer.MAX_VALUE;
+
+    @Nullable
+    private Duration maxTimeToLive;
+
     /*
      * Stores "initialized" (uncompleted) authorizations, where an access token has not
      * yet been granted. This state occurs with the authorization_code grant flow during
      * the user consent step OR when the code is returned in the authorization response
      * but the access token request is not yet initiated.
      */
-    private Map<String, OAuth2Authorization> initializedAuthorizations = Collections
+    private Map<String, StoredAuthorization> initializedAuthorizations = Collections
             .synchronizedMap(new CustomInMemoryOAuth2AuthorizationService.MaxSizeHashMap<>(this.maxInitializedAuthorizations));
 
     /*
      * Stores "completed" authorizations, where an access token has been granted.
      */
-    private final Map<String, OAuth2Authorization> authorizations = new ConcurrentHashMap<>();
+    private final Map<String, StoredAuthorization> authorizations = new ConcurrentHashMap<>();
+
+    /*
+     * Id of the authorization of each token, an entry may outlive its authorization and is verified on lookup.
+     */
+    private final Map<TokenKey, String> tokenIndex = new ConcurrentHashMap<>();
+
+    private volatile Instant nextSweepAt = Instant.now().plus(SWEEP_INTERVAL);
 
     /*
      * Constructor used for testing only.
@@ -61,6 +87,20 @@ public class CustomInMemoryOAuth2AuthorizationService implements CustomOAuth2Aut
         this(Collections.emptyList());
     }
 
+    /**
+     * Constructs an {@code InMemoryOAuth2AuthorizationService} keeping each authorization at most the given time and
+     * at most the given number of completed authorizations, e.g. to use it as a cache.
+     *
+     * @param maxTimeToLive     the maximum time to live of an authorization
+     * @param maxAuthorizations the maximum number of completed authorizations
+     */
+    public CustomInMemoryOAuth2AuthorizationService(Duration maxTimeToLive, int maxAuthorizations) {
+        Assert.notNull(maxTimeToLive, "maxTimeToLive cannot be null");
+        Assert.isTrue(maxAuthorizations > 0, "maxAuthorizations must be positive");
+        this.maxTimeToLive = maxTimeToLive;
+        this.maxAuthorizations = maxAuthorizations;
+    }
+
     /**
      * Constructs an {@code InMemoryOAuth2AuthorizationService} using the provided
      * parameters.
@@ -83,27 +123,55 @@ public class CustomInMemoryOAuth2AuthorizationService implements CustomOAuth2Aut
             Assert.notNull(authorization, "authorization cannot be null");
             Assert.isTrue(!this.authorizations.containsKey(authorization.getId()),
                     "The authorization must be unique. Found duplicate identifier: " + authorization.getId());
-            this.authorizations.put(authorization.getId(), authorization);
+            save(authorization);
         });
     }
 
     @Override
     public void save(OAuth2Authorization authorization) {
         Assert.notNull(authorization, "authorization cannot be null");
-        if (isComplete(authorization)) {
-            this.authorizations.put(authorization.getId(), authorization);
-        } else {
-            this.initializedAuthorizations.put(authorization.getId(), authorization);
+        Instant now = Instant.now();
+        synchronized (this) {
+            removeById(authorization.getId());
+            StoredAuthorization stored = new StoredAuthorization(authorization, expiresAt(authorization, now));
+            if (isComplete(authorization)) {
+                this.authorizations.put(authorization.getId(), stored);
+            } else {
+                this.initializedAuthorizations.put(authorization.getId(), stored);
+            }
+            for (TokenKind kind : TokenKind.values()) {
+                String value = kind.valueOf(authorization);
+                if (value != null) {
+                    this.tokenIndex.put(new TokenKey(kind, value), authorization.getId());
+                }
+            }
+            if (now.isAfter(this.nextSweepAt) || this.authorizations.size() > this.maxAuthorizations) {
+                sweep(now);
+            }
         }
     }
 
     @Override
     public void remove(OAuth2Authorization authorization) {
         Assert.notNull(authorization, "authorization cannot be null");
-        if (isComplete(authorization)) {
-            this.authorizations.remove(authorization.getId(), authorization);
-        } else {
-            this.initializedAuthorizations.remove(authorization.getId(), authorization);
+        synchronized (this) {
+            StoredAuthorization stored = getStored(authorization.getId());
+            if (stored != null && stored.authorization().equals(authorization)) {
+                removeById(authorization.getId());
+            }
+        }
+    }
+
+    /**
+     * Remove the authorization with the given id, whatever its current state
+     */
+    public synchronized void removeById(String id) {
+        StoredAuthorization stored = this.authorizations.remove(id);
+        if (stored == null) {
+            stored = this.initializedAuthorizations.remove(id);
+        }
+        if (stored != null) {
+            unindex(stored.authorization());
         }
     }
 
@@ -111,101 +179,160 @@ public class CustomInMemoryOAuth2AuthorizationService implements CustomOAuth2Aut
     @Override
     public OAuth2Authorization findById(String id) {
         Assert.hasText(id, "id cannot be empty");
-        OAuth2Authorization authorization = this.authorizations.get(id);
-        return (authorization != null) ? authorization : this.initializedAuthorizations.get(id);
+        StoredAuthorization stored = getStored(id);
+        return (stored != null && !stored.isExpired(Instant.now())) ? stored.authorization() : null;
     }
 
     @Nullable
     @Override
     public OAuth2Authorization findByToken(String token, @Nullable OAuth2TokenType tokenType) {
         Assert.hasText(token, "token cannot be empty");
-        for (OAuth2Authorization authorization : this.authorizations.values()) {
-            if (hasToken(authorization, token, tokenType)) {
-                return authorization;
-            }
+        if (tokenType != null) {
+            TokenKind kind = TokenKind.of(tokenType);
+            return (kind != null) ? findByToken(token, kind) : null;
         }
-        for (OAuth2Authorization authorization : this.initializedAuthorizations.values()) {
-            if (hasToken(authorization, token, tokenType)) {
+        for (TokenKind kind : TokenKind.values()) {
+            OAuth2Authorization authorization = findByToken(token, kind);
+            if (authorization != null) {
                 return authorization;
             }
         }
         return null;
     }
 
-    private static boolean isComplete(OAuth2Authorization authorization) {
-        return authorization.getAccessToken() != null;
-    }
-
-    private static boolean hasToken(OAuth2Authorization authorization, String token,
-                                    @Nullable OAuth2TokenType tokenType) {
-        // @formatter:off
-        if (tokenType == null) {
-            return matchesState(authorization, token) ||
-                    matchesAuthorizationCode(authorization, token) ||
-                    matchesAccessToken(authorization, token) ||
-                    matchesIdToken(authorization, token) ||
-                    matchesRefreshToken(authorization, token) ||
-                    matchesDeviceCode(authorization, token) ||
-                    matchesUserCode(authorization, token);
+    @Nullable
+    private OAuth2Authorization findByToken(String token, TokenKind kind) {
+        String id = this.tokenIndex.get(new TokenKey(kind, token));
+        if (id == null) {
+            return null;
         }
-        else if (OAuth2ParameterNames.STATE.equals(tokenType.getValue())) {
-            return matchesState(authorization, token);
+        StoredAuthorization stored = getStored(id);
+        if (stored == null || stored.isExpired(Instant.now()) || !token.equals(kind.valueOf(stored.authorization()))) {
+            return null;
         }
-        else if (OAuth2ParameterNames.CODE.equals(tokenType.getValue())) {
-            return matchesAuthorizationCode(authorization, token);
+        return stored.authorization();
+    }
+
+    @Nullable
+    private StoredAuthorization getStored(String id) {
+        StoredAuthorization stored = this.authorizations.get(id);
+        return (stored != null) ? stored : this.initializedAuthorizations.get(id);
+    }
+
+    private void unindex(OAuth2Authorization authorization) {
+        for (TokenKind kind : TokenKind.values()) {
+            String value = kind.valueOf(authorization);
+            if (value != null) {
+                this.tokenIndex.remove(new TokenKey(kind, value), authorization.getId());
+            }
         }
-        else if (OAuth2TokenType.ACCESS_TOKEN.equals(tokenType)) {
-            return matchesAccessToken(authorization, token);
+    }
+
+    /*
+     * Remove the expired authorizations and the index entries of the evicted ones, then the oldest completed
+     * authorizations above the maximum number.
+     */
+    private void sweep(Instant now) {
+        this.nextSweepAt = now.plus(SWEEP_INTERVAL);
+        List<StoredAuthorization> expired = new ArrayList<>();
+        this.authorizations.values().forEach(stored -> {
+            if (stored.isExpired(now)) {
+                expired.add(stored);
+            }
+        });
+        synchronized (this.initializedAuthorizations) {
+            this.initializedAuthorizations.values().forEach(stored -> {
+                if (stored.isExpired(now)) {
+                    expired.add(stored);
+                }
+            });
         }
-        else if (OidcParameterNames.ID_TOKEN.equals(tokenType.getValue())) {
-            return matchesIdToken(authorization, token);
+        expired.forEach(stored -> removeById(stored.authorization().getId()));
+        this.tokenIndex.entrySet().removeIf(entry -> getStored(entry.getValue()) == null);
+
+        int excess = this.authorizations.size() - this.maxAuthorizations;
+        if (excess > 0) {
+            this.authorizations.values().stream()
+                    .sorted((a, b) -> a.expiresAt().compareTo(b.expiresAt()))
+                    .limit(excess)
+                    .toList()
+                    .forEach(stored -> removeById(stored.authorization().getId()));
         }
-        else if (OAuth2TokenType.REFRESH_TOKEN.equals(tokenType)) {
-            return matchesRefreshToken(authorization, token);
+    }
+
+    private Instant expiresAt(OAuth2Authorization authorization, Instant now) {
+        Instant expiresAt = null;
+        for (TokenKind kind : TokenKind.values()) {
+            if (kind.tokenClass == null) {
+                continue;
+            }
+            OAuth2Authorization.Token<? extends AbstractOAuth2Token> token = authorization.getToken(kind.tokenClass);
+            Instant tokenExpiresAt = (token != null) ? token.getToken().getExpiresAt() : null;
+            if (tokenExpiresAt != null && (expiresAt == null || tokenExpiresAt.isAfter(expiresAt))) {
+                expiresAt = tokenExpiresAt;
+            }
         }
-        else if (OAuth2ParameterNames.DEVICE_CODE.equals(tokenType.getValue())) {
-            return matchesDeviceCode(authorization, token);
+        if (expiresAt == null) {
+            expiresAt = now.plus(DEFAULT_TIME_TO_LIVE);
         }
-        else if (OAuth2ParameterNames.USER_CODE.equals(tokenType.getValue())) {
-            return matchesUserCode(authorization, token);
+        if (this.maxTimeToLive != null && expiresAt.isAfter(now.plus(this.maxTimeToLive))) {
+            expiresAt = now.plus(this.maxTimeToLive);
         }
-        // @formatter:on
-        return false;
+        return expiresAt;
     }
 
-    private static boolean matchesState(OAuth2Authorization authorization, String token) {
-        return token.equals(authorization.getAttribute(OAuth2ParameterNames.STATE));
+    private static boolean isComplete(OAuth2Authorization authorization) {
+        return authorization.getAccessToken() != null;
     }
 
-    private static boolean matchesAuthorizationCode(OAuth2Authorization authorization, String token) {
-        OAuth2Authorization.Token<OAuth2AuthorizationCode> authorizationCode = authorization
-                .getToken(OAuth2AuthorizationCode.class);
-        return authorizationCode != null && authorizationCode.getToken().getTokenValue().equals(token);
-    }
+    private enum TokenKind {
+        STATE(OAuth2ParameterNames.STATE, null),
+        CODE(OAuth2ParameterNames.CODE, OAuth2AuthorizationCode.class),
+        ACCESS_TOKEN(OAuth2TokenType.ACCESS_TOKEN.getValue(), OAuth2AccessToken.class),
+        ID_TOKEN(OidcParameterNames.ID_TOKEN, OidcIdToken.class),
+        REFRESH_TOKEN(OAuth2TokenType.REFRESH_TOKEN.getValue(), OAuth2RefreshToken.class),
+        DEVICE_CODE(OAuth2ParameterNames.DEVICE_CODE, OAuth2DeviceCode.class),
+        USER_CODE(OAuth2ParameterNames.USER_CODE, OAuth2UserCode.class);
 
-    private static boolean matchesAccessToken(OAuth2Authorization authorization, String token) {
-        OAuth2Authorization.Token<OAuth2AccessToken> accessToken = authorization.getToken(OAuth2AccessToken.class);
-        return accessToken != null && accessToken.getToken().getTokenValue().equals(token);
-    }
+        private final String tokenType;
 
-    private static boolean matchesRefreshToken(OAuth2Authorization authorization, String token) {
-        OAuth2Authorization.Token<OAuth2RefreshToken> refreshToken = authorization.getToken(OAuth2RefreshToken.class);
-        return refreshToken != null && refreshToken.getToken().getTokenValue().equals(token);
-    }
+        @Nullable
+        private final Class<? extends AbstractOAuth2Token> tokenClass;
+
+        TokenKind(String tokenType, @Nullable Class<? extends AbstractOAuth2Token> tokenClass) {
+            this.tokenType = tokenType;
+            this.tokenClass = tokenClass;
+        }
 
-    private static boolean matchesIdToken(OAuth2Authorization authorization, String token) {
-        OAuth2Authorization.Token<OidcIdToken> idToken = authorization.getToken(OidcIdToken.class);
-        return idToken != null && idToken.getToken().getTokenValue().equals(token);
+        @Nullable
+        static TokenKind of(OAuth2TokenType tokenType) {
+            for (TokenKind kind : values()) {
+                if (kind.tokenType.equals(tokenType.getValue())) {
+                    return kind;
+                }
+            }
+            return null;
+        }
+
+        @Nullable
+        String valueOf(OAuth2Authorization authorization) {
+            if (this.tokenClass == null) {
+                return authorization.getAttribute(OAuth2ParameterNames.STATE);
+            }
+            OAuth2Authorization.Token<? extends AbstractOAuth2Token> token = authorization.getToken(this.tokenClass);
+            return (token != null) ? token.getToken().getTokenValue() : null;
+        }
     }
 
-    private static boolean matchesDeviceCode(OAuth2Authorization authorization, String token) {
-        OAuth2Authorization.Token<OAuth2DeviceCode> deviceCode = authorization.getToken(OAuth2DeviceCode.class);
-        return deviceCode != null && deviceCode.getToken().getTokenValue().equals(token);
+    private record TokenKey(TokenKind kind, String value) {
     }
 
-    private static boolean matchesUserCode(OAuth2Authorization authorization, String token) {
-        OAuth2Authorization.Token<OAuth2UserCode> userCode = authorization.getToken(OAuth2UserCode.class);
-        return userCode != null && userCode.getToken().getTokenValue().equals(token);
+    private record StoredAuthorization(OAuth2Authorization authorization, Instant expiresAt) {
+
+        boolean isExpired(Instant now) {
+            return !now.isBefore(this.expiresAt);
+        }
+
     }
 
     private static final class MaxSizeHashMap<K, V> extends LinkedHashMap<K, V> {
@@ -235,17 +362,18 @@ public class CustomInMemoryOAuth2AuthorizationService implements CustomOAuth2Aut
 //        }
 //        removedAuthorizations.forEach(this.authorizations::remove);
 
-        Map<String, OAuth2Authorization> removedAuthorizations = new ConcurrentHashMap<>();
-        for (OAuth2Authorization authorization : this.authorizations.values()) {
+        List<String> removedAuthorizationIds = new ArrayList<>();
+        for (StoredAuthorization stored : this.authorizations.values()) {
+            OAuth2Authorization authorization = stored.authorization();
             if (authorization.getPrincipalName().equals(principalName)
                     && authorization.getAccessToken() != null
                     && authorization.getAccessToken().getToken() != null
                     && authorization.getAccessToken().getToken().getExpiresAt() != null
                     && authorization.getAccessToken().getToken().getExpiresAt().isBefore(Instant.now())) {
-                removedAuthorizations.put(authorization.getId(), authorization);
+                removedAuthorizationIds.add(authorization.getId());
             }
         }
-        removedAuthorizations.forEach(this.authorizations::remove);
+        removedAuthorizationIds.forEach(this::removeById);
     }
 
 }
@@ -0,0 +1,28 @@
+package com.milesight.beaveriot.authentication.provider;
+
+import com.milesight.beaveriot.pubsub.api.message.RemoteBroadcastMessage;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Broadcast after an authorization is saved or removed, its cached copies are outdated on all nodes.
+ *
+ * @author leon
+ */
+@Getter
+@Setter
+@ToString(callSuper = true)
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class OAuth2AuthorizationRevokedEvent extends RemoteBroadcastMessage {
+
+    private String authorizationId;
+
+    public OAuth2AuthorizationRevokedEvent(String authorizationId) {
+        this.authorizationId = authorizationId;
+    }
+
+}
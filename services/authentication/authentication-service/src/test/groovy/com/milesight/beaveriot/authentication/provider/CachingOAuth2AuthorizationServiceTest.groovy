@@ -0,0 +1,85 @@
+package com.milesight.beaveriot.authentication.provider
+
+import com.milesight.beaveriot.authentication.config.OAuth2Properties
+import com.milesight.beaveriot.pubsub.MessagePubSub
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType
+import spock.lang.Specification
+
+import static com.milesight.beaveriot.authentication.provider.OAuth2AuthorizationFixtures.completed
+
+/**
+ * @author leon
+ */
+class CachingOAuth2AuthorizationServiceTest extends Specification {
+
+    CustomOAuth2AuthorizationService delegate
+
+    MessagePubSub messagePubSub
+
+    CachingOAuth2AuthorizationService service
+
+    def setup() {
+        delegate = Mock(CustomOAuth2AuthorizationService)
+        messagePubSub = Mock(MessagePubSub)
+        service = new CachingOAuth2AuthorizationService(delegate, new OAuth2Properties.AuthorizationCache(), messagePubSub)
+    }
+
+    def "authorization found in the store should be cached"() {
+        given:
+        def authorization = completed("1")
+
+        when:
+        def first = service.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN)
+        def second = service.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN)
+        def byId = service.findById("1")
+        def byRefreshToken = service.findByToken("refresh-1", null)
+
+        then:
+        1 * delegate.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN) >> authorization
+        0 * delegate._
+        [first, second, byId, byRefreshToken].every { it.is(authorization) }
+    }
+
+    def "authorization not found in the store should not be cached"() {
+        when:
+        service.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN)
+        service.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN)
+
+        then:
+        2 * delegate.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN) >> null
+    }
+
+    def "cached authorization should be evicted on the revoked event"() {
+        given:
+        def authorization = completed("1")
+        delegate.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN) >> authorization
+        service.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN)
+
+        when:
+        service.onAuthorizationRevoked(new OAuth2AuthorizationRevokedEvent("1"))
+        def found = service.findById("1")
+
+        then:
+        1 * delegate.findById("1") >> null
+        found == null
+    }
+
+    def "saved or removed authorization should be evicted and revoked on all nodes"() {
+        given:
+        def authorization = completed("1")
+        delegate.findById("1") >> authorization
+        service.findById("1")
+
+        when:
+        service."$operation"(authorization)
+        service.findById("1")
+
+        then:
+        1 * delegate."$operation"(authorization)
+        1 * messagePubSub.publishAfterCommit({ it instanceof OAuth2AuthorizationRevokedEvent && it.authorizationId == "1" })
+        1 * delegate.findById("1") >> authorization
+
+        where:
+        operation << ["save", "remove"]
+    }
+}
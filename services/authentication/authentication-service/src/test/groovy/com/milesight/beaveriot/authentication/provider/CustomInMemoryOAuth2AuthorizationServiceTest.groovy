@@ -0,0 +1,164 @@
+package com.milesight.beaveriot.authentication.provider
+
+import org.springframework.security.oauth2.core.OAuth2AccessToken
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames
+import org.springframework.security.oauth2.core.oidc.endpoint.OidcParameterNames
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType
+import spock.lang.Specification
+
+import java.time.Duration
+import java.time.Instant
+
+import static com.milesight.beaveriot.authentication.provider.OAuth2AuthorizationFixtures.completed
+import static com.milesight.beaveriot.authentication.provider.OAuth2AuthorizationFixtures.initialized
+
+/**
+ * @author leon
+ */
+class CustomInMemoryOAuth2AuthorizationServiceTest extends Specification {
+
+    CustomInMemoryOAuth2AuthorizationService service = new CustomInMemoryOAuth2AuthorizationService()
+
+    def "authorization should be found by each kind of its tokens"() {
+        given:
+        service.save(completed("1"))
+        service.save(completed("2"))
+
+        expect:
+        service.findByToken(prefix + "-1", tokenType)?.id == "1"
+        service.findByToken(prefix + "-2", null)?.id == "2"
+        service.findByToken(prefix + "-3", tokenType) == null
+
+        where:
+        prefix    | tokenType
+        "state"   | new OAuth2TokenType(OAuth2ParameterNames.STATE)
+        "code"    | new OAuth2TokenType(OAuth2ParameterNames.CODE)
+        "access"  | OAuth2TokenType.ACCESS_TOKEN
+        "refresh" | OAuth2TokenType.REFRESH_TOKEN
+        "id"      | new OAuth2TokenType(OidcParameterNames.ID_TOKEN)
+        "device"  | new OAuth2TokenType(OAuth2ParameterNames.DEVICE_CODE)
+        "user"    | new OAuth2TokenType(OAuth2ParameterNames.USER_CODE)
+    }
+
+    def "token should not be found as another kind of token"() {
+        given:
+        service.save(completed("1"))
+
+        expect:
+        service.findByToken("access-1", OAuth2TokenType.REFRESH_TOKEN) == null
+        service.findByToken("refresh-1", OAuth2TokenType.ACCESS_TOKEN) == null
+        service.findByToken("access-1", new OAuth2TokenType("unknown")) == null
+    }
+
+    def "initialized authorization should be found by its state until it is completed"() {
+        given:
+        service.save(initialized("1").build())
+
+        expect:
+        service.findByToken("state-1", new OAuth2TokenType(OAuth2ParameterNames.STATE))?.id == "1"
+        service.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN) == null
+
+        when:
+        service.save(completed("1"))
+
+        then:
+        service.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN)?.id == "1"
+        service.findById("1").accessToken != null
+    }
+
+    def "authorization should expire with the last of its tokens"() {
+        given:
+        service.save(completed("1", Duration.ofMinutes(-1), Duration.ofMinutes(-1)))
+        service.save(completed("2", Duration.ofMinutes(-1), Duration.ofHours(1)))
+
+        expect:
+        service.findById("1") == null
+        service.findByToken("refresh-1", OAuth2TokenType.REFRESH_TOKEN) == null
+        service.findById("2") != null
+        service.findByToken("refresh-2", OAuth2TokenType.REFRESH_TOKEN)?.id == "2"
+    }
+
+    def "authorization should expire after the maximum time to live"() {
+        given:
+        def cache = new CustomInMemoryOAuth2AuthorizationService(Duration.ofMillis(200), 10)
+        cache.save(completed("1"))
+
+        expect:
+        cache.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN)?.id == "1"
+
+        when:
+        Thread.sleep(300)
+
+        then:
+        cache.findById("1") == null
+        cache.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN) == null
+    }
+
+    def "authorizations expiring first should be evicted above the maximum number"() {
+        given:
+        def cache = new CustomInMemoryOAuth2AuthorizationService(Duration.ofMinutes(1), 2)
+
+        when:
+        cache.save(completed("2", Duration.ofSeconds(20), Duration.ofSeconds(20)))
+        cache.save(completed("1", Duration.ofSeconds(10), Duration.ofSeconds(10)))
+        cache.save(completed("3", Duration.ofSeconds(30), Duration.ofSeconds(30)))
+
+        then:
+        cache.findById("1") == null
+        cache.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN) == null
+        cache.findById("2") != null
+        cache.findById("3") != null
+    }
+
+    def "removed authorization should be unindexed"() {
+        given:
+        service.save(completed("1"))
+        service.save(completed("2"))
+
+        when:
+        service.removeById("1")
+
+        then:
+        service.findById("1") == null
+        ["state", "code", "access", "refresh", "id", "device", "user"].every { service.findByToken(it + "-1", null) == null }
+        service.@tokenIndex.values().toSet() == ["2"].toSet()
+        service.findByToken("access-2", OAuth2TokenType.ACCESS_TOKEN)?.id == "2"
+    }
+
+    def "replaced tokens should be unindexed when the authorization is saved again"() {
+        given:
+        service.save(completed("1"))
+        def refreshed = initialized("1")
+                .accessToken(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "access-rotated",
+                        Instant.now(), Instant.now().plusSeconds(60)))
+                .build()
+
+        when:
+        service.save(refreshed)
+
+        then:
+        service.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN) == null
+        service.findByToken("refresh-1", OAuth2TokenType.REFRESH_TOKEN) == null
+        service.findByToken("access-rotated", OAuth2TokenType.ACCESS_TOKEN)?.id == "1"
+        service.@tokenIndex.size() == 2
+    }
+
+    def "authorization should only be removed if it is the stored one"() {
+        given:
+        def stored = completed("1")
+        service.save(stored)
+
+        when:
+        service.remove(completed("1", Duration.ofMinutes(7)))
+
+        then:
+        service.findById("1") != null
+
+        when:
+        service.remove(stored)
+
+        then:
+        service.findById("1") == null
+        service.@tokenIndex.isEmpty()
+    }
+}
@@ -0,0 +1,53 @@
+package com.milesight.beaveriot.authentication.provider
+
+import org.springframework.security.oauth2.core.AuthorizationGrantType
+import org.springframework.security.oauth2.core.OAuth2AccessToken
+import org.springframework.security.oauth2.core.OAuth2DeviceCode
+import org.springframework.security.oauth2.core.OAuth2RefreshToken
+import org.springframework.security.oauth2.core.OAuth2UserCode
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames
+import org.springframework.security.oauth2.core.oidc.OidcIdToken
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient
+
+import java.time.Duration
+import java.time.Instant
+
+/**
+ * @author leon
+ */
+class OAuth2AuthorizationFixtures {
+
+    static final RegisteredClient CLIENT = RegisteredClient.withId("registered-client")
+            .clientId("client")
+            .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+            .build()
+
+    /**
+     * Authorization with a token of each kind, the values are prefixed by the kind and suffixed by the id. All tokens
+     * but the refresh token expire with the access token.
+     */
+    static OAuth2Authorization completed(String id, Duration accessTokenTimeToLive = Duration.ofMinutes(5),
+                                         Duration refreshTokenTimeToLive = Duration.ofHours(1)) {
+        def now = Instant.now()
+        def issuedAt = now.minus(Duration.ofDays(1))
+        def expiresAt = now.plus(accessTokenTimeToLive)
+        return initialized(id)
+                .token(new OAuth2AuthorizationCode("code-" + id, issuedAt, expiresAt))
+                .accessToken(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "access-" + id, issuedAt, expiresAt))
+                .refreshToken(new OAuth2RefreshToken("refresh-" + id, issuedAt, now.plus(refreshTokenTimeToLive)))
+                .token(new OidcIdToken("id-" + id, issuedAt, expiresAt, [sub: "user"]))
+                .token(new OAuth2DeviceCode("device-" + id, issuedAt, expiresAt))
+                .token(new OAuth2UserCode("user-" + id, issuedAt, expiresAt))
+                .build()
+    }
+
+    static OAuth2Authorization.Builder initialized(String id) {
+        return OAuth2Authorization.withRegisteredClient(CLIENT)
+                .id(id)
+                .principalName("user")
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .attribute(OAuth2ParameterNames.STATE, "state-" + id)
+    }
+}
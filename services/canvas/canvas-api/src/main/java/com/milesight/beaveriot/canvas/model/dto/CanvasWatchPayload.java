@@ -0,0 +1,28 @@
+package com.milesight.beaveriot.canvas.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Entities a web session watches, published by the session to the {@code uplink/web/watch} topic. An empty list
+ * stops the notifications of the session.
+ *
+ * @author leon
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CanvasWatchPayload implements Serializable {
+
+    /**
+     * Id of the session, the part of its web mqtt client id after '#', as returned by the web mqtt credentials API
+     */
+    private String sessionId;
+
+    private List<String> entityIds;
+
+}
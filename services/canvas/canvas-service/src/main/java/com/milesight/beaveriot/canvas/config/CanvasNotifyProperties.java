@@ -0,0 +1,34 @@
+package com.milesight.beaveriot.canvas.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of the entity change notifications sent to the web sessions.
+ *
+ * @author leon
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "canvas.notify")
+public class CanvasNotifyProperties {
+
+    /**
+     * Changes of a tenant within this window are sent together
+     */
+    private Duration window = Duration.ofMillis(250);
+
+    /**
+     * Time a session is notified after it last published its watched entities
+     */
+    private Duration sessionTimeToLive = Duration.ofMinutes(10);
+
+    /**
+     * Whether all changes of a tenant are also sent to the tenant topic, for the sessions not publishing their watched
+     * entities
+     */
+    private boolean tenantTopicEnabled = true;
+}
@@ -3,8 +3,9 @@ package com.milesight.beaveriot.canvas.service;
 import com.milesight.beaveriot.base.enums.ErrorCode;
 import com.milesight.beaveriot.base.exception.ServiceException;
 import com.milesight.beaveriot.base.utils.JsonUtils;
+import com.milesight.beaveriot.canvas.config.CanvasNotifyProperties;
 import com.milesight.beaveriot.canvas.model.dto.CanvasExchangePayload;
-import com.milesight.beaveriot.context.api.EntityServiceProvider;
+import com.milesight.beaveriot.canvas.model.dto.CanvasWatchPayload;
 import com.milesight.beaveriot.context.api.MqttPubSubServiceProvider;
 import com.milesight.beaveriot.context.constants.ExchangeContextKeys;
 import com.milesight.beaveriot.context.integration.enums.EntityType;
@@ -13,59 +14,254 @@ import com.milesight.beaveriot.context.integration.model.ExchangePayload;
 import com.milesight.beaveriot.context.integration.model.event.ExchangeEvent;
 import com.milesight.beaveriot.context.integration.model.event.MqttEvent;
 import com.milesight.beaveriot.context.mqtt.enums.MqttQos;
+import com.milesight.beaveriot.context.mqtt.model.MqttDisconnectEvent;
+import com.milesight.beaveriot.context.mqtt.model.MqttMessage;
 import com.milesight.beaveriot.eventbus.annotations.EventSubscribe;
 import com.milesight.beaveriot.mqtt.api.MqttAdminPubSubServiceProvider;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
+ * Notifies the web sessions of the changed entities.
+ * <p>
+ * A web session publishes the entities it watches to {@code uplink/web/watch}, see {@link CanvasWatchPayload}. The
+ * watched entities are received by all nodes, a session is forgotten when its web client disconnects, publishes no
+ * entities or does not publish again within its time to live. The session id is the suffix of the web client id, see
+ * {@link MqttAdminPubSubServiceProvider#getWebClientId(String, String)}. The ids of the changed property entities are collected per tenant
+ * and sent once per window: each session receives the ids it watches on {@code downlink/web/exchange/<session id>},
+ * and all ids are sent to {@code downlink/web/exchange} if the tenant topic is enabled.
+ *
  * @author loong
  * @date 2024/10/18 11:15
  */
 @Service
 @Slf4j
 public class CanvasNotifyService {
+
+    private static final String EXCHANGE_TOPIC = "downlink/web/exchange";
+
+    private static final String WATCH_TOPIC = "uplink/web/watch";
+
     @Autowired
     private MqttPubSubServiceProvider mqttPubSubServiceProvider;
 
+    @Autowired
+    private CanvasNotifyProperties canvasNotifyProperties;
+
+    /**
+     * tenant id -> ids of the entities changed in the current window
+     */
+    private final Map<String, Set<String>> pendingEntityIds = new ConcurrentHashMap<>();
+
+    /**
+     * tenant id -> session id -> watched entities
+     */
+    private final Map<String, Map<String, WatchSession>> tenantSessions = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void start() {
+        mqttPubSubServiceProvider.subscribe(WATCH_TOPIC, this::onWatch, false);
+        mqttPubSubServiceProvider.onDisconnect(this::onDisconnect);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "canvas-notify-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long window = canvasNotifyProperties.getWindow().toMillis();
+        flusher.scheduleWithFixedDelay(this::flush, window, window, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+    }
+
     @EventSubscribe(payloadKeyExpression = "*")
     public void onCanvasNotify(ExchangeEvent exchangeEvent) {
-        doCanvasNotify(exchangeEvent.getPayload());
+        try {
+            collect(exchangeEvent.getPayload());
+        } catch (Exception e) {
+            log.error("onCanvasNotify error:{}", e.getMessage(), e);
+        }
     }
 
-    private void doCanvasNotify(ExchangePayload exchangePayload) {
-        try {
-            String tenantId = (String) exchangePayload.getContext(ExchangeContextKeys.SOURCE_TENANT_ID);
-            if (!StringUtils.hasText(tenantId)) {
-                throw ServiceException.with(ErrorCode.PARAMETER_SYNTAX_ERROR).detailMessage("tenantId is not exist").build();
+    private void collect(ExchangePayload exchangePayload) {
+        String tenantId = (String) exchangePayload.getContext(ExchangeContextKeys.SOURCE_TENANT_ID);
+        if (!StringUtils.hasText(tenantId)) {
+            throw ServiceException.with(ErrorCode.PARAMETER_SYNTAX_ERROR).detailMessage("tenantId is not exist").build();
+        }
+
+        boolean tenantTopicEnabled = canvasNotifyProperties.isTenantTopicEnabled();
+        Map<String, WatchSession> sessions = tenantSessions.get(tenantId);
+        if (!tenantTopicEnabled && CollectionUtils.isEmpty(sessions)) {
+            return;
+        }
+
+        List<String> entityIds = exchangePayload.getExchangeEntities()
+                .values()
+                .stream()
+                .filter(entity -> EntityType.PROPERTY.equals(entity.getType()))
+                .map(Entity::getId)
+                .map(String::valueOf)
+                .filter(entityId -> tenantTopicEnabled || isWatched(sessions, entityId))
+                .toList();
+
+        if (entityIds.isEmpty()) {
+            return;
+        }
+
+        pendingEntityIds.compute(tenantId, (key, ids) -> {
+            if (ids == null) {
+                ids = new LinkedHashSet<>();
             }
-            List<String> entityIds = exchangePayload.getExchangeEntities()
-                    .values()
-                    .stream()
-                    .filter(entity -> EntityType.PROPERTY.equals(entity.getType()))
-                    .map(Entity::getId)
-                    .map(String::valueOf)
-                    .toList();
+            ids.addAll(entityIds);
+            return ids;
+        });
+    }
+
+    private static boolean isWatched(Map<String, WatchSession> sessions, String entityId) {
+        return sessions.values().stream().anyMatch(session -> session.entityIds().contains(entityId));
+    }
+
+    void flush() {
+        long now = System.currentTimeMillis();
+        for (String tenantId : pendingEntityIds.keySet()) {
+            Set<String> entityIds = pendingEntityIds.remove(tenantId);
+            if (CollectionUtils.isEmpty(entityIds)) {
+                continue;
+            }
+            try {
+                notify(tenantId, entityIds, now);
+            } catch (Exception e) {
+                log.error("onCanvasNotify error:{}", e.getMessage(), e);
+            }
+        }
 
-            if (entityIds.isEmpty()) {
+        for (String tenantId : tenantSessions.keySet()) {
+            tenantSessions.computeIfPresent(tenantId, (key, sessions) -> {
+                sessions.values().removeIf(session -> session.isExpired(now));
+                return sessions.isEmpty() ? null : sessions;
+            });
+        }
+    }
+
+    private void notify(String tenantId, Set<String> entityIds, long now) {
+        String webMqttUsername = MqttAdminPubSubServiceProvider.getWebUsername(tenantId);
+        if (canvasNotifyProperties.isTenantTopicEnabled()) {
+            publish(webMqttUsername, EXCHANGE_TOPIC, new ArrayList<>(entityIds));
+        }
+
+        Map<String, WatchSession> sessions = tenantSessions.get(tenantId);
+        if (sessions == null) {
+            return;
+        }
+        sessions.forEach((sessionId, session) -> {
+            if (session.isExpired(now)) {
                 return;
             }
+            List<String> watchedEntityIds = entityIds.stream()
+                    .filter(session.entityIds()::contains)
+                    .toList();
+            if (!watchedEntityIds.isEmpty()) {
+                publish(webMqttUsername, EXCHANGE_TOPIC + "/" + sessionId, watchedEntityIds);
+            }
+        });
+    }
 
-            CanvasExchangePayload canvasExchangePayload = new CanvasExchangePayload(entityIds);
-            String event = JsonUtils.toJSON(MqttEvent.of(MqttEvent.EventType.EXCHANGE, canvasExchangePayload));
-            String webMqttUsername = MqttAdminPubSubServiceProvider.getWebUsername(tenantId);
-            mqttPubSubServiceProvider.publish(webMqttUsername, "downlink/web/exchange",
-                    event.getBytes(StandardCharsets.UTF_8), MqttQos.AT_MOST_ONCE, false);
+    private void publish(String webMqttUsername, String topicSubPath, List<String> entityIds) {
+        CanvasExchangePayload canvasExchangePayload = new CanvasExchangePayload(entityIds);
+        String event = JsonUtils.toJSON(MqttEvent.of(MqttEvent.EventType.EXCHANGE, canvasExchangePayload));
+        mqttPubSubServiceProvider.publish(webMqttUsername, topicSubPath,
+                event.getBytes(StandardCharsets.UTF_8), MqttQos.AT_MOST_ONCE, false);
 
-            log.debug("onCanvasNotify:{}", canvasExchangePayload);
-        } catch (Exception e) {
-            log.error("onCanvasNotify error:{}", e.getMessage(), e);
+        log.debug("onCanvasNotify:{}", canvasExchangePayload);
+    }
+
+    void onWatch(MqttMessage message) {
+        String tenantId = message.getTenantId();
+        if (tenantId == null || !MqttAdminPubSubServiceProvider.getWebUsername(tenantId).equals(message.getUsername())) {
+            return;
+        }
+
+        CanvasWatchPayload payload = JsonUtils.fromJSON(message.getPayloadAsString(), CanvasWatchPayload.class);
+        if (payload == null || !isValidSessionId(payload.getSessionId())) {
+            log.warn("invalid canvas watch payload: {}", message.getPayloadAsString());
+            return;
         }
+
+        String sessionId = payload.getSessionId();
+        if (CollectionUtils.isEmpty(payload.getEntityIds())) {
+            removeSession(tenantId, sessionId);
+            return;
+        }
+
+        Set<String> entityIds = payload.getEntityIds().stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toUnmodifiableSet());
+        WatchSession session = new WatchSession(entityIds,
+                System.currentTimeMillis() + canvasNotifyProperties.getSessionTimeToLive().toMillis());
+        tenantSessions.compute(tenantId, (key, sessions) -> {
+            if (sessions == null) {
+                sessions = new ConcurrentHashMap<>();
+            }
+            sessions.put(sessionId, session);
+            return sessions;
+        });
+    }
+
+    void onDisconnect(MqttDisconnectEvent event) {
+        if (event.getTenantId() == null) {
+            return;
+        }
+        String sessionId = MqttAdminPubSubServiceProvider.getWebSessionId(event.getTenantId(), event.getClientId());
+        if (sessionId != null) {
+            removeSession(event.getTenantId(), sessionId);
+        }
+    }
+
+    private void removeSession(String tenantId, String sessionId) {
+        tenantSessions.computeIfPresent(tenantId, (key, sessions) -> {
+            sessions.remove(sessionId);
+            return sessions.isEmpty() ? null : sessions;
+        });
+    }
+
+    private static boolean isValidSessionId(String sessionId) {
+        return StringUtils.hasText(sessionId)
+                && sessionId.indexOf('/') < 0
+                && sessionId.indexOf('+') < 0
+                && sessionId.indexOf('#') < 0;
+    }
+
+    private record WatchSession(Set<String> entityIds, long expiresAt) {
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+
     }
 
 }
@@ -0,0 +1,209 @@
+package com.milesight.beaveriot.canvas.service
+
+import com.milesight.beaveriot.base.utils.JsonUtils
+import com.milesight.beaveriot.canvas.config.CanvasNotifyProperties
+import com.milesight.beaveriot.context.api.MqttPubSubServiceProvider
+import com.milesight.beaveriot.context.constants.ExchangeContextKeys
+import com.milesight.beaveriot.context.integration.enums.EntityType
+import com.milesight.beaveriot.context.integration.model.Entity
+import com.milesight.beaveriot.context.integration.model.ExchangePayload
+import com.milesight.beaveriot.context.integration.model.event.ExchangeEvent
+import com.milesight.beaveriot.context.mqtt.model.MqttDisconnectEvent
+import com.milesight.beaveriot.context.mqtt.model.MqttMessage
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+
+/**
+ * Test class for CanvasNotifyService
+ *
+ * @author leon
+ */
+class CanvasNotifyServiceSpec extends Specification {
+
+    CanvasNotifyService canvasNotifyService
+    MqttPubSubServiceProvider mqttPubSubServiceProvider = Mock()
+    CanvasNotifyProperties canvasNotifyProperties = new CanvasNotifyProperties()
+
+    def setup() {
+        canvasNotifyService = new CanvasNotifyService()
+        canvasNotifyService.mqttPubSubServiceProvider = mqttPubSubServiceProvider
+        canvasNotifyService.canvasNotifyProperties = canvasNotifyProperties
+    }
+
+    def watch(String tenantId, String sessionId, List<String> entityIds) {
+        def payload = JsonUtils.toJSON([session_id: sessionId, entity_ids: entityIds])
+        canvasNotifyService.onWatch(MqttMessage.builder()
+                .tenantId(tenantId)
+                .username("web_mqtt@" + tenantId)
+                .payload(payload.getBytes(StandardCharsets.UTF_8))
+                .build())
+    }
+
+    def changed(String tenantId, List<String> entityIds, EntityType entityType = EntityType.PROPERTY) {
+        def payload = ExchangePayload.create(entityIds.collectEntries { ["entity." + it, it] })
+        def entities = entityIds.collectEntries { entityId ->
+            ["entity." + entityId, Stub(Entity) {
+                getId() >> Long.valueOf(entityId)
+                getType() >> entityType
+            }]
+        }
+        payload.putContext(ExchangeContextKeys.EXCHANGE_ENTITIES, entities)
+        if (tenantId != null) {
+            payload.putContext(ExchangeContextKeys.SOURCE_TENANT_ID, tenantId)
+        }
+        canvasNotifyService.onCanvasNotify(ExchangeEvent.of("test", payload))
+    }
+
+    static List<String> entityIdsOf(byte[] payload) {
+        return JsonUtils.fromJSON(new String(payload, StandardCharsets.UTF_8)).get("payload").get("entity_ids")*.asText()
+    }
+
+    def "flush should send all changes of a window to the tenant topic in one message"() {
+        given:
+        changed("t1", ["1", "2", "3"])
+
+        when:
+        canvasNotifyService.flush()
+
+        then:
+        1 * mqttPubSubServiceProvider.publish("web_mqtt@t1", "downlink/web/exchange", { entityIdsOf(it) == ["1", "2", "3"] }, _, false)
+        0 * mqttPubSubServiceProvider.publish(*_)
+    }
+
+    def "flush should send each watching session only the entities it watches"() {
+        given:
+        canvasNotifyProperties.tenantTopicEnabled = false
+        watch("t1", "100", ["1", "3"])
+        watch("t1", "200", ["4"])
+        changed("t1", ["1", "2", "3"])
+
+        when:
+        canvasNotifyService.flush()
+
+        then:
+        1 * mqttPubSubServiceProvider.publish("web_mqtt@t1", "downlink/web/exchange/100", { entityIdsOf(it) == ["1", "3"] }, _, false)
+        0 * mqttPubSubServiceProvider.publish(*_)
+    }
+
+    def "only the changes of property entities should be sent"() {
+        given:
+        changed("t1", ["1"], EntityType.SERVICE)
+        changed("t1", ["2"], EntityType.EVENT)
+        changed("t1", ["3"])
+
+        when:
+        canvasNotifyService.flush()
+
+        then:
+        1 * mqttPubSubServiceProvider.publish("web_mqtt@t1", "downlink/web/exchange", { entityIdsOf(it) == ["3"] }, _, false)
+        0 * mqttPubSubServiceProvider.publish(*_)
+    }
+
+    def "changes should be collected per tenant"() {
+        given:
+        changed("t1", ["1", "2"])
+        changed("t2", ["3"])
+        changed("t1", ["2", "4"])
+
+        when:
+        canvasNotifyService.flush()
+
+        then:
+        1 * mqttPubSubServiceProvider.publish("web_mqtt@t1", "downlink/web/exchange", { entityIdsOf(it) == ["1", "2", "4"] }, _, false)
+        1 * mqttPubSubServiceProvider.publish("web_mqtt@t2", "downlink/web/exchange", { entityIdsOf(it) == ["3"] }, _, false)
+        0 * mqttPubSubServiceProvider.publish(*_)
+    }
+
+    def "changes without a tenant should be ignored"() {
+        given:
+        changed(null, ["1"])
+
+        when:
+        canvasNotifyService.flush()
+
+        then:
+        0 * mqttPubSubServiceProvider.publish(*_)
+    }
+
+    def "only the watched changes of the watching tenants should be collected when the tenant topic is disabled"() {
+        given:
+        canvasNotifyProperties.tenantTopicEnabled = false
+        watch("t1", "100", ["1"])
+
+        when:
+        changed("t1", ["1", "2"])
+        changed("t2", ["1"])
+
+        then:
+        canvasNotifyService.pendingEntityIds == [t1: ["1"] as Set]
+
+        when:
+        canvasNotifyService.flush()
+
+        then:
+        1 * mqttPubSubServiceProvider.publish("web_mqtt@t1", "downlink/web/exchange/100", { entityIdsOf(it) == ["1"] }, _, false)
+        0 * mqttPubSubServiceProvider.publish(*_)
+    }
+
+    def "flush should not send anything without changes"() {
+        given:
+        watch("t1", "100", ["1"])
+
+        when:
+        canvasNotifyService.flush()
+
+        then:
+        0 * mqttPubSubServiceProvider.publish(*_)
+    }
+
+    def "watch should ignore messages from other users and invalid session ids"() {
+        given:
+        canvasNotifyProperties.tenantTopicEnabled = false
+        canvasNotifyService.onWatch(MqttMessage.builder()
+                .tenantId("t1")
+                .username("device@t1")
+                .payload(JsonUtils.toJSON([session_id: "100", entity_ids: ["1"]]).getBytes(StandardCharsets.UTF_8))
+                .build())
+        watch("t1", "a/b", ["1"])
+        changed("t1", ["1"])
+
+        when:
+        canvasNotifyService.flush()
+
+        then:
+        0 * mqttPubSubServiceProvider.publish(*_)
+    }
+
+    def "session should no longer be notified after it disconnects or watches nothing"() {
+        given:
+        canvasNotifyProperties.tenantTopicEnabled = false
+        watch("t1", "100", ["1"])
+        watch("t1", "200", ["1"])
+        canvasNotifyService.onDisconnect(new MqttDisconnectEvent("t1", "web_mqtt@t1#100", "web_mqtt@t1", 0L))
+        watch("t1", "200", [])
+        changed("t1", ["1"])
+
+        when:
+        canvasNotifyService.flush()
+
+        then:
+        0 * mqttPubSubServiceProvider.publish(*_)
+    }
+
+    def "session should still be notified after another client with the same suffix disconnects"() {
+        given:
+        canvasNotifyProperties.tenantTopicEnabled = false
+        watch("t1", "100", ["1"])
+        canvasNotifyService.onDisconnect(new MqttDisconnectEvent("t1", "device#100", "device@t1", 0L))
+        canvasNotifyService.onDisconnect(new MqttDisconnectEvent("t2", "web_mqtt@t2#100", "web_mqtt@t2", 0L))
+        changed("t1", ["1"])
+
+        when:
+        canvasNotifyService.flush()
+
+        then:
+        1 * mqttPubSubServiceProvider.publish("web_mqtt@t1", "downlink/web/exchange/100", { entityIdsOf(it) == ["1"] }, _, false)
+        0 * mqttPubSubServiceProvider.publish(*_)
+    }
+}
@@ -5,26 +5,63 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.milesight.beaveriot.base.utils.StringUtils;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.SneakyThrows;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
 import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.Engine;
 import org.graalvm.polyglot.HostAccess;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Source;
 import org.graalvm.polyglot.Value;
 import org.springframework.util.CollectionUtils;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 /**
+ * Executor of the entry function of a codec script.
+ * <p>
+ * The script is compiled once into warmed contexts sharing the engine: each context has evaluated the script and
+ * resolved the entry function in advance, so an execution only converts the arguments and calls the function. A
+ * pooled context serves the devices of all tenants, so every execution must see the global state of a newly evaluated
+ * script, which is enforced once the script is evaluated:
+ * <ul>
+ *     <li>the built-in objects and everything reachable from them, such as the prototypes, are frozen, an execution
+ *     can't patch them</li>
+ *     <li>the global object, the top level {@code let} variables and the objects reachable from the top level
+ *     declarations are restored after every execution: the added properties are removed, the reassigned ones are set
+ *     back to their initial values, and the entries of maps, sets and buffers are restored, so scripts may still
+ *     fill a top level object or table during an execution</li>
+ * </ul>
+ * A context is discarded if its global state can't be restored, or if it was cancelled or exhausted its resources.
+ * State captured in closures or held by other built-in types, such as weak maps, is not guarded, scripts must not
+ * keep any.
+ * <p>
+ * The pooled contexts of all the executors are bounded by {@value #MAX_IDLE_CONTEXTS} idle contexts per executor and
+ * {@link #MAX_POOLED_CONTEXTS} in total. Once the total is reached, the least recently used idle context of any
+ * executor is discarded to make room, and if all of them are in use a one-off context is used.
+ *
  * author: Luxb
  * create: 2025/9/8 9:06
  **/
-@Builder
+@Slf4j
 @Data
-public class CodecExecutor {
+public class CodecExecutor implements AutoCloseable {
     public static final ObjectMapper JSON = JsonMapper.builder().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false).build();
     private static final ObjectMapper mapper = new ObjectMapper();
     private static final HostAccess HOST_ACCESS = HostAccess.newBuilder()
@@ -36,12 +73,248 @@ public class CodecExecutor {
     private static final Engine ENGINE = Engine.newBuilder(LANGUAGE_ID)
             .option("engine.WarnInterpreterOnly", "false")
             .build();
+    private static final Source EMPTY_OBJECT = Source.create(LANGUAGE_ID, "({})");
+    private static final Source EMPTY_ARRAY = Source.create(LANGUAGE_ID, "([])");
+    private static final Source NULL = Source.create(LANGUAGE_ID, "null");
+    private static final Source GLOBAL_THIS = Source.newBuilder(LANGUAGE_ID, "globalThis", "global_this.js")
+            .internal(true)
+            .buildLiteral();
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][\\w$]*");
+
+    /**
+     * Collects the built-in objects before the script is evaluated, and returns the function guarding the global state
+     * once it is. That function freezes the built-in objects, takes a snapshot of the values of the script, and returns
+     * the function restoring both, which returns false if they can't be restored. It is called with the guard of the top
+     * level {@code let} variables, or null if the script has none.
+     */
+    private static final Source GLOBAL_GUARD = Source.newBuilder(LANGUAGE_ID, """
+                    (() => {
+                        const global = globalThis;
+                        const { freeze, isFrozen, getPrototypeOf, setPrototypeOf, getOwnPropertyDescriptor, defineProperty, isExtensible, is } = Object;
+                        const { ownKeys, deleteProperty, apply } = Reflect;
+                        const Bytes = Uint8Array;
+                        const getter = (prototype, key) => getOwnPropertyDescriptor(prototype, key).get;
+                        const mapSize = getter(Map.prototype, 'size');
+                        const { entries: mapEntries, has: mapHas, get: mapGet, set: mapSet, clear: mapClear } = Map.prototype;
+                        const setSize = getter(Set.prototype, 'size');
+                        const { values: setValues, has: setHas, add: setAdd, clear: setClear } = Set.prototype;
+                        const { getTime, setTime } = Date.prototype;
+                        const byteLength = getter(ArrayBuffer.prototype, 'byteLength');
+                        const sliceBuffer = ArrayBuffer.prototype.slice;
+                        const setBytes = getPrototypeOf(Int8Array.prototype).set;
+                        const branded = (method, value) => {
+                            try {
+                                apply(method, value, []);
+                                return true;
+                            } catch (e) {
+                                return false;
+                            }
+                        };
+                        const valuesOf = (descriptor) => 'value' in descriptor ? [descriptor.value] : [descriptor.get, descriptor.set];
+                        // objects reachable from the roots through properties, prototypes and collection entries
+                        const reachable = (roots, skip) => {
+                            const found = new Set();
+                            const pending = [];
+                            const push = (value) => {
+                                if (value !== null && (typeof value === 'object' || typeof value === 'function')
+                                        && value !== global && !found.has(value) && !skip(value)) {
+                                    found.add(value);
+                                    pending.push(value);
+                                }
+                            };
+                            roots.forEach(push);
+                            while (pending.length > 0) {
+                                const value = pending.pop();
+                                push(getPrototypeOf(value));
+                                ownKeys(value).forEach((key) => valuesOf(getOwnPropertyDescriptor(value, key)).forEach(push));
+                                if (branded(mapSize, value)) {
+                                    [...apply(mapEntries, value, [])].forEach((entry) => entry.forEach(push));
+                                } else if (branded(setSize, value)) {
+                                    [...apply(setValues, value, [])].forEach(push);
+                                }
+                            }
+                            return found;
+                        };
+                        // restores the state held in internal slots, null if the object has none
+                        const internalState = (target) => {
+                            if (branded(mapSize, target)) {
+                                const entries = [...apply(mapEntries, target, [])];
+                                return () => {
+                                    if (apply(mapSize, target, []) !== entries.length || entries.some((entry) =>
+                                            !apply(mapHas, target, [entry[0]]) || !is(apply(mapGet, target, [entry[0]]), entry[1]))) {
+                                        apply(mapClear, target, []);
+                                        entries.forEach((entry) => apply(mapSet, target, entry));
+                                    }
+                                };
+                            }
+                            if (branded(setSize, target)) {
+                                const values = [...apply(setValues, target, [])];
+                                return () => {
+                                    if (apply(setSize, target, []) !== values.length || values.some((value) => !apply(setHas, target, [value]))) {
+                                        apply(setClear, target, []);
+                                        values.forEach((value) => apply(setAdd, target, [value]));
+                                    }
+                                };
+                            }
+                            if (branded(getTime, target)) {
+                                const time = apply(getTime, target, []);
+                                return () => apply(setTime, target, [time]);
+                            }
+                            if (branded(byteLength, target)) {
+                                const bytes = new Bytes(apply(sliceBuffer, target, [0]));
+                                return () => apply(setBytes, new Bytes(target), [bytes]);
+                            }
+                            return null;
+                        };
+                        const snapshotOf = (target) => {
+                            const keys = ownKeys(target);
+                            return {
+                                target,
+                                prototype: getPrototypeOf(target),
+                                extensible: isExtensible(target),
+                                keys: new Set(keys),
+                                descriptors: keys.map((key) => [key, getOwnPropertyDescriptor(target, key)]),
+                                internalState: internalState(target),
+                            };
+                        };
+                        const changed = (current, initial) => current === undefined
+                            || !is(current.value, initial.value) || current.get !== initial.get || current.set !== initial.set
+                            || current.writable !== initial.writable || current.enumerable !== initial.enumerable
+                            || current.configurable !== initial.configurable;
+                        const restore = (snapshot) => {
+                            const target = snapshot.target;
+                            if (isExtensible(target) !== snapshot.extensible) {
+                                return false;
+                            }
+                            if (getPrototypeOf(target) !== snapshot.prototype) {
+                                try {
+                                    setPrototypeOf(target, snapshot.prototype);
+                                } catch (e) {
+                                    return false;
+                                }
+                            }
+                            const keys = ownKeys(target);
+                            for (let i = 0; i < keys.length; i++) {
+                                if (!snapshot.keys.has(keys[i]) && !deleteProperty(target, keys[i])) {
+                                    return false;
+                                }
+                            }
+                            const descriptors = snapshot.descriptors;
+                            for (let i = 0; i < descriptors.length; i++) {
+                                const key = descriptors[i][0];
+                                const descriptor = descriptors[i][1];
+                                if (changed(getOwnPropertyDescriptor(target, key), descriptor)) {
+                                    try {
+                                        defineProperty(target, key, descriptor);
+                                    } catch (e) {
+                                        return false;
+                                    }
+                                }
+                            }
+                            if (snapshot.internalState !== null) {
+                                snapshot.internalState();
+                            }
+                            return true;
+                        };
+                        const builtinKeys = new Set(ownKeys(global));
+                        // intrinsics not reachable from the global object
+                        const builtins = reachable([getPrototypeOf(global),
+                            ...ownKeys(global).flatMap((key) => valuesOf(getOwnPropertyDescriptor(global, key))),
+                            getPrototypeOf([][Symbol.iterator]()),
+                            getPrototypeOf(new Map()[Symbol.iterator]()),
+                            getPrototypeOf(new Set()[Symbol.iterator]()),
+                            getPrototypeOf(''[Symbol.iterator]()),
+                            getPrototypeOf(/./[Symbol.matchAll]('')),
+                            getPrototypeOf(function* () {}),
+                            getPrototypeOf(async function () {}),
+                            getPrototypeOf(async function* () {}),
+                            getPrototypeOf(Int8Array)], () => false);
+                        return (lexical) => {
+                            // what the script attached to the built-ins is frozen with them
+                            reachable([...builtins], isFrozen).forEach(freeze);
+                            const roots = [];
+                            ownKeys(global).forEach((key) => {
+                                if (!builtinKeys.has(key)) {
+                                    roots.push(...valuesOf(getOwnPropertyDescriptor(global, key)));
+                                }
+                            });
+                            if (lexical !== null) {
+                                roots.push(...lexical.values);
+                            }
+                            const snapshots = [snapshotOf(global)];
+                            reachable(roots, isFrozen).forEach((value) => snapshots.push(snapshotOf(value)));
+                            return () => {
+                                for (let i = 0; i < snapshots.length; i++) {
+                                    if (!restore(snapshots[i])) {
+                                        return false;
+                                    }
+                                }
+                                if (lexical !== null) {
+                                    lexical.restore();
+                                }
+                                return true;
+                            };
+                        };
+                    })()
+                    """, "global_guard.js")
+            .internal(true)
+            .buildLiteral();
+
+    /**
+     * Maximum number of pooled contexts of all the executors, idle or in use
+     */
+    static final int MAX_POOLED_CONTEXTS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * Maximum number of idle pooled contexts per executor
+     */
+    static final int MAX_IDLE_CONTEXTS = 2;
+
+    private static final Object POOL_LOCK = new Object();
+
+    /**
+     * Idle pooled contexts of all the executors, the least recently used first, guarded by {@link #POOL_LOCK}
+     */
+    private static final Set<CompiledContext> idleContextsOfAll = new LinkedHashSet<>();
+
+    /**
+     * Number of pooled contexts of all the executors, idle or in use, guarded by {@link #POOL_LOCK}
+     */
+    private static int pooledContexts;
 
     private String code;
     private String entry;
     private List<Argument> arguments;
-    @Builder.Default
-    private ReturnType returnType = ReturnType.JSON;
+    private ReturnType returnType;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile Source source;
+
+    /**
+     * Idle pooled contexts of the executor, the most recently used last, guarded by {@link #POOL_LOCK}
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final Deque<CompiledContext> idleContexts = new ArrayDeque<>();
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile boolean closed;
+
+    @Builder
+    public CodecExecutor(String code, String entry, List<Argument> arguments, ReturnType returnType) {
+        this.code = code;
+        this.entry = entry;
+        this.arguments = arguments;
+        this.returnType = returnType == null ? ReturnType.JSON : returnType;
+    }
 
     private static Context buildCodeCtx() {
         return Context.newBuilder(LANGUAGE_ID)
@@ -50,16 +323,134 @@ public class CodecExecutor {
                 .build();
     }
 
+    /**
+     * Compile the script and warm up a pooled context if the total allows it, fails if the script cannot be evaluated,
+     * has no such entry function or its global state can't be guarded. Executing an executor compiles it if needed.
+     */
+    public synchronized void compile() {
+        if (source != null) {
+            return;
+        }
+
+        Source compiledSource = Source.create(LANGUAGE_ID, code);
+        CompiledContext compiledContext = CompiledContext.create(compiledSource, entry, true);
+        source = compiledSource;
+        synchronized (POOL_LOCK) {
+            if (!closed && pooledContexts < MAX_POOLED_CONTEXTS) {
+                pooledContexts++;
+                compiledContext.ownedBy(this);
+            }
+        }
+        release(compiledContext);
+    }
+
     public Object execute(Object data, Map<String, Object> argContext) {
-        try (Context context = buildCodeCtx()) {
-            context.eval(LANGUAGE_ID, code);
-            Value binding = context.getBindings(LANGUAGE_ID);
-            Value func = binding.getMember(entry);
-            List<Object> args = buildArgs(context, data, argContext);
-            return execute(func, args.toArray());
+        if (source == null) {
+            compile();
+        }
+
+        CompiledContext compiledContext = borrow();
+        try {
+            List<Object> args = buildArgs(compiledContext.context, data, argContext);
+            return execute(compiledContext.function, args.toArray());
+        } catch (PolyglotException e) {
+            if (e.isCancelled() || e.isResourceExhausted() || e.isInternalError() || e.isExit()) {
+                compiledContext.markBroken();
+            }
+            throw e;
+        } finally {
+            release(compiledContext);
         }
     }
 
+    /**
+     * Take an idle context of the executor, or create a pooled one if the total allows it, a one-off one otherwise,
+     * e.g. once the executor is closed
+     */
+    private CompiledContext borrow() {
+        boolean pooled = false;
+        CompiledContext evicted = null;
+        synchronized (POOL_LOCK) {
+            if (!closed) {
+                CompiledContext idle = idleContexts.pollLast();
+                if (idle != null) {
+                    idleContextsOfAll.remove(idle);
+                    return idle;
+                }
+
+                if (pooledContexts < MAX_POOLED_CONTEXTS) {
+                    pooledContexts++;
+                    pooled = true;
+                } else {
+                    // take over the place of the least recently used idle context
+                    Iterator<CompiledContext> iterator = idleContextsOfAll.iterator();
+                    if (iterator.hasNext()) {
+                        evicted = iterator.next();
+                        iterator.remove();
+                        evicted.owner.idleContexts.remove(evicted);
+                        pooled = true;
+                    }
+                }
+            }
+        }
+
+        if (evicted != null) {
+            evicted.close();
+        }
+        if (!pooled) {
+            log.debug("All pooled codec contexts are in use, execute in a one-off context");
+            return CompiledContext.create(source, entry, false);
+        }
+
+        try {
+            return CompiledContext.create(source, entry, true).ownedBy(this);
+        } catch (RuntimeException e) {
+            synchronized (POOL_LOCK) {
+                pooledContexts--;
+            }
+            throw e;
+        }
+    }
+
+    private void release(CompiledContext compiledContext) {
+        if (compiledContext.owner == null) {
+            compiledContext.close();
+            return;
+        }
+
+        compiledContext.reset();
+        boolean idle;
+        synchronized (POOL_LOCK) {
+            idle = !closed && compiledContext.isReusable() && idleContexts.size() < MAX_IDLE_CONTEXTS;
+            if (idle) {
+                idleContexts.addLast(compiledContext);
+                idleContextsOfAll.add(compiledContext);
+            } else {
+                pooledContexts--;
+            }
+        }
+        if (!idle) {
+            compiledContext.close();
+        }
+    }
+
+    /**
+     * Close the idle contexts, the contexts in use are closed when they are returned, and later executions use one-off
+     * contexts
+     */
+    @Override
+    public void close() {
+        List<CompiledContext> idle;
+        synchronized (POOL_LOCK) {
+            closed = true;
+            idle = new ArrayList<>(idleContexts);
+            idleContexts.clear();
+            idle.forEach(idleContextsOfAll::remove);
+            pooledContexts -= idle.size();
+        }
+        idle.forEach(CompiledContext::close);
+    }
+
     @SneakyThrows
     private Object execute(Value function, Object... args) {
         if (returnType == ReturnType.JSON) {
@@ -127,14 +518,14 @@ public class CodecExecutor {
 
     private Value convertToJSObject(Context context, JsonNode jsonNode) {
         if (jsonNode.isObject()) {
-            Value jsObject = context.eval("js", "({})");
+            Value jsObject = context.eval(EMPTY_OBJECT);
             jsonNode.fieldNames().forEachRemaining(fieldName -> {
                 JsonNode fieldValue = jsonNode.get(fieldName);
                 jsObject.putMember(fieldName, convertToJSObject(context, fieldValue));
             });
             return jsObject;
         } else if (jsonNode.isArray()) {
-            Value jsArray = context.eval("js", "([])");
+            Value jsArray = context.eval(EMPTY_ARRAY);
             for (int i = 0; i < jsonNode.size(); i++) {
                 jsArray.setArrayElement(i, convertToJSObject(context, jsonNode.get(i)));
             }
@@ -146,9 +537,127 @@ public class CodecExecutor {
         } else if (jsonNode.isBoolean()) {
             return context.asValue(jsonNode.asBoolean());
         } else if (jsonNode.isNull()) {
-            return context.eval("js", "null");
+            return context.eval(NULL);
         } else {
             return context.asValue(jsonNode.toString());
         }
     }
-}
\ No newline at end of file
+
+
+    private static final class CompiledContext {
+        private final Context context;
+        private final Value function;
+
+        /**
+         * Null if the context is not pooled
+         */
+        private final Value globalRestorer;
+
+        private final Set<String> initialMembers;
+
+        private CodecExecutor owner;
+
+        private volatile boolean broken;
+
+        private CompiledContext(Context context, Value function, Value globalRestorer, Set<String> initialMembers) {
+            this.context = context;
+            this.function = function;
+            this.globalRestorer = globalRestorer;
+            this.initialMembers = initialMembers;
+        }
+
+        private static CompiledContext create(Source source, String entry, boolean pooled) {
+            Context context = buildCodeCtx();
+            try {
+                // the built-ins are collected before the script can attach anything to them
+                Value globalGuard = pooled ? context.eval(GLOBAL_GUARD) : null;
+                context.eval(source);
+                Value bindings = context.getBindings(LANGUAGE_ID);
+                Value function = bindings.getMember(entry);
+                if (function == null || !function.canExecute()) {
+                    throw new IllegalArgumentException("Codec entry function not found: " + entry);
+                }
+                if (!pooled) {
+                    return new CompiledContext(context, function, null, null);
+                }
+
+                Value globalRestorer = globalGuard.execute(guardLexicalVariables(context, bindings));
+                return new CompiledContext(context, function, globalRestorer, new HashSet<>(bindings.getMemberKeys()));
+            } catch (RuntimeException e) {
+                context.close();
+                throw e;
+            }
+        }
+
+        /**
+         * The top level {@code let} and {@code const} declarations are members of the bindings but not properties of
+         * the global object, their initial values are kept and set back by a function generated for their names
+         *
+         * @return guard holding the initial values and the restoring function, null if the script has no such
+         * declaration
+         */
+        private static Value guardLexicalVariables(Context context, Value bindings) {
+            Value global = context.eval(GLOBAL_THIS);
+            List<String> names = bindings.getMemberKeys().stream()
+                    .filter(name -> !global.hasMember(name))
+                    .toList();
+            if (names.isEmpty()) {
+                return null;
+            }
+
+            StringBuilder restore = new StringBuilder();
+            for (int i = 0; i < names.size(); i++) {
+                String name = names.get(i);
+                if (!IDENTIFIER.matcher(name).matches()) {
+                    throw new IllegalArgumentException("Unsupported codec global declaration: " + name);
+                }
+                // constants never change, so they are never assigned
+                restore.append("if (!__codec_is__(").append(name).append(", __codec_values__[").append(i).append("])) { ")
+                        .append(name).append(" = __codec_values__[").append(i).append("]; }\n");
+            }
+            String guard = "(() => {\n"
+                    + "const __codec_is__ = Object.is;\n"
+                    + "const __codec_values__ = [" + String.join(", ", names) + "];\n"
+                    + "return { values: __codec_values__, restore: () => {\n" + restore + "} };\n"
+                    + "})()";
+            return context.eval(Source.newBuilder(LANGUAGE_ID, guard, "lexical_guard.js").internal(true).buildLiteral());
+        }
+
+        private CompiledContext ownedBy(CodecExecutor executor) {
+            this.owner = executor;
+            return this;
+        }
+
+        private void markBroken() {
+            broken = true;
+        }
+
+        private boolean isReusable() {
+            return !broken;
+        }
+
+        private void reset() {
+            if (broken) {
+                return;
+            }
+            try {
+                // members added to the bindings are global declarations, which can't be removed
+                if (!globalRestorer.execute().asBoolean() || !initialMembers.containsAll(context.getBindings(LANGUAGE_ID).getMemberKeys())) {
+                    log.debug("Global state of the codec context can't be restored, it will be discarded");
+                    markBroken();
+                }
+            } catch (Exception e) {
+                log.debug("Reset codec context failed, it will be discarded", e);
+                markBroken();
+            }
+        }
+
+        private void close() {
+            try {
+                context.close(true);
+            } catch (Exception e) {
+                log.debug("Close codec context failed", e);
+            }
+        }
+    }
+}
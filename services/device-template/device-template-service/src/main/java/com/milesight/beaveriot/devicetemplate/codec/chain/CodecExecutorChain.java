@@ -1,7 +1,11 @@
 package com.milesight.beaveriot.devicetemplate.codec.chain;
 
 import com.milesight.beaveriot.devicetemplate.codec.CodecExecutor;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 import org.springframework.util.CollectionUtils;
 
 import java.util.ArrayList;
@@ -13,19 +17,39 @@ import java.util.Map;
  * create: 2025/9/8 13:18
  **/
 @Data
-public abstract class CodecExecutorChain {
+public abstract class CodecExecutorChain implements AutoCloseable {
     private List<CodecExecutor> executors = new ArrayList<>();
 
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private volatile boolean compiled;
+
     public void addExecutor(CodecExecutor executor) {
         executors.add(executor);
     }
 
+    /**
+     * Compile the scripts of the chain, the return type of the last executor is the one of the chain
+     */
+    public synchronized void compile() {
+        if (compiled || CollectionUtils.isEmpty(executors)) {
+            return;
+        }
+
+        initLastExecutor(executors.get(executors.size() - 1));
+        executors.forEach(CodecExecutor::compile);
+        compiled = true;
+    }
+
     public Object execute(Object data, Map<String, Object> argContext) {
         if (CollectionUtils.isEmpty(executors)) {
             return null;
         }
 
-        initLastExecutor(executors.get(executors.size() - 1));
+        if (!compiled) {
+            compile();
+        }
 
         for (CodecExecutor executor : executors) {
             data = executor.execute(data, argContext);
@@ -33,5 +57,10 @@ public abstract class CodecExecutorChain {
         return data;
     }
 
+    @Override
+    public void close() {
+        executors.forEach(CodecExecutor::close);
+    }
+
     protected abstract void initLastExecutor(CodecExecutor executor);
 }
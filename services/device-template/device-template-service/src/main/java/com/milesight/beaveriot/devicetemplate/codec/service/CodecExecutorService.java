@@ -1,9 +1,15 @@
 package com.milesight.beaveriot.devicetemplate.codec.service;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.milesight.beaveriot.base.exception.ServiceException;
 import com.milesight.beaveriot.base.utils.StringUtils;
 import com.milesight.beaveriot.blueprint.facade.IBlueprintLibraryResourceResolverFacade;
 import com.milesight.beaveriot.blueprint.model.BlueprintDeviceCodec;
+import com.milesight.beaveriot.context.api.BlueprintLibrarySyncerProvider;
 import com.milesight.beaveriot.context.model.BlueprintLibrary;
 import com.milesight.beaveriot.context.api.DeviceTemplateParserProvider;
 import com.milesight.beaveriot.context.model.DeviceTemplateModel;
@@ -15,27 +21,86 @@ import com.milesight.beaveriot.devicetemplate.codec.chain.CodecExecutorEncoderCh
 import com.milesight.beaveriot.devicetemplate.codec.enums.CodecErrorCode;
 import com.milesight.beaveriot.devicetemplate.facade.ICodecExecutorFacade;
 import com.milesight.beaveriot.devicetemplate.facade.IDeviceCodecExecutorFacade;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Supplier;
 
 /**
+ * Builds the codec executors of the device models.
+ * <p>
+ * The executors are compiled once per blueprint library version, vendor and codec and shared by all the device models
+ * using the codec, so the device template, the codecs and the scripts are only read from the blueprint library when an
+ * executor is built. The executors of a blueprint library are discarded when the library is synced to another
+ * version, and unused executors expire.
+ *
  * author: Luxb
  * create: 2025/9/8 16:43
  **/
+@Slf4j
 @Service
 public class CodecExecutorService implements ICodecExecutorFacade {
+    private static final long MAXIMUM_SIZE = 1024;
+    private static final Duration EXPIRE_AFTER_ACCESS = Duration.ofHours(1);
+
     private final IBlueprintLibraryResourceResolverFacade blueprintLibraryResourceResolverFacade;
     private final DeviceTemplateParserProvider deviceTemplateParserProvider;
 
-    public CodecExecutorService(IBlueprintLibraryResourceResolverFacade blueprintLibraryResourceResolverFacade, DeviceTemplateParserProvider deviceTemplateParserProvider) {
+    /**
+     * Codec of each device model, empty if the model has no codec
+     */
+    private final Cache<ModelKey, Optional<CodecKey>> modelCodecs = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .expireAfterAccess(EXPIRE_AFTER_ACCESS)
+            .build();
+
+    private final Cache<CodecKey, DeviceCodecExecutorService> codecExecutors = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .expireAfterAccess(EXPIRE_AFTER_ACCESS)
+            .removalListener((RemovalListener<CodecKey, DeviceCodecExecutorService>) notification -> {
+                if (notification.getValue() != null) {
+                    notification.getValue().close();
+                }
+            })
+            .build();
+
+    public CodecExecutorService(IBlueprintLibraryResourceResolverFacade blueprintLibraryResourceResolverFacade,
+                                DeviceTemplateParserProvider deviceTemplateParserProvider,
+                                BlueprintLibrarySyncerProvider blueprintLibrarySyncerProvider) {
         this.blueprintLibraryResourceResolverFacade = blueprintLibraryResourceResolverFacade;
         this.deviceTemplateParserProvider = deviceTemplateParserProvider;
+        blueprintLibrarySyncerProvider.addListener(this::evictCodecExecutors);
     }
 
     @Override
     public IDeviceCodecExecutorFacade getDeviceCodecExecutor(BlueprintLibrary blueprintLibrary, String vendor, String model) {
+        ModelKey modelKey = new ModelKey(blueprintLibrary.getId(), blueprintLibrary.getCurrentVersion(), vendor, model);
+        Optional<CodecKey> codecKey = get(modelCodecs, modelKey, () -> Optional.ofNullable(resolveCodec(blueprintLibrary, vendor, model)));
+        if (codecKey.isEmpty()) {
+            return null;
+        }
+
+        return get(codecExecutors, codecKey.get(), () -> createDeviceCodecExecutor(blueprintLibrary, vendor, codecKey.get()));
+    }
+
+    /**
+     * Discard the codec executors of all versions of the blueprint library
+     */
+    public void evictCodecExecutors(BlueprintLibrary blueprintLibrary) {
+        Long libraryId = blueprintLibrary.getId();
+        modelCodecs.asMap().keySet().removeIf(key -> Objects.equals(key.libraryId(), libraryId));
+        codecExecutors.asMap().keySet().removeIf(key -> Objects.equals(key.libraryId(), libraryId));
+        log.debug("Evicted codec executors of blueprint library {}", libraryId);
+    }
+
+    private CodecKey resolveCodec(BlueprintLibrary blueprintLibrary, String vendor, String model) {
         String deviceTemplateContent = blueprintLibraryResourceResolverFacade.getDeviceTemplateContent(blueprintLibrary, vendor, model);
         if (deviceTemplateContent == null) {
             throw ServiceException.with(CodecErrorCode.CODEC_EXECUTOR_BUILD_FAILED).build();
@@ -51,7 +116,11 @@ public class CodecExecutorService implements ICodecExecutorFacade {
             return null;
         }
 
-        BlueprintDeviceCodec blueprintDeviceCodec = blueprintLibraryResourceResolverFacade.getBlueprintDeviceCodec(blueprintLibrary, vendor, codec.getRef(), codec.getId());
+        return new CodecKey(blueprintLibrary.getId(), blueprintLibrary.getCurrentVersion(), vendor, codec.getRef(), codec.getId());
+    }
+
+    private DeviceCodecExecutorService createDeviceCodecExecutor(BlueprintLibrary blueprintLibrary, String vendor, CodecKey codecKey) {
+        BlueprintDeviceCodec blueprintDeviceCodec = blueprintLibraryResourceResolverFacade.getBlueprintDeviceCodec(blueprintLibrary, vendor, codecKey.codecRef(), codecKey.codecId());
         if (blueprintDeviceCodec == null) {
             throw ServiceException.with(CodecErrorCode.CODEC_EXECUTOR_BUILD_FAILED).build();
         }
@@ -76,7 +145,16 @@ public class CodecExecutorService implements ICodecExecutorFacade {
             throw ServiceException.with(CodecErrorCode.CODEC_EXECUTOR_BUILD_FAILED).build();
         }
 
-        return DeviceCodecExecutorService.of(decoderChain, encoderChain);
+        DeviceCodecExecutorService deviceCodecExecutor = DeviceCodecExecutorService.of(decoderChain, encoderChain);
+        try {
+            decoderChain.compile();
+            encoderChain.compile();
+        } catch (Exception e) {
+            deviceCodecExecutor.close();
+            log.error("Compile codec {} failed", codecKey, e);
+            throw ServiceException.with(CodecErrorCode.CODEC_EXECUTOR_BUILD_FAILED).detailMessage(e.getMessage()).build();
+        }
+        return deviceCodecExecutor;
     }
 
     private <T extends CodecExecutorChain> T createCodecExecutorChain(BlueprintLibrary blueprintLibrary, String vendor, Supplier<T> chainBuilder, List<BlueprintDeviceCodec.Codec> chain) {
@@ -100,4 +178,20 @@ public class CodecExecutorService implements ICodecExecutorFacade {
     private List<Argument> convertArgument(List<BlueprintDeviceCodec.Argument> arguments) {
         return arguments.stream().map(argument -> Argument.of(argument.getId(), argument.isPayload())).toList();
     }
+
+    @SneakyThrows
+    private static <K, V> V get(Cache<K, V> cache, K key, Callable<V> loader) {
+        try {
+            return cache.get(key, loader);
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            // rethrow the build failure as is, e.g. ServiceException
+            throw e.getCause() != null ? e.getCause() : e;
+        }
+    }
+
+    private record ModelKey(Long libraryId, String version, String vendor, String model) {
+    }
+
+    private record CodecKey(Long libraryId, String version, String vendor, String codecRef, String codecId) {
+    }
 }
@@ -15,7 +15,7 @@ import java.util.Map;
  * create: 2025/9/8 17:00
  **/
 @Slf4j
-public class DeviceCodecExecutorService implements IDeviceCodecExecutorFacade {
+public class DeviceCodecExecutorService implements IDeviceCodecExecutorFacade, AutoCloseable {
     private CodecExecutorDecoderChain decoderChain;
     private CodecExecutorEncoderChain encoderChain;
 
@@ -47,4 +47,10 @@ public class DeviceCodecExecutorService implements IDeviceCodecExecutorFacade {
                     .detailMessage(e.getMessage()).build();
         }
     }
+
+    @Override
+    public void close() {
+        decoderChain.close();
+        encoderChain.close();
+    }
 }
@@ -0,0 +1,55 @@
+package com.milesight.beaveriot.devicetemplate.parser;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.milesight.beaveriot.context.integration.model.DeviceTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.function.Function;
+
+/**
+ * Cache of the parsed device templates by template id.
+ * <p>
+ * An entry is only used if it is parsed from the current content of the template, so a template updated on another
+ * node is parsed again on its next use. The entries of a template updated or deleted on this node are invalidated
+ * right away.
+ *
+ * @author leon
+ */
+@Component
+public class DeviceTemplateModelCache {
+
+    private final Cache<Long, ParsedDeviceTemplate> cache = CacheBuilder.newBuilder()
+            .maximumSize(1024)
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
+
+    public ParsedDeviceTemplate get(DeviceTemplate deviceTemplate, Function<String, ParsedDeviceTemplate> parser) {
+        String content = deviceTemplate.getContent();
+        Long id = deviceTemplate.getId();
+        if (id == null || content == null) {
+            return parser.apply(content);
+        }
+
+        ParsedDeviceTemplate parsedDeviceTemplate = cache.getIfPresent(id);
+        if (parsedDeviceTemplate != null && parsedDeviceTemplate.matches(content)) {
+            return parsedDeviceTemplate;
+        }
+
+        parsedDeviceTemplate = parser.apply(content);
+        cache.put(id, parsedDeviceTemplate);
+        return parsedDeviceTemplate;
+    }
+
+    public void invalidate(Long id) {
+        if (id != null) {
+            cache.invalidate(id);
+        }
+    }
+
+    public void invalidateAll(Collection<Long> ids) {
+        cache.invalidateAll(ids);
+    }
+}
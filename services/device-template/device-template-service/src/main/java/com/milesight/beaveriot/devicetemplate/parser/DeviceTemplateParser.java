@@ -91,6 +91,7 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
     private final EntityServiceProvider entityServiceProvider;
     private final ICodecExecutorFacade codecExecutorFacade;
     private final MergedResourceBundleMessageSource messageSource;
+    private final DeviceTemplateModelCache deviceTemplateModelCache;
 
     static {
         initSchema();
@@ -129,7 +130,8 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
                                 IBlueprintFacade blueprintFacade,
                                 EntityServiceProvider entityServiceProvider,
                                 @Lazy ICodecExecutorFacade codecExecutorFacade,
-                                MergedResourceBundleMessageSource messageSource) {
+                                MergedResourceBundleMessageSource messageSource,
+                                DeviceTemplateModelCache deviceTemplateModelCache) {
         this.integrationServiceProvider = integrationServiceProvider;
         this.deviceServiceProvider = deviceServiceProvider;
         this.deviceTemplateService = deviceTemplateService;
@@ -140,6 +142,7 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
         this.entityServiceProvider = entityServiceProvider;
         this.codecExecutorFacade = codecExecutorFacade;
         this.messageSource = messageSource;
+        this.deviceTemplateModelCache = deviceTemplateModelCache;
     }
 
     @Override
@@ -311,8 +314,7 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
             deviceTemplate = deviceTemplateService.findByKey(deviceTemplateKey);
         }
 
-        String deviceTemplateContent = getContentAndValidateDeviceTemplate(integration, deviceTemplate);
-        DeviceTemplateModel deviceTemplateModel = parse(deviceTemplateContent);
+        ParsedDeviceTemplate parsedDeviceTemplate = getParsedDeviceTemplate(integration, deviceTemplate);
         JsonNode jsonNode;
         BlueprintLibrary blueprintLibrary = null;
         if (data instanceof byte[] byteData) {
@@ -337,19 +339,18 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
         Map<String, JsonNode> flatJsonDataMap = new HashMap<>();
         flattenJsonData(jsonNode, flatJsonDataMap, "");
 
-        Map<String, DeviceTemplateModel.Definition.InputJsonObject> flatJsonInputDescriptionMap = new HashMap<>();
-        flattenJsonInputDescription(deviceTemplateModel.getDefinition().getInput().getProperties(), flatJsonInputDescriptionMap, "");
+        Map<String, DeviceTemplateModel.Definition.InputJsonObject> flatJsonInputDescriptionMap = parsedDeviceTemplate.getFlatJsonInputDescriptionMap();
 
-        String deviceIdKey = getDeviceIdKey(flatJsonInputDescriptionMap);
+        String deviceIdKey = parsedDeviceTemplate.getDeviceIdKey();
         if (deviceIdKey != null && flatJsonDataMap.get(deviceIdKey) == null && deviceIdentifier != null) {
             flatJsonDataMap.put(deviceIdKey, JsonUtils.getObjectMapper().valueToTree(deviceIdentifier));
         }
-        String deviceNameKey = getDeviceNameKey(flatJsonInputDescriptionMap);
+        String deviceNameKey = parsedDeviceTemplate.getDeviceNameKey();
         if (deviceNameKey != null && flatJsonDataMap.get(deviceNameKey) == null && deviceName != null) {
             flatJsonDataMap.put(deviceNameKey, JsonUtils.getObjectMapper().valueToTree(deviceName));
         }
         // Validate json data
-        validateJsonData(flatJsonDataMap, flatJsonInputDescriptionMap);
+        validateJsonData(flatJsonDataMap, flatJsonInputDescriptionMap, parsedDeviceTemplate.getRequiredKeys());
 
         if (device == null) {
             if (deviceIdKey == null || flatJsonDataMap.get(deviceIdKey) == null) {
@@ -359,6 +360,7 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
             deviceName = (deviceNameKey == null || flatJsonDataMap.get(deviceNameKey) == null) ? deviceIdentifier : flatJsonDataMap.get(deviceNameKey).asText();
 
             // Build device and device entities
+            DeviceTemplateModel deviceTemplateModel = parsedDeviceTemplate.newModel();
             device = buildDeviceAndDeviceEntities(integration, deviceIdentifier, deviceName, deviceTemplate, deviceTemplateModel);
 
             Device existDevice = deviceServiceProvider.findByKey(device.getKey());
@@ -398,14 +400,6 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
         return blueprintLibrary;
     }
 
-    private String getDeviceIdKey(Map<String, DeviceTemplateModel.Definition.InputJsonObject> flatJsonInputDescriptionMap) {
-        return flatJsonInputDescriptionMap.entrySet().stream().filter(entry -> entry.getValue().isDeviceId()).map(Map.Entry::getKey).findFirst().orElse(null);
-    }
-
-    private String getDeviceNameKey(Map<String, DeviceTemplateModel.Definition.InputJsonObject> flatJsonInputDescriptionMap) {
-        return flatJsonInputDescriptionMap.entrySet().stream().filter(entry -> entry.getValue().isDeviceName()).map(Map.Entry::getKey).findFirst().orElse(null);
-    }
-
     private List<DeviceTemplateModel.Definition.InputJsonObject> getDeviceIdInputJsonObjects(DeviceTemplateModel deviceTemplateModel) {
         return getDeviceIdInputJsonObjects(deviceTemplateModel.getDefinition().getInput().getProperties());
     }
@@ -486,8 +480,7 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
             }
 
             DeviceTemplate deviceTemplate = deviceTemplateService.findByKey(deviceTemplateKey);
-            String deviceTemplateContent = getContentAndValidateDeviceTemplate(null, deviceTemplate);
-            DeviceTemplateModel deviceTemplateModel = parse(deviceTemplateContent);
+            DeviceTemplateModel deviceTemplateModel = getParsedDeviceTemplate(null, deviceTemplate).getModel();
             if (deviceTemplateModel.getDefinition().getOutput() == null) {
                 throw ServiceException.with(ServerErrorCode.DEVICE_TEMPLATE_DEFINITION_OUTPUT_NOT_FOUND.getErrorCode(), ServerErrorCode.DEVICE_TEMPLATE_DEFINITION_OUTPUT_NOT_FOUND.getErrorMessage()).build();
             }
@@ -610,9 +603,7 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
                                boolean shouldSaveDevice,
                                BiFunction<Device, Map<String, Object>, Boolean> beforeSaveDevice,
                                BlueprintCreationStrategy strategy) {
-        String deviceTemplateContent = getContentAndValidateDeviceTemplate(integration, deviceTemplate);
-
-        DeviceTemplateModel deviceTemplateModel = parse(deviceTemplateContent);
+        DeviceTemplateModel deviceTemplateModel = getParsedDeviceTemplate(integration, deviceTemplate).newModel();
 
         // Build device and device entities
         Device device = buildDeviceAndDeviceEntities(integration, deviceIdentifier, deviceName, deviceTemplate, deviceTemplateModel);
@@ -781,7 +772,7 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
         return deviceTemplate;
     }
 
-    private String getContentAndValidateDeviceTemplate(String integration, DeviceTemplate deviceTemplate) {
+    private ParsedDeviceTemplate getParsedDeviceTemplate(String integration, DeviceTemplate deviceTemplate) {
         if (integration != null && integrationServiceProvider.getIntegration(integration) == null) {
             throw ServiceException.with(ServerErrorCode.INTEGRATION_NOT_FOUND.getErrorCode(), ServerErrorCode.INTEGRATION_NOT_FOUND.getErrorMessage()).build();
         }
@@ -790,12 +781,19 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
             throw ServiceException.with(ServerErrorCode.DEVICE_TEMPLATE_NOT_FOUND.getErrorCode(), ServerErrorCode.DEVICE_TEMPLATE_NOT_FOUND.getErrorMessage()).build();
         }
 
-        String content = deviceTemplate.getContent();
-        if (!validate(content)) {
-            return null;
-        }
+        // The content is validated and parsed only once per template version
+        return deviceTemplateModelCache.get(deviceTemplate, this::validateAndParse);
+    }
 
-        return content;
+    private ParsedDeviceTemplate validateAndParse(String deviceTemplateContent) {
+        validate(deviceTemplateContent);
+        try {
+            return new ParsedDeviceTemplate(deviceTemplateContent, YamlUtils.fromYAML(deviceTemplateContent));
+        } catch (ServiceException e) {
+            throw e;
+        } catch (Exception e) {
+            throw ServiceException.with(ErrorCode.SERVER_ERROR.getErrorCode(), e.getMessage()).build();
+        }
     }
 
     public DeviceTemplateModel parse(String deviceTemplateContent) {
@@ -909,10 +907,9 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
         };
     }
 
-    private void validateJsonData(Map<String, JsonNode> flatJsonDataMap, Map<String, DeviceTemplateModel.Definition.InputJsonObject> flatJsonInputDescriptionMap) {
-        for (String key : flatJsonInputDescriptionMap.keySet()) {
-            DeviceTemplateModel.Definition.InputJsonObject inputJsonObject = flatJsonInputDescriptionMap.get(key);
-            if (inputJsonObject.isRequired() && !flatJsonDataMap.containsKey(key)) {
+    private void validateJsonData(Map<String, JsonNode> flatJsonDataMap, Map<String, DeviceTemplateModel.Definition.InputJsonObject> flatJsonInputDescriptionMap, List<String> requiredKeys) {
+        for (String key : requiredKeys) {
+            if (!flatJsonDataMap.containsKey(key)) {
                 throw ServiceException.with(ServerErrorCode.JSON_VALIDATE_ERROR.getErrorCode(), MessageFormat.format("Json validate failed. Required key {0} is missing", key)).build();
             }
         }
@@ -974,16 +971,6 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
         }
     }
 
-    private void flattenJsonInputDescription(List<DeviceTemplateModel.Definition.InputJsonObject> properties, Map<String, DeviceTemplateModel.Definition.InputJsonObject> flatJsonInputDescriptionMap, String parentKey) {
-        for (DeviceTemplateModel.Definition.InputJsonObject property : properties) {
-            String key = parentKey + property.getKey();
-            flatJsonInputDescriptionMap.put(key, property);
-            if (property.getType().equals(DeviceTemplateModel.JsonType.OBJECT) && property.getProperties() != null) {
-                flattenJsonInputDescription(property.getProperties(), flatJsonInputDescriptionMap, key + ".");
-            }
-        }
-    }
-
     protected Device buildDevice(String integration, String deviceId, String deviceName, String deviceTemplateKey) {
         return new DeviceBuilder(integration)
                 .name(deviceName)
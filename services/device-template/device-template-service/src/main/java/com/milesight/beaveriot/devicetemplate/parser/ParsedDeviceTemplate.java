@@ -0,0 +1,85 @@
+package com.milesight.beaveriot.devicetemplate.parser;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.milesight.beaveriot.base.enums.ErrorCode;
+import com.milesight.beaveriot.base.exception.ServiceException;
+import com.milesight.beaveriot.base.utils.YamlUtils;
+import com.milesight.beaveriot.context.model.DeviceTemplateModel;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The validated and parsed content of a device template, together with what is derived from its input definition:
+ * the flattened input descriptions, the keys of the device id and name and the required keys.
+ * <p>
+ * The {@link #getModel() model} is shared and must be treated as read-only. The initial entities of a template are
+ * mutated when a device is built from them, so {@link #newModel()} is used to get a private copy for that.
+ *
+ * @author leon
+ */
+@Getter
+public class ParsedDeviceTemplate {
+
+    private final String content;
+
+    private final JsonNode tree;
+
+    private final DeviceTemplateModel model;
+
+    private final Map<String, DeviceTemplateModel.Definition.InputJsonObject> flatJsonInputDescriptionMap;
+
+    private final String deviceIdKey;
+
+    private final String deviceNameKey;
+
+    private final List<String> requiredKeys;
+
+    ParsedDeviceTemplate(String content, JsonNode tree) {
+        this.content = content;
+        this.tree = tree;
+        this.model = newModel();
+
+        Map<String, DeviceTemplateModel.Definition.InputJsonObject> descriptions = new LinkedHashMap<>();
+        DeviceTemplateModel.Definition definition = model.getDefinition();
+        if (definition != null && definition.getInput() != null && definition.getInput().getProperties() != null) {
+            flattenJsonInputDescription(definition.getInput().getProperties(), descriptions, "");
+        }
+        this.flatJsonInputDescriptionMap = Collections.unmodifiableMap(descriptions);
+        this.deviceIdKey = descriptions.entrySet().stream().filter(entry -> entry.getValue().isDeviceId()).map(Map.Entry::getKey).findFirst().orElse(null);
+        this.deviceNameKey = descriptions.entrySet().stream().filter(entry -> entry.getValue().isDeviceName()).map(Map.Entry::getKey).findFirst().orElse(null);
+        this.requiredKeys = descriptions.entrySet().stream().filter(entry -> entry.getValue().isRequired()).map(Map.Entry::getKey).toList();
+    }
+
+    /**
+     * Whether it is parsed from the given content
+     */
+    public boolean matches(String content) {
+        return this.content.equals(content);
+    }
+
+    /**
+     * Build a new model from the parsed tree, which is much cheaper than parsing the YAML content again
+     */
+    public DeviceTemplateModel newModel() {
+        try {
+            return YamlUtils.getObjectMapper().treeToValue(tree, DeviceTemplateModel.class);
+        } catch (JsonProcessingException e) {
+            throw ServiceException.with(ErrorCode.SERVER_ERROR.getErrorCode(), e.getMessage()).build();
+        }
+    }
+
+    private static void flattenJsonInputDescription(List<DeviceTemplateModel.Definition.InputJsonObject> properties, Map<String, DeviceTemplateModel.Definition.InputJsonObject> flatJsonInputDescriptionMap, String parentKey) {
+        for (DeviceTemplateModel.Definition.InputJsonObject property : properties) {
+            String key = parentKey + property.getKey();
+            flatJsonInputDescriptionMap.put(key, property);
+            if (property.getType().equals(DeviceTemplateModel.JsonType.OBJECT) && property.getProperties() != null) {
+                flattenJsonInputDescription(property.getProperties(), flatJsonInputDescriptionMap, key + ".");
+            }
+        }
+    }
+}
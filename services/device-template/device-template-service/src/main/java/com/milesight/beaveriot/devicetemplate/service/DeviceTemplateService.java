@@ -15,6 +15,7 @@ import com.milesight.beaveriot.context.security.SecurityUserContext;
 import com.milesight.beaveriot.data.filterable.Filterable;
 import com.milesight.beaveriot.devicetemplate.dto.DeviceTemplateDTO;
 import com.milesight.beaveriot.devicetemplate.facade.IDeviceTemplateFacade;
+import com.milesight.beaveriot.devicetemplate.parser.DeviceTemplateModelCache;
 import com.milesight.beaveriot.devicetemplate.po.DeviceTemplatePO;
 import com.milesight.beaveriot.devicetemplate.repository.DeviceTemplateRepository;
 import com.milesight.beaveriot.devicetemplate.support.DeviceTemplateConverter;
@@ -41,13 +42,15 @@ public class DeviceTemplateService implements IDeviceTemplateFacade {
     private final IntegrationServiceProvider integrationServiceProvider;
     private final DeviceServiceProvider deviceServiceProvider;
     private final EntityServiceProvider entityServiceProvider;
+    private final DeviceTemplateModelCache deviceTemplateModelCache;
 
-    public DeviceTemplateService(DeviceTemplateRepository deviceTemplateRepository, DeviceTemplateConverter deviceTemplateConverter, @Lazy IntegrationServiceProvider integrationServiceProvider, @Lazy DeviceServiceProvider deviceServiceProvider, @Lazy EntityServiceProvider entityServiceProvider) {
+    public DeviceTemplateService(DeviceTemplateRepository deviceTemplateRepository, DeviceTemplateConverter deviceTemplateConverter, @Lazy IntegrationServiceProvider integrationServiceProvider, @Lazy DeviceServiceProvider deviceServiceProvider, @Lazy EntityServiceProvider entityServiceProvider, DeviceTemplateModelCache deviceTemplateModelCache) {
         this.deviceTemplateRepository = deviceTemplateRepository;
         this.deviceTemplateConverter = deviceTemplateConverter;
         this.integrationServiceProvider = integrationServiceProvider;
         this.deviceServiceProvider = deviceServiceProvider;
         this.entityServiceProvider = entityServiceProvider;
+        this.deviceTemplateModelCache = deviceTemplateModelCache;
     }
 
     @Override
@@ -133,6 +136,7 @@ public class DeviceTemplateService implements IDeviceTemplateFacade {
             deviceTemplatePO = deviceTemplateRepository.save(deviceTemplatePO);
         } else if (shouldUpdate) {
             deviceTemplatePO = deviceTemplateRepository.save(deviceTemplatePO);
+            deviceTemplateModelCache.invalidate(deviceTemplatePO.getId());
         }
 
         deviceTemplate.setId(deviceTemplatePO.getId());
@@ -402,6 +406,7 @@ public class DeviceTemplateService implements IDeviceTemplateFacade {
         entityServiceProvider.deleteByTargetId(deviceTemplate.getId().toString());
 
         deviceTemplateRepository.deleteById(deviceTemplate.getId());
+        deviceTemplateModelCache.invalidate(deviceTemplate.getId());
 
         deviceServiceProvider.deleteByDeviceTemplateKey(deviceTemplate.getKey());
     }
@@ -409,5 +414,6 @@ public class DeviceTemplateService implements IDeviceTemplateFacade {
     @Transactional(rollbackFor = Exception.class)
     public void deleteDeviceTemplateByIdInIgnoreTenant(List<Long> ids) {
         deviceTemplateRepository.deleteByIdInIgnoreTenant(ids);
+        deviceTemplateModelCache.invalidateAll(ids);
     }
 }
@@ -0,0 +1,177 @@
+package com.milesight.beaveriot.devicetemplate.codec
+
+import org.graalvm.polyglot.PolyglotException
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+
+/**
+ * @author leon
+ */
+class CodecExecutorTest extends Specification {
+
+    static final byte[] PAYLOAD = [0xFF, 0x01] as byte[]
+
+    List<CodecExecutor> executors = []
+
+    CodecExecutor executor(String code, ReturnType returnType = ReturnType.JSON) {
+        def executor = CodecExecutor.builder()
+                .code(code)
+                .entry("decode")
+                .arguments([Argument.of("bytes", true)])
+                .returnType(returnType)
+                .build()
+        executors << executor
+        return executor
+    }
+
+    def cleanup() {
+        executors.each { it.close() }
+    }
+
+    def "script with a syntax error should fail to compile"() {
+        when:
+        executor("function decode(bytes) {").compile()
+
+        then:
+        thrown(PolyglotException)
+    }
+
+    def "script without the entry function should fail to compile"() {
+        when:
+        executor("function encode(bytes) { return {}; }").compile()
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message.contains("decode")
+    }
+
+    def "entry function should be executed with the payload"() {
+        given:
+        def decoder = executor("function decode(bytes) { return { length: bytes.length, first: bytes[0], second: bytes[1] }; }")
+        def encoder = executor("function decode(value) { return [value.second, value.first]; }", ReturnType.BYTES)
+
+        when:
+        def decoded = decoder.execute(PAYLOAD, null)
+        def encoded = encoder.execute(decoded, null)
+
+        then:
+        decoded.get("length").asInt() == 2
+        decoded.get("first").asInt() == 255
+        decoded.get("second").asInt() == 1
+        encoded == [0x01, 0xFF] as byte[]
+    }
+
+    def "global state should not be kept between executions"() {
+        given:
+        def codec = executor("""
+                var count = 0;
+                let calls = 0;
+                const table = { hits: 0 };
+                function decode(bytes) {
+                    count++;
+                    calls++;
+                    leaked = typeof leaked === 'undefined' ? 1 : leaked + 1;
+                    table.hits++;
+                    Array.prototype.leak = 'secret';
+                    return { count: count, calls: calls, leaked: leaked, hits: table.hits, patched: [].leak === 'secret' };
+                }
+                """)
+
+        expect:
+        3.times {
+            def result = codec.execute(PAYLOAD, null)
+            assert result.get("count").asInt() == 1
+            assert result.get("calls").asInt() == 1
+            assert result.get("leaked").asInt() == 1
+            assert result.get("hits").asInt() == 1
+            assert !result.get("patched").asBoolean()
+        }
+    }
+
+    def "top level objects filled by an execution should be restored for the next one"() {
+        given:
+        def codec = executor("""
+                var decoded = {};
+                const history = [];
+                const seen = new Map();
+                const ids = new Set();
+                const scratch = new Uint8Array(2);
+                const nested = { counters: { total: 0 } };
+                function decode(bytes) {
+                    decoded.first = bytes[0];
+                    if (bytes[1] === 1) {
+                        decoded.extra = true;
+                    }
+                    history.push(bytes[0]);
+                    seen.set(bytes[0], (seen.get(bytes[0]) || 0) + 1);
+                    ids.add(bytes[1]);
+                    scratch[0] += 1;
+                    nested.counters.total += 1;
+                    return { decoded: decoded, history: history.length, seen: seen.get(bytes[0]), ids: ids.size,
+                        scratch: scratch[0], total: nested.counters.total };
+                }
+                """)
+
+        expect:
+        [PAYLOAD, PAYLOAD, [0x01, 0x02] as byte[]].each { payload ->
+            def result = codec.execute(payload, null)
+            assert result.get("decoded").get("first").asInt() == (payload[0] & 0xFF)
+            assert result.get("decoded").has("extra") == (payload[1] == 1 as byte)
+            assert result.get("history").asInt() == 1
+            assert result.get("seen").asInt() == 1
+            assert result.get("ids").asInt() == 1
+            assert result.get("scratch").asInt() == 1
+            assert result.get("total").asInt() == 1
+        }
+    }
+
+    def "execution in flight should complete when the executor is closed"() {
+        given:
+        def pooledBefore = CodecExecutor.pooledContexts
+        def codec = executor("""
+                function decode(bytes) {
+                    var end = Date.now() + 300;
+                    while (Date.now() < end) {}
+                    return { done: true };
+                }
+                """)
+        codec.compile()
+
+        when:
+        def inFlight = CompletableFuture.supplyAsync { codec.execute(PAYLOAD, null) }
+        sleep(100)
+        codec.close()
+
+        then:
+        inFlight.get(5, TimeUnit.SECONDS).get("done").asBoolean()
+        CodecExecutor.pooledContexts == pooledBefore
+
+        and: "later executions use one-off contexts"
+        codec.execute(PAYLOAD, null).get("done").asBoolean()
+        codec.idleContexts.isEmpty()
+        CodecExecutor.pooledContexts == pooledBefore
+    }
+
+    def "pooled contexts of all executors should be bounded"() {
+        given:
+        def pooledBefore = CodecExecutor.pooledContexts
+        def codecs = (0..<CodecExecutor.MAX_POOLED_CONTEXTS + 2).collect {
+            executor("function decode(bytes) { return { id: ${it} }; }")
+        }
+
+        when:
+        def results = codecs.collect { it.execute(PAYLOAD, null).get("id").asInt() }
+
+        then:
+        results == (0..<CodecExecutor.MAX_POOLED_CONTEXTS + 2).toList()
+        CodecExecutor.pooledContexts <= CodecExecutor.MAX_POOLED_CONTEXTS
+
+        when:
+        codecs.each { it.close() }
+
+        then:
+        CodecExecutor.pooledContexts == pooledBefore
+    }
+}
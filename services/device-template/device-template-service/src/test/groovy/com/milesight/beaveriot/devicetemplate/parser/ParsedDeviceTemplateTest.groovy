@@ -0,0 +1,122 @@
+package com.milesight.beaveriot.devicetemplate.parser
+
+import com.milesight.beaveriot.base.utils.YamlUtils
+import com.milesight.beaveriot.context.api.EntityTemplateServiceProvider
+import com.milesight.beaveriot.context.integration.model.DeviceTemplate
+import com.milesight.beaveriot.context.support.SpringContext
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory
+import spock.lang.Specification
+
+import java.lang.reflect.Field
+
+/**
+ * @author leon
+ */
+class ParsedDeviceTemplateTest extends Specification {
+
+    static final String CONTENT = ParsedDeviceTemplateTest.getResource("/template/default_device_template.yaml").text
+
+    def setup() {
+        // the entity configs of a model look up the entity templates from the spring context
+        ConfigurableListableBeanFactory mockBeanFactory = Mock(ConfigurableListableBeanFactory)
+        mockBeanFactory.getBean(EntityTemplateServiceProvider.class) >> Mock(EntityTemplateServiceProvider)
+
+        Field beanFactoryField = SpringContext.class.getDeclaredField("beanFactory")
+        beanFactoryField.setAccessible(true)
+        beanFactoryField.set(null, mockBeanFactory)
+    }
+
+    static ParsedDeviceTemplate parse(String content) {
+        return new ParsedDeviceTemplate(content, YamlUtils.fromYAML(content))
+    }
+
+    def "input definition should be derived once"() {
+        when:
+        def parsed = parse(CONTENT)
+
+        then:
+        parsed.deviceIdKey == "device_id"
+        parsed.deviceNameKey == "device_name"
+        parsed.requiredKeys == ["device_id"]
+        parsed.flatJsonInputDescriptionMap.keySet() as List == ["device_id", "device_name", "temperature", "humidity", "time"]
+        parsed.matches(CONTENT)
+        !parsed.matches(CONTENT + "\n")
+    }
+
+    def "shared model should not be changed by the model a device is built from"() {
+        given:
+        def parsed = parse(CONTENT)
+        def shared = parsed.getModel()
+
+        when:
+        def model = parsed.newModel()
+        model.initialEntities[1].identifier = "changed"
+        model.initialEntities[1].attributes.put("unit", "K")
+        model.initialEntities[1].attributes.put("device_key", "integration.device.d1")
+        model.initialEntities.remove(0)
+        model.definition.input.properties[0].key = "changed"
+
+        then:
+        !model.is(shared)
+        parsed.getModel().is(shared)
+        shared.initialEntities*.identifier == ["device_id", "temperature", "humidity", "time"]
+        shared.initialEntities[1].attributes == [unit: "℃"]
+        shared.definition.input.properties[0].key == "device_id"
+        parsed.newModel().initialEntities[1].attributes == [unit: "℃"]
+    }
+
+    def "template should be parsed again once its content changed"() {
+        given:
+        def cache = new DeviceTemplateModelCache()
+        def template = new DeviceTemplate(id: 1L, content: CONTENT)
+        def parseCount = 0
+        def parser = { String content ->
+            parseCount++
+            return parse(content)
+        }
+
+        when:
+        def first = cache.get(template, parser)
+        def second = cache.get(template, parser)
+
+        then:
+        parseCount == 1
+        second.is(first)
+
+        when:
+        template.content = CONTENT.replace("'%'", "'percent'")
+        def changed = cache.get(template, parser)
+
+        then:
+        parseCount == 2
+        !changed.is(first)
+        changed.getModel().initialEntities[2].attributes == [unit: "percent"]
+        cache.get(template, parser).is(changed)
+        parseCount == 2
+
+        when:
+        cache.invalidate(1L)
+        cache.get(template, parser)
+
+        then:
+        parseCount == 3
+    }
+
+    def "template without an id should be parsed every time"() {
+        given:
+        def cache = new DeviceTemplateModelCache()
+        def template = new DeviceTemplate(content: CONTENT)
+        def parseCount = 0
+
+        when:
+        2.times {
+            cache.get(template, { String content ->
+                parseCount++
+                return parse(content)
+            })
+        }
+
+        then:
+        parseCount == 2
+    }
+}
@@ -0,0 +1,44 @@
+package com.milesight.beaveriot.device.cache;
+
+import com.milesight.beaveriot.pubsub.api.message.RemoteBroadcastMessage;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Broadcast after devices are changed or deleted, their cached metadata is outdated on all nodes.
+ *
+ * @author leon
+ */
+@Data
+@ToString(callSuper = true)
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeviceCacheInvalidationEvent extends RemoteBroadcastMessage {
+
+    private List<DeviceIndex> devices;
+
+    /**
+     * Everything a device is looked up by
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DeviceIndex {
+
+        private Long id;
+
+        private String key;
+
+        private String integration;
+
+        private String identifier;
+
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.milesight.beaveriot.device.cache;
+
+import com.milesight.beaveriot.device.po.DevicePO;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of a device row. A new {@link DevicePO} is built for every caller, so a cached device is never
+ * changed by the code that uses it.
+ *
+ * @author leon
+ */
+record DeviceMetadata(Long id,
+                      String tenantId,
+                      Long userId,
+                      String key,
+                      String name,
+                      String integration,
+                      String identifier,
+                      String template,
+                      Map<String, Object> additionalData,
+                      Long createdAt,
+                      Long updatedAt) {
+
+    static DeviceMetadata of(DevicePO devicePO) {
+        Map<String, Object> additionalData = devicePO.getAdditionalData() == null
+                ? null
+                : Collections.unmodifiableMap(new LinkedHashMap<>(devicePO.getAdditionalData()));
+        return new DeviceMetadata(devicePO.getId(), devicePO.getTenantId(), devicePO.getUserId(), devicePO.getKey(),
+                devicePO.getName(), devicePO.getIntegration(), devicePO.getIdentifier(), devicePO.getTemplate(),
+                additionalData, devicePO.getCreatedAt(), devicePO.getUpdatedAt());
+    }
+
+    DevicePO toPO() {
+        DevicePO devicePO = new DevicePO();
+        devicePO.setId(id);
+        devicePO.setTenantId(tenantId);
+        devicePO.setUserId(userId);
+        devicePO.setKey(key);
+        devicePO.setName(name);
+        devicePO.setIntegration(integration);
+        devicePO.setIdentifier(identifier);
+        devicePO.setTemplate(template);
+        devicePO.setAdditionalData(additionalData == null ? null : new LinkedHashMap<>(additionalData));
+        devicePO.setCreatedAt(createdAt);
+        devicePO.setUpdatedAt(updatedAt);
+        return devicePO;
+    }
+
+}
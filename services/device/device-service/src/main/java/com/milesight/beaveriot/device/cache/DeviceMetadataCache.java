@@ -0,0 +1,197 @@
+package com.milesight.beaveriot.device.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.milesight.beaveriot.context.integration.model.Device;
+import com.milesight.beaveriot.context.security.TenantContext;
+import com.milesight.beaveriot.device.po.DevicePO;
+import com.milesight.beaveriot.pubsub.MessagePubSub;
+import com.milesight.beaveriot.pubsub.api.annotation.MessageListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Cache of the device rows of each tenant, indexed by id, by key and by integration and identifier.
+ * <p>
+ * Every device is cached on its own, the devices missing from the cache are loaded together, up to
+ * {@value #LOAD_BATCH_SIZE} per query. Devices are evicted right away on the node changing them and, after the
+ * transaction is committed, on all nodes by a {@link DeviceCacheInvalidationEvent}. A query started before an eviction
+ * does not fill the cache, so it can't put back a device that was just changed. Lookups without a tenant context are
+ * not cached.
+ *
+ * @author leon
+ */
+@Slf4j
+@Component
+public class DeviceMetadataCache {
+
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private final Cache<IndexKey, DeviceMetadata> cache;
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final MessagePubSub messagePubSub;
+
+    public DeviceMetadataCache(DeviceMetadataCacheProperties properties, MessagePubSub messagePubSub) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .build();
+        this.messagePubSub = messagePubSub;
+    }
+
+    public List<DevicePO> findByIds(Collection<Long> ids, Function<List<Long>, List<DevicePO>> loader) {
+        return find(ids, (tenantId, id) -> IndexKey.ofId(tenantId, id), loader);
+    }
+
+    public List<DevicePO> findByKeys(Collection<String> keys, Function<List<String>, List<DevicePO>> loader) {
+        return find(keys, IndexKey::ofKey, loader);
+    }
+
+    public List<DevicePO> findByIdentifiers(String integrationId, Collection<String> identifiers, Function<List<String>, List<DevicePO>> loader) {
+        return find(identifiers, (tenantId, identifier) -> IndexKey.ofIdentifier(tenantId, integrationId, identifier), loader);
+    }
+
+    private <T> List<DevicePO> find(Collection<T> values, BiFunction<String, T, IndexKey> indexer, Function<List<T>, List<DevicePO>> loader) {
+        if (CollectionUtils.isEmpty(values)) {
+            return new ArrayList<>();
+        }
+
+        String tenantId = TenantContext.tryGetTenantId().orElse(null);
+        if (tenantId == null) {
+            return loader.apply(new ArrayList<>(values));
+        }
+
+        List<DevicePO> devices = new ArrayList<>(values.size());
+        List<T> misses = new ArrayList<>();
+        for (T value : new LinkedHashSet<>(values)) {
+            if (value == null) {
+                continue;
+            }
+            DeviceMetadata metadata = cache.getIfPresent(indexer.apply(tenantId, value));
+            if (metadata != null) {
+                devices.add(metadata.toPO());
+            } else {
+                misses.add(value);
+            }
+        }
+        if (misses.isEmpty()) {
+            return devices;
+        }
+
+        for (List<T> batch : Lists.partition(misses, LOAD_BATCH_SIZE)) {
+            long evictionCount = evictions.get();
+            List<DevicePO> loaded = loader.apply(batch);
+            boolean cacheable = evictionCount == evictions.get();
+            for (DevicePO devicePO : loaded) {
+                if (cacheable) {
+                    put(tenantId, DeviceMetadata.of(devicePO));
+                }
+                devices.add(devicePO);
+            }
+        }
+        return devices;
+    }
+
+    private void put(String tenantId, DeviceMetadata metadata) {
+        cache.put(IndexKey.ofId(tenantId, metadata.id()), metadata);
+        if (metadata.key() != null) {
+            cache.put(IndexKey.ofKey(tenantId, metadata.key()), metadata);
+        }
+        if (metadata.integration() != null && metadata.identifier() != null) {
+            cache.put(IndexKey.ofIdentifier(tenantId, metadata.integration(), metadata.identifier()), metadata);
+        }
+    }
+
+    public void evict(Device device) {
+        evict(List.of(new DeviceCacheInvalidationEvent.DeviceIndex(
+                device.getId(), device.getKey(), device.getIntegrationId(), device.getIdentifier())));
+    }
+
+    public void evictAll(Collection<DevicePO> devicePOs) {
+        evict(devicePOs.stream()
+                .map(devicePO -> new DeviceCacheInvalidationEvent.DeviceIndex(
+                        devicePO.getId(), devicePO.getKey(), devicePO.getIntegration(), devicePO.getIdentifier()))
+                .toList());
+    }
+
+    private void evict(List<DeviceCacheInvalidationEvent.DeviceIndex> devices) {
+        if (devices.isEmpty()) {
+            return;
+        }
+
+        evictLocally(TenantContext.tryGetTenantId().orElse(null), devices);
+        messagePubSub.publishAfterCommit(new DeviceCacheInvalidationEvent(devices));
+    }
+
+    @MessageListener
+    public void onDeviceCacheInvalidation(DeviceCacheInvalidationEvent event) {
+        log.debug("Evict cached devices {}", event.getDevices());
+        if (event.getDevices() != null) {
+            evictLocally(event.getTenantId(), event.getDevices());
+        }
+    }
+
+    private void evictLocally(String tenantId, List<DeviceCacheInvalidationEvent.DeviceIndex> devices) {
+        evictions.incrementAndGet();
+
+        Set<IndexKey> keys = new HashSet<>();
+        for (DeviceCacheInvalidationEvent.DeviceIndex device : devices) {
+            if (device.getId() != null) {
+                keys.add(IndexKey.ofId(null, device.getId()));
+            }
+            if (device.getKey() != null) {
+                keys.add(IndexKey.ofKey(null, device.getKey()));
+            }
+            if (device.getIntegration() != null && device.getIdentifier() != null) {
+                keys.add(IndexKey.ofIdentifier(null, device.getIntegration(), device.getIdentifier()));
+            }
+        }
+
+        if (tenantId == null) {
+            // changed without a tenant context, evict it from all tenants
+            cache.asMap().keySet().removeIf(key -> keys.contains(key.withTenantId(null)));
+        } else {
+            cache.invalidateAll(keys.stream().map(key -> key.withTenantId(tenantId)).toList());
+        }
+    }
+
+    private enum IndexType {
+        ID, KEY, IDENTIFIER
+    }
+
+    private record IndexKey(String tenantId, IndexType type, String scope, String value) {
+
+        static IndexKey ofId(String tenantId, Long id) {
+            return new IndexKey(tenantId, IndexType.ID, null, String.valueOf(id));
+        }
+
+        static IndexKey ofKey(String tenantId, String key) {
+            return new IndexKey(tenantId, IndexType.KEY, null, key);
+        }
+
+        static IndexKey ofIdentifier(String tenantId, String integrationId, String identifier) {
+            return new IndexKey(tenantId, IndexType.IDENTIFIER, integrationId, identifier);
+        }
+
+        IndexKey withTenantId(String tenantId) {
+            return Objects.equals(this.tenantId, tenantId) ? this : new IndexKey(tenantId, type, scope, value);
+        }
+
+    }
+
+}
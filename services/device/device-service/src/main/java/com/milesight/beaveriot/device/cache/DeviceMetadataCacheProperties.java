@@ -0,0 +1,28 @@
+package com.milesight.beaveriot.device.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of the device metadata cache.
+ *
+ * @author leon
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "device.metadata-cache")
+public class DeviceMetadataCacheProperties {
+
+    /**
+     * Maximum number of index entries, a device takes up to three: by id, by key and by identifier
+     */
+    private long maximumSize = 100_000;
+
+    /**
+     * Time a device is cached after it is loaded, in case an invalidation broadcast is lost
+     */
+    private Duration timeToLive = Duration.ofMinutes(10);
+}
@@ -30,6 +30,9 @@ public interface DeviceRepository extends BaseJpaRepository<DevicePO, Long> {
 
     Long countByTemplateIn(List<String> templates);
 
+    @Query("SELECT d.id FROM DevicePO d WHERE d.integration IN :integrations")
+    List<Long> findIdByIntegrationIn(@Param("integrations") List<String> integrations);
+
     @DataPermission(type = DataPermissionType.DEVICE, column = "id")
     default List<DevicePO> findAllWithDataPermission(Consumer<Filterable> filterable) {
         return findAll(filterable);
@@ -1,8 +1,5 @@
 package com.milesight.beaveriot.device.service;
 
-import com.milesight.beaveriot.base.annotations.cacheable.BatchCacheEvict;
-import com.milesight.beaveriot.base.annotations.cacheable.BatchCacheable;
-import com.milesight.beaveriot.base.annotations.cacheable.CacheKeys;
 import com.milesight.beaveriot.base.enums.ComparisonOperator;
 import com.milesight.beaveriot.base.enums.ErrorCode;
 import com.milesight.beaveriot.base.exception.ServiceException;
@@ -11,12 +8,12 @@ import com.milesight.beaveriot.blueprint.facade.IBlueprintFacade;
 import com.milesight.beaveriot.context.api.EntityServiceProvider;
 import com.milesight.beaveriot.context.api.EntityValueServiceProvider;
 import com.milesight.beaveriot.context.api.IntegrationServiceProvider;
-import com.milesight.beaveriot.context.constants.CacheKeyConstants;
 import com.milesight.beaveriot.context.integration.enums.AttachTargetType;
 import com.milesight.beaveriot.context.integration.model.*;
 import com.milesight.beaveriot.context.integration.model.event.DeviceEvent;
 import com.milesight.beaveriot.context.security.TenantContext;
 import com.milesight.beaveriot.data.filterable.Filterable;
+import com.milesight.beaveriot.device.cache.DeviceMetadataCache;
 import com.milesight.beaveriot.device.dto.DeviceIdKeyDTO;
 import com.milesight.beaveriot.device.dto.DeviceNameDTO;
 import com.milesight.beaveriot.device.dto.DeviceResponseData;
@@ -44,7 +41,6 @@ import com.milesight.beaveriot.user.facade.IUserFacade;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
@@ -112,6 +108,9 @@ public class DeviceService implements IDeviceFacade, IDeviceResponseFacade {
     @Autowired
     private IEntityTemplateFacade entityTemplateFacade;
 
+    @Autowired
+    private DeviceMetadataCache deviceMetadataCache;
+
     @Lazy
     @Autowired
     private DeviceService self;
@@ -309,9 +308,13 @@ public class DeviceService implements IDeviceFacade, IDeviceResponseFacade {
 
     @Override
     public Device findById(Long id) {
-        return deviceRepository
-                .findOne(f -> f
-                        .eq(DevicePO.Fields.id, id))
+        if (id == null) {
+            return null;
+        }
+
+        return deviceMetadataCache.findByIds(List.of(id), deviceRepository::findByIdIn)
+                .stream()
+                .findFirst()
                 .map(deviceConverter::convertPO)
                 .orElse(null);
     }
@@ -423,7 +426,7 @@ public class DeviceService implements IDeviceFacade, IDeviceResponseFacade {
         device.setName(newName);
 
         deviceRepository.save(device);
-        self.evictIntegrationIdToDeviceCache(device.getIntegration());
+        deviceMetadataCache.evictAll(List.of(device));
         eventBus.publish(DeviceEvent.of(DeviceEvent.EventType.UPDATED, deviceConverter.convertPO(device)));
     }
 
@@ -535,19 +538,19 @@ public class DeviceService implements IDeviceFacade, IDeviceResponseFacade {
 
     @Override
     public List<DeviceNameDTO> getDeviceNameByIntegrations(List<String> integrationIds) {
-        return convertDevicePOList(self.mapIntegrationIdToDevices(integrationIds)
+        return convertDevicePOList(mapIntegrationIdToDevices(integrationIds)
                 .values()
                 .stream()
                 .flatMap(Collection::stream)
                 .toList());
     }
 
-    @BatchCacheable(cacheNames = CacheKeyConstants.INTEGRATION_ID_TO_DEVICE, keyPrefix = CacheKeyConstants.TENANT_PREFIX)
-    public Map<String, List<DevicePO>> mapIntegrationIdToDevices(@CacheKeys List<String> integrationIds) {
+    public Map<String, List<DevicePO>> mapIntegrationIdToDevices(List<String> integrationIds) {
         if (integrationIds == null || integrationIds.isEmpty()) {
             return Collections.emptyMap();
         }
-        return deviceRepository.findAll(f -> f.in(DevicePO.Fields.integration, integrationIds.toArray()))
+        List<Long> deviceIds = deviceRepository.findIdByIntegrationIn(integrationIds);
+        return deviceMetadataCache.findByIds(deviceIds, deviceRepository::findByIdIn)
                 .stream()
                 .collect(Collectors.groupingBy(DevicePO::getIntegration));
     }
@@ -557,7 +560,7 @@ public class DeviceService implements IDeviceFacade, IDeviceResponseFacade {
         if (deviceIds == null || deviceIds.isEmpty()) {
             return new ArrayList<>();
         }
-        return convertDevicePOList(deviceRepository.findByIdIn(deviceIds));
+        return convertDevicePOList(deviceMetadataCache.findByIds(deviceIds, deviceRepository::findByIdIn));
     }
 
     @Override
@@ -590,7 +593,7 @@ public class DeviceService implements IDeviceFacade, IDeviceResponseFacade {
         }
 
         deviceRepository.deleteById(device.getId());
-        self.evictIntegrationIdToDeviceCache(device.getIntegrationId());
+        deviceMetadataCache.evict(device);
 
         userFacade.deleteResource(ResourceType.DEVICE, Collections.singletonList(device.getId()));
         userFacade.deleteResource(ResourceType.ENTITY, device.getEntities().stream().map(Entity::getId).toList());
@@ -598,16 +601,6 @@ public class DeviceService implements IDeviceFacade, IDeviceResponseFacade {
         eventBus.handle(DeviceEvent.of(DeviceEvent.EventType.DELETED, device));
     }
 
-    @CacheEvict(cacheNames = CacheKeyConstants.INTEGRATION_ID_TO_DEVICE, key = "T(com.milesight.beaveriot.context.security.TenantContext).getTenantId()+':'+#p0")
-    public void evictIntegrationIdToDeviceCache(String integrationId) {
-        // do nothing
-    }
-
-    @BatchCacheEvict(cacheNames = CacheKeyConstants.INTEGRATION_ID_TO_DEVICE, keyPrefix = CacheKeyConstants.TENANT_PREFIX)
-    public void evictIntegrationIdToDeviceCache(@CacheKeys Collection<String> integrationIds) {
-        // do nothing
-    }
-
     public void moveDeviceToGroup(MoveDeviceToGroupRequest request) {
         if (request.getDeviceIdList() == null || request.getDeviceIdList().isEmpty()) {
             return;
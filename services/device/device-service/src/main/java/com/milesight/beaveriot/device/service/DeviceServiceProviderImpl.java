@@ -11,6 +11,7 @@ import com.milesight.beaveriot.context.integration.model.DeviceLocation;
 import com.milesight.beaveriot.context.integration.model.event.DeviceEvent;
 import com.milesight.beaveriot.context.security.SecurityUserContext;
 import com.milesight.beaveriot.context.security.TenantContext;
+import com.milesight.beaveriot.device.cache.DeviceMetadataCache;
 import com.milesight.beaveriot.device.constants.DeviceDataFieldConstants;
 import com.milesight.beaveriot.device.location.model.DeviceLocationSetting;
 import com.milesight.beaveriot.device.location.service.DeviceLocationService;
@@ -30,8 +31,6 @@ import org.springframework.util.ObjectUtils;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 @Service
 public class DeviceServiceProviderImpl implements DeviceServiceProvider {
@@ -63,6 +62,9 @@ public class DeviceServiceProviderImpl implements DeviceServiceProvider {
     @Autowired
     private DeviceLocationService deviceLocationService;
 
+    @Autowired
+    private DeviceMetadataCache deviceMetadataCache;
+
     @Override
     public void save(Device device) {
         Long userId = SecurityUserContext.getUserId();
@@ -128,9 +130,12 @@ public class DeviceServiceProviderImpl implements DeviceServiceProvider {
             devicePO.setTemplate(device.getTemplate());
             devicePO.setKey(device.getKey());
             devicePO = deviceRepository.save(devicePO);
+            device.setId(devicePO.getId());
             eventBus.publish(DeviceEvent.of(DeviceEvent.EventType.CREATED, device));
         } else if (shouldUpdate) {
             devicePO = deviceRepository.save(devicePO);
+            device.setId(devicePO.getId());
+            deviceMetadataCache.evictAll(List.of(devicePO));
             eventBus.publish(DeviceEvent.of(DeviceEvent.EventType.UPDATED, device));
         }
 
@@ -141,7 +146,6 @@ public class DeviceServiceProviderImpl implements DeviceServiceProvider {
 
         entityServiceProvider.batchSave(device.getEntities());
 
-        deviceService.evictIntegrationIdToDeviceCache(device.getIntegrationId());
         Long deviceGroupId = (Long) TenantContext.tryGetTenantParam(DeviceService.TENANT_PARAM_DEVICE_GROUP_ID).orElse(null);
         if (deviceGroupId != null) {
             deviceGroupService.moveDevicesToGroupId(deviceGroupId, List.of(devicePO.getId()));
@@ -168,12 +172,11 @@ public class DeviceServiceProviderImpl implements DeviceServiceProvider {
 
     @Override
     public Device findByKey(String deviceKey) {
-        return deviceRepository
-                .findOne(f -> f
-                        .eq(DevicePO.Fields.key, deviceKey)
-                )
-                .map(deviceConverter::convertPO)
-                .orElse(null);
+        if (deviceKey == null) {
+            return null;
+        }
+
+        return findFirst(deviceMetadataCache.findByKeys(List.of(deviceKey), this::loadByKeys));
     }
 
     @Override
@@ -182,21 +185,21 @@ public class DeviceServiceProviderImpl implements DeviceServiceProvider {
             return List.of();
         }
 
-        return deviceConverter.convertPO(deviceRepository
-                .findAll(f -> f
-                        .in(DevicePO.Fields.key, deviceKeys.toArray())
-                ));
+        return convertPO(deviceMetadataCache.findByKeys(deviceKeys, this::loadByKeys));
+    }
+
+    private List<DevicePO> loadByKeys(List<String> deviceKeys) {
+        return deviceRepository.findAll(f -> f.in(DevicePO.Fields.key, deviceKeys.toArray()));
     }
 
     @Override
     public Device findByIdentifier(String identifier, String integrationId) {
-        return deviceRepository
-                .findOne(f -> f
-                        .eq(DevicePO.Fields.identifier, identifier)
-                        .eq(DevicePO.Fields.integration, integrationId)
-                )
-                .map(deviceConverter::convertPO)
-                .orElse(null);
+        if (identifier == null || integrationId == null) {
+            return null;
+        }
+
+        return findFirst(deviceMetadataCache.findByIdentifiers(integrationId, List.of(identifier),
+                identifiers -> loadByIdentifiers(identifiers, integrationId)));
     }
 
     @Override
@@ -205,11 +208,22 @@ public class DeviceServiceProviderImpl implements DeviceServiceProvider {
             return List.of();
         }
 
-        return deviceConverter.convertPO(deviceRepository
-                .findAll(f -> f
-                        .in(DevicePO.Fields.identifier, identifiers.toArray())
-                        .eq(DevicePO.Fields.integration, integrationId)
-                ));
+        return convertPO(deviceMetadataCache.findByIdentifiers(integrationId, identifiers,
+                missingIdentifiers -> loadByIdentifiers(missingIdentifiers, integrationId)));
+    }
+
+    private List<DevicePO> loadByIdentifiers(List<String> identifiers, String integrationId) {
+        return deviceRepository.findAll(f -> f
+                .in(DevicePO.Fields.identifier, identifiers.toArray())
+                .eq(DevicePO.Fields.integration, integrationId));
+    }
+
+    private Device findFirst(List<DevicePO> devicePOs) {
+        return devicePOs.isEmpty() ? null : deviceConverter.convertPO(devicePOs.get(0));
+    }
+
+    private List<Device> convertPO(List<DevicePO> devicePOs) {
+        return devicePOs.isEmpty() ? List.of() : deviceConverter.convertPO(devicePOs);
     }
 
     @Override
@@ -253,9 +267,7 @@ public class DeviceServiceProviderImpl implements DeviceServiceProvider {
         List<DevicePO> devices = deviceRepository.findAll(f -> f.eq(DevicePO.Fields.template, deviceTemplateKey));
         devices.forEach(devicePO -> devicePO.setTemplate(null));
         deviceRepository.saveAll(devices);
-
-        Set<String> integrationIds = devices.stream().map(DevicePO::getIntegration).collect(Collectors.toSet());
-        deviceService.evictIntegrationIdToDeviceCache(integrationIds);
+        deviceMetadataCache.evictAll(devices);
     }
 
     @Override
@@ -5,6 +5,5 @@ package com.milesight.beaveriot.device.status.constants;
  * create: 2025/9/22 9:53
  **/
 public class DeviceStatusConstants {
-    public static final String DELAYED_QUEUE_NAME = "device-status";
     public static final String IDENTIFIER_DEVICE_STATUS = "@status";
 }
@@ -5,10 +5,9 @@ import com.milesight.beaveriot.base.enums.ErrorCode;
 import com.milesight.beaveriot.base.exception.ServiceException;
 import com.milesight.beaveriot.context.api.*;
 import com.milesight.beaveriot.context.integration.model.*;
-import com.milesight.beaveriot.context.model.delayedqueue.DelayedQueue;
-import com.milesight.beaveriot.context.model.delayedqueue.DelayedTask;
 import com.milesight.beaveriot.context.support.SpringContext;
 import com.milesight.beaveriot.device.status.constants.DeviceStatusConstants;
+import com.milesight.beaveriot.device.status.tracker.DeviceKeepAliveTracker;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -33,19 +32,20 @@ public class DeviceStatusService {
     private final EntityServiceProvider entityServiceProvider;
     private final EntityValueServiceProvider entityValueServiceProvider;
     private final Map<String, DeviceStatusConfig> integrationDeviceStatusConfigs;
-    private final DelayedQueue<Void> delayedQueue;
+    private final DeviceKeepAliveTracker keepAliveTracker;
 
     public DeviceStatusService(DeviceServiceProvider deviceServiceProvider,
                                EntityTemplateServiceProvider entityTemplateServiceProvider,
                                EntityServiceProvider entityServiceProvider,
                                EntityValueServiceProvider entityValueServiceProvider,
-                               DelayedQueueServiceProvider delayedQueueServiceProvider) {
+                               DeviceKeepAliveTracker keepAliveTracker) {
         this.deviceServiceProvider = deviceServiceProvider;
         this.entityTemplateServiceProvider = entityTemplateServiceProvider;
         this.entityServiceProvider = entityServiceProvider;
         this.entityValueServiceProvider = entityValueServiceProvider;
         this.integrationDeviceStatusConfigs = new ConcurrentHashMap<>();
-        this.delayedQueue = delayedQueueServiceProvider.getDelayedQueue(DeviceStatusConstants.DELAYED_QUEUE_NAME);
+        this.keepAliveTracker = keepAliveTracker;
+        this.keepAliveTracker.setExpirationListener(this::handleExpiredDevices);
     }
 
     public void register(String integrationId, DeviceStatusConfig config) {
@@ -55,7 +55,6 @@ public class DeviceStatusService {
             if (!CollectionUtils.isEmpty(devices)) {
                 initDevices(devices, config);
             }
-            delayedQueue.registerConsumer(integrationId, this::consumeDelayedTask);
         }
     }
 
@@ -64,7 +63,7 @@ public class DeviceStatusService {
             return;
         }
 
-        cancelDelayedTask(device.getId());
+        keepAliveTracker.remove(device.getId());
     }
 
     public void online(Device device) {
@@ -73,6 +72,17 @@ public class DeviceStatusService {
         }
 
         AvailableDeviceData availableDeviceData = getAvailableDeviceDataByDevice(device);
+        Duration offlineDuration = getDeviceOfflineDuration(device, availableDeviceData.getDeviceStatusConfig());
+        if (offlineDuration != null) {
+            keepAliveTracker.touch(device.getId(), offlineDuration);
+        } else {
+            keepAliveTracker.remove(device.getId());
+        }
+
+        // heartbeats of an online device only refresh the keep-alive deadline, the status update is locked on transitions only
+        if (DeviceStatus.ONLINE.name().equals(entityValueServiceProvider.findValueByKey(getStatusEntityKey(device)))) {
+            return;
+        }
         self().handleStatus(device.getId(), availableDeviceData, DeviceStatusOperation.ONLINE, true);
     }
 
@@ -81,6 +91,7 @@ public class DeviceStatusService {
             return;
         }
 
+        keepAliveTracker.remove(device.getId());
         AvailableDeviceData availableDeviceData = getAvailableDeviceDataByDevice(device);
         self().handleStatus(device.getId(), availableDeviceData, DeviceStatusOperation.OFFLINE, true);
     }
@@ -90,6 +101,7 @@ public class DeviceStatusService {
             return;
         }
 
+        keepAliveTracker.remove(device.getId());
         AvailableDeviceData availableDeviceData = getAvailableDeviceDataByDevice(device);
         self().handleStatus(device.getId(), availableDeviceData, DeviceStatusOperation.OFFLINE, false);
     }
@@ -138,7 +150,7 @@ public class DeviceStatusService {
                              AvailableDeviceData availableDeviceData,
                              DeviceStatusOperation operation, boolean force) {
         if (availableDeviceData.getDeviceStatusConfig() == null) {
-            cancelDelayedTask(deviceId);
+            keepAliveTracker.remove(deviceId);
         }
 
         if (operation == DeviceStatusOperation.ONLINE) {
@@ -154,7 +166,7 @@ public class DeviceStatusService {
             devices.forEach(device -> {
                 Duration offlineDuration = getDeviceOfflineDuration(device, config);
                 if (offlineDuration != null) {
-                    offerDelayedTask(device, offlineDuration);
+                    keepAliveTracker.track(device.getId(), offlineDuration);
                 }
             });
         } else {
@@ -170,7 +182,7 @@ public class DeviceStatusService {
                 batchDevices.forEach(device -> {
                     Duration offlineDuration = deviceOfflineTimeoutMap.get(device.getId());
                     if (offlineDuration != null) {
-                        offerDelayedTask(device, offlineDuration);
+                        keepAliveTracker.track(device.getId(), offlineDuration);
                     }
                 });
             }
@@ -186,11 +198,6 @@ public class DeviceStatusService {
         DeviceStatusConfig config = availableDeviceData.getDeviceStatusConfig();
         Consumer<Device> onlineListener = Optional.ofNullable(config).map(DeviceStatusConfig::getOnlineListener).orElse(null);
         updateDeviceStatusToOnline(device, onlineListener, force);
-
-        Duration offlineDuration = getDeviceOfflineDuration(device, config);
-        if (offlineDuration != null) {
-            offerDelayedTask(device, offlineDuration);
-        }
     }
 
     private void handleStatusToOffline(AvailableDeviceData availableDeviceData, boolean force) {
@@ -204,18 +211,26 @@ public class DeviceStatusService {
         updateDeviceStatusToOffline(device, offlineListener, force);
     }
 
-    private void offerDelayedTask(Device device, Duration offlineDuration) {
-        delayedQueue.offer(DelayedTask.of(String.valueOf(device.getId()), device.getIntegrationId(), null, offlineDuration));
-    }
-
-    private void consumeDelayedTask(DelayedTask<Void> task) {
-        Long deviceId = Long.valueOf(task.getId());
-        AvailableDeviceData availableDeviceData = getAvailableDeviceDataByDeviceId(deviceId);
-        self().handleStatus(deviceId, availableDeviceData, DeviceStatusOperation.OFFLINE, false);
-    }
+    /**
+     * Update the expired devices to offline, only the devices currently online are updated
+     */
+    private void handleExpiredDevices(List<Long> deviceIds) {
+        List<Device> devices = deviceIds.stream()
+                .map(deviceServiceProvider::findById)
+                .filter(Objects::nonNull)
+                .toList();
+        if (devices.isEmpty()) {
+            return;
+        }
 
-    private void cancelDelayedTask(Long deviceId) {
-        delayedQueue.cancel(String.valueOf(deviceId));
+        Map<String, DeviceStatus> statuses = getStatusesByDeviceKeys(devices.stream().map(Device::getKey).toList());
+        devices.forEach(device -> {
+            if (statuses.get(device.getKey()) != DeviceStatus.ONLINE) {
+                return;
+            }
+            AvailableDeviceData availableDeviceData = getAvailableDeviceDataByDevice(device);
+            self().handleStatus(device.getId(), availableDeviceData, DeviceStatusOperation.OFFLINE, false);
+        });
     }
 
     private DeviceStatusService self() {
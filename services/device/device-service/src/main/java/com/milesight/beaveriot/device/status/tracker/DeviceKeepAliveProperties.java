@@ -0,0 +1,38 @@
+package com.milesight.beaveriot.device.status.tracker;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of the device keep-alive tracker.
+ *
+ * @author Luxb
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "device.status.keep-alive")
+public class DeviceKeepAliveProperties {
+
+    /**
+     * Number of shards the devices are hashed into, each shard has its own timing wheel
+     */
+    private int shardCount = 16;
+
+    /**
+     * Resolution of the offline detection
+     */
+    private Duration tickDuration = Duration.ofSeconds(1);
+
+    /**
+     * Number of buckets of each timing wheel, rounded up to a power of two
+     */
+    private int wheelSize = 512;
+
+    /**
+     * Maximum number of devices passed to the expiration listener at once
+     */
+    private int expirationBatchSize = 500;
+}
@@ -0,0 +1,32 @@
+package com.milesight.beaveriot.device.status.tracker;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Keep-alive deadlines shared by the cluster nodes, so that a node does not report a device offline while its
+ * heartbeats are received by another node. The operations are called from the ticker thread of the tracker and must
+ * not block on I/O.
+ *
+ * @author Luxb
+ */
+public interface DeviceKeepAliveStore {
+
+    /**
+     * Whether the deadlines are shared with other nodes, deadlines are not published otherwise
+     */
+    boolean isShared();
+
+    /**
+     * Publish the deadlines of the devices of a shard asynchronously, a published deadline never moves backward
+     */
+    void publish(int shard, Map<Long, Long> deadlines);
+
+    /**
+     * Get the latest deadlines published by any node, devices without published deadline are absent
+     */
+    CompletableFuture<Map<Long, Long>> getDeadlines(int shard, Collection<Long> deviceIds);
+
+    void remove(int shard, Long deviceId);
+}
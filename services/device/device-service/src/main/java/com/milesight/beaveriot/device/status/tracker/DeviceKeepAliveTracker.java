@@ -0,0 +1,313 @@
+package com.milesight.beaveriot.device.status.tracker;
+
+import com.milesight.beaveriot.context.security.TenantContext;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Track the keep-alive deadlines of devices and report the devices whose deadline has passed.
+ * <p>
+ * Devices are hashed into shards, each holding a timing wheel of deadlines. Refreshing a deadline is a constant time
+ * update of the entry, without lock or queue operation. A single ticker thread advances the wheels and hands the
+ * expired devices over to the expiration listener in batches, grouped by tenant.
+ * <p>
+ * In a cluster, a node only sees the heartbeats it receives. The deadlines are published to the shared store at most
+ * once per half timeout per device, in one batch per shard and tick. Before reporting a device, the node checks whether
+ * another node has published a later deadline, allowing for the half timeout the published deadline may lag behind.
+ * The ticker thread does not wait for the store: the expired devices are confirmed once the published deadlines are
+ * loaded, and are checked again on the next tick if they can't be loaded.
+ * <p>
+ * A device is reported with the tenant of its last heartbeat or tracking.
+ *
+ * @author Luxb
+ */
+@Slf4j
+@Component
+public class DeviceKeepAliveTracker {
+
+    private final DeviceKeepAliveProperties properties;
+
+    private final DeviceKeepAliveStore store;
+
+    private final Shard[] shards;
+
+    private volatile Consumer<List<Long>> expirationListener;
+
+    private ScheduledExecutorService ticker;
+
+    private ExecutorService notifier;
+
+    @Autowired
+    public DeviceKeepAliveTracker(DeviceKeepAliveProperties properties, ObjectProvider<RedissonClient> redissonClient) {
+        this(properties, newStore(redissonClient.getIfAvailable()));
+    }
+
+    DeviceKeepAliveTracker(DeviceKeepAliveProperties properties, DeviceKeepAliveStore store) {
+        this.properties = properties;
+        this.store = store;
+        this.shards = new Shard[Math.max(1, properties.getShardCount())];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i, new KeepAliveTimingWheel(properties.getTickDuration().toMillis(), properties.getWheelSize()));
+        }
+    }
+
+    private static DeviceKeepAliveStore newStore(RedissonClient client) {
+        return client == null ? new LocalDeviceKeepAliveStore() : new RedisDeviceKeepAliveStore(client);
+    }
+
+    @PostConstruct
+    public void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread t = new Thread(runnable, "device-keep-alive-ticker");
+            t.setDaemon(true);
+            return t;
+        });
+        notifier = Executors.newSingleThreadExecutor(runnable -> {
+            Thread t = new Thread(runnable, "device-keep-alive-notifier");
+            t.setDaemon(true);
+            return t;
+        });
+        long tickMillis = properties.getTickDuration().toMillis();
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        if (notifier != null) {
+            notifier.shutdown();
+        }
+    }
+
+    /**
+     * Set the listener of expired devices, which is called with the tenant context of the devices
+     */
+    public void setExpirationListener(Consumer<List<Long>> expirationListener) {
+        this.expirationListener = expirationListener;
+    }
+
+    /**
+     * Refresh the deadline of the device on a heartbeat
+     */
+    public void touch(Long deviceId, Duration timeout) {
+        refresh(deviceId, timeout, true);
+    }
+
+    /**
+     * Start tracking the device without a heartbeat, e.g. on startup, the deadline is not shared with other nodes
+     */
+    public void track(Long deviceId, Duration timeout) {
+        refresh(deviceId, timeout, false);
+    }
+
+    public void remove(Long deviceId) {
+        if (deviceId == null) {
+            return;
+        }
+        Shard shard = shardOf(deviceId);
+        KeepAliveEntry entry = shard.entries.remove(deviceId);
+        if (entry != null) {
+            entry.removed = true;
+            if (store.isShared()) {
+                store.remove(shard.index, deviceId);
+            }
+        }
+    }
+
+    public boolean isTracked(Long deviceId) {
+        return deviceId != null && shardOf(deviceId).entries.containsKey(deviceId);
+    }
+
+    private void refresh(Long deviceId, Duration timeout, boolean heartbeat) {
+        long timeoutMillis = timeout.toMillis();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        String tenantId = TenantContext.tryGetTenantId().orElse(null);
+        Shard shard = shardOf(deviceId);
+        KeepAliveEntry entry = shard.entries.compute(deviceId, (id, existing) -> {
+            if (existing == null) {
+                KeepAliveEntry created = new KeepAliveEntry(id, tenantId, deadline, timeoutMillis);
+                shard.wheel.schedule(created);
+                return created;
+            }
+            if (tenantId != null) {
+                existing.tenantId = tenantId;
+            }
+            existing.timeoutMillis = timeoutMillis;
+            existing.extendDeadline(deadline);
+            return existing;
+        });
+
+        if (heartbeat && store.isShared() && deadline - entry.publishedDeadline >= timeoutMillis / 2
+                && entry.publishPending.compareAndSet(false, true)) {
+            shard.publishQueue.offer(entry);
+        }
+    }
+
+    private Shard shardOf(Long deviceId) {
+        return shards[Math.floorMod(Long.hashCode(deviceId), shards.length)];
+    }
+
+    private void tick() {
+        long now = System.currentTimeMillis();
+        List<CompletableFuture<List<KeepAliveEntry>>> confirmations = new ArrayList<>();
+        for (Shard shard : shards) {
+            try {
+                publish(shard);
+                List<KeepAliveEntry> candidates = shard.wheel.advance(now);
+                if (!candidates.isEmpty()) {
+                    confirmations.add(confirmExpired(shard, candidates));
+                }
+            } catch (Exception e) {
+                log.error("Advance device keep-alive shard {} failed", shard.index, e);
+            }
+        }
+        if (confirmations.isEmpty()) {
+            return;
+        }
+
+        CompletableFuture.allOf(confirmations.toArray(CompletableFuture[]::new)).whenCompleteAsync((result, e) -> {
+            Map<String, List<Long>> tenantExpiredDevices = new LinkedHashMap<>();
+            confirmations.forEach(confirmation -> confirmation.join()
+                    .forEach(entry -> tenantExpiredDevices.computeIfAbsent(entry.tenantId, k -> new ArrayList<>()).add(entry.deviceId)));
+            tenantExpiredDevices.forEach(this::notifyExpired);
+        }, notifier);
+    }
+
+    private void publish(Shard shard) {
+        if (shard.publishQueue.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> deadlines = new HashMap<>();
+        KeepAliveEntry entry;
+        while ((entry = shard.publishQueue.poll()) != null) {
+            entry.publishPending.set(false);
+            if (entry.removed) {
+                continue;
+            }
+            long deadline = entry.getDeadline();
+            deadlines.put(entry.deviceId, deadline);
+            entry.publishedDeadline = deadline;
+        }
+        store.publish(shard.index, deadlines);
+    }
+
+    /**
+     * Load the deadlines published by other nodes for the candidates, the candidates are scheduled again if they can't
+     * be loaded
+     *
+     * @return the confirmed expired entries, never completed exceptionally
+     */
+    private CompletableFuture<List<KeepAliveEntry>> confirmExpired(Shard shard, List<KeepAliveEntry> candidates) {
+        if (!store.isShared()) {
+            return CompletableFuture.completedFuture(confirmExpired(shard, candidates, Map.of(), System.currentTimeMillis()));
+        }
+        CompletableFuture<Map<Long, Long>> sharedDeadlines;
+        try {
+            sharedDeadlines = store.getDeadlines(shard.index, candidates.stream().map(entry -> entry.deviceId).toList());
+        } catch (Exception e) {
+            sharedDeadlines = CompletableFuture.failedFuture(e);
+        }
+        return sharedDeadlines.handle((deadlines, e) -> {
+            if (e != null) {
+                log.warn("Load device keep-alive deadlines of shard {} failed, check them again on the next tick", shard.index, e);
+                candidates.forEach(shard.wheel::schedule);
+                return List.of();
+            }
+            return confirmExpired(shard, candidates, deadlines, System.currentTimeMillis());
+        });
+    }
+
+    /**
+     * Filter out the entries kept alive by other nodes or refreshed in the meantime, and stop tracking the others
+     */
+    private List<KeepAliveEntry> confirmExpired(Shard shard, List<KeepAliveEntry> candidates, Map<Long, Long> sharedDeadlines, long now) {
+        List<KeepAliveEntry> expiredEntries = new ArrayList<>();
+        for (KeepAliveEntry entry : candidates) {
+            Long sharedDeadline = sharedDeadlines.get(entry.deviceId);
+            if (sharedDeadline != null && sharedDeadline > entry.publishedDeadline) {
+                long effectiveDeadline = sharedDeadline + entry.timeoutMillis / 2;
+                if (effectiveDeadline > now) {
+                    entry.extendDeadline(effectiveDeadline);
+                }
+            }
+
+            boolean[] expired = {false};
+            KeepAliveEntry current = shard.entries.computeIfPresent(entry.deviceId, (id, existing) -> {
+                if (existing == entry && existing.getDeadline() <= now) {
+                    expired[0] = true;
+                    return null;
+                }
+                return existing;
+            });
+            if (expired[0]) {
+                expiredEntries.add(entry);
+            } else if (current == entry) {
+                shard.wheel.schedule(entry);
+            }
+        }
+        return expiredEntries;
+    }
+
+    private void notifyExpired(String tenantId, List<Long> deviceIds) {
+        Consumer<List<Long>> listener = expirationListener;
+        if (listener == null) {
+            return;
+        }
+        int batchSize = Math.max(1, properties.getExpirationBatchSize());
+        for (int i = 0; i < deviceIds.size(); i += batchSize) {
+            List<Long> batch = deviceIds.subList(i, Math.min(i + batchSize, deviceIds.size()));
+            notifier.execute(() -> {
+                try {
+                    if (tenantId != null) {
+                        TenantContext.setTenantId(tenantId);
+                    }
+                    listener.accept(batch);
+                } catch (Exception e) {
+                    log.error("Handle expired devices {} failed", batch, e);
+                } finally {
+                    TenantContext.clear();
+                }
+            });
+        }
+    }
+
+    private static class Shard {
+
+        private final int index;
+
+        private final KeepAliveTimingWheel wheel;
+
+        private final ConcurrentMap<Long, KeepAliveEntry> entries = new ConcurrentHashMap<>();
+
+        private final Queue<KeepAliveEntry> publishQueue = new ConcurrentLinkedQueue<>();
+
+        private Shard(int index, KeepAliveTimingWheel wheel) {
+            this.index = index;
+            this.wheel = wheel;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.milesight.beaveriot.device.status.tracker;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keep-alive state of a device tracked by the current node.
+ *
+ * @author Luxb
+ */
+final class KeepAliveEntry {
+
+    final Long deviceId;
+
+    /**
+     * Tenant of the last heartbeat, the expiration listener is called with it
+     */
+    volatile String tenantId;
+
+    /**
+     * Deadline in epoch millis, only moves forward so that the wheel can reschedule lazily
+     */
+    final AtomicLong deadline;
+
+    volatile long timeoutMillis;
+
+    /**
+     * Last deadline published to the shared store by the current node
+     */
+    volatile long publishedDeadline;
+
+    final AtomicBoolean publishPending = new AtomicBoolean();
+
+    volatile boolean removed;
+
+    /**
+     * Remaining revolutions of the wheel before the bucket holding the entry is due, owned by the wheel thread
+     */
+    long remainingRounds;
+
+    KeepAliveEntry(Long deviceId, String tenantId, long deadline, long timeoutMillis) {
+        this.deviceId = deviceId;
+        this.tenantId = tenantId;
+        this.deadline = new AtomicLong(deadline);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    long getDeadline() {
+        return deadline.get();
+    }
+
+    void extendDeadline(long newDeadline) {
+        deadline.accumulateAndGet(newDeadline, Math::max);
+    }
+}
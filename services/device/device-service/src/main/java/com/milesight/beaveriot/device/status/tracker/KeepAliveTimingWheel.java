@@ -0,0 +1,94 @@
+package com.milesight.beaveriot.device.status.tracker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hashed timing wheel of keep-alive deadlines.
+ * <p>
+ * Entries are only added through {@link #schedule(KeepAliveEntry)}, which can be called from any thread. Refreshing a
+ * deadline does not touch the wheel: when the bucket of an entry is due and its deadline has moved forward in the
+ * meantime, the entry is moved to the bucket of the new deadline. {@link #advance(long)} must be called from a single
+ * thread.
+ *
+ * @author Luxb
+ */
+class KeepAliveTimingWheel {
+
+    private final long tickMillis;
+
+    private final int wheelSize;
+
+    private final int mask;
+
+    private final List<KeepAliveEntry>[] buckets;
+
+    private final Queue<KeepAliveEntry> pendingEntries = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Last processed tick, -1 before the first advance
+     */
+    private long tick = -1;
+
+    @SuppressWarnings("unchecked")
+    KeepAliveTimingWheel(long tickMillis, int wheelSize) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = Integer.highestOneBit(Math.max(wheelSize, 2) - 1) << 1;
+        this.mask = this.wheelSize - 1;
+        this.buckets = new List[this.wheelSize];
+        for (int i = 0; i < this.wheelSize; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+    }
+
+    void schedule(KeepAliveEntry entry) {
+        pendingEntries.offer(entry);
+    }
+
+    /**
+     * Process the buckets due until now
+     *
+     * @return entries whose deadline has passed, removed from the wheel
+     */
+    List<KeepAliveEntry> advance(long now) {
+        long currentTick = now / tickMillis;
+        if (tick < 0) {
+            tick = currentTick - 1;
+        }
+
+        KeepAliveEntry pendingEntry;
+        while ((pendingEntry = pendingEntries.poll()) != null) {
+            place(pendingEntry);
+        }
+
+        List<KeepAliveEntry> expiredEntries = new ArrayList<>();
+        while (tick < currentTick) {
+            tick++;
+            int index = (int) (tick & mask);
+            List<KeepAliveEntry> bucket = buckets[index];
+            buckets[index] = new ArrayList<>();
+            for (KeepAliveEntry entry : bucket) {
+                if (entry.removed) {
+                    continue;
+                }
+                if (entry.remainingRounds > 0) {
+                    entry.remainingRounds--;
+                    buckets[index].add(entry);
+                } else if (entry.getDeadline() <= now) {
+                    expiredEntries.add(entry);
+                } else {
+                    place(entry);
+                }
+            }
+        }
+        return expiredEntries;
+    }
+
+    private void place(KeepAliveEntry entry) {
+        long deadlineTick = Math.max(entry.getDeadline() / tickMillis, tick + 1);
+        entry.remainingRounds = (deadlineTick - tick - 1) / wheelSize;
+        buckets[(int) (deadlineTick & mask)].add(entry);
+    }
+}
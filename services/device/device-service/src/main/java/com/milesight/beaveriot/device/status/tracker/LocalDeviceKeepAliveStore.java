@@ -0,0 +1,34 @@
+package com.milesight.beaveriot.device.status.tracker;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Keep-alive store of a standalone node, the local deadlines are the only ones.
+ *
+ * @author Luxb
+ */
+public class LocalDeviceKeepAliveStore implements DeviceKeepAliveStore {
+
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+
+    @Override
+    public void publish(int shard, Map<Long, Long> deadlines) {
+        // nothing to share
+    }
+
+    @Override
+    public CompletableFuture<Map<Long, Long>> getDeadlines(int shard, Collection<Long> deviceIds) {
+        return CompletableFuture.completedFuture(Collections.emptyMap());
+    }
+
+    @Override
+    public void remove(int shard, Long deviceId) {
+        // nothing to share
+    }
+}
@@ -0,0 +1,102 @@
+package com.milesight.beaveriot.device.status.tracker;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RBatch;
+import org.redisson.api.RScoredSortedSetAsync;
+import org.redisson.api.RedissonClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keep-alive store backed by one redis sorted set per shard, scored by deadline.
+ * <p>
+ * Deadlines are written with {@code ZADD GT} in one batch per shard and tick, so concurrent publishers never move a
+ * deadline backward. Deadlines older than the retention are trimmed periodically. The batches are executed
+ * asynchronously, a failed publication is only logged since the next heartbeats publish the deadlines again.
+ *
+ * @author Luxb
+ */
+@Slf4j
+public class RedisDeviceKeepAliveStore implements DeviceKeepAliveStore {
+
+    private static final String KEY_FORMAT = "device-status:keep-alive:%d";
+
+    private static final Duration RETENTION = Duration.ofDays(1);
+
+    private static final Duration TRIM_INTERVAL = Duration.ofMinutes(10);
+
+    private final RedissonClient redissonClient;
+
+    private final Map<Integer, Long> lastTrimTimes = new ConcurrentHashMap<>();
+
+    public RedisDeviceKeepAliveStore(RedissonClient redissonClient) {
+        this.redissonClient = redissonClient;
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    @Override
+    public void publish(int shard, Map<Long, Long> deadlines) {
+        if (deadlines.isEmpty()) {
+            return;
+        }
+        RBatch batch = redissonClient.createBatch();
+        RScoredSortedSetAsync<Long> deadlineSet = batch.getScoredSortedSet(getKey(shard));
+        deadlines.forEach((deviceId, deadline) -> deadlineSet.addIfGreaterAsync(deadline, deviceId));
+
+        long now = System.currentTimeMillis();
+        Long lastTrimTime = lastTrimTimes.get(shard);
+        if (lastTrimTime == null || now - lastTrimTime > TRIM_INTERVAL.toMillis()) {
+            lastTrimTimes.put(shard, now);
+            deadlineSet.removeRangeByScoreAsync(0, true, now - RETENTION.toMillis(), true);
+        }
+        batch.executeAsync().toCompletableFuture().whenComplete((result, e) -> {
+            if (e != null) {
+                log.warn("Publish device keep-alive deadlines of shard {} failed", shard, e);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Map<Long, Long>> getDeadlines(int shard, Collection<Long> deviceIds) {
+        if (deviceIds.isEmpty()) {
+            return CompletableFuture.completedFuture(Map.of());
+        }
+        List<Long> deviceIdList = new ArrayList<>(deviceIds);
+        RBatch batch = redissonClient.createBatch();
+        RScoredSortedSetAsync<Long> deadlineSet = batch.getScoredSortedSet(getKey(shard));
+        deviceIdList.forEach(deadlineSet::getScoreAsync);
+        return batch.executeAsync().toCompletableFuture().thenApply(result -> toDeadlines(deviceIdList, result));
+    }
+
+    private static Map<Long, Long> toDeadlines(List<Long> deviceIds, BatchResult<?> result) {
+        Map<Long, Long> deadlines = new HashMap<>();
+        List<?> scores = result.getResponses();
+        for (int i = 0; i < deviceIds.size() && i < scores.size(); i++) {
+            if (scores.get(i) instanceof Number score) {
+                deadlines.put(deviceIds.get(i), score.longValue());
+            }
+        }
+        return deadlines;
+    }
+
+    @Override
+    public void remove(int shard, Long deviceId) {
+        redissonClient.<Long>getScoredSortedSet(getKey(shard)).removeAsync(deviceId);
+    }
+
+    private static String getKey(int shard) {
+        return String.format(KEY_FORMAT, shard);
+    }
+}
@@ -0,0 +1,163 @@
+package com.milesight.beaveriot.device.cache
+
+import com.milesight.beaveriot.context.security.TenantContext
+import com.milesight.beaveriot.device.po.DevicePO
+import com.milesight.beaveriot.pubsub.MessagePubSub
+import spock.lang.Specification
+
+/**
+ * @author leon
+ */
+class DeviceMetadataCacheTest extends Specification {
+
+    MessagePubSub messagePubSub = Mock()
+
+    DeviceMetadataCache cache = new DeviceMetadataCache(new DeviceMetadataCacheProperties(), messagePubSub)
+
+    def setup() {
+        TenantContext.setTenantId("tenant-a")
+    }
+
+    def cleanup() {
+        TenantContext.clear()
+    }
+
+    static DevicePO device(Long id, String identifier) {
+        def devicePO = new DevicePO()
+        devicePO.setId(id)
+        devicePO.setKey("my-integration.device.$identifier")
+        devicePO.setIntegration("my-integration")
+        devicePO.setIdentifier(identifier)
+        devicePO.setName("device $identifier")
+        devicePO.setAdditionalData([sn: identifier])
+        return devicePO
+    }
+
+    def "loaded device should be found by id, key and identifier without loading again"() {
+        given:
+        def loader = Mock(java.util.function.Function)
+
+        when:
+        def loaded = cache.findByIds([1L], loader)
+
+        then:
+        1 * loader.apply([1L]) >> [device(1L, "a")]
+        loaded*.id == [1L]
+
+        when:
+        def byId = cache.findByIds([1L], loader)
+        def byKey = cache.findByKeys(["my-integration.device.a"], loader)
+        def byIdentifier = cache.findByIdentifiers("my-integration", ["a"], loader)
+
+        then:
+        0 * loader.apply(_)
+        byId*.name == ["device a"]
+        byKey*.id == [1L]
+        byIdentifier*.id == [1L]
+    }
+
+    def "only the missing devices should be loaded, together"() {
+        given:
+        cache.findByIds([1L], { [device(1L, "a")] })
+        def loader = Mock(java.util.function.Function)
+
+        when:
+        def devices = cache.findByIdentifiers("my-integration", ["a", "b", "c", "b"], loader)
+
+        then:
+        1 * loader.apply(["b", "c"]) >> [device(2L, "b"), device(3L, "c")]
+        devices*.id as Set == [1L, 2L, 3L] as Set
+    }
+
+    def "cached device should be copied for every caller"() {
+        given:
+        cache.findByIds([1L], { [device(1L, "a")] })
+
+        when:
+        def first = cache.findByIds([1L], { [] })[0]
+        first.setName("changed")
+        first.getAdditionalData().put("sn", "changed")
+        def second = cache.findByIds([1L], { [] })[0]
+
+        then:
+        second.name == "device a"
+        second.additionalData == [sn: "a"]
+    }
+
+    def "devices should be cached per tenant"() {
+        given:
+        cache.findByIds([1L], { [device(1L, "a")] })
+        TenantContext.setTenantId("tenant-b")
+        def loader = Mock(java.util.function.Function)
+
+        when:
+        def devices = cache.findByIds([1L], loader)
+
+        then:
+        1 * loader.apply([1L]) >> []
+        devices.isEmpty()
+    }
+
+    def "evicted device should be removed from all indexes and broadcast"() {
+        given:
+        def devicePO = device(1L, "a")
+        cache.findByIds([1L], { [devicePO] })
+        def loader = Mock(java.util.function.Function)
+
+        when:
+        cache.evictAll([devicePO])
+
+        then:
+        1 * messagePubSub.publishAfterCommit({ DeviceCacheInvalidationEvent event -> event.devices*.id == [1L] })
+
+        when:
+        cache.findByKeys(["my-integration.device.a"], loader)
+        cache.findByIdentifiers("my-integration", ["a"], loader)
+
+        then:
+        2 * loader.apply(_) >> []
+    }
+
+    def "invalidation event should evict the device of its tenant on this node"() {
+        given:
+        cache.findByIds([1L], { [device(1L, "a")] })
+        def event = new DeviceCacheInvalidationEvent([new DeviceCacheInvalidationEvent.DeviceIndex(1L, "my-integration.device.a", "my-integration", "a")])
+        event.setTenantId("tenant-a")
+        def loader = Mock(java.util.function.Function)
+
+        when:
+        cache.onDeviceCacheInvalidation(event)
+        cache.findByIdentifiers("my-integration", ["a"], loader)
+
+        then:
+        1 * loader.apply(["a"]) >> []
+    }
+
+    def "device loaded while another is evicted should not be cached"() {
+        given:
+        def loader = Mock(java.util.function.Function)
+
+        when:
+        cache.findByIds([1L], { ids ->
+            cache.evictAll([device(2L, "b")])
+            [device(1L, "a")]
+        })
+        cache.findByIds([1L], loader)
+
+        then:
+        1 * loader.apply([1L]) >> [device(1L, "a")]
+    }
+
+    def "lookups without a tenant should not be cached"() {
+        given:
+        TenantContext.clear()
+        def loader = Mock(java.util.function.Function)
+
+        when:
+        cache.findByIds([1L], loader)
+        cache.findByIds([1L], loader)
+
+        then:
+        2 * loader.apply([1L]) >> [device(1L, "a")]
+    }
+}
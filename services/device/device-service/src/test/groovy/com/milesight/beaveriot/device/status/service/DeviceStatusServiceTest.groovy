@@ -2,9 +2,9 @@ package com.milesight.beaveriot.device.status.service
 
 import com.milesight.beaveriot.context.api.*
 import com.milesight.beaveriot.context.integration.model.*
-import com.milesight.beaveriot.context.model.delayedqueue.DelayedQueue
 import com.milesight.beaveriot.context.support.SpringContext
 import com.milesight.beaveriot.device.status.constants.DeviceStatusConstants
+import com.milesight.beaveriot.device.status.tracker.DeviceKeepAliveTracker
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory
 import spock.lang.Specification
 import spock.lang.Unroll
@@ -22,8 +22,8 @@ class DeviceStatusServiceTest extends Specification {
     EntityTemplateServiceProvider entityTemplateServiceProvider
     EntityServiceProvider entityServiceProvider
     EntityValueServiceProvider entityValueServiceProvider
-    DelayedQueueServiceProvider delayedQueueServiceProvider
-    DelayedQueue<Void> delayedQueue
+    DeviceKeepAliveTracker keepAliveTracker
+    Closure expirationListener
     DeviceStatusService deviceStatusService
 
     def setup() {
@@ -31,16 +31,16 @@ class DeviceStatusServiceTest extends Specification {
         entityTemplateServiceProvider = Mock(EntityTemplateServiceProvider)
         entityServiceProvider = Mock(EntityServiceProvider)
         entityValueServiceProvider = Mock(EntityValueServiceProvider)
-        delayedQueueServiceProvider = Mock(DelayedQueueServiceProvider)
-        delayedQueue = Mock(DelayedQueue)
-        delayedQueueServiceProvider.getDelayedQueue(DeviceStatusConstants.DELAYED_QUEUE_NAME) >> delayedQueue
+        keepAliveTracker = Mock(DeviceKeepAliveTracker) {
+            setExpirationListener(_) >> { args -> expirationListener = { deviceIds -> args[0].accept(deviceIds) } }
+        }
 
         deviceStatusService = new DeviceStatusService(
                 deviceServiceProvider,
                 entityTemplateServiceProvider,
                 entityServiceProvider,
                 entityValueServiceProvider,
-                delayedQueueServiceProvider
+                keepAliveTracker
         )
 
         ConfigurableListableBeanFactory mockBeanFactory = Mock(ConfigurableListableBeanFactory)
@@ -53,7 +53,7 @@ class DeviceStatusServiceTest extends Specification {
 
     // ==================== register tests ====================
 
-    def "register should register consumer and init devices when config is provided"() {
+    def "register should track devices when config is provided"() {
         given:
         def integrationId = "test-integration"
         def device = createDevice(1L, integrationId, "device-1")
@@ -66,8 +66,7 @@ class DeviceStatusServiceTest extends Specification {
         deviceStatusService.register(integrationId, config)
 
         then:
-        1 * delayedQueue.registerConsumer(integrationId, _)
-        1 * delayedQueue.offer(_)
+        1 * keepAliveTracker.track(1L, Duration.ofMinutes(5))
     }
 
     def "register should do nothing when config is null"() {
@@ -79,11 +78,10 @@ class DeviceStatusServiceTest extends Specification {
 
         then:
         0 * deviceServiceProvider.findAll(_)
-        0 * delayedQueue.registerConsumer(_, _)
-        0 * delayedQueue.offer(_)
+        0 * keepAliveTracker.track(_, _)
     }
 
-    def "register should only register consumer when devices list is empty"() {
+    def "register should track nothing when devices list is empty"() {
         given:
         def integrationId = "test-integration"
         def config = DeviceStatusConfig.builder()
@@ -95,8 +93,7 @@ class DeviceStatusServiceTest extends Specification {
         deviceStatusService.register(integrationId, config)
 
         then:
-        1 * delayedQueue.registerConsumer(integrationId, _)
-        0 * delayedQueue.offer(_)
+        0 * keepAliveTracker.track(_, _)
     }
 
     def "register should use batchOfflineTimeoutFetcher when provided"() {
@@ -115,13 +112,13 @@ class DeviceStatusServiceTest extends Specification {
         deviceStatusService.register(integrationId, config)
 
         then:
-        1 * delayedQueue.registerConsumer(integrationId, _)
-        2 * delayedQueue.offer(_)
+        1 * keepAliveTracker.track(1L, Duration.ofMinutes(5))
+        1 * keepAliveTracker.track(2L, Duration.ofMinutes(10))
     }
 
     // ==================== deregister tests ====================
 
-    def "deregister should cancel delayed task for device"() {
+    def "deregister should stop tracking device"() {
         given:
         def device = createDevice(1L, "test-integration", "device-1")
 
@@ -129,7 +126,7 @@ class DeviceStatusServiceTest extends Specification {
         deviceStatusService.deregister(device)
 
         then:
-        1 * delayedQueue.cancel("1")
+        1 * keepAliveTracker.remove(1L)
     }
 
     // ==================== online tests ====================
@@ -155,6 +152,74 @@ class DeviceStatusServiceTest extends Specification {
         1 * entityValueServiceProvider.saveValuesAndPublishSync(_)
     }
 
+    def "online should refresh keep-alive deadline without updating status when device is already online"() {
+        given:
+        def integrationId = "test-integration"
+        def device = createDevice(1L, integrationId, "device-1")
+        def statusEntityKey = getDeviceStatusEntityKey(device)
+        def config = DeviceStatusConfig.builder()
+                .offlineTimeoutFetcher({ d -> Duration.ofMinutes(5) })
+                .build()
+
+        deviceServiceProvider.findAll(integrationId) >> []
+        deviceStatusService.register(integrationId, config)
+        entityValueServiceProvider.findValueByKey(statusEntityKey) >> "ONLINE"
+
+        when:
+        deviceStatusService.online(device)
+
+        then:
+        1 * keepAliveTracker.touch(1L, Duration.ofMinutes(5))
+        0 * entityServiceProvider.findByKey(_)
+        0 * entityValueServiceProvider.saveValuesAndPublishSync(_)
+    }
+
+    def "online should update status and refresh keep-alive deadline when device is offline"() {
+        given:
+        def integrationId = "test-integration"
+        def device = createDevice(1L, integrationId, "device-1")
+        def statusEntityKey = getDeviceStatusEntityKey(device)
+        def config = DeviceStatusConfig.builder()
+                .offlineTimeoutFetcher({ d -> Duration.ofMinutes(5) })
+                .build()
+
+        deviceServiceProvider.findAll(integrationId) >> []
+        deviceStatusService.register(integrationId, config)
+        entityServiceProvider.findByKey(statusEntityKey) >> Mock(Entity)
+        entityValueServiceProvider.findValueByKey(statusEntityKey) >> "OFFLINE"
+
+        when:
+        deviceStatusService.online(device)
+
+        then:
+        1 * keepAliveTracker.touch(1L, Duration.ofMinutes(5))
+        1 * entityValueServiceProvider.saveValuesAndPublishSync(_)
+    }
+
+    // ==================== expiration tests ====================
+
+    def "expired devices should only be updated to offline when they are online"() {
+        given:
+        def integrationId = "test-integration"
+        def onlineDevice = createDevice(1L, integrationId, "device-1")
+        def offlineDevice = createDevice(2L, integrationId, "device-2")
+        deviceServiceProvider.findById(1L) >> onlineDevice
+        deviceServiceProvider.findById(2L) >> offlineDevice
+        deviceServiceProvider.findById(3L) >> null
+        entityValueServiceProvider.findValuesByKeys(_) >> [
+                (getDeviceStatusEntityKey(onlineDevice)) : "ONLINE",
+                (getDeviceStatusEntityKey(offlineDevice)): "OFFLINE"
+        ]
+        entityServiceProvider.findByKey(_) >> Mock(Entity)
+        entityValueServiceProvider.findValueByKey(getDeviceStatusEntityKey(onlineDevice)) >> "ONLINE"
+
+        when:
+        expirationListener([1L, 2L, 3L])
+
+        then:
+        1 * entityValueServiceProvider.saveValuesAndPublishSync(_)
+    }
+
     // ==================== offline tests ====================
 
     def "offline should update device status to offline"() {
@@ -371,7 +436,7 @@ class DeviceStatusServiceTest extends Specification {
 
     // ==================== handleStatus tests ====================
 
-    def "handleStatus should cancel delayed task when deviceStatusConfig is null"() {
+    def "handleStatus should stop tracking device when deviceStatusConfig is null"() {
         given:
         def deviceId = 1L
         def device = createDevice(1L, "test-integration", "device-1")
@@ -385,7 +450,7 @@ class DeviceStatusServiceTest extends Specification {
         deviceStatusService.handleStatus(deviceId, availableDeviceData, DeviceStatusService.DeviceStatusOperation.ONLINE, true)
 
         then:
-        1 * delayedQueue.cancel("1")
+        1 * keepAliveTracker.remove(1L)
         1 * entityValueServiceProvider.saveValuesAndPublishSync(_)
     }
 
@@ -407,7 +472,7 @@ class DeviceStatusServiceTest extends Specification {
 
         then:
         1 * entityValueServiceProvider.saveValuesAndPublishSync(_)
-        1 * delayedQueue.offer(_)
+        0 * keepAliveTracker.remove(_)
     }
 
     def "handleStatus should handle offline operation"() {
@@ -612,7 +677,7 @@ class DeviceStatusServiceTest extends Specification {
         onlineListenerCalled
     }
 
-    def "should skip delayed task when offline duration is null"() {
+    def "online should stop tracking device when offline duration is null"() {
         given:
         def integrationId = "test-integration"
         def device = createDevice(1L, integrationId, "device-1")
@@ -620,20 +685,22 @@ class DeviceStatusServiceTest extends Specification {
         def config = DeviceStatusConfig.builder()
                 .offlineTimeoutFetcher({ d -> null })
                 .build()
-        def availableDeviceData = DeviceStatusService.AvailableDeviceData.of(device, config)
 
+        deviceServiceProvider.findAll(integrationId) >> []
+        deviceStatusService.register(integrationId, config)
         entityServiceProvider.findByKey(statusEntityKey) >> Mock(Entity)
         entityValueServiceProvider.findValueByKey(statusEntityKey) >> "OFFLINE"
 
         when:
-        deviceStatusService.handleStatus(1L, availableDeviceData, DeviceStatusService.DeviceStatusOperation.ONLINE, true)
+        deviceStatusService.online(device)
 
         then:
         1 * entityValueServiceProvider.saveValuesAndPublishSync(_)
-        0 * delayedQueue.offer(_)
+        0 * keepAliveTracker.touch(_, _)
+        1 * keepAliveTracker.remove(1L)
     }
 
-    def "should skip delayed task when offline duration is zero or negative"() {
+    def "online should stop tracking device when offline duration is zero or negative"() {
         given:
         def integrationId = "test-integration"
         def device = createDevice(1L, integrationId, "device-1")
@@ -641,17 +708,19 @@ class DeviceStatusServiceTest extends Specification {
         def config = DeviceStatusConfig.builder()
                 .offlineTimeoutFetcher({ d -> Duration.ZERO })
                 .build()
-        def availableDeviceData = DeviceStatusService.AvailableDeviceData.of(device, config)
 
+        deviceServiceProvider.findAll(integrationId) >> []
+        deviceStatusService.register(integrationId, config)
         entityServiceProvider.findByKey(statusEntityKey) >> Mock(Entity)
         entityValueServiceProvider.findValueByKey(statusEntityKey) >> "OFFLINE"
 
         when:
-        deviceStatusService.handleStatus(1L, availableDeviceData, DeviceStatusService.DeviceStatusOperation.ONLINE, true)
+        deviceStatusService.online(device)
 
         then:
         1 * entityValueServiceProvider.saveValuesAndPublishSync(_)
-        0 * delayedQueue.offer(_)
+        0 * keepAliveTracker.touch(_, _)
+        1 * keepAliveTracker.remove(1L)
     }
 
     // ==================== helper methods ====================
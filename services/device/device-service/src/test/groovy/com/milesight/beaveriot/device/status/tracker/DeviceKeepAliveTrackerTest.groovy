@@ -0,0 +1,236 @@
+package com.milesight.beaveriot.device.status.tracker
+
+import com.milesight.beaveriot.context.security.TenantContext
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * @author Luxb
+ */
+class DeviceKeepAliveTrackerTest extends Specification {
+
+    def conditions = new PollingConditions(timeout: 5)
+
+    List<Map> expirations = new CopyOnWriteArrayList<>()
+
+    DeviceKeepAliveTracker tracker
+
+    def cleanup() {
+        tracker?.stop()
+        TenantContext.clear()
+    }
+
+    DeviceKeepAliveTracker start(DeviceKeepAliveStore store) {
+        def properties = new DeviceKeepAliveProperties()
+        properties.shardCount = 2
+        properties.tickDuration = Duration.ofMillis(20)
+        properties.wheelSize = 8
+        tracker = new DeviceKeepAliveTracker(properties, store)
+        tracker.setExpirationListener({ List<Long> deviceIds ->
+            expirations << [tenantId: TenantContext.tryGetTenantId().orElse(null), deviceIds: new ArrayList<>(deviceIds)]
+        })
+        tracker.start()
+        return tracker
+    }
+
+    void inTenant(String tenantId, Closure closure) {
+        TenantContext.setTenantId(tenantId)
+        try {
+            closure()
+        } finally {
+            TenantContext.clear()
+        }
+    }
+
+    def "expired device should be reported with the tenant of its last heartbeat"() {
+        given:
+        start(new LocalDeviceKeepAliveStore())
+
+        when:
+        inTenant("t1") { tracker.track(1L, Duration.ofMillis(100)) }
+        inTenant("t2") { tracker.touch(1L, Duration.ofMillis(100)) }
+
+        then:
+        conditions.eventually {
+            assert expirations == [[tenantId: "t2", deviceIds: [1L]]]
+        }
+        !tracker.isTracked(1L)
+    }
+
+    def "heartbeat without tenant should keep the tenant of the device"() {
+        given:
+        start(new LocalDeviceKeepAliveStore())
+
+        when:
+        inTenant("t1") { tracker.track(1L, Duration.ofMillis(100)) }
+        tracker.touch(1L, Duration.ofMillis(100))
+
+        then:
+        conditions.eventually {
+            assert expirations == [[tenantId: "t1", deviceIds: [1L]]]
+        }
+    }
+
+    def "device receiving heartbeats should not be reported"() {
+        given:
+        start(new LocalDeviceKeepAliveStore())
+
+        when:
+        10.times {
+            tracker.touch(1L, Duration.ofMillis(200))
+            Thread.sleep(50)
+        }
+
+        then:
+        expirations.isEmpty()
+        tracker.isTracked(1L)
+    }
+
+    def "removed device should not be reported"() {
+        given:
+        start(new LocalDeviceKeepAliveStore())
+
+        when:
+        tracker.track(1L, Duration.ofMillis(100))
+        tracker.remove(1L)
+        Thread.sleep(300)
+
+        then:
+        !tracker.isTracked(1L)
+        expirations.isEmpty()
+    }
+
+    def "deadline should be published once per half timeout"() {
+        given:
+        def store = new FakeStore()
+        start(store)
+
+        when:
+        tracker.touch(1L, Duration.ofSeconds(10))
+        tracker.touch(1L, Duration.ofSeconds(10))
+
+        then:
+        conditions.eventually {
+            assert store.publishedDevices() == [1L]
+        }
+
+        when:
+        tracker.touch(1L, Duration.ofSeconds(10))
+        Thread.sleep(100)
+
+        then:
+        store.publishedDevices() == [1L]
+    }
+
+    def "device kept alive by another node should not be reported"() {
+        given:
+        def store = new FakeStore()
+        store.deadlines.put(1L, System.currentTimeMillis() + 10_000)
+        start(store)
+
+        when:
+        tracker.track(1L, Duration.ofMillis(100))
+
+        then:
+        conditions.eventually {
+            assert store.lookups.get() > 0
+        }
+        Thread.sleep(200)
+        expirations.isEmpty()
+        tracker.isTracked(1L)
+    }
+
+    def "expired device should be checked again after a failed lookup"() {
+        given:
+        def store = new FakeStore()
+        store.responses << CompletableFuture.failedFuture(new IllegalStateException("redis unavailable"))
+        start(store)
+
+        when:
+        tracker.track(1L, Duration.ofMillis(100))
+
+        then:
+        conditions.eventually {
+            assert expirations == [[tenantId: null, deviceIds: [1L]]]
+        }
+        store.lookups.get() >= 2
+    }
+
+    def "ticker should keep publishing while a lookup is pending"() {
+        given:
+        def store = new FakeStore()
+        def pendingLookup = new CompletableFuture<Map<Long, Long>>()
+        store.responses << pendingLookup
+        start(store)
+
+        when:
+        tracker.track(1L, Duration.ofMillis(100))
+
+        then:
+        conditions.eventually {
+            assert store.lookups.get() == 1
+        }
+
+        when:
+        tracker.touch(2L, Duration.ofSeconds(10))
+
+        then:
+        conditions.eventually {
+            assert store.publishedDevices() == [2L]
+        }
+        expirations.isEmpty()
+
+        when:
+        pendingLookup.complete([:])
+
+        then:
+        conditions.eventually {
+            assert expirations == [[tenantId: null, deviceIds: [1L]]]
+        }
+    }
+
+    static class FakeStore implements DeviceKeepAliveStore {
+
+        Map<Long, Long> deadlines = new ConcurrentHashMap<>()
+
+        List<Map<Long, Long>> publications = new CopyOnWriteArrayList<>()
+
+        List<CompletableFuture<Map<Long, Long>>> responses = new CopyOnWriteArrayList<>()
+
+        AtomicInteger lookups = new AtomicInteger()
+
+        List<Long> publishedDevices() {
+            return publications.collectMany { it.keySet() as List }
+        }
+
+        @Override
+        boolean isShared() {
+            return true
+        }
+
+        @Override
+        void publish(int shard, Map<Long, Long> deadlines) {
+            publications << new HashMap<>(deadlines)
+        }
+
+        @Override
+        CompletableFuture<Map<Long, Long>> getDeadlines(int shard, Collection<Long> deviceIds) {
+            lookups.incrementAndGet()
+            if (!responses.isEmpty()) {
+                return responses.remove(0)
+            }
+            return CompletableFuture.completedFuture(deadlines.findAll { deviceIds.contains(it.key) })
+        }
+
+        @Override
+        void remove(int shard, Long deviceId) {
+            deadlines.remove(deviceId)
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.milesight.beaveriot.device.status.tracker
+
+import spock.lang.Specification
+
+/**
+ * @author Luxb
+ */
+class KeepAliveTimingWheelTest extends Specification {
+
+    def "entry should expire once its deadline has passed"() {
+        given:
+        def wheel = new KeepAliveTimingWheel(1000, 8)
+        def entry = new KeepAliveEntry(1L, null, 5_000, 5_000)
+        wheel.advance(0)
+        wheel.schedule(entry)
+
+        expect:
+        wheel.advance(4_000).isEmpty()
+        wheel.advance(5_000) == [entry]
+        wheel.advance(10_000).isEmpty()
+    }
+
+    def "entry with deadline beyond one revolution should wait for the remaining rounds"() {
+        given:
+        def wheel = new KeepAliveTimingWheel(1000, 4)
+        def entry = new KeepAliveEntry(1L, null, 10_000, 10_000)
+        wheel.advance(0)
+        wheel.schedule(entry)
+
+        expect:
+        wheel.advance(9_000).isEmpty()
+        wheel.advance(10_000) == [entry]
+    }
+
+    def "refreshed entry should be rescheduled to its new deadline instead of expiring"() {
+        given:
+        def wheel = new KeepAliveTimingWheel(1000, 8)
+        def entry = new KeepAliveEntry(1L, null, 3_000, 3_000)
+        wheel.advance(0)
+        wheel.schedule(entry)
+
+        when:
+        entry.extendDeadline(20_000)
+
+        then:
+        wheel.advance(19_000).isEmpty()
+        wheel.advance(20_000) == [entry]
+    }
+
+    def "deadline should never move backward"() {
+        given:
+        def entry = new KeepAliveEntry(1L, null, 10_000, 10_000)
+
+        when:
+        entry.extendDeadline(5_000)
+
+        then:
+        entry.getDeadline() == 10_000
+    }
+
+    def "removed entry should be dropped"() {
+        given:
+        def wheel = new KeepAliveTimingWheel(1000, 8)
+        def entry = new KeepAliveEntry(1L, null, 2_000, 2_000)
+        wheel.advance(0)
+        wheel.schedule(entry)
+
+        when:
+        entry.removed = true
+
+        then:
+        wheel.advance(5_000).isEmpty()
+    }
+}
@@ -0,0 +1,124 @@
+package com.milesight.beaveriot.device.status.tracker
+
+import org.redisson.api.BatchResult
+import org.redisson.api.RBatch
+import org.redisson.api.RFuture
+import org.redisson.api.RScoredSortedSet
+import org.redisson.api.RScoredSortedSetAsync
+import org.redisson.api.RedissonClient
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+
+/**
+ * @author Luxb
+ */
+class RedisDeviceKeepAliveStoreTest extends Specification {
+
+    RedissonClient redissonClient
+
+    RBatch batch
+
+    RScoredSortedSetAsync<Long> deadlineSet
+
+    RedisDeviceKeepAliveStore store
+
+    def setup() {
+        redissonClient = Mock(RedissonClient)
+        batch = Mock(RBatch)
+        deadlineSet = Mock(RScoredSortedSetAsync)
+        redissonClient.createBatch() >> batch
+        batch.getScoredSortedSet("device-status:keep-alive:3") >> deadlineSet
+        store = new RedisDeviceKeepAliveStore(redissonClient)
+    }
+
+    RFuture<BatchResult<?>> executed(List<?> responses) {
+        def future = Mock(RFuture)
+        future.toCompletableFuture() >> CompletableFuture.completedFuture(new BatchResult(responses, 0))
+        return future
+    }
+
+    RFuture<BatchResult<?>> failed() {
+        def future = Mock(RFuture)
+        future.toCompletableFuture() >> CompletableFuture.failedFuture(new IllegalStateException("redis unavailable"))
+        return future
+    }
+
+    def "deadlines should be published asynchronously without moving backward"() {
+        when:
+        store.publish(3, [1L: 1_000L, 2L: 2_000L])
+
+        then:
+        1 * deadlineSet.addIfGreaterAsync(1_000d, 1L)
+        1 * deadlineSet.addIfGreaterAsync(2_000d, 2L)
+        1 * batch.executeAsync() >> executed([true, true])
+        0 * batch.execute()
+    }
+
+    def "stale deadlines should be trimmed once per interval"() {
+        given:
+        batch.executeAsync() >> executed([])
+
+        when:
+        store.publish(3, [1L: 1_000L])
+        store.publish(3, [1L: 2_000L])
+
+        then:
+        1 * deadlineSet.removeRangeByScoreAsync(0d, true, _ as Double, true)
+    }
+
+    def "failed publication should not be thrown"() {
+        when:
+        store.publish(3, [1L: 1_000L])
+
+        then:
+        1 * batch.executeAsync() >> failed()
+        noExceptionThrown()
+    }
+
+    def "nothing should be sent when there is no deadline"() {
+        when:
+        store.publish(3, [:])
+        def deadlines = store.getDeadlines(3, []).join()
+
+        then:
+        0 * redissonClient.createBatch()
+        deadlines.isEmpty()
+    }
+
+    def "devices without published deadline should be absent"() {
+        when:
+        def deadlines = store.getDeadlines(3, [1L, 2L, 3L])
+
+        then:
+        1 * deadlineSet.getScoreAsync(1L)
+        1 * deadlineSet.getScoreAsync(2L)
+        1 * deadlineSet.getScoreAsync(3L)
+        1 * batch.executeAsync() >> executed([100.0d, null, 300.0d])
+        0 * batch.execute()
+        deadlines.join() == [1L: 100L, 3L: 300L]
+    }
+
+    def "failed lookup should complete the deadlines exceptionally"() {
+        given:
+        batch.executeAsync() >> failed()
+
+        when:
+        def deadlines = store.getDeadlines(3, [1L])
+
+        then:
+        deadlines.isCompletedExceptionally()
+    }
+
+    def "removed device should be removed from the shard"() {
+        given:
+        def shardSet = Mock(RScoredSortedSet)
+
+        when:
+        store.remove(3, 1L)
+
+        then:
+        1 * redissonClient.getScoredSortedSet("device-status:keep-alive:3") >> shardSet
+        1 * shardSet.removeAsync(1L)
+    }
+}
@@ -0,0 +1,157 @@
+package com.milesight.beaveriot.entity.ingest;
+
+import com.milesight.beaveriot.entity.po.EntityHistoryPO;
+import com.milesight.beaveriot.entity.po.EntityLatestPO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Write entity values with JDBC batches in a single transaction.
+ * <p>
+ * Latest values are upserted natively by entity id, an existing row is only overwritten by a newer timestamp, so
+ * there is no read before write. History records are batch inserted. The tenant id is written explicitly because
+ * these statements do not pass through the tenant statement inspector of hibernate.
+ *
+ * @author leon
+ */
+@Slf4j
+@Component
+public class EntityValueBatchWriter {
+
+    private static final String POSTGRESQL_UPSERT_LATEST_SQL = """
+            INSERT INTO t_entity_latest (id, tenant_id, entity_id, value_long, value_double, value_boolean, value_string, value_binary, timestamp, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (entity_id) DO UPDATE SET
+                value_long = EXCLUDED.value_long,
+                value_double = EXCLUDED.value_double,
+                value_boolean = EXCLUDED.value_boolean,
+                value_string = EXCLUDED.value_string,
+                value_binary = EXCLUDED.value_binary,
+                timestamp = EXCLUDED.timestamp,
+                updated_at = EXCLUDED.updated_at
+            WHERE t_entity_latest.timestamp < EXCLUDED.timestamp
+            """;
+
+    private static final String H2_UPSERT_LATEST_SQL = """
+            MERGE INTO t_entity_latest t
+            USING (SELECT CAST(? AS BIGINT) AS id, CAST(? AS VARCHAR) AS tenant_id, CAST(? AS BIGINT) AS entity_id,
+                          CAST(? AS BIGINT) AS value_long, CAST(? AS DOUBLE PRECISION) AS value_double, CAST(? AS BOOLEAN) AS value_boolean,
+                          CAST(? AS VARCHAR) AS value_string, CAST(? AS BLOB) AS value_binary,
+                          CAST(? AS BIGINT) AS timestamp, CAST(? AS BIGINT) AS updated_at) s
+            ON t.entity_id = s.entity_id
+            WHEN MATCHED AND t.timestamp < s.timestamp THEN UPDATE SET
+                value_long = s.value_long,
+                value_double = s.value_double,
+                value_boolean = s.value_boolean,
+                value_string = s.value_string,
+                value_binary = s.value_binary,
+                timestamp = s.timestamp,
+                updated_at = s.updated_at
+            WHEN NOT MATCHED THEN INSERT (id, tenant_id, entity_id, value_long, value_double, value_boolean, value_string, value_binary, timestamp, updated_at)
+                VALUES (s.id, s.tenant_id, s.entity_id, s.value_long, s.value_double, s.value_boolean, s.value_string, s.value_binary, s.timestamp, s.updated_at)
+            """;
+
+    private static final String INSERT_HISTORY_SQL = """
+            INSERT INTO t_entity_history (id, tenant_id, entity_id, value_long, value_double, value_boolean, value_string, value_binary, timestamp, created_at, created_by, updated_at, updated_by)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile String upsertLatestSql;
+
+    public EntityValueBatchWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Whether the native upsert is available for the current database
+     */
+    public boolean isSupported() {
+        return getUpsertLatestSql() != null;
+    }
+
+    public void write(String tenantId, Collection<EntityLatestPO> latestValues, Collection<EntityHistoryPO> historyRecords) {
+        if (latestValues.isEmpty() && historyRecords.isEmpty()) {
+            return;
+        }
+        String upsertSql = getUpsertLatestSql();
+        if (upsertSql == null) {
+            throw new IllegalStateException("Entity latest value upsert is not supported by the current database");
+        }
+        long now = System.currentTimeMillis();
+        List<EntityLatestPO> latestList = new ArrayList<>(latestValues);
+        List<EntityHistoryPO> historyList = new ArrayList<>(historyRecords);
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!latestList.isEmpty()) {
+                jdbcTemplate.batchUpdate(upsertSql, latestList, latestList.size(), (ps, latest) -> {
+                    ps.setLong(1, latest.getId());
+                    ps.setString(2, tenantId);
+                    ps.setLong(3, latest.getEntityId());
+                    setValues(ps, 4, latest.getValueLong(), latest.getValueDouble(), latest.getValueBoolean(), latest.getValueString(), latest.getValueBinary());
+                    ps.setLong(9, latest.getTimestamp());
+                    ps.setLong(10, now);
+                });
+            }
+            if (!historyList.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_HISTORY_SQL, historyList, historyList.size(), (ps, history) -> {
+                    ps.setLong(1, history.getId());
+                    ps.setString(2, tenantId);
+                    ps.setLong(3, history.getEntityId());
+                    setValues(ps, 4, history.getValueLong(), history.getValueDouble(), history.getValueBoolean(), history.getValueString(), history.getValueBinary());
+                    ps.setLong(9, history.getTimestamp());
+                    ps.setLong(10, now);
+                    setNullable(ps, 11, history.getCreatedBy(), Types.VARCHAR);
+                    ps.setLong(12, now);
+                    setNullable(ps, 13, history.getUpdatedBy(), Types.VARCHAR);
+                });
+            }
+        });
+    }
+
+    private static void setValues(PreparedStatement ps, int startIndex, Long valueLong, Double valueDouble, Boolean valueBoolean,
+                                  String valueString, byte[] valueBinary) throws SQLException {
+        setNullable(ps, startIndex, valueLong, Types.BIGINT);
+        setNullable(ps, startIndex + 1, valueDouble, Types.DOUBLE);
+        setNullable(ps, startIndex + 2, valueBoolean, Types.BOOLEAN);
+        setNullable(ps, startIndex + 3, valueString, Types.VARCHAR);
+        setNullable(ps, startIndex + 4, valueBinary, Types.BINARY);
+    }
+
+    private static void setNullable(PreparedStatement ps, int index, Object value, int sqlType) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, sqlType);
+        } else {
+            ps.setObject(index, value, sqlType);
+        }
+    }
+
+    private String getUpsertLatestSql() {
+        if (upsertLatestSql == null) {
+            String productName = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            if ("PostgreSQL".equalsIgnoreCase(productName)) {
+                upsertLatestSql = POSTGRESQL_UPSERT_LATEST_SQL;
+            } else if ("H2".equalsIgnoreCase(productName)) {
+                upsertLatestSql = H2_UPSERT_LATEST_SQL;
+            } else {
+                log.warn("Entity latest value upsert is not supported by database: {}", productName);
+                upsertLatestSql = "";
+            }
+        }
+        return upsertLatestSql.isEmpty() ? null : upsertLatestSql;
+    }
+}
@@ -0,0 +1,175 @@
+package com.milesight.beaveriot.entity.ingest;
+
+import com.milesight.beaveriot.entity.po.EntityHistoryPO;
+import com.milesight.beaveriot.entity.po.EntityLatestPO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded write-behind buffer of entity values.
+ * <p>
+ * Payloads are collected until the batch size is reached or the flush interval since the first buffered payload has
+ * elapsed, then written per tenant in one batched transaction. Latest values of the same entity are coalesced, only
+ * the newest one is written. The future of a payload completes when the flush containing it is committed. If a batch
+ * fails, its payloads are retried one by one so that a single bad payload does not fail the others.
+ *
+ * @author leon
+ */
+@Slf4j
+@Component
+public class EntityValueWriteBehindBuffer {
+
+    private final EntityValueWriteBehindProperties properties;
+
+    private final EntityValueBatchWriter batchWriter;
+
+    private BlockingQueue<PendingWrite> queue;
+
+    private Thread flushThread;
+
+    private volatile boolean running;
+
+    public EntityValueWriteBehindBuffer(EntityValueWriteBehindProperties properties, EntityValueBatchWriter batchWriter) {
+        this.properties = properties;
+        this.batchWriter = batchWriter;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (!batchWriter.isSupported()) {
+            log.warn("Entity value write-behind is disabled because the database is not supported");
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(properties.getCapacity());
+        running = true;
+        flushThread = new Thread(this::runFlushLoop, "entity-value-write-behind");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    public Duration getAckTimeout() {
+        return properties.getAckTimeout();
+    }
+
+    /**
+     * Buffer the values of a tenant
+     *
+     * @return future completed once the values are committed
+     */
+    public CompletableFuture<Void> submit(String tenantId, List<EntityLatestPO> latestValues, List<EntityHistoryPO> historyRecords) {
+        PendingWrite pendingWrite = new PendingWrite(tenantId, latestValues, historyRecords, new CompletableFuture<>());
+        try {
+            if (!running || !queue.offer(pendingWrite, properties.getAckTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                pendingWrite.future.completeExceptionally(new RejectedExecutionException("Entity value write-behind buffer is full or stopped"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pendingWrite.future.completeExceptionally(e);
+        }
+        return pendingWrite.future;
+    }
+
+    private void runFlushLoop() {
+        long flushIntervalNanos = properties.getFlushInterval().toNanos();
+        int batchSize = properties.getBatchSize();
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    PendingWrite next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // stop waiting, flush what is collected and drain the rest
+                queue.drainTo(batch);
+            }
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<String, List<PendingWrite>> tenantWrites = new LinkedHashMap<>();
+        batch.forEach(pendingWrite -> tenantWrites.computeIfAbsent(pendingWrite.tenantId, k -> new ArrayList<>()).add(pendingWrite));
+        tenantWrites.forEach(this::flushTenant);
+    }
+
+    private void flushTenant(String tenantId, List<PendingWrite> writes) {
+        Map<Long, EntityLatestPO> latestValues = new LinkedHashMap<>();
+        List<EntityHistoryPO> historyRecords = new ArrayList<>();
+        for (PendingWrite write : writes) {
+            // keep the first value of the same timestamp, the same as the existing row is kept on the same timestamp
+            write.latestValues.forEach(latest -> latestValues.merge(latest.getEntityId(), latest,
+                    (current, candidate) -> candidate.getTimestamp() > current.getTimestamp() ? candidate : current));
+            historyRecords.addAll(write.historyRecords);
+        }
+
+        try {
+            batchWriter.write(tenantId, latestValues.values(), historyRecords);
+        } catch (Exception e) {
+            if (writes.size() > 1) {
+                log.warn("Flush entity values of tenant {} failed, retry {} payloads one by one", tenantId, writes.size(), e);
+                writes.forEach(write -> flushTenant(tenantId, List.of(write)));
+            } else {
+                writes.get(0).future.completeExceptionally(e);
+            }
+            return;
+        }
+        writes.forEach(write -> write.future.complete(null));
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            flushThread.join(properties.getAckTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flushThread.isAlive()) {
+            flushThread.interrupt();
+        }
+        List<PendingWrite> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(write -> write.future.completeExceptionally(new RejectedExecutionException("Entity value write-behind buffer is stopped")));
+    }
+
+    private record PendingWrite(String tenantId, List<EntityLatestPO> latestValues, List<EntityHistoryPO> historyRecords,
+                                CompletableFuture<Void> future) {
+    }
+}
@@ -0,0 +1,40 @@
+package com.milesight.beaveriot.entity.ingest;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of the write-behind ingestion of entity values, disabled by default.
+ *
+ * @author leon
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "entity.value.write-behind")
+public class EntityValueWriteBehindProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Maximum number of payloads waiting to be flushed, writers are blocked up to {@link #ackTimeout} when it is full
+     */
+    private int capacity = 10000;
+
+    /**
+     * Maximum number of payloads written in one flush
+     */
+    private int batchSize = 500;
+
+    /**
+     * Maximum time a payload waits in the buffer before it is flushed
+     */
+    private Duration flushInterval = Duration.ofMillis(100);
+
+    /**
+     * Maximum time a writer waits for its payload to be flushed
+     */
+    private Duration ackTimeout = Duration.ofSeconds(10);
+}
@@ -49,6 +49,7 @@ import com.milesight.beaveriot.entity.repository.EntityLatestRepository;
 import com.milesight.beaveriot.entity.repository.EntityRepository;
 import com.milesight.beaveriot.eventbus.EventBus;
 import com.milesight.beaveriot.eventbus.api.EventResponse;
+import com.milesight.beaveriot.permission.enums.DataPermissionType;
 import com.milesight.beaveriot.permission.enums.OperationPermissionCode;
 import com.milesight.beaveriot.permission.facade.IPermissionFacade;
 import com.milesight.beaveriot.context.model.ResourceRefDTO;
@@ -581,7 +582,12 @@ public class EntityService implements EntityServiceProvider {
         List<EntityPO> entityPOList = new ArrayList<>();
         if (!Boolean.TRUE.equals(entityQuery.getCustomized())) {
             try {
-                entityPOList = entityRepository.findAllWithDataPermission(filterable);
+                if (!CollectionUtils.isEmpty(entityQuery.getEntityIds())) {
+                    // bounded by the given ids, so the entities are checked against the cached permission in memory
+                    entityPOList = filterWithDataPermission(entityRepository.findAll(filterable));
+                } else {
+                    entityPOList = entityRepository.findAllWithDataPermission(filterable);
+                }
             } catch (Exception e) {
                 if (e instanceof ServiceException serviceException
                         && (Objects.equals(serviceException.getErrorCode(), ErrorCode.FORBIDDEN_PERMISSION.getErrorCode()) ||
@@ -967,7 +973,23 @@ public class EntityService implements EntityServiceProvider {
     }
 
     public List<EntityPO> listEntityPOById(List<Long> entityIds) {
-        return entityRepository.findAllWithDataPermission(filterable -> filterable.in(EntityPO.Fields.id, toArray(entityIds)));
+        return filterWithDataPermission(entityRepository.findAllById(entityIds));
+    }
+
+    /**
+     * Filter the entities by the entity data permission of the current user, checked against the cached permission
+     * instead of the query
+     */
+    private List<EntityPO> filterWithDataPermission(List<EntityPO> entityPOList) {
+        if (entityPOList.isEmpty()) {
+            return entityPOList;
+        }
+
+        Set<String> permittedAttachTargetIds = new HashSet<>(permissionFacade.filterDataPermission(DataPermissionType.ENTITY,
+                entityPOList.stream().map(EntityPO::getAttachTargetId).collect(Collectors.toSet())));
+        return entityPOList.stream()
+                .filter(entityPO -> permittedAttachTargetIds.contains(entityPO.getAttachTargetId()))
+                .collect(Collectors.toList());
     }
 
     public Page<EntityResponse> advancedSearch(EntityAdvancedSearchQuery entityQuery) {
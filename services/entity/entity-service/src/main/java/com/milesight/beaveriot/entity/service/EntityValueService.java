@@ -18,7 +18,14 @@ import com.milesight.beaveriot.context.integration.model.Entity;
 import com.milesight.beaveriot.context.integration.model.ExchangePayload;
 import com.milesight.beaveriot.context.integration.proxy.MapExchangePayloadProxy;
 import com.milesight.beaveriot.context.security.SecurityUserContext;
+import com.milesight.beaveriot.context.security.TenantContext;
+import com.milesight.beaveriot.data.api.TimeSeriesRepository;
+import com.milesight.beaveriot.data.filterable.Filterable;
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateBucket;
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateQuery;
+import com.milesight.beaveriot.data.model.TimeSeriesAggregation;
 import com.milesight.beaveriot.entity.enums.AggregateType;
+import com.milesight.beaveriot.entity.ingest.EntityValueWriteBehindBuffer;
 import com.milesight.beaveriot.entity.model.dto.EntityHistoryUnionQuery;
 import com.milesight.beaveriot.entity.model.request.EntityAggregateQuery;
 import com.milesight.beaveriot.entity.model.request.EntityHistoryQuery;
@@ -32,15 +39,22 @@ import com.milesight.beaveriot.entity.repository.EntityHistoryRepository;
 import com.milesight.beaveriot.entity.repository.EntityLatestRepository;
 import com.milesight.beaveriot.entity.repository.EntityRepository;
 import com.milesight.beaveriot.eventbus.api.EventResponse;
+import com.milesight.beaveriot.permission.enums.DataPermissionType;
+import com.milesight.beaveriot.permission.facade.IPermissionFacade;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Selection;
 import lombok.Data;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.aop.framework.AopContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.util.Pair;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -51,8 +65,13 @@ import org.springframework.util.StringUtils;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * @author loong
@@ -67,11 +86,27 @@ public class EntityValueService implements EntityValueServiceProvider {
     @Autowired
     private EntityHistoryRepository entityHistoryRepository;
     @Autowired
+    private TimeSeriesRepository<EntityHistoryPO> entityHistoryTimeSeriesRepository;
+    @Autowired
     private EntityLatestRepository entityLatestRepository;
     @Autowired
     private EntityManager entityManager;
     @Autowired
     private GenericExchangeFlowExecutor genericExchangeFlowExecutor;
+    @Autowired
+    private EntityValueWriteBehindBuffer entityValueWriteBehindBuffer;
+    @Autowired
+    private IPermissionFacade permissionFacade;
+
+    private static final Map<EntityValueType, String> HISTORY_VALUE_COLUMNS = new LinkedHashMap<>();
+
+    static {
+        HISTORY_VALUE_COLUMNS.put(EntityValueType.BOOLEAN, EntityHistoryPO.Fields.valueBoolean);
+        HISTORY_VALUE_COLUMNS.put(EntityValueType.LONG, EntityHistoryPO.Fields.valueLong);
+        HISTORY_VALUE_COLUMNS.put(EntityValueType.DOUBLE, EntityHistoryPO.Fields.valueDouble);
+        HISTORY_VALUE_COLUMNS.put(EntityValueType.STRING, EntityHistoryPO.Fields.valueString);
+        HISTORY_VALUE_COLUMNS.put(EntityValueType.BINARY, EntityHistoryPO.Fields.valueBinary);
+    }
 
     private final Comparator<byte[]> byteArrayComparator = (a, b) -> {
         if (a == b) return 0;
@@ -106,8 +141,15 @@ public class EntityValueService implements EntityValueServiceProvider {
     }
 
     @Override
-    @Transactional
     public Map<String, Pair<Long, Long>> saveValues(ExchangePayload exchange, long timestamp) {
+        if (entityValueWriteBehindBuffer.isEnabled()) {
+            return saveValuesWriteBehind(exchange, timestamp);
+        }
+        return self().saveValuesDirectly(exchange, timestamp);
+    }
+
+    @Transactional
+    public Map<String, Pair<Long, Long>> saveValuesDirectly(ExchangePayload exchange, long timestamp) {
         Map<String, Pair<Long, Long>> entityKeyLatestIdAndHistoryIds = new HashMap<>();
 
         // Save event entities， only save history
@@ -135,6 +177,86 @@ public class EntityValueService implements EntityValueServiceProvider {
         return entityKeyLatestIdAndHistoryIds;
     }
 
+    /**
+     * Save the values through the write-behind buffer, returns once the buffer flush containing the values is committed.
+     * Latest values are upserted without reading the existing rows, so the returned latest id is the id of the new row,
+     * an existing row keeps its own id.
+     */
+    private Map<String, Pair<Long, Long>> saveValuesWriteBehind(ExchangePayload exchange, long timestamp) {
+        Map<String, Entity> entityKeyMap = exchange.getExchangeEntities();
+        if (entityKeyMap.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Pair<Long, Long>> entityKeyLatestIdAndHistoryIds = new HashMap<>();
+        List<EntityLatestPO> entityLatestPOList = new ArrayList<>();
+        List<EntityHistoryPO> entityHistoryPOList = new ArrayList<>();
+        List<String> latestEntityKeys = new ArrayList<>();
+        String operatorId = SecurityUserContext.getUserId() == null ? null : SecurityUserContext.getUserId().toString();
+        exchange.forEach((entityKey, payload) -> {
+            Entity entity = entityKeyMap.get(entityKey);
+            if (entity == null || entity.getType() == null) {
+                return;
+            }
+
+            ValueStoreMod valueStoreMod = entity.getValueStoreMod();
+            boolean saveLatest = entity.getType() == EntityType.PROPERTY
+                    && valueStoreMod != ValueStoreMod.NONE && valueStoreMod != ValueStoreMod.HISTORY;
+            boolean saveHistory = valueStoreMod != ValueStoreMod.NONE && valueStoreMod != ValueStoreMod.LATEST;
+
+            Long historyId = -1L;
+            if (saveHistory) {
+                historyId = SnowflakeUtil.nextId();
+                EntityHistoryPO entityHistoryPO = new EntityHistoryPO();
+                entityHistoryPO.setId(historyId);
+                entityHistoryPO.setEntityId(entity.getId());
+                entityHistoryPO.setValue(entity.getValueType(), payload);
+                entityHistoryPO.setTimestamp(timestamp);
+                entityHistoryPO.setCreatedBy(operatorId);
+                entityHistoryPO.setUpdatedBy(operatorId);
+                entityHistoryPOList.add(entityHistoryPO);
+            }
+
+            if (saveLatest) {
+                Long latestId = SnowflakeUtil.nextId();
+                EntityLatestPO entityLatestPO = new EntityLatestPO();
+                entityLatestPO.setId(latestId);
+                entityLatestPO.setEntityId(entity.getId());
+                entityLatestPO.setValue(entity.getValueType(), payload);
+                entityLatestPO.setTimestamp(timestamp);
+                entityLatestPOList.add(entityLatestPO);
+                latestEntityKeys.add(entityKey);
+                entityKeyLatestIdAndHistoryIds.put(entityKey, Pair.of(latestId, historyId));
+            } else if (saveHistory && entity.getType() != EntityType.PROPERTY) {
+                entityKeyLatestIdAndHistoryIds.put(entityKey, Pair.of(-1L, historyId));
+            }
+        });
+
+        if (entityLatestPOList.isEmpty() && entityHistoryPOList.isEmpty()) {
+            return entityKeyLatestIdAndHistoryIds;
+        }
+
+        try {
+            entityValueWriteBehindBuffer.submit(TenantContext.getTenantId(), entityLatestPOList, entityHistoryPOList)
+                    .get(entityValueWriteBehindBuffer.getAckTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw ServiceException.with(ErrorCode.SERVER_ERROR).detailMessage("save entity values interrupted").throwable(e).build();
+        } catch (TimeoutException e) {
+            throw ServiceException.with(ErrorCode.SERVER_ERROR).detailMessage("save entity values timeout").throwable(e).build();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw ServiceException.with(ErrorCode.SERVER_ERROR).detailMessage("save entity values failed").throwable(e.getCause()).build();
+        }
+
+        if (!latestEntityKeys.isEmpty()) {
+            self().evictLatestValues(latestEntityKeys);
+        }
+        return entityKeyLatestIdAndHistoryIds;
+    }
+
     @Override
     public Map<String, Pair<Long, Long>> saveValues(ExchangePayload exchangePayload) {
         return self().saveValues(exchangePayload, exchangePayload.getTimestamp());
@@ -533,178 +655,151 @@ public class EntityValueService implements EntityValueServiceProvider {
 
     public EntityAggregateResponse historyAggregate(EntityAggregateQuery entityAggregateQuery) {
         EntityAggregateResponse entityAggregateResponse = new EntityAggregateResponse();
-        Long entityIdWithPermission = entityRepository.findOneWithDataPermission(f -> f.eq(EntityPO.Fields.id, entityAggregateQuery.getEntityId()))
+        Long entityIdWithPermission = entityRepository.findById(entityAggregateQuery.getEntityId())
+                .filter(entityPO -> permissionFacade.hasDataPermission(DataPermissionType.ENTITY, entityPO.getAttachTargetId()))
                 .map(EntityPO::getId).orElse(null);
         if (entityIdWithPermission == null) {
             return entityAggregateResponse;
         }
 
-        List<EntityHistoryPO> entityHistoryPOList = entityHistoryRepository.findAll(filter -> filter.eq(EntityHistoryPO.Fields.entityId, entityIdWithPermission)
-                        .ge(EntityHistoryPO.Fields.timestamp, entityAggregateQuery.getStartTimestamp())
-                        .le(EntityHistoryPO.Fields.timestamp, entityAggregateQuery.getEndTimestamp()))
-                .stream().sorted(Comparator.comparingLong(EntityHistoryPO::getTimestamp)).toList();
-        if (entityHistoryPOList.isEmpty()) {
+        Consumer<Filterable> historyFilterable = filter -> filter.eq(EntityHistoryPO.Fields.entityId, entityIdWithPermission)
+                .ge(EntityHistoryPO.Fields.timestamp, entityAggregateQuery.getStartTimestamp())
+                .le(EntityHistoryPO.Fields.timestamp, entityAggregateQuery.getEndTimestamp());
+        EntityValueType valueType = findHistoryValueType(historyFilterable);
+        if (valueType == null) {
             return entityAggregateResponse;
         }
 
+        // the aggregates are calculated by the time series store, only binary values are compared in memory and
+        // the value distribution of the count is grouped on the history table
+        String valueColumn = HISTORY_VALUE_COLUMNS.get(valueType);
         AggregateType aggregateType = entityAggregateQuery.getAggregateType();
-        EntityHistoryPO oneEntityHistoryPO = entityHistoryPOList.get(0);
         switch (aggregateType) {
             case LAST:
-                EntityHistoryPO lastEntityHistoryPO = entityHistoryPOList.get(entityHistoryPOList.size() - 1);
-                if (lastEntityHistoryPO.getValueBoolean() != null) {
-                    entityAggregateResponse.setValue(lastEntityHistoryPO.getValueBoolean());
-                    entityAggregateResponse.setValueType(EntityValueType.BOOLEAN);
-                } else if (lastEntityHistoryPO.getValueLong() != null) {
-                    entityAggregateResponse.setValue(lastEntityHistoryPO.getValueLong().toString());
-                    entityAggregateResponse.setValueType(EntityValueType.LONG);
-                } else if (lastEntityHistoryPO.getValueDouble() != null) {
-                    entityAggregateResponse.setValue(lastEntityHistoryPO.getValueDouble());
-                    entityAggregateResponse.setValueType(EntityValueType.DOUBLE);
-                } else if (lastEntityHistoryPO.getValueString() != null) {
-                    entityAggregateResponse.setValue(lastEntityHistoryPO.getValueString());
-                    entityAggregateResponse.setValueType(EntityValueType.STRING);
-                } else if (lastEntityHistoryPO.getValueBinary() != null) {
-                    entityAggregateResponse.setValue(lastEntityHistoryPO.getValueBinary());
-                    entityAggregateResponse.setValueType(EntityValueType.BINARY);
+                if (valueType == EntityValueType.BINARY) {
+                    List<EntityHistoryPO> lastEntityHistoryPOList = entityHistoryRepository.findAll(historyFilterable,
+                            PageRequest.of(0, 1, Sort.by(Sort.Order.desc(EntityHistoryPO.Fields.timestamp)))).getContent();
+                    entityAggregateResponse.setValue(lastEntityHistoryPOList.isEmpty() ? null : lastEntityHistoryPOList.get(0).getValueBinary());
+                    entityAggregateResponse.setValueType(valueType);
+                    break;
                 }
-                break;
-            case MIN:
-                if (oneEntityHistoryPO.getValueBoolean() != null) {
-                    EntityHistoryPO minEntityHistoryPO = entityHistoryPOList.stream().min(Comparator.comparing(EntityHistoryPO::getValueBoolean)).get();
-                    entityAggregateResponse.setValue(minEntityHistoryPO.getValueBoolean());
-                    entityAggregateResponse.setValueType(EntityValueType.BOOLEAN);
-                } else if (oneEntityHistoryPO.getValueLong() != null) {
-                    EntityHistoryPO minEntityHistoryPO = entityHistoryPOList.stream().min(Comparator.comparing(EntityHistoryPO::getValueLong)).get();
-                    entityAggregateResponse.setValue(minEntityHistoryPO.getValueLong().toString());
-                    entityAggregateResponse.setValueType(EntityValueType.LONG);
-                } else if (oneEntityHistoryPO.getValueDouble() != null) {
-                    EntityHistoryPO minEntityHistoryPO = entityHistoryPOList.stream().min(Comparator.comparing(EntityHistoryPO::getValueDouble)).get();
-                    entityAggregateResponse.setValue(minEntityHistoryPO.getValueDouble());
-                    entityAggregateResponse.setValueType(EntityValueType.DOUBLE);
-                } else if (oneEntityHistoryPO.getValueString() != null) {
-                    EntityHistoryPO minEntityHistoryPO = entityHistoryPOList.stream().min(Comparator.comparing(EntityHistoryPO::getValueString)).get();
-                    entityAggregateResponse.setValue(minEntityHistoryPO.getValueString());
-                    entityAggregateResponse.setValueType(EntityValueType.STRING);
-                } else if (oneEntityHistoryPO.getValueBinary() != null) {
-                    EntityHistoryPO minEntityHistoryPO = entityHistoryPOList.stream().min(Comparator.comparing(EntityHistoryPO::getValueBinary, byteArrayComparator)).get();
-                    entityAggregateResponse.setValue(minEntityHistoryPO.getValueBinary());
-                    entityAggregateResponse.setValueType(EntityValueType.BINARY);
+                Object lastValue = aggregateHistoryValue(entityIdWithPermission, entityAggregateQuery, valueColumn, TimeSeriesAggregation.LAST);
+                if (lastValue == null) {
+                    break;
                 }
+                entityAggregateResponse.setValue(valueType == EntityValueType.LONG ? lastValue.toString() : lastValue);
+                entityAggregateResponse.setValueType(valueType);
                 break;
+            case MIN:
             case MAX:
-                if (oneEntityHistoryPO.getValueBoolean() != null) {
-                    entityAggregateResponse.setValue(entityHistoryPOList.stream().max(Comparator.comparing(EntityHistoryPO::getValueBoolean)).get().getValueBoolean());
-                    entityAggregateResponse.setValueType(EntityValueType.BOOLEAN);
-                } else if (oneEntityHistoryPO.getValueLong() != null) {
-                    entityAggregateResponse.setValue(entityHistoryPOList.stream().max(Comparator.comparing(EntityHistoryPO::getValueLong)).get().getValueLong().toString());
-                    entityAggregateResponse.setValueType(EntityValueType.LONG);
-                } else if (oneEntityHistoryPO.getValueDouble() != null) {
-                    entityAggregateResponse.setValue(entityHistoryPOList.stream().max(Comparator.comparing(EntityHistoryPO::getValueDouble)).get().getValueDouble());
-                    entityAggregateResponse.setValueType(EntityValueType.DOUBLE);
-                } else if (oneEntityHistoryPO.getValueString() != null) {
-                    entityAggregateResponse.setValue(entityHistoryPOList.stream().max(Comparator.comparing(EntityHistoryPO::getValueString)).get().getValueString());
-                    entityAggregateResponse.setValueType(EntityValueType.STRING);
-                } else if (oneEntityHistoryPO.getValueBinary() != null) {
-                    entityAggregateResponse.setValue(entityHistoryPOList.stream().max(Comparator.comparing(EntityHistoryPO::getValueBinary, byteArrayComparator)).get().getValueBinary());
-                    entityAggregateResponse.setValueType(EntityValueType.BINARY);
+                boolean isMin = aggregateType == AggregateType.MIN;
+                Object extremeValue;
+                if (valueType == EntityValueType.BOOLEAN) {
+                    // min is false if any value is false, max is true if any value is true
+                    boolean searchValue = !isMin;
+                    extremeValue = entityHistoryRepository.count(historyFilterable.andThen(filter -> filter.eq(EntityHistoryPO.Fields.valueBoolean, searchValue))) > 0 == searchValue;
+                } else if (valueType == EntityValueType.BINARY) {
+                    Comparator<EntityHistoryPO> binaryComparator = Comparator.comparing(EntityHistoryPO::getValueBinary, byteArrayComparator);
+                    Stream<EntityHistoryPO> binaryHistoryStream = entityHistoryRepository.findAll(historyFilterable.andThen(filter -> filter.isNotNull(EntityHistoryPO.Fields.valueBinary))).stream();
+                    extremeValue = (isMin ? binaryHistoryStream.min(binaryComparator) : binaryHistoryStream.max(binaryComparator))
+                            .map(EntityHistoryPO::getValueBinary).orElse(null);
+                } else {
+                    extremeValue = aggregateHistoryValue(entityIdWithPermission, entityAggregateQuery, valueColumn,
+                            isMin ? TimeSeriesAggregation.MIN : TimeSeriesAggregation.MAX);
                 }
+                entityAggregateResponse.setValue(valueType == EntityValueType.LONG && extremeValue != null ? extremeValue.toString() : extremeValue);
+                entityAggregateResponse.setValueType(valueType);
                 break;
             case AVG:
-                if (oneEntityHistoryPO.getValueBoolean() != null) {
-                    throw ServiceException.with(ErrorCode.PARAMETER_VALIDATION_FAILED).build();
-                } else if (oneEntityHistoryPO.getValueLong() != null) {
-                    OptionalDouble average = entityHistoryPOList.stream()
-                            .mapToLong(EntityHistoryPO::getValueLong)
-                            .average();
-                    if (average.isPresent()) {
-                        String averageAsString = String.valueOf(average.getAsDouble());
-                        entityAggregateResponse.setValue(averageAsString);
-                    } else {
-                        entityAggregateResponse.setValue("0");
-                    }
+                if (valueType == EntityValueType.LONG) {
+                    Object average = aggregateHistoryValue(entityIdWithPermission, entityAggregateQuery, valueColumn, TimeSeriesAggregation.AVG);
+                    entityAggregateResponse.setValue(average == null ? "0" : String.valueOf(((Number) average).doubleValue()));
                     entityAggregateResponse.setValueType(EntityValueType.LONG);
-                } else if (oneEntityHistoryPO.getValueDouble() != null) {
-                    BigDecimal sum = entityHistoryPOList.stream()
-                            .filter(Objects::nonNull)
-                            .filter(t -> t.getValueDouble() != null)
-                            .map(t -> BigDecimal.valueOf(t.getValueDouble()))
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-                    BigDecimal count = new BigDecimal(entityHistoryPOList.size());
-                    BigDecimal avg = sum.divide(count, 8, RoundingMode.HALF_EVEN);
-                    entityAggregateResponse.setValue(avg.doubleValue());
+                } else if (valueType == EntityValueType.DOUBLE) {
+                    Object average = aggregateHistoryValue(entityIdWithPermission, entityAggregateQuery, valueColumn, TimeSeriesAggregation.AVG);
+                    entityAggregateResponse.setValue(average == null ? null : BigDecimal.valueOf(((Number) average).doubleValue()).setScale(8, RoundingMode.HALF_EVEN).doubleValue());
                     entityAggregateResponse.setValueType(EntityValueType.DOUBLE);
-                } else if (oneEntityHistoryPO.getValueString() != null) {
-                    throw ServiceException.with(ErrorCode.PARAMETER_VALIDATION_FAILED).build();
-                } else if (oneEntityHistoryPO.getValueBinary() != null) {
+                } else {
                     throw ServiceException.with(ErrorCode.PARAMETER_VALIDATION_FAILED).build();
                 }
                 break;
             case SUM:
-                if (oneEntityHistoryPO.getValueBoolean() != null) {
-                    throw ServiceException.with(ErrorCode.PARAMETER_VALIDATION_FAILED).build();
-                } else if (oneEntityHistoryPO.getValueLong() != null) {
-                    long sum = entityHistoryPOList.stream()
-                            .mapToLong(EntityHistoryPO::getValueLong)
-                            .sum();
-                    String sumAsString = String.valueOf(sum);
-                    entityAggregateResponse.setValue(sumAsString);
+                if (valueType == EntityValueType.LONG) {
+                    Object sum = aggregateHistoryValue(entityIdWithPermission, entityAggregateQuery, valueColumn, TimeSeriesAggregation.SUM);
+                    entityAggregateResponse.setValue(String.valueOf(sum == null ? 0L : ((Number) sum).longValue()));
                     entityAggregateResponse.setValueType(EntityValueType.LONG);
-                } else if (oneEntityHistoryPO.getValueDouble() != null) {
-                    entityAggregateResponse.setValue(entityHistoryPOList.stream()
-                            .filter(Objects::nonNull)
-                            .filter(t -> t.getValueDouble() != null)
-                            .map(t -> BigDecimal.valueOf(t.getValueDouble()))
-                            .reduce(BigDecimal.ZERO, BigDecimal::add)
-                            .doubleValue());
+                } else if (valueType == EntityValueType.DOUBLE) {
+                    Object sum = aggregateHistoryValue(entityIdWithPermission, entityAggregateQuery, valueColumn, TimeSeriesAggregation.SUM);
+                    entityAggregateResponse.setValue(sum == null ? 0D : ((Number) sum).doubleValue());
                     entityAggregateResponse.setValueType(EntityValueType.DOUBLE);
-                } else if (oneEntityHistoryPO.getValueString() != null) {
-                    throw ServiceException.with(ErrorCode.PARAMETER_VALIDATION_FAILED).build();
-                } else if (oneEntityHistoryPO.getValueBinary() != null) {
+                } else {
                     throw ServiceException.with(ErrorCode.PARAMETER_VALIDATION_FAILED).build();
                 }
                 break;
             case COUNT:
+                List<EntityAggregateResponse.CountResult> countResult = new ArrayList<>();
+                if (valueType == EntityValueType.BINARY) {
+                    Map<byte[], Integer> entityHistoryPOGroup = entityHistoryRepository.findAll(historyFilterable.andThen(filter -> filter.isNotNull(EntityHistoryPO.Fields.valueBinary)))
+                            .stream().collect(Collectors.groupingBy(EntityHistoryPO::getValueBinary, Collectors.collectingAndThen(
+                                    Collectors.counting(),
+                                    Long::intValue
+                            )));
+                    entityHistoryPOGroup.forEach((key, value) -> countResult.add(new EntityAggregateResponse.CountResult(key, EntityValueType.BINARY, value)));
+                } else {
+                    entityHistoryRepository.findTuples(historyFilterable.andThen(filter -> filter.isNotNull(valueColumn)), (root, query, cb) -> {
+                        Path<Object> value = root.get(valueColumn);
+                        query.multiselect(value, cb.count(root)).groupBy(value);
+                    }).forEach(tuple -> {
+                        Object value = tuple.get(0);
+                        int count = ((Number) tuple.get(1)).intValue();
+                        countResult.add(new EntityAggregateResponse.CountResult(valueType == EntityValueType.LONG ? value.toString() : value, valueType, count));
+                    });
+                }
+                entityAggregateResponse.setCountResult(countResult);
                 break;
             default:
                 throw ServiceException.with(ErrorCode.PARAMETER_VALIDATION_FAILED).build();
         }
-        if (aggregateType == AggregateType.COUNT) {
-            List<EntityAggregateResponse.CountResult> countResult = new ArrayList<>();
-            if (oneEntityHistoryPO.getValueBoolean() != null) {
-                Map<Boolean, Integer> entityHistoryPOGroup = entityHistoryPOList.stream().collect(Collectors.groupingBy(EntityHistoryPO::getValueBoolean, Collectors.collectingAndThen(
-                        Collectors.counting(),
-                        Long::intValue
-                )));
-                entityHistoryPOGroup.forEach((key, value) -> countResult.add(new EntityAggregateResponse.CountResult(key, EntityValueType.BOOLEAN, value)));
-            } else if (oneEntityHistoryPO.getValueLong() != null) {
-                Map<String, Integer> entityHistoryPOGroup = entityHistoryPOList.stream().collect(Collectors.groupingBy(t -> t.getValueLong().toString(), Collectors.collectingAndThen(
-                        Collectors.counting(),
-                        Long::intValue
-                )));
-                entityHistoryPOGroup.forEach((key, value) -> countResult.add(new EntityAggregateResponse.CountResult(key, EntityValueType.LONG, value)));
-            } else if (oneEntityHistoryPO.getValueDouble() != null) {
-                Map<Double, Integer> entityHistoryPOGroup = entityHistoryPOList.stream().collect(Collectors.groupingBy(EntityHistoryPO::getValueDouble, Collectors.collectingAndThen(
-                        Collectors.counting(),
-                        Long::intValue
-                )));
-                entityHistoryPOGroup.forEach((key, value) -> countResult.add(new EntityAggregateResponse.CountResult(key, EntityValueType.DOUBLE, value)));
-            } else if (oneEntityHistoryPO.getValueString() != null) {
-                Map<String, Integer> entityHistoryPOGroup = entityHistoryPOList.stream().collect(Collectors.groupingBy(EntityHistoryPO::getValueString, Collectors.collectingAndThen(
-                        Collectors.counting(),
-                        Long::intValue
-                )));
-                entityHistoryPOGroup.forEach((key, value) -> countResult.add(new EntityAggregateResponse.CountResult(key, EntityValueType.STRING, value)));
-            } else if (oneEntityHistoryPO.getValueBinary() != null) {
-                Map<byte[], Integer> entityHistoryPOGroup = entityHistoryPOList.stream().collect(Collectors.groupingBy(EntityHistoryPO::getValueBinary, Collectors.collectingAndThen(
-                        Collectors.counting(),
-                        Long::intValue
-                )));
-                entityHistoryPOGroup.forEach((key, value) -> countResult.add(new EntityAggregateResponse.CountResult(key, EntityValueType.BINARY, value)));
+        return entityAggregateResponse;
+    }
+
+    /**
+     * Find the value column of the history records in the period, by counting the values of each column
+     *
+     * @return value type of the records, or null if there is no record
+     */
+    private EntityValueType findHistoryValueType(Consumer<Filterable> historyFilterable) {
+        List<Tuple> tuples = entityHistoryRepository.findTuples(historyFilterable, (root, query, cb) ->
+                query.multiselect(HISTORY_VALUE_COLUMNS.values().stream().map(column -> cb.count(root.get(column))).toArray(Selection[]::new)));
+        if (tuples.isEmpty()) {
+            return null;
+        }
+        Tuple counts = tuples.get(0);
+        int index = 0;
+        for (EntityValueType valueType : HISTORY_VALUE_COLUMNS.keySet()) {
+            Object count = counts.get(index++);
+            if (count != null && ((Number) count).longValue() > 0) {
+                return valueType;
             }
-            entityAggregateResponse.setCountResult(countResult);
         }
-        return entityAggregateResponse;
+        return null;
+    }
+
+    /**
+     * Aggregate the value column of the entity history over the whole period of the query
+     *
+     * @return aggregated value, or null if there is no value in the period
+     */
+    private Object aggregateHistoryValue(Long entityId, EntityAggregateQuery entityAggregateQuery, String valueColumn, TimeSeriesAggregation aggregation) {
+        TimeSeriesAggregateQuery query = new TimeSeriesAggregateQuery();
+        query.setIndexedKeyValues(Map.of(EntityHistoryPO.Fields.entityId, entityId));
+        query.setStartTimestamp(entityAggregateQuery.getStartTimestamp());
+        // the end timestamp of the entity aggregate query is inclusive
+        query.setEndTimestamp(entityAggregateQuery.getEndTimestamp() + 1);
+        query.setValueColumn(valueColumn);
+        query.setAggregation(aggregation);
+        List<TimeSeriesAggregateBucket> buckets = entityHistoryTimeSeriesRepository.aggregate(query).getContent();
+        return buckets.isEmpty() ? null : buckets.get(0).getValue();
     }
 
     public EntityLatestResponse getEntityStatus(Long entityId) {
@@ -718,7 +813,12 @@ public class EntityValueService implements EntityValueServiceProvider {
 
         List<EntityPO> entityPOList;
         try {
-            entityPOList = entityRepository.findAllWithDataPermission(filter -> filter.in(EntityPO.Fields.id, entityIds.toArray()));
+            entityPOList = entityRepository.findAllById(entityIds);
+            Set<String> permittedAttachTargetIds = new HashSet<>(permissionFacade.filterDataPermission(DataPermissionType.ENTITY,
+                    entityPOList.stream().map(EntityPO::getAttachTargetId).collect(Collectors.toSet())));
+            entityPOList = entityPOList.stream()
+                    .filter(entityPO -> permittedAttachTargetIds.contains(entityPO.getAttachTargetId()))
+                    .toList();
         } catch (Exception e) {
             if (e instanceof ServiceException serviceException
                     && (Objects.equals(serviceException.getErrorCode(), ErrorCode.FORBIDDEN_PERMISSION.getErrorCode()) ||
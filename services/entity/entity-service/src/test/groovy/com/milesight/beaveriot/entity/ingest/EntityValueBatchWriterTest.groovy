@@ -0,0 +1,97 @@
+package com.milesight.beaveriot.entity.ingest
+
+import com.milesight.beaveriot.entity.po.EntityHistoryPO
+import com.milesight.beaveriot.entity.po.EntityLatestPO
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.jdbc.datasource.DataSourceTransactionManager
+import org.springframework.jdbc.datasource.SingleConnectionDataSource
+import spock.lang.Specification
+
+/**
+ * @author leon
+ */
+class EntityValueBatchWriterTest extends Specification {
+
+    SingleConnectionDataSource dataSource = new SingleConnectionDataSource("jdbc:h2:mem:entity_value_batch_writer;DB_CLOSE_DELAY=-1", true)
+
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource)
+
+    EntityValueBatchWriter writer = new EntityValueBatchWriter(jdbcTemplate, new DataSourceTransactionManager(dataSource))
+
+    def setup() {
+        jdbcTemplate.execute("""
+                CREATE TABLE t_entity_latest (
+                    id BIGINT PRIMARY KEY, tenant_id VARCHAR(255), entity_id BIGINT NOT NULL UNIQUE,
+                    value_long BIGINT, value_double DECIMAL, value_boolean BOOLEAN, value_string VARCHAR(1024), value_binary BLOB,
+                    timestamp BIGINT NOT NULL, updated_at BIGINT)
+                """)
+        jdbcTemplate.execute("""
+                CREATE TABLE t_entity_history (
+                    id BIGINT PRIMARY KEY, tenant_id VARCHAR(255), entity_id BIGINT NOT NULL,
+                    value_long BIGINT, value_double DECIMAL, value_boolean BOOLEAN, value_string VARCHAR(1024), value_binary BLOB,
+                    timestamp BIGINT NOT NULL, created_at BIGINT NOT NULL, created_by VARCHAR(255), updated_at BIGINT, updated_by VARCHAR(255),
+                    UNIQUE (entity_id, timestamp))
+                """)
+    }
+
+    def cleanup() {
+        jdbcTemplate.execute("DROP ALL OBJECTS")
+        dataSource.destroy()
+    }
+
+    static EntityLatestPO latest(long entityId, long timestamp, long value) {
+        return new EntityLatestPO(id: entityId, entityId: entityId, timestamp: timestamp, valueLong: value)
+    }
+
+    static EntityHistoryPO history(long id, long entityId, long timestamp) {
+        return new EntityHistoryPO(id: id, entityId: entityId, timestamp: timestamp, valueString: "v" + id)
+    }
+
+    Map<String, Object> latestRow(long entityId) {
+        return jdbcTemplate.queryForList("SELECT * FROM t_entity_latest WHERE entity_id = ?", entityId).find()
+    }
+
+    def "H2 should be supported"() {
+        expect:
+        writer.isSupported()
+    }
+
+    def "latest value should only be overwritten by a newer timestamp"() {
+        when:
+        writer.write("t1", [latest(1, 200, 2)], [])
+        writer.write("t1", [latest(1, 100, 1)], [])
+
+        then:
+        latestRow(1).VALUE_LONG == 2L
+        latestRow(1).TENANT_ID == "t1"
+
+        when:
+        writer.write("t1", [latest(1, 300, 3)], [])
+
+        then:
+        latestRow(1).VALUE_LONG == 3L
+        latestRow(1).TIMESTAMP == 300L
+    }
+
+    def "history records should be inserted with the tenant"() {
+        when:
+        writer.write("t1", [], [history(1, 1, 100), history(2, 1, 200)])
+
+        then:
+        jdbcTemplate.queryForList("SELECT id, tenant_id, value_string FROM t_entity_history ORDER BY id")
+                .collect { [it.ID, it.TENANT_ID, it.VALUE_STRING] } == [[1L, "t1", "v1"], [2L, "t1", "v2"]]
+    }
+
+    def "failed write should roll back the latest values and the history records together"() {
+        given:
+        writer.write("t1", [], [history(1, 1, 100)])
+
+        when:
+        writer.write("t1", [latest(2, 100, 2)], [history(2, 2, 100), history(3, 1, 100)])
+
+        then:
+        thrown(Exception)
+        latestRow(2) == null
+        jdbcTemplate.queryForObject("SELECT COUNT(*) FROM t_entity_history", Long) == 1L
+    }
+}
@@ -0,0 +1,160 @@
+package com.milesight.beaveriot.entity.ingest
+
+import com.milesight.beaveriot.entity.po.EntityHistoryPO
+import com.milesight.beaveriot.entity.po.EntityLatestPO
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.time.Duration
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+
+/**
+ * @author leon
+ */
+@Timeout(10)
+class EntityValueWriteBehindBufferTest extends Specification {
+
+    EntityValueWriteBehindProperties properties = new EntityValueWriteBehindProperties(
+            enabled: true, capacity: 100, batchSize: 100, flushInterval: Duration.ofMillis(200), ackTimeout: Duration.ofSeconds(5))
+
+    EntityValueBatchWriter batchWriter = Mock(EntityValueBatchWriter) {
+        isSupported() >> true
+    }
+
+    EntityValueWriteBehindBuffer buffer
+
+    def cleanup() {
+        buffer?.stop()
+    }
+
+    EntityValueWriteBehindBuffer start() {
+        buffer = new EntityValueWriteBehindBuffer(properties, batchWriter)
+        buffer.start()
+        return buffer
+    }
+
+    static EntityLatestPO latest(long entityId, long timestamp, long value) {
+        return new EntityLatestPO(id: entityId, entityId: entityId, timestamp: timestamp, valueLong: value)
+    }
+
+    static EntityHistoryPO history(long entityId, long timestamp) {
+        return new EntityHistoryPO(id: entityId * 1000 + timestamp, entityId: entityId, timestamp: timestamp)
+    }
+
+    def "buffer should not start when disabled"() {
+        given:
+        properties.enabled = false
+
+        expect:
+        !start().isEnabled()
+    }
+
+    def "payloads should be written per tenant with the newest latest value of each entity"() {
+        given:
+        start()
+        def written = Collections.synchronizedList([])
+        batchWriter.write(_, _, _) >> { String tenantId, Collection<EntityLatestPO> latestValues, Collection<EntityHistoryPO> historyRecords ->
+            written << [tenantId, latestValues*.valueLong, historyRecords.size()]
+        }
+
+        when:
+        def futures = [
+                buffer.submit("t1", [latest(1, 100, 1)], [history(1, 100)]),
+                buffer.submit("t1", [latest(1, 200, 2)], [history(1, 200)]),
+                buffer.submit("t1", [latest(1, 150, 3)], [history(1, 150)]),
+                buffer.submit("t2", [latest(2, 100, 4)], [history(2, 100)])
+        ]
+        futures*.get(5, TimeUnit.SECONDS)
+
+        then:
+        written == [["t1", [2L], 3], ["t2", [4L], 1]]
+    }
+
+    def "failed batch should be retried payload by payload"() {
+        given:
+        start()
+        batchWriter.write("t1", _, _) >> { String tenantId, Collection<EntityLatestPO> latestValues, Collection<EntityHistoryPO> historyRecords ->
+            if (historyRecords.any { it.entityId == 2L }) {
+                throw new IllegalStateException("bad payload")
+            }
+        }
+
+        when:
+        def good = buffer.submit("t1", [latest(1, 100, 1)], [history(1, 100)])
+        def bad = buffer.submit("t1", [latest(2, 100, 2)], [history(2, 100)])
+        good.get(5, TimeUnit.SECONDS)
+        bad.get(5, TimeUnit.SECONDS)
+
+        then:
+        def e = thrown(ExecutionException)
+        e.cause instanceof IllegalStateException
+        good.isDone() && !good.isCompletedExceptionally()
+    }
+
+    def "payload should be rejected when the buffer is full for the ack timeout"() {
+        given:
+        properties.capacity = 1
+        properties.batchSize = 1
+        properties.flushInterval = Duration.ofMillis(10)
+        properties.ackTimeout = Duration.ofMillis(200)
+        start()
+        def flushing = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        batchWriter.write(*_) >> {
+            flushing.countDown()
+            release.await(5, TimeUnit.SECONDS)
+        }
+
+        when:
+        def first = buffer.submit("t1", [latest(1, 100, 1)], [])
+        flushing.await(5, TimeUnit.SECONDS)
+        def queued = buffer.submit("t1", [latest(2, 100, 2)], [])
+        def rejected = buffer.submit("t1", [latest(3, 100, 3)], [])
+
+        then:
+        rejected.isCompletedExceptionally()
+
+        when:
+        rejected.join()
+
+        then:
+        def e = thrown(Exception)
+        e.cause instanceof RejectedExecutionException
+
+        when:
+        release.countDown()
+
+        then:
+        first.get(5, TimeUnit.SECONDS) == null
+        queued.get(5, TimeUnit.SECONDS) == null
+    }
+
+    def "stop should flush the buffered payloads and reject the later ones"() {
+        given:
+        properties.flushInterval = Duration.ofSeconds(1)
+        start()
+        def written = Collections.synchronizedList([])
+        batchWriter.write(_, _, _) >> { String tenantId, Collection<EntityLatestPO> latestValues, Collection<EntityHistoryPO> historyRecords ->
+            written.addAll(latestValues*.entityId)
+        }
+
+        when:
+        def futures = (1..5).collect { buffer.submit("t1", [latest(it, 100, it)], []) }
+        buffer.stop()
+
+        then:
+        futures.every { it.isDone() && !it.isCompletedExceptionally() }
+        written.toSet() == (1L..5L).toSet()
+        !buffer.isEnabled()
+
+        when:
+        buffer.submit("t1", [latest(6, 100, 6)], []).join()
+
+        then:
+        def e = thrown(Exception)
+        e.cause instanceof RejectedExecutionException
+    }
+}
@@ -0,0 +1,70 @@
+package com.milesight.beaveriot.entity.service
+
+import com.milesight.beaveriot.entity.dto.EntityQuery
+import com.milesight.beaveriot.entity.po.EntityPO
+import com.milesight.beaveriot.entity.repository.EntityRepository
+import com.milesight.beaveriot.permission.enums.DataPermissionType
+import com.milesight.beaveriot.permission.facade.IPermissionFacade
+import spock.lang.Specification
+
+/**
+ * @author leon
+ */
+class EntityServicePermissionTest extends Specification {
+
+    EntityRepository entityRepository = Mock()
+
+    IPermissionFacade permissionFacade = Mock()
+
+    EntityService service
+
+    def setup() {
+        service = new EntityService()
+        service.@entityRepository = entityRepository
+        service.@permissionFacade = permissionFacade
+    }
+
+    static EntityPO entity(Long id, String attachTargetId) {
+        def entityPO = new EntityPO()
+        entityPO.id = id
+        entityPO.attachTargetId = attachTargetId
+        return entityPO
+    }
+
+    def "entities listed by id should be filtered against the cached permission"() {
+        when:
+        def entities = service.listEntityPOById([1L, 2L, 3L])
+
+        then:
+        1 * entityRepository.findAllById([1L, 2L, 3L]) >> [entity(1L, "device-1"), entity(2L, "device-2"), entity(3L, "device-1")]
+        1 * permissionFacade.filterDataPermission(DataPermissionType.ENTITY, ["device-1", "device-2"] as Set) >> ["device-1"]
+        0 * entityRepository.findAllWithDataPermission(_)
+        entities*.id == [1L, 3L]
+    }
+
+    def "no entity should be checked when none is found"() {
+        when:
+        def entities = service.listEntityPOById([1L])
+
+        then:
+        1 * entityRepository.findAllById([1L]) >> []
+        0 * permissionFacade.filterDataPermission(*_)
+        entities.isEmpty()
+    }
+
+    def "search of given entities should not filter the permission in the query"() {
+        given:
+        def query = new EntityQuery()
+        query.entityIds = [1L, 2L]
+        query.customized = false
+        permissionFacade.hasMenuPermission(_) >> true
+
+        when:
+        service.search(query)
+
+        then:
+        1 * entityRepository.findAll(_) >> [entity(1L, "device-1"), entity(2L, "device-2")]
+        1 * permissionFacade.filterDataPermission(DataPermissionType.ENTITY, ["device-1", "device-2"] as Set) >> []
+        0 * entityRepository.findAllWithDataPermission(_)
+    }
+}
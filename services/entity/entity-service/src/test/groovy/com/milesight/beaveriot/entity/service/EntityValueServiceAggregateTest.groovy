@@ -0,0 +1,130 @@
+package com.milesight.beaveriot.entity.service
+
+import com.milesight.beaveriot.context.integration.enums.EntityValueType
+import com.milesight.beaveriot.data.api.TimeSeriesRepository
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateBucket
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateQuery
+import com.milesight.beaveriot.data.model.TimeSeriesAggregation
+import com.milesight.beaveriot.data.model.TimeSeriesResult
+import com.milesight.beaveriot.entity.enums.AggregateType
+import com.milesight.beaveriot.entity.model.request.EntityAggregateQuery
+import com.milesight.beaveriot.entity.po.EntityHistoryPO
+import com.milesight.beaveriot.entity.po.EntityPO
+import com.milesight.beaveriot.entity.repository.EntityHistoryRepository
+import com.milesight.beaveriot.entity.repository.EntityRepository
+import com.milesight.beaveriot.permission.enums.DataPermissionType
+import com.milesight.beaveriot.permission.facade.IPermissionFacade
+import jakarta.persistence.Tuple
+import spock.lang.Specification
+
+/**
+ * @author leon
+ */
+class EntityValueServiceAggregateTest extends Specification {
+
+    EntityRepository entityRepository = Mock()
+
+    EntityHistoryRepository entityHistoryRepository = Mock()
+
+    TimeSeriesRepository<EntityHistoryPO> entityHistoryTimeSeriesRepository = Mock()
+
+    IPermissionFacade permissionFacade = Mock()
+
+    EntityValueService service
+
+    def setup() {
+        service = new EntityValueService()
+        service.@entityRepository = entityRepository
+        service.@entityHistoryRepository = entityHistoryRepository
+        service.@entityHistoryTimeSeriesRepository = entityHistoryTimeSeriesRepository
+        service.@permissionFacade = permissionFacade
+
+        def entity = new EntityPO()
+        entity.id = 1L
+        entity.attachTargetId = "device-1"
+        entityRepository.findById(1L) >> Optional.of(entity)
+        permissionFacade.hasDataPermission(DataPermissionType.ENTITY, "device-1") >> true
+    }
+
+    void historyOf(EntityValueType valueType) {
+        // the counts of the value columns in the order boolean, long, double, string, binary
+        def counts = Mock(Tuple)
+        def index = [EntityValueType.BOOLEAN, EntityValueType.LONG, EntityValueType.DOUBLE, EntityValueType.STRING, EntityValueType.BINARY].indexOf(valueType)
+        counts.get(_ as Integer) >> { int i -> i == index ? 3L : 0L }
+        entityHistoryRepository.findTuples(_, _) >> [counts]
+    }
+
+    static EntityAggregateQuery aggregateQuery(AggregateType aggregateType) {
+        def query = new EntityAggregateQuery()
+        query.entityId = 1L
+        query.aggregateType = aggregateType
+        query.startTimestamp = 1000L
+        query.endTimestamp = 5000L
+        return query
+    }
+
+    def "aggregate should be calculated by the time series repository over the whole period"() {
+        given:
+        historyOf(valueType)
+        TimeSeriesAggregateQuery captured = null
+
+        when:
+        def response = service.historyAggregate(aggregateQuery(aggregateType))
+
+        then:
+        1 * entityHistoryTimeSeriesRepository.aggregate(_) >> { TimeSeriesAggregateQuery query ->
+            captured = query
+            return TimeSeriesResult.of([TimeSeriesAggregateBucket.of(1000L, aggregated, 3L)])
+        }
+        captured.indexedKeyValues == [entityId: 1L]
+        captured.startTimestamp == 1000L
+        captured.endTimestamp == 5001L
+        captured.windowMillis == null
+        captured.valueColumn == valueColumn
+        captured.aggregation == aggregation
+        response.value == expected
+        response.valueType == valueType
+
+        where:
+        aggregateType      | valueType              | aggregated | valueColumn                        | aggregation                | expected
+        AggregateType.LAST | EntityValueType.LONG   | 7L         | EntityHistoryPO.Fields.valueLong   | TimeSeriesAggregation.LAST | "7"
+        AggregateType.LAST | EntityValueType.STRING | "on"       | EntityHistoryPO.Fields.valueString | TimeSeriesAggregation.LAST | "on"
+        AggregateType.MIN  | EntityValueType.DOUBLE | 1.5d       | EntityHistoryPO.Fields.valueDouble | TimeSeriesAggregation.MIN  | 1.5d
+        AggregateType.MAX  | EntityValueType.LONG   | 9L         | EntityHistoryPO.Fields.valueLong   | TimeSeriesAggregation.MAX  | "9"
+        AggregateType.AVG  | EntityValueType.LONG   | 2.5d       | EntityHistoryPO.Fields.valueLong   | TimeSeriesAggregation.AVG  | "2.5"
+        AggregateType.SUM  | EntityValueType.DOUBLE | 4.5d       | EntityHistoryPO.Fields.valueDouble | TimeSeriesAggregation.SUM  | 4.5d
+    }
+
+    def "sum of a period without values should be zero"() {
+        given:
+        historyOf(EntityValueType.LONG)
+        entityHistoryTimeSeriesRepository.aggregate(_) >> TimeSeriesResult.of()
+
+        expect:
+        service.historyAggregate(aggregateQuery(AggregateType.SUM)).value == "0"
+    }
+
+    def "boolean extremes should not be aggregated by the time series repository"() {
+        given:
+        historyOf(EntityValueType.BOOLEAN)
+        entityHistoryRepository.count(_) >> 1L
+
+        when:
+        def response = service.historyAggregate(aggregateQuery(AggregateType.MAX))
+
+        then:
+        0 * entityHistoryTimeSeriesRepository.aggregate(_)
+        response.value == true
+        response.valueType == EntityValueType.BOOLEAN
+    }
+
+    def "entity without permission should not be aggregated"() {
+        when:
+        def response = service.historyAggregate(aggregateQuery(AggregateType.SUM))
+
+        then:
+        1 * permissionFacade.hasDataPermission(DataPermissionType.ENTITY, "device-1") >> false
+        0 * entityHistoryTimeSeriesRepository.aggregate(_)
+        response.value == null
+    }
+}
@@ -39,4 +39,24 @@ public interface MqttAdminPubSubServiceProvider extends MqttPubSubServiceProvide
         return String.format("web_mqtt@%s", tenantId);
     }
 
+    /**
+     * Client id of a web session, the web username and the session id separated by '#'
+     */
+    static String getWebClientId(String tenantId, String sessionId) {
+        return String.format("%s#%s", getWebUsername(tenantId), sessionId);
+    }
+
+    /**
+     * Session id of a web client id, see {@link #getWebClientId(String, String)}
+     *
+     * @return null if it is not the client id of a web session of the tenant
+     */
+    static String getWebSessionId(String tenantId, String clientId) {
+        String prefix = getWebUsername(tenantId) + "#";
+        if (clientId == null || !clientId.startsWith(prefix) || clientId.length() == prefix.length()) {
+            return null;
+        }
+        return clientId.substring(prefix.length());
+    }
+
 }
@@ -11,6 +11,10 @@ import lombok.*;
 @AllArgsConstructor
 public class WebMqttCredentials {
 
+    /**
+     * {@code <username>#<session id>}, the session id identifies the web session in {@code uplink/web/watch} and
+     * {@code downlink/web/exchange/<session id>}, its notifications stop once this client disconnects
+     */
     private String clientId;
 
     private String username;
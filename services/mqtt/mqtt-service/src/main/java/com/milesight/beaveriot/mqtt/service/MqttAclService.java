@@ -131,7 +131,7 @@ public class MqttAclService implements MqttAuthProvider {
         val username = MqttAdminPubSubServiceProvider.getWebUsername(tenantId);
         var credentials = credentialsServiceProvider.getOrCreateCredentials(CREDENTIALS_TYPE, username, SecretUtils.randomSecret(32));
         return WebMqttCredentials.builder()
-                .clientId(String.format("%s#%s", username, SnowflakeUtil.nextId()))
+                .clientId(MqttAdminPubSubServiceProvider.getWebClientId(tenantId, String.valueOf(SnowflakeUtil.nextId())))
                 .username(username)
                 .password(credentials.getAccessSecret())
                 .build();
@@ -33,7 +33,6 @@ import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 
-import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArraySet;
@@ -49,9 +48,9 @@ public class MqttPubSubService implements MqttAdminPubSubServiceProvider, Comman
     /**
      * Topic Subscribers
      * <p>
-     * username -> topic -> callback -> isSharedSubscription
+     * username -> topic trie -> callback -> isSharedSubscription
      */
-    private static final ConcurrentHashMap<String, ConcurrentHashMap<Topic, ConcurrentHashMap<MqttMessageListener, Boolean>>> subscribers = new ConcurrentHashMap<>();
+    private static final MqttSubscriptionTrie subscribers = new MqttSubscriptionTrie();
 
     /**
      * Subscriber Index
@@ -112,30 +111,25 @@ public class MqttPubSubService implements MqttAdminPubSubServiceProvider, Comman
         val mqttMessage = new MqttMessage(event.getTopic(), topicSubPath,
                 topicChannel, publisherUsername, tenantId, topicTokens, event.getPayload());
 
-        subscribers.forEach((subscriberUsername, topicSubscribers) -> {
-            if (!publisherUsername.equals(subscriberUsername) && !SINGLE_LEVEL_WILDCARD.equals(subscriberUsername)) {
-                return;
+        for (val subscription : subscribers.match(publisherUsername, topicTokens)) {
+            if (broadcast == subscription.shared()) {
+                continue;
             }
-            topicSubscribers.forEach((subscriptionTopic, callbacks) ->
-                    callbacks.forEach((listener, sharedSubscription) -> {
-                        if (Objects.equals(!broadcast, sharedSubscription)
-                                && topic.match(subscriptionTopic)) {
-                            try {
-                                executor.execute(() -> {
-                                    try {
-                                        listener.accept(mqttMessage);
-                                    } catch (Exception e) {
-                                        log.warn("failed to handle the message. topic: '{}'.", subscriptionTopic, e);
-                                    } finally {
-                                        TenantContext.clear();
-                                    }
-                                });
-                            } catch (Exception e) {
-                                log.error("executor error.", e);
-                            }
-                        }
-                    }));
-        });
+            val listener = subscription.listener();
+            try {
+                executor.execute(() -> {
+                    try {
+                        listener.accept(mqttMessage);
+                    } catch (Exception e) {
+                        log.warn("failed to handle the message. topic: '{}'.", subscription.topic(), e);
+                    } finally {
+                        TenantContext.clear();
+                    }
+                });
+            } catch (Exception e) {
+                log.error("executor error.", e);
+            }
+        }
     }
 
     private boolean runWithLockIfServiceNotReady(Runnable job) {
@@ -244,10 +238,8 @@ public class MqttPubSubService implements MqttAdminPubSubServiceProvider, Comman
         val topicName = getFullTopicName(topicPrefix, username, topicSubPath);
         val topic = new Topic(topicName);
         log.info("subscribe topic: '{}'", topic);
-        val subscribersForUsername = subscribers.computeIfAbsent(username, k -> new ConcurrentHashMap<>());
-        val subscribersForTopic = subscribersForUsername.computeIfAbsent(topic, k -> new ConcurrentHashMap<>());
         synchronized (subscriberIndex) {
-            subscribersForTopic.put(listener, shared);
+            subscribers.put(username, topic, listener, shared);
             subscriberIndex.computeIfAbsent(listener, k -> new ConcurrentHashMap<>()).put(topic, shared);
         }
     }
@@ -303,23 +295,8 @@ public class MqttPubSubService implements MqttAdminPubSubServiceProvider, Comman
                 return;
             }
             topics.forEach((topic, shared) -> {
-                val username = getUsernameFromTopic(topic);
-                val subscribersForUsername = subscribers.get(username);
-                if (subscribersForUsername == null) {
-                    return;
-                }
-                val subscribersForTopic = subscribersForUsername.get(topic);
-                if (subscribersForTopic == null) {
-                    return;
-                }
                 log.info("unsubscribe from topic: '{}', listener: {}", topic, listener);
-                subscribersForTopic.remove(listener);
-                if (subscribersForTopic.isEmpty()) {
-                    subscribersForUsername.remove(topic);
-                }
-                if (subscribersForUsername.isEmpty()) {
-                    subscribers.remove(username);
-                }
+                subscribers.remove(getUsernameFromTopic(topic), topic, listener);
             });
             subscriberIndex.remove(listener);
         }
@@ -356,16 +333,8 @@ public class MqttPubSubService implements MqttAdminPubSubServiceProvider, Comman
     public void unsubscribe(String topicPrefix, String username, String topicSubPath) {
         val topic = new Topic(getFullTopicName(topicPrefix, username, topicSubPath));
         log.info("unsubscribe from topic: '{}'", topic);
-        val subscribersForUsername = subscribers.get(username);
-        if (subscribersForUsername == null) {
-            return;
-        }
-        var subscribersForTopic = subscribersForUsername.get(topic);
-        if (subscribersForTopic == null) {
-            return;
-        }
         synchronized (subscriberIndex) {
-            subscribersForTopic.forEach((listener, shared) -> {
+            subscribers.removeAll(username, topic).forEach((listener, shared) -> {
                 val topics = subscriberIndex.get(listener);
                 if (topics == null) {
                     return;
@@ -375,10 +344,6 @@ public class MqttPubSubService implements MqttAdminPubSubServiceProvider, Comman
                     subscriberIndex.remove(listener);
                 }
             });
-            subscribersForUsername.remove(topic);
-            if (subscribersForUsername.isEmpty()) {
-                subscribers.remove(username);
-            }
         }
     }
 
@@ -0,0 +1,163 @@
+package com.milesight.beaveriot.mqtt.service;
+
+import com.milesight.beaveriot.context.mqtt.listener.MqttMessageListener;
+import io.moquette.broker.subscriptions.Token;
+import io.moquette.broker.subscriptions.Topic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Index of topic subscriptions, one topic trie per subscriber username.
+ * <p>
+ * The username carries the tenant id, so a message is only matched against the trie of its publisher and the trie of
+ * the wildcard username. Each trie level is a topic token, and {@code +} and {@code #} are plain child nodes, so the
+ * matching cost is bounded by the topic depth rather than the number of subscriptions. The tries are immutable:
+ * subscribe and unsubscribe copy the path from the root to the changed node and publish a new snapshot, readers never
+ * lock.
+ */
+class MqttSubscriptionTrie {
+
+    private static final String SINGLE_LEVEL_WILDCARD = "+";
+
+    private static final String MULTI_LEVEL_WILDCARD = "#";
+
+    /**
+     * username -> topic trie
+     */
+    private volatile Map<String, Node> roots = Collections.emptyMap();
+
+    public synchronized void put(String username, Topic topic, MqttMessageListener listener, boolean shared) {
+        update(username, topic, listeners -> {
+            Map<MqttMessageListener, Boolean> updated = new HashMap<>(listeners);
+            updated.put(listener, shared);
+            return updated;
+        });
+    }
+
+    public synchronized void remove(String username, Topic topic, MqttMessageListener listener) {
+        update(username, topic, listeners -> {
+            if (!listeners.containsKey(listener)) {
+                return listeners;
+            }
+            Map<MqttMessageListener, Boolean> updated = new HashMap<>(listeners);
+            updated.remove(listener);
+            return updated;
+        });
+    }
+
+    /**
+     * Remove the topic with all its listeners
+     *
+     * @return listeners of the removed topic
+     */
+    public synchronized Map<MqttMessageListener, Boolean> removeAll(String username, Topic topic) {
+        Map<MqttMessageListener, Boolean> removed = new HashMap<>();
+        update(username, topic, listeners -> {
+            removed.putAll(listeners);
+            return Collections.emptyMap();
+        });
+        return removed;
+    }
+
+    /**
+     * Find the subscriptions matching the topic of a message, following the matching rules of {@link Topic#match(Topic)}
+     *
+     * @param publisherUsername username of the publisher
+     * @param topicTokens       tokens of the message topic
+     * @return matched subscriptions
+     */
+    public List<Subscription> match(String publisherUsername, List<String> topicTokens) {
+        Map<String, Node> snapshot = roots;
+        List<Subscription> result = new ArrayList<>();
+        match(snapshot.get(publisherUsername), topicTokens, 0, result);
+        if (!SINGLE_LEVEL_WILDCARD.equals(publisherUsername)) {
+            match(snapshot.get(SINGLE_LEVEL_WILDCARD), topicTokens, 0, result);
+        }
+        return result;
+    }
+
+    private static void match(Node node, List<String> topicTokens, int index, List<Subscription> result) {
+        if (node == null) {
+            return;
+        }
+        // '#' also matches the parent level, e.g. 'a/#' matches 'a'
+        collect(node.children.get(MULTI_LEVEL_WILDCARD), result);
+        if (index == topicTokens.size()) {
+            collect(node, result);
+            return;
+        }
+        String token = topicTokens.get(index);
+        match(node.children.get(token), topicTokens, index + 1, result);
+        if (!SINGLE_LEVEL_WILDCARD.equals(token)) {
+            match(node.children.get(SINGLE_LEVEL_WILDCARD), topicTokens, index + 1, result);
+        }
+    }
+
+    private static void collect(Node node, List<Subscription> result) {
+        if (node == null || node.listeners.isEmpty()) {
+            return;
+        }
+        node.listeners.forEach((listener, shared) -> result.add(new Subscription(node.topic, listener, shared)));
+    }
+
+    private void update(String username, Topic topic, UnaryOperator<Map<MqttMessageListener, Boolean>> listenersUpdater) {
+        List<String> tokens = topic.getTokens().stream().map(Token::toString).toList();
+        Node root = roots.get(username);
+        Node updatedRoot = update(root, tokens, 0, topic, listenersUpdater);
+        if (updatedRoot == root) {
+            return;
+        }
+        Map<String, Node> updatedRoots = new HashMap<>(roots);
+        if (updatedRoot == null) {
+            updatedRoots.remove(username);
+        } else {
+            updatedRoots.put(username, updatedRoot);
+        }
+        roots = Collections.unmodifiableMap(updatedRoots);
+    }
+
+    private static Node update(Node node, List<String> tokens, int index, Topic topic,
+                               UnaryOperator<Map<MqttMessageListener, Boolean>> listenersUpdater) {
+        Node current = node == null ? Node.EMPTY : node;
+        Node updated;
+        if (index == tokens.size()) {
+            Map<MqttMessageListener, Boolean> listeners = listenersUpdater.apply(current.listeners);
+            if (listeners == current.listeners) {
+                return node;
+            }
+            updated = new Node(current.children, topic, Collections.unmodifiableMap(listeners));
+        } else {
+            String token = tokens.get(index);
+            Node child = current.children.get(token);
+            Node updatedChild = update(child, tokens, index + 1, topic, listenersUpdater);
+            if (updatedChild == child) {
+                return node;
+            }
+            Map<String, Node> children = new HashMap<>(current.children);
+            if (updatedChild == null) {
+                children.remove(token);
+            } else {
+                children.put(token, updatedChild);
+            }
+            updated = new Node(Collections.unmodifiableMap(children), current.topic, current.listeners);
+        }
+        return updated.isEmpty() ? null : updated;
+    }
+
+    private record Node(Map<String, Node> children, Topic topic, Map<MqttMessageListener, Boolean> listeners) {
+
+        private static final Node EMPTY = new Node(Collections.emptyMap(), null, Collections.emptyMap());
+
+        private boolean isEmpty() {
+            return children.isEmpty() && listeners.isEmpty();
+        }
+    }
+
+    record Subscription(Topic topic, MqttMessageListener listener, boolean shared) {
+    }
+}
@@ -0,0 +1,83 @@
+package com.milesight.beaveriot.mqtt.service
+
+import com.milesight.beaveriot.context.mqtt.listener.MqttMessageListener
+import io.moquette.broker.subscriptions.Topic
+import spock.lang.Specification
+
+class MqttSubscriptionTrieTest extends Specification {
+
+    def "match should follow the matching rules of moquette topics"() {
+        given:
+        def trie = new MqttSubscriptionTrie()
+        def listener = Mock(MqttMessageListener)
+        trie.put(subscriber, new Topic(subscription), listener, true)
+        def messageTopic = new Topic(message)
+
+        expect:
+        !trie.match("user@1", tokens(messageTopic)).isEmpty() == matched
+        matched == ((subscriber == "+" || subscriber == "user@1") && messageTopic.match(new Topic(subscription)))
+
+        where:
+        subscriber | subscription               | message                         || matched
+        "user@1"   | "beaver-iot/user@1/a/b"    | "beaver-iot/user@1/a/b"         || true
+        "user@1"   | "beaver-iot/user@1/a/b"    | "beaver-iot/user@1/a"           || false
+        "user@1"   | "beaver-iot/user@1/a/+"    | "beaver-iot/user@1/a/b"         || true
+        "user@1"   | "beaver-iot/user@1/a/+"    | "beaver-iot/user@1/a/b/c"       || false
+        "user@1"   | "beaver-iot/user@1/a/+"    | "beaver-iot/user@1/a"           || false
+        "user@1"   | "beaver-iot/user@1/a/#"    | "beaver-iot/user@1/a/b/c"       || true
+        "user@1"   | "beaver-iot/user@1/a/#"    | "beaver-iot/user@1/a"           || true
+        "user@1"   | "beaver-iot/user@1/+/c"    | "beaver-iot/user@1/b/c"         || true
+        "+"        | "beaver-iot/+/uplink"      | "beaver-iot/user@1/uplink"      || true
+        "+"        | "beaver-iot/+/uplink"      | "beaver-iot-internal/user@1/up" || false
+        "user@2"   | "beaver-iot/user@2/a"      | "beaver-iot/user@1/a"           || false
+        "user@2"   | "beaver-iot/+/a"           | "beaver-iot/user@1/a"           || false
+    }
+
+    def "match should return all listeners of all matched topics"() {
+        given:
+        def trie = new MqttSubscriptionTrie()
+        def exact = Mock(MqttMessageListener)
+        def wildcard = Mock(MqttMessageListener)
+        def broadcast = Mock(MqttMessageListener)
+        trie.put("user@1", new Topic("beaver-iot/user@1/a/b"), exact, true)
+        trie.put("+", new Topic("beaver-iot/+/a/#"), wildcard, true)
+        trie.put("+", new Topic("beaver-iot/+/a/#"), broadcast, false)
+
+        when:
+        def subscriptions = trie.match("user@1", tokens(new Topic("beaver-iot/user@1/a/b")))
+
+        then:
+        subscriptions.collect { it.listener() } as Set == [exact, wildcard, broadcast] as Set
+        subscriptions.find { it.listener() == broadcast }.shared() == false
+        subscriptions.find { it.listener() == wildcard }.topic() == new Topic("beaver-iot/+/a/#")
+    }
+
+    def "remove should only drop the given listeners of the topic"() {
+        given:
+        def trie = new MqttSubscriptionTrie()
+        def first = Mock(MqttMessageListener)
+        def second = Mock(MqttMessageListener)
+        def topic = new Topic("beaver-iot/user@1/a")
+        trie.put("user@1", topic, first, true)
+        trie.put("user@1", topic, second, true)
+        trie.put("user@1", new Topic("beaver-iot/user@1/b"), first, true)
+
+        when:
+        trie.remove("user@1", topic, first)
+
+        then:
+        trie.match("user@1", tokens(topic))*.listener() == [second]
+
+        when:
+        def removed = trie.removeAll("user@1", topic)
+
+        then:
+        removed == [(second): true]
+        trie.match("user@1", tokens(topic)).isEmpty()
+        trie.match("user@1", tokens(new Topic("beaver-iot/user@1/b")))*.listener() == [first]
+    }
+
+    private static List<String> tokens(Topic topic) {
+        return topic.getTokens().collect { it.toString() }
+    }
+}
@@ -3,6 +3,9 @@ package com.milesight.beaveriot.permission.facade;
 import com.milesight.beaveriot.permission.enums.DataPermissionType;
 import com.milesight.beaveriot.permission.enums.OperationPermissionCode;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * IPermissionFacade
  *
@@ -16,5 +19,12 @@ public interface IPermissionFacade {
 
     void checkDataPermission(DataPermissionType type, String id);
 
+    boolean hasDataPermission(DataPermissionType type, String id);
+
+    /**
+     * @return the given ids that the current user is permitted on
+     */
+    List<String> filterDataPermission(DataPermissionType type, Collection<String> ids);
+
     void checkAdminPermission();
 }
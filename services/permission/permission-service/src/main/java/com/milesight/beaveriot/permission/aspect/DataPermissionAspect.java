@@ -4,9 +4,10 @@ import com.milesight.beaveriot.base.enums.ErrorCode;
 import com.milesight.beaveriot.base.exception.ServiceException;
 import com.milesight.beaveriot.base.utils.TransactionUtils;
 import com.milesight.beaveriot.permission.context.DataAspectContext;
-import com.milesight.beaveriot.permission.dto.PermissionDTO;
 import com.milesight.beaveriot.permission.enums.DataPermissionType;
 import com.milesight.beaveriot.permission.service.PermissionService;
+import com.milesight.beaveriot.permission.snapshot.PermissionSnapshot;
+import com.milesight.beaveriot.permission.snapshot.PermissionSnapshotRelation;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
@@ -32,6 +33,9 @@ public class DataPermissionAspect extends JpaRepositoryAspect {
     @Autowired
     PermissionService permissionService;
 
+    @Autowired
+    PermissionSnapshotRelation permissionSnapshotRelation;
+
     @Pointcut("execution(* com.milesight.beaveriot..*Repository.*(..))")
     public void pointCut() {
     }
@@ -62,19 +66,20 @@ public class DataPermissionAspect extends JpaRepositoryAspect {
             throw ServiceException.with(ErrorCode.PARAMETER_SYNTAX_ERROR).detailMessage("data permission column name is not exist").build();
         }
 
-        PermissionDTO permissionDTO = permissionService.getDataPermission(type);
+        PermissionSnapshot snapshot = permissionService.getDataPermissionSnapshot(type);
 
-        if (permissionDTO.isHaveAllPermissions()) {
+        if (snapshot.isHaveAllPermissions()) {
             return proceed(joinPoint);
         }
 
-        List<String> dataIds = permissionDTO.getIds();
+        List<String> dataIds = snapshot.getIds();
         if (dataIds.isEmpty()) {
             throw ServiceException.with(ErrorCode.NO_DATA_PERMISSION).detailMessage("user does not have data permission").build();
         }
 
         DataAspectContext.setDataPermissionContext(tableName, DataAspectContext.DataPermissionContext.builder()
                 .dataIds(dataIds)
+                .relationId(permissionSnapshotRelation.resolve(snapshot, dataPermission.dataType()))
                 .dataType(dataPermission.dataType())
                 .dataColumnName(columnName)
                 .build());
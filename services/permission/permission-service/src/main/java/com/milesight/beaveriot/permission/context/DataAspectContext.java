@@ -71,6 +71,10 @@ public class DataAspectContext {
         private List<String> dataIds;
         private ColumnDataType dataType;
         private String dataColumnName;
+        /**
+         * Snapshot table entry holding the data ids, null if the ids are inlined
+         */
+        private Long relationId;
     }
 
 }
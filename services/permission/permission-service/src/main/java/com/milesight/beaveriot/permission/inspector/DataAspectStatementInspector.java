@@ -4,6 +4,7 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.milesight.beaveriot.permission.context.DataAspectContext;
 import com.milesight.beaveriot.permission.enums.ColumnDataType;
+import com.milesight.beaveriot.permission.snapshot.PermissionSnapshotRelation;
 import lombok.*;
 import lombok.extern.slf4j.*;
 import net.sf.jsqlparser.expression.Expression;
@@ -107,11 +108,17 @@ public class DataAspectStatementInspector implements StatementInspector {
         DataAspectContext.DataPermissionContext dataPermissionContext = DataAspectContext.getDataPermissionContext(tableName);
         if (dataPermissionContext != null && !CollectionUtils.isEmpty(dataPermissionContext.getDataIds())) {
             String columnName = tableAlias + "." + dataPermissionContext.getDataColumnName();
-            String dataIdListString = ColumnDataType.STRING.equals(dataPermissionContext.getDataType())
-                    ? concatStringTypeColumnData(dataPermissionContext.getDataIds())
-                    : String.join(",", dataPermissionContext.getDataIds());
+            String dataIdCondition;
+            if (dataPermissionContext.getRelationId() != null) {
+                dataIdCondition = PermissionSnapshotRelation.toInCondition(dataPermissionContext.getRelationId(), dataPermissionContext.getDataType());
+            } else {
+                String dataIdListString = ColumnDataType.STRING.equals(dataPermissionContext.getDataType())
+                        ? concatStringTypeColumnData(dataPermissionContext.getDataIds())
+                        : String.join(",", dataPermissionContext.getDataIds());
+                dataIdCondition = "IN (" + dataIdListString + ")";
+            }
             sqlTemplate = sqlTemplate.replace(DATA_ID_COLUMN_PLACEHOLDER, columnName)
-                    .replace("IN ()", "IN (" + dataIdListString + ")");
+                    .replace("IN ()", dataIdCondition);
         } else {
             sqlTemplate = sqlTemplate.replace(DATA_ID_COLUMN_PLACEHOLDER, "1")
                     .replace("IN ()", "= 1");
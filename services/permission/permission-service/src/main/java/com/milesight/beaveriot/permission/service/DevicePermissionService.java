@@ -2,6 +2,7 @@ package com.milesight.beaveriot.permission.service;
 
 import com.milesight.beaveriot.device.facade.IDeviceFacade;
 import com.milesight.beaveriot.permission.dto.PermissionDTO;
+import com.milesight.beaveriot.permission.snapshot.PermissionSnapshot;
 import com.milesight.beaveriot.user.dto.UserResourceDTO;
 import com.milesight.beaveriot.user.enums.ResourceType;
 import com.milesight.beaveriot.user.facade.IUserFacade;
@@ -10,8 +11,10 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @author loong
@@ -26,30 +29,37 @@ public class DevicePermissionService {
     private IDeviceFacade deviceFacade;
 
     public PermissionDTO getDevicePermission(Long userId) {
+        PermissionSnapshot snapshot = loadDevicePermission(userId);
         PermissionDTO permissionDTO = new PermissionDTO();
+        permissionDTO.setHaveAllPermissions(snapshot.isHaveAllPermissions());
+        permissionDTO.setIds(new ArrayList<>(snapshot.getIds()));
+        return permissionDTO;
+    }
+
+    public PermissionSnapshot loadDevicePermission(Long userId) {
         UserResourceDTO userResourceDTO = userFacade.getResource(userId, Arrays.asList(ResourceType.DEVICE, ResourceType.INTEGRATION));
-        permissionDTO.setHaveAllPermissions(userResourceDTO.isHasAllResource());
-        permissionDTO.setIds(new ArrayList<>());
-
-        if (!userResourceDTO.isHasAllResource()) {
-            List<String> deviceIds = new ArrayList<>();
-            Map<ResourceType, List<String>> resource = userResourceDTO.getResource();
-            if (resource != null && !resource.isEmpty()) {
-                resource.forEach((resourceType, resourceIds) -> {
-                    if (resourceType == ResourceType.DEVICE) {
-                        deviceIds.addAll(resourceIds);
-                    } else if (resourceType == ResourceType.INTEGRATION) {
-                        List<String> integrationDeviceIds = deviceFacade.getDeviceNameByIntegrations(resourceIds).stream()
-                                .map(t -> String.valueOf(t.getId()))
-                                .toList();
-                        deviceIds.addAll(integrationDeviceIds);
-                    }
-                });
-            }
-
-            permissionDTO.setIds(deviceIds);
+        if (userResourceDTO.isHasAllResource()) {
+            return PermissionSnapshot.all();
         }
-        return permissionDTO;
+
+        List<String> deviceIds = new ArrayList<>();
+        Set<String> integrationIds = new HashSet<>();
+        Map<ResourceType, List<String>> resource = userResourceDTO.getResource();
+        if (resource != null && !resource.isEmpty()) {
+            resource.forEach((resourceType, resourceIds) -> {
+                if (resourceType == ResourceType.DEVICE) {
+                    deviceIds.addAll(resourceIds);
+                } else if (resourceType == ResourceType.INTEGRATION) {
+                    integrationIds.addAll(resourceIds);
+                    List<String> integrationDeviceIds = deviceFacade.getDeviceNameByIntegrations(resourceIds).stream()
+                            .map(t -> String.valueOf(t.getId()))
+                            .toList();
+                    deviceIds.addAll(integrationDeviceIds);
+                }
+            });
+        }
+
+        return PermissionSnapshot.of(deviceIds, integrationIds);
     }
 
 }
@@ -1,11 +1,15 @@
 package com.milesight.beaveriot.permission.service;
 
 import com.milesight.beaveriot.context.constants.IntegrationConstants;
+import com.milesight.beaveriot.context.security.TenantContext;
 import com.milesight.beaveriot.device.facade.IDeviceFacade;
 import com.milesight.beaveriot.entity.facade.IEntityFacade;
 import com.milesight.beaveriot.permission.dto.PermissionDTO;
+import com.milesight.beaveriot.permission.enums.DataPermissionType;
 import com.milesight.beaveriot.permission.enums.OperationPermissionCode;
 import com.milesight.beaveriot.permission.facade.IPermissionFacade;
+import com.milesight.beaveriot.permission.snapshot.PermissionSnapshot;
+import com.milesight.beaveriot.permission.snapshot.PermissionSnapshotCache;
 import com.milesight.beaveriot.user.dto.UserResourceDTO;
 import com.milesight.beaveriot.user.enums.ResourceType;
 import com.milesight.beaveriot.user.facade.IUserFacade;
@@ -14,6 +18,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -38,45 +43,74 @@ public class EntityPermissionService {
     @Autowired
     private IPermissionFacade permissionFacade;
 
+    @Autowired
+    private PermissionSnapshotCache permissionSnapshotCache;
+
     public PermissionDTO getEntityPermission(Long userId) {
+        PermissionSnapshot snapshot = getEntityPermissionSnapshot(userId);
         PermissionDTO permissionDTO = new PermissionDTO();
+        permissionDTO.setHaveAllPermissions(snapshot.isHaveAllPermissions());
+        permissionDTO.setIds(new ArrayList<>(snapshot.getIds()));
+        return permissionDTO;
+    }
+
+    /**
+     * Get the ids of the attach targets (devices and integrations) whose entities the user is permitted on
+     */
+    public PermissionSnapshot getEntityPermissionSnapshot(Long userId) {
+        return permissionSnapshotCache.get(TenantContext.tryGetTenantId().orElse(null), userId, DataPermissionType.ENTITY,
+                () -> loadEntityPermission(userId));
+    }
+
+    public boolean hasEntityPermission(Long userId, String attachTargetId) {
+        return getEntityPermissionSnapshot(userId).contains(attachTargetId);
+    }
+
+    /**
+     * @return the given attach target ids that the user is permitted on
+     */
+    public List<String> filterEntityPermission(Long userId, Collection<String> attachTargetIds) {
+        return getEntityPermissionSnapshot(userId).filter(attachTargetIds);
+    }
+
+    public PermissionSnapshot loadEntityPermission(Long userId) {
         UserResourceDTO userResourceDTO = userFacade.getResource(userId, Arrays.asList(ResourceType.ENTITY, ResourceType.DEVICE, ResourceType.INTEGRATION));
-        permissionDTO.setHaveAllPermissions(userResourceDTO.isHasAllResource());
-        permissionDTO.setIds(new ArrayList<>());
-
-        if (!userResourceDTO.isHasAllResource()) {
-            Map<ResourceType, List<String>> resource = userResourceDTO.getResource();
-            Set<Long> entityIds = new HashSet<>();
-            List<String> attachTargetIds = new ArrayList<>();
-            boolean hasEntityCustomViewPermission = permissionFacade.hasMenuPermission(OperationPermissionCode.ENTITY_CUSTOM_VIEW);
-            if (hasEntityCustomViewPermission) {
-                attachTargetIds.add(IntegrationConstants.SYSTEM_INTEGRATION_ID);
-            }
-            if (resource != null && !resource.isEmpty()) {
-                resource.forEach((resourceType, resourceIds) -> {
-                    switch (resourceType) {
-                        case ENTITY -> resourceIds.stream().map(Long::valueOf).forEach(entityIds::add);
-                        case DEVICE -> attachTargetIds.addAll(resourceIds);
-                        case INTEGRATION -> {
-                            attachTargetIds.addAll(resourceIds);
-                            List<String> deviceIds = deviceFacade.getDeviceNameByIntegrations(resourceIds).stream()
-                                    .map(t -> String.valueOf(t.getId()))
-                                    .toList();
-                            attachTargetIds.addAll(deviceIds);
-                        }
-                        default -> {
-                            // skip
-                        }
-                    }
-                });
-            }
+        if (userResourceDTO.isHasAllResource()) {
+            return PermissionSnapshot.all();
+        }
 
-            if (!entityIds.isEmpty()) {
-                attachTargetIds.addAll(entityFacade.mapEntityIdToAttachTargetId(entityIds).values());
-            }
+        Map<ResourceType, List<String>> resource = userResourceDTO.getResource();
+        Set<Long> entityIds = new HashSet<>();
+        Set<String> integrationIds = new HashSet<>();
+        List<String> attachTargetIds = new ArrayList<>();
+        boolean hasEntityCustomViewPermission = permissionFacade.hasMenuPermission(OperationPermissionCode.ENTITY_CUSTOM_VIEW);
+        if (hasEntityCustomViewPermission) {
+            attachTargetIds.add(IntegrationConstants.SYSTEM_INTEGRATION_ID);
+        }
+        if (resource != null && !resource.isEmpty()) {
+            resource.forEach((resourceType, resourceIds) -> {
+                switch (resourceType) {
+                    case ENTITY -> resourceIds.stream().map(Long::valueOf).forEach(entityIds::add);
+                    case DEVICE -> attachTargetIds.addAll(resourceIds);
+                    case INTEGRATION -> {
+                        attachTargetIds.addAll(resourceIds);
+                        integrationIds.addAll(resourceIds);
+                        List<String> deviceIds = deviceFacade.getDeviceNameByIntegrations(resourceIds).stream()
+                                .map(t -> String.valueOf(t.getId()))
+                                .toList();
+                        attachTargetIds.addAll(deviceIds);
+                    }
+                    default -> {
+                        // skip
+                    }
+                }
+            });
+        }
 
-            permissionDTO.setIds(attachTargetIds);
+        if (!entityIds.isEmpty()) {
+            attachTargetIds.addAll(entityFacade.mapEntityIdToAttachTargetId(entityIds).values());
         }
-        return permissionDTO;
+
+        return PermissionSnapshot.of(attachTargetIds, integrationIds);
     }
 }
@@ -3,11 +3,14 @@ package com.milesight.beaveriot.permission.service;
 import com.milesight.beaveriot.base.enums.ErrorCode;
 import com.milesight.beaveriot.base.exception.ServiceException;
 import com.milesight.beaveriot.context.security.SecurityUserContext;
+import com.milesight.beaveriot.context.security.TenantContext;
 import com.milesight.beaveriot.permission.dto.PermissionDTO;
 import com.milesight.beaveriot.permission.enums.DataPermissionType;
 import com.milesight.beaveriot.permission.enums.OperationPermissionCode;
 import com.milesight.beaveriot.permission.facade.IPermissionFacade;
 import com.milesight.beaveriot.permission.helper.TemporaryPermission;
+import com.milesight.beaveriot.permission.snapshot.PermissionSnapshot;
+import com.milesight.beaveriot.permission.snapshot.PermissionSnapshotCache;
 import com.milesight.beaveriot.user.dto.MenuDTO;
 import com.milesight.beaveriot.user.facade.IUserFacade;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,6 +19,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -49,6 +53,9 @@ public class PermissionService implements IPermissionFacade {
     @Autowired
     WorkflowPermissionService workflowPermissionService;
 
+    @Autowired
+    PermissionSnapshotCache permissionSnapshotCache;
+
     private Long getContextUserId() {
         Long userId = SecurityUserContext.getUserId();
         if (userId == null) {
@@ -97,39 +104,53 @@ public class PermissionService implements IPermissionFacade {
     }
 
     public PermissionDTO getDataPermission(DataPermissionType type) {
+        PermissionSnapshot snapshot = getDataPermissionSnapshot(type);
+        PermissionDTO permissionDTO = new PermissionDTO();
+        permissionDTO.setHaveAllPermissions(snapshot.isHaveAllPermissions());
+        permissionDTO.setIds(new ArrayList<>(snapshot.getIds()));
+        return permissionDTO;
+    }
+
+    /**
+     * Get the data permission of the current user, including the temporary permissions of the current thread
+     */
+    public PermissionSnapshot getDataPermissionSnapshot(DataPermissionType type) {
         Long userId = getContextUserId();
-        PermissionDTO permissionDTO = switch (type) {
-            case ENTITY -> entityPermissionService.getEntityPermission(userId);
-            case DEVICE -> devicePermissionService.getDevicePermission(userId);
-            case DASHBOARD -> dashboardPermissionService.getDashboardPermission(userId);
-            case WORKFLOW -> workflowPermissionService.getWorkflowPermission(userId);
+        String tenantId = TenantContext.tryGetTenantId().orElse(null);
+        PermissionSnapshot snapshot = permissionSnapshotCache.get(tenantId, userId, type, () -> loadDataPermission(userId, type));
+        return snapshot.with(TemporaryPermission.getResourceIds(type));
+    }
+
+    private PermissionSnapshot loadDataPermission(Long userId, DataPermissionType type) {
+        return switch (type) {
+            case ENTITY -> entityPermissionService.loadEntityPermission(userId);
+            case DEVICE -> devicePermissionService.loadDevicePermission(userId);
+            case DASHBOARD -> toSnapshot(dashboardPermissionService.getDashboardPermission(userId));
+            case WORKFLOW -> toSnapshot(workflowPermissionService.getWorkflowPermission(userId));
         };
+    }
 
+    private PermissionSnapshot toSnapshot(PermissionDTO permissionDTO) {
         if (permissionDTO == null) {
             throw ServiceException.with(ErrorCode.PARAMETER_SYNTAX_ERROR).detailMessage("unknown data permission type").build();
         }
 
-        var tempIds = TemporaryPermission.getResourceIds(type);
-        if (!tempIds.isEmpty()) {
-            var newIds = new ArrayList<>(tempIds);
-            var ids = permissionDTO.getIds();
-            if (ids != null && !ids.isEmpty()) {
-                newIds.addAll(ids);
-            }
-            permissionDTO.setIds(newIds);
-        }
+        return permissionDTO.isHaveAllPermissions() ? PermissionSnapshot.all() : PermissionSnapshot.of(permissionDTO.getIds());
+    }
 
-        return permissionDTO;
+    @Override
+    public boolean hasDataPermission(DataPermissionType type, String id) {
+        return getDataPermissionSnapshot(type).contains(id);
     }
 
     @Override
-    public void checkDataPermission(DataPermissionType type, String id) {
-        PermissionDTO permissionDTO = getDataPermission(type);
-        if (permissionDTO.isHaveAllPermissions()) {
-            return;
-        }
+    public List<String> filterDataPermission(DataPermissionType type, Collection<String> ids) {
+        return getDataPermissionSnapshot(type).filter(ids);
+    }
 
-        if (!permissionDTO.getIds().contains(id)) {
+    @Override
+    public void checkDataPermission(DataPermissionType type, String id) {
+        if (!hasDataPermission(type, id)) {
             throw ServiceException.with(ErrorCode.FORBIDDEN_PERMISSION).detailMessage("user does not have permission").build();
         }
     }
@@ -0,0 +1,31 @@
+package com.milesight.beaveriot.permission.snapshot;
+
+import com.milesight.beaveriot.pubsub.api.message.RemoteBroadcastMessage;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Broadcast after a device is added to an integration, the users permitted on the integration are permitted on the
+ * device as well.
+ *
+ * @author leon
+ */
+@Getter
+@Setter
+@ToString(callSuper = true)
+@NoArgsConstructor
+public class DeviceMembershipChangedEvent extends RemoteBroadcastMessage {
+
+    private String integrationId;
+
+    private String deviceId;
+
+    public DeviceMembershipChangedEvent(String tenantId, String integrationId, String deviceId) {
+        super(tenantId);
+        this.integrationId = integrationId;
+        this.deviceId = deviceId;
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.milesight.beaveriot.permission.snapshot;
+
+import com.milesight.beaveriot.context.integration.model.Device;
+import com.milesight.beaveriot.context.integration.model.event.DeviceEvent;
+import com.milesight.beaveriot.context.security.TenantContext;
+import com.milesight.beaveriot.eventbus.annotations.EventSubscribe;
+import com.milesight.beaveriot.pubsub.MessagePubSub;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Forward the devices created on this node to the permission snapshots of all nodes.
+ *
+ * @author leon
+ */
+@Component
+public class DeviceMembershipListener {
+
+    @Autowired
+    private MessagePubSub messagePubSub;
+
+    @EventSubscribe(payloadKeyExpression = "*", eventType = DeviceEvent.EventType.CREATED)
+    public void onCreateDevice(DeviceEvent event) {
+        Device device = event.getPayload();
+        if (device.getId() == null || device.getIntegrationId() == null) {
+            return;
+        }
+        messagePubSub.publishAfterCommit(new DeviceMembershipChangedEvent(TenantContext.tryGetTenantId().orElse(null),
+                device.getIntegrationId(), String.valueOf(device.getId())));
+    }
+
+}
@@ -0,0 +1,144 @@
+package com.milesight.beaveriot.permission.snapshot;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.milesight.beaveriot.permission.enums.ColumnDataType;
+import lombok.Getter;
+import lombok.SneakyThrows;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable data permission of a user at a point in time.
+ *
+ * @author leon
+ */
+public class PermissionSnapshot {
+
+    private static final int MAX_MERGED_SNAPSHOTS = 64;
+
+    private static final PermissionSnapshot ALL = new PermissionSnapshot(true, List.of(), Set.of());
+
+    @Getter
+    private final boolean haveAllPermissions;
+
+    @Getter
+    private final List<String> ids;
+
+    private final Set<String> idSet;
+
+    /**
+     * Integrations whose devices are all permitted, the devices added to them later are permitted as well
+     */
+    private final Set<String> integrationIds;
+
+    /**
+     * Ids of the snapshot table entries holding the ids, by column data type
+     */
+    private final Map<ColumnDataType, Long> relationIds = Collections.synchronizedMap(new EnumMap<>(ColumnDataType.class));
+
+    /**
+     * Column data types whose snapshot table entry is being stored
+     */
+    private final Set<ColumnDataType> pendingRelations = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Snapshots merged with temporary permissions, kept as long as this snapshot so that they are not merged and
+     * stored again on every call
+     */
+    private final Cache<Set<String>, PermissionSnapshot> mergedSnapshots = CacheBuilder.newBuilder()
+            .maximumSize(MAX_MERGED_SNAPSHOTS)
+            .build();
+
+    private PermissionSnapshot(boolean haveAllPermissions, List<String> ids, Set<String> integrationIds) {
+        this.haveAllPermissions = haveAllPermissions;
+        this.idSet = Collections.unmodifiableSet(new LinkedHashSet<>(ids));
+        this.ids = List.copyOf(idSet);
+        this.integrationIds = Set.copyOf(integrationIds);
+    }
+
+    public static PermissionSnapshot all() {
+        return ALL;
+    }
+
+    public static PermissionSnapshot of(List<String> ids) {
+        return of(ids, Set.of());
+    }
+
+    public static PermissionSnapshot of(List<String> ids, Set<String> integrationIds) {
+        return new PermissionSnapshot(false, ids == null ? List.of() : ids, integrationIds == null ? Set.of() : integrationIds);
+    }
+
+    public boolean contains(String id) {
+        return haveAllPermissions || idSet.contains(id);
+    }
+
+    /**
+     * @return the given ids that are permitted, in their order
+     */
+    public List<String> filter(Collection<String> candidateIds) {
+        if (haveAllPermissions) {
+            return new ArrayList<>(candidateIds);
+        }
+        return candidateIds.stream().filter(idSet::contains).toList();
+    }
+
+    public boolean coversIntegration(String integrationId) {
+        return integrationIds.contains(integrationId);
+    }
+
+    Set<String> getIntegrationIds() {
+        return integrationIds;
+    }
+
+    /**
+     * @return a snapshot that also permits the given ids, the same instance is returned for the same ids
+     */
+    @SneakyThrows
+    public PermissionSnapshot with(List<String> extraIds) {
+        if (haveAllPermissions || extraIds.isEmpty() || idSet.containsAll(extraIds)) {
+            return this;
+        }
+        return mergedSnapshots.get(Set.copyOf(extraIds), () -> plus(extraIds));
+    }
+
+    /**
+     * @return a new snapshot that also permits the given ids, it is not kept by this snapshot
+     */
+    PermissionSnapshot plus(List<String> extraIds) {
+        if (haveAllPermissions || idSet.containsAll(extraIds)) {
+            return this;
+        }
+        List<String> merged = new ArrayList<>(ids);
+        merged.addAll(extraIds);
+        return of(merged, integrationIds);
+    }
+
+    Long getRelationId(ColumnDataType dataType) {
+        return relationIds.get(dataType);
+    }
+
+    void setRelationId(ColumnDataType dataType, Long relationId) {
+        relationIds.put(dataType, relationId);
+        pendingRelations.remove(dataType);
+    }
+
+    /**
+     * @return false if the snapshot table entry is being stored already
+     */
+    boolean markRelationPending(ColumnDataType dataType) {
+        return pendingRelations.add(dataType);
+    }
+
+    void clearRelationPending(ColumnDataType dataType) {
+        pendingRelations.remove(dataType);
+    }
+}
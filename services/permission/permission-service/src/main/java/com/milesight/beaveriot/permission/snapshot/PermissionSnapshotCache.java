@@ -0,0 +1,126 @@
+package com.milesight.beaveriot.permission.snapshot;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.milesight.beaveriot.permission.enums.DataPermissionType;
+import com.milesight.beaveriot.pubsub.api.annotation.MessageListener;
+import com.milesight.beaveriot.user.event.UserPermissionChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Local cache of the data permission snapshots by tenant, user and permission type.
+ * <p>
+ * A change of the roles of a tenant is broadcast to all nodes and moves the tenant to a new generation, the snapshots
+ * of the previous generations are no longer read and expire. A snapshot loaded concurrently with the change is cached
+ * under the generation it started with, so it cannot outlive the change. A device added to an integration is added in
+ * place to the snapshots permitting the integration, found by an index of the cached snapshots by tenant and
+ * integration. The snapshot is swapped inside its cache entry, so it still expires at the time it was loaded at.
+ *
+ * @author leon
+ */
+@Slf4j
+@Component
+public class PermissionSnapshotCache {
+
+    private final Cache<SnapshotKey, AtomicReference<PermissionSnapshot>> snapshots;
+
+    private final Map<String, AtomicLong> tenantGenerations = new ConcurrentHashMap<>();
+
+    /**
+     * Keys of the cached snapshots covering an integration
+     */
+    private final Map<IntegrationKey, Set<SnapshotKey>> integrationIndex = new ConcurrentHashMap<>();
+
+    public PermissionSnapshotCache(PermissionSnapshotProperties properties) {
+        this.snapshots = CacheBuilder.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive().toMillis(), TimeUnit.MILLISECONDS)
+                .removalListener(this::unindex)
+                .build();
+    }
+
+    public PermissionSnapshot get(String tenantId, Long userId, DataPermissionType type, Supplier<PermissionSnapshot> loader) {
+        String tenantKey = tenantId == null ? "" : tenantId;
+        SnapshotKey key = new SnapshotKey(tenantKey, generationOf(tenantKey).get(), userId, type);
+        AtomicReference<PermissionSnapshot> cached = snapshots.getIfPresent(key);
+        if (cached != null) {
+            return cached.get();
+        }
+
+        PermissionSnapshot snapshot = loader.get();
+        // indexed before it is cached, so that a device added meanwhile is not missed
+        snapshot.getIntegrationIds().forEach(integrationId -> integrationIndex
+                .computeIfAbsent(new IntegrationKey(tenantKey, integrationId), k -> ConcurrentHashMap.newKeySet())
+                .add(key));
+        snapshots.put(key, new AtomicReference<>(snapshot));
+        return snapshot;
+    }
+
+    public void invalidateTenant(String tenantId) {
+        generationOf(tenantId == null ? "" : tenantId).incrementAndGet();
+    }
+
+    @MessageListener
+    public void onUserPermissionChanged(UserPermissionChangedEvent event) {
+        log.debug("Invalidate data permission snapshots of tenant {}", event.getTenantId());
+        invalidateTenant(event.getTenantId());
+    }
+
+    /**
+     * Permit a new device to the users permitted on its integration
+     */
+    public void addDevice(String tenantId, String integrationId, String deviceId) {
+        Set<SnapshotKey> keys = integrationIndex.get(new IntegrationKey(tenantId == null ? "" : tenantId, integrationId));
+        if (keys == null) {
+            return;
+        }
+        List<String> deviceIds = List.of(deviceId);
+        keys.forEach(key -> {
+            AtomicReference<PermissionSnapshot> cached = snapshots.getIfPresent(key);
+            if (cached != null) {
+                cached.updateAndGet(snapshot -> snapshot.plus(deviceIds));
+            }
+        });
+    }
+
+    @MessageListener
+    public void onDeviceMembershipChanged(DeviceMembershipChangedEvent event) {
+        addDevice(event.getTenantId(), event.getIntegrationId(), event.getDeviceId());
+    }
+
+    private void unindex(RemovalNotification<SnapshotKey, AtomicReference<PermissionSnapshot>> notification) {
+        SnapshotKey key = notification.getKey();
+        if (notification.getCause() == RemovalCause.REPLACED || key == null || notification.getValue() == null
+                || snapshots.getIfPresent(key) != null) {
+            // the key is still cached
+            return;
+        }
+        notification.getValue().get().getIntegrationIds().forEach(integrationId -> integrationIndex
+                .computeIfPresent(new IntegrationKey(key.tenantId(), integrationId), (k, keys) -> {
+                    keys.remove(key);
+                    return keys.isEmpty() ? null : keys;
+                }));
+    }
+
+    private AtomicLong generationOf(String tenantKey) {
+        return tenantGenerations.computeIfAbsent(tenantKey, k -> new AtomicLong());
+    }
+
+    private record SnapshotKey(String tenantId, long generation, Long userId, DataPermissionType type) {
+    }
+
+    private record IntegrationKey(String tenantId, String integrationId) {
+    }
+}
@@ -0,0 +1,36 @@
+package com.milesight.beaveriot.permission.snapshot;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of the cached data permission snapshots.
+ *
+ * @author leon
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "permission.snapshot")
+public class PermissionSnapshotProperties {
+
+    /**
+     * Time a snapshot is cached, it bounds how long a change that is not notified, e.g. a device added to a permitted
+     * integration, takes to be applied
+     */
+    private Duration timeToLive = Duration.ofMinutes(1);
+
+    private long maximumSize = 10000;
+
+    /**
+     * Snapshots with more permitted ids are joined from the snapshot table instead of being inlined in the SQL
+     */
+    private int inlineLimit = 100;
+
+    /**
+     * Time after which a snapshot table entry not used by any node is deleted, it must be far above the time to live
+     */
+    private Duration retention = Duration.ofDays(1);
+}
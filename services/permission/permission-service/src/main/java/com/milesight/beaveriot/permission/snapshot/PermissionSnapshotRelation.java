@@ -0,0 +1,186 @@
+package com.milesight.beaveriot.permission.snapshot;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.milesight.beaveriot.permission.enums.ColumnDataType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot table joined by the data permission filter instead of inlining large id lists in the SQL.
+ * <p>
+ * The ids of a snapshot are stored once under an id derived from its content, so the snapshots of all users with the
+ * same permissions share one entry, and the filter of a user is the same short SQL as long as their permissions do
+ * not change. An entry is touched whenever a node caches a snapshot using it, entries unused for the retention are
+ * deleted.
+ * <p>
+ * Entries are stored in the background, in a transaction of their own on a separate connection, so that the caller
+ * neither waits for it nor holds a second pooled connection. The ids of a snapshot are inlined until its entry is
+ * stored.
+ *
+ * @author leon
+ */
+@Slf4j
+@Component
+public class PermissionSnapshotRelation {
+
+    public static final String ITEM_TABLE_NAME = "t_permission_snapshot_item";
+
+    private static final String TOUCH_SQL = "UPDATE t_permission_snapshot SET last_used_at = ? WHERE id = ?";
+
+    private static final String INSERT_SQL = """
+            INSERT INTO t_permission_snapshot (id, data_type, size, last_used_at, created_at)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+
+    private static final String INSERT_ITEM_SQL = "INSERT INTO t_permission_snapshot_item (snapshot_id, data_number, data_string) VALUES (?, ?, ?)";
+
+    private static final String DELETE_UNUSED_SQL = "DELETE FROM t_permission_snapshot WHERE last_used_at < ?";
+
+    private static final String DELETE_ORPHAN_ITEMS_SQL = """
+            DELETE FROM t_permission_snapshot_item i
+            WHERE NOT EXISTS (SELECT 1 FROM t_permission_snapshot s WHERE s.id = i.snapshot_id)
+            """;
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    private static final int MAX_PENDING_STORES = 100;
+
+    private static final ExecutorService storeExecutor = new ThreadPoolExecutor(
+            1,
+            1,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(MAX_PENDING_STORES),
+            r -> {
+                Thread thread = new Thread(r);
+                thread.setName("permission-snapshot-store");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final PermissionSnapshotProperties properties;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public PermissionSnapshotRelation(PermissionSnapshotProperties properties, JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Condition on the given column restricting it to the ids of the snapshot
+     *
+     * @return the SQL condition, e.g. "IN (SELECT ...)"
+     */
+    public static String toInCondition(long relationId, ColumnDataType dataType) {
+        String itemColumn = ColumnDataType.STRING.equals(dataType) ? "data_string" : "data_number";
+        return "IN (SELECT " + itemColumn + " FROM " + ITEM_TABLE_NAME + " WHERE snapshot_id = " + relationId + ")";
+    }
+
+    /**
+     * Get the snapshot table entry of a snapshot, it is stored in the background on first use
+     *
+     * @return the id of the entry, or null if the ids should be inlined, e.g. while the entry is being stored
+     */
+    public Long resolve(PermissionSnapshot snapshot, ColumnDataType dataType) {
+        if (snapshot.isHaveAllPermissions() || snapshot.getIds().size() <= properties.getInlineLimit()) {
+            return null;
+        }
+        Long relationId = snapshot.getRelationId(dataType);
+        if (relationId != null) {
+            return relationId;
+        }
+        if (snapshot.markRelationPending(dataType)) {
+            try {
+                storeExecutor.execute(() -> storeQuietly(snapshot, dataType));
+            } catch (RejectedExecutionException e) {
+                log.debug("Too many permission snapshots to store, inline the ids and retry later");
+                snapshot.clearRelationPending(dataType);
+            }
+        }
+        return null;
+    }
+
+    private void storeQuietly(PermissionSnapshot snapshot, ColumnDataType dataType) {
+        try {
+            snapshot.setRelationId(dataType, store(snapshot.getIds(), dataType));
+        } catch (Exception e) {
+            // left pending, the ids of the snapshot are inlined until it expires
+            log.warn("Store permission snapshot of {} ids failed, inline them instead", snapshot.getIds().size(), e);
+        }
+    }
+
+    private long store(List<String> ids, ColumnDataType dataType) {
+        List<String> sortedIds = new ArrayList<>(ids);
+        sortedIds.sort(null);
+        Hasher hasher = Hashing.murmur3_128().newHasher().putString(dataType.name(), StandardCharsets.UTF_8);
+        sortedIds.forEach(id -> hasher.putByte((byte) 0).putString(id, StandardCharsets.UTF_8));
+        long relationId = hasher.hash().asLong();
+
+        long now = System.currentTimeMillis();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (jdbcTemplate.update(TOUCH_SQL, now, relationId) > 0) {
+                    return;
+                }
+                jdbcTemplate.update(INSERT_SQL, relationId, dataType.name(), sortedIds.size(), now, now);
+                jdbcTemplate.batchUpdate(INSERT_ITEM_SQL, sortedIds, INSERT_BATCH_SIZE, (ps, id) -> {
+                    ps.setLong(1, relationId);
+                    Long number = ColumnDataType.STRING.equals(dataType) ? null : parseLong(id);
+                    if (number == null) {
+                        ps.setNull(2, Types.BIGINT);
+                    } else {
+                        ps.setLong(2, number);
+                    }
+                    if (ColumnDataType.STRING.equals(dataType)) {
+                        ps.setString(3, id);
+                    } else {
+                        ps.setNull(3, Types.VARCHAR);
+                    }
+                });
+            });
+        } catch (DuplicateKeyException e) {
+            // stored concurrently by another node
+            log.debug("Permission snapshot {} stored concurrently", relationId);
+        }
+        return relationId;
+    }
+
+    private static Long parseLong(String id) {
+        try {
+            return Long.valueOf(id);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${permission.snapshot.cleanup-interval:PT1H}")
+    public void deleteUnusedSnapshots() {
+        long usedBefore = System.currentTimeMillis() - properties.getRetention().toMillis();
+        int deleted = jdbcTemplate.update(DELETE_UNUSED_SQL, usedBefore);
+        if (deleted > 0) {
+            // entries stored again meanwhile own their items again, so only the items of deleted entries are removed
+            int deletedItems = jdbcTemplate.update(DELETE_ORPHAN_ITEMS_SQL);
+            log.info("Deleted {} unused permission snapshots with {} ids", deleted, deletedItems);
+        }
+    }
+}
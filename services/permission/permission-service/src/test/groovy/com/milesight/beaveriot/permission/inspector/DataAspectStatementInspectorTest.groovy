@@ -0,0 +1,73 @@
+package com.milesight.beaveriot.permission.inspector
+
+import com.milesight.beaveriot.permission.context.DataAspectContext
+import com.milesight.beaveriot.permission.enums.ColumnDataType
+import spock.lang.Specification
+
+/**
+ * @author leon
+ */
+class DataAspectStatementInspectorTest extends Specification {
+
+    static final String SQL = "select d1_0.id,d1_0.name from t_device d1_0 where d1_0.name=?"
+
+    DataAspectStatementInspector inspector = new DataAspectStatementInspector()
+
+    def cleanup() {
+        DataAspectContext.clearDataPermissionContext()
+        DataAspectContext.clearTenantContext()
+    }
+
+    static void permit(ColumnDataType dataType, List<String> ids, Long relationId) {
+        DataAspectContext.setDataPermissionContext("t_device", DataAspectContext.DataPermissionContext.builder()
+                .dataIds(ids)
+                .dataType(dataType)
+                .dataColumnName("id")
+                .relationId(relationId)
+                .build())
+    }
+
+    def "should join the snapshot table entry of the data permission"() {
+        given:
+        permit(ColumnDataType.NUMBER, ["1", "2", "3"], 42L)
+
+        when:
+        def sql = inspector.inspect(SQL)
+
+        then:
+        sql.contains("d1_0.id IN (SELECT data_number FROM t_permission_snapshot_item WHERE snapshot_id = 42)")
+        !sql.contains("IN (1,2,3)")
+    }
+
+    def "should inline the ids of the data permission without snapshot table entry"() {
+        given:
+        permit(dataType, ["1", "2"], null)
+
+        expect:
+        inspector.inspect(SQL).contains("d1_0.id " + condition)
+
+        where:
+        dataType              | condition
+        ColumnDataType.NUMBER | "IN (1,2)"
+        ColumnDataType.STRING | "IN ('1','2')"
+    }
+
+    def "should reuse the parsed statement with another data permission"() {
+        given:
+        permit(ColumnDataType.NUMBER, ["1"], 7L)
+        inspector.inspect(SQL)
+        permit(ColumnDataType.NUMBER, ["1"], 8L)
+
+        expect:
+        inspector.inspect(SQL).contains("snapshot_id = 8)")
+    }
+
+    def "should not restrict the data without data permission"() {
+        when:
+        def sql = inspector.inspect(SQL)
+
+        then:
+        !sql.contains("IN (")
+        sql.contains("1 = 1")
+    }
+}
@@ -0,0 +1,112 @@
+package com.milesight.beaveriot.permission.snapshot
+
+import com.milesight.beaveriot.permission.enums.DataPermissionType
+import com.milesight.beaveriot.user.event.UserPermissionChangedEvent
+import spock.lang.Specification
+
+import java.time.Duration
+
+/**
+ * @author leon
+ */
+class PermissionSnapshotCacheTest extends Specification {
+
+    PermissionSnapshotCache cache = new PermissionSnapshotCache(new PermissionSnapshotProperties())
+
+    def "should load a snapshot once per tenant, user and type"() {
+        given:
+        def loads = 0
+        def loader = { loads++; PermissionSnapshot.of(["1"]) }
+
+        when:
+        def first = cache.get("tenant-a", 1L, DataPermissionType.DEVICE, loader)
+        def second = cache.get("tenant-a", 1L, DataPermissionType.DEVICE, loader)
+        cache.get("tenant-a", 1L, DataPermissionType.ENTITY, loader)
+        cache.get("tenant-a", 2L, DataPermissionType.DEVICE, loader)
+        cache.get("tenant-b", 1L, DataPermissionType.DEVICE, loader)
+
+        then:
+        first.is(second)
+        loads == 4
+    }
+
+    def "permission change should reload the snapshots of the tenant only"() {
+        given:
+        def loads = [:].withDefault { 0 }
+        def loaderOf = { String tenantId -> { -> loads[tenantId]++; PermissionSnapshot.of([tenantId]) } }
+        def before = cache.get("tenant-a", 1L, DataPermissionType.DEVICE, loaderOf("tenant-a"))
+        cache.get("tenant-b", 1L, DataPermissionType.DEVICE, loaderOf("tenant-b"))
+
+        when:
+        cache.onUserPermissionChanged(new UserPermissionChangedEvent("tenant-a"))
+        def after = cache.get("tenant-a", 1L, DataPermissionType.DEVICE, loaderOf("tenant-a"))
+        cache.get("tenant-b", 1L, DataPermissionType.DEVICE, loaderOf("tenant-b"))
+
+        then:
+        !after.is(before)
+        loads["tenant-a"] == 2
+        loads["tenant-b"] == 1
+    }
+
+    def "snapshots without a tenant should be invalidated together"() {
+        given:
+        def loads = 0
+        def loader = { loads++; PermissionSnapshot.all() }
+        cache.get(null, 1L, DataPermissionType.WORKFLOW, loader)
+
+        when:
+        cache.invalidateTenant(null)
+        cache.get(null, 1L, DataPermissionType.WORKFLOW, loader)
+
+        then:
+        loads == 2
+    }
+
+    def "device added to an integration should be permitted to the snapshots covering it"() {
+        given:
+        def loads = 0
+        def covering = { loads++; PermissionSnapshot.of(["integration-a", "1"], ["integration-a"] as Set) }
+        def other = { loads++; PermissionSnapshot.of(["integration-b", "2"], ["integration-b"] as Set) }
+        cache.get("tenant-a", 1L, DataPermissionType.ENTITY, covering)
+        cache.get("tenant-a", 2L, DataPermissionType.ENTITY, other)
+        cache.get("tenant-b", 1L, DataPermissionType.ENTITY, covering)
+
+        when:
+        cache.onDeviceMembershipChanged(new DeviceMembershipChangedEvent("tenant-a", "integration-a", "3"))
+
+        then:
+        cache.get("tenant-a", 1L, DataPermissionType.ENTITY, covering).contains("3")
+        !cache.get("tenant-a", 2L, DataPermissionType.ENTITY, other).contains("3")
+        !cache.get("tenant-b", 1L, DataPermissionType.ENTITY, covering).contains("3")
+        loads == 3
+    }
+
+    def "device added to an integration not covered by any snapshot should change nothing"() {
+        given:
+        def snapshot = cache.get("tenant-a", 1L, DataPermissionType.ENTITY, { PermissionSnapshot.of(["1"]) })
+
+        when:
+        cache.addDevice("tenant-a", "integration-a", "3")
+
+        then:
+        cache.get("tenant-a", 1L, DataPermissionType.ENTITY, { PermissionSnapshot.of([]) }).is(snapshot)
+    }
+
+    def "added device should not extend the time to live of the snapshot"() {
+        given:
+        def shortLivedCache = new PermissionSnapshotCache(new PermissionSnapshotProperties(timeToLive: Duration.ofMillis(300)))
+        def loads = 0
+        def loader = { loads++; PermissionSnapshot.of(["integration-a"], ["integration-a"] as Set) }
+        shortLivedCache.get("tenant-a", 1L, DataPermissionType.ENTITY, loader)
+
+        when:
+        sleep(200)
+        shortLivedCache.addDevice("tenant-a", "integration-a", "3")
+        sleep(200)
+        def reloaded = shortLivedCache.get("tenant-a", 1L, DataPermissionType.ENTITY, loader)
+
+        then:
+        loads == 2
+        !reloaded.contains("3")
+    }
+}
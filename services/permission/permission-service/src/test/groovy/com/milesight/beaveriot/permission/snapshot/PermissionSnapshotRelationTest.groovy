@@ -0,0 +1,71 @@
+package com.milesight.beaveriot.permission.snapshot
+
+import com.milesight.beaveriot.permission.enums.ColumnDataType
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.transaction.PlatformTransactionManager
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+/**
+ * @author leon
+ */
+class PermissionSnapshotRelationTest extends Specification {
+
+    JdbcTemplate jdbcTemplate = Mock()
+
+    PlatformTransactionManager transactionManager = Mock()
+
+    PermissionSnapshotRelation relation = new PermissionSnapshotRelation(
+            new PermissionSnapshotProperties(inlineLimit: 2), jdbcTemplate, transactionManager)
+
+    def "small snapshots should be inlined"() {
+        expect:
+        relation.resolve(PermissionSnapshot.of(["1", "2"]), ColumnDataType.NUMBER) == null
+        relation.resolve(PermissionSnapshot.all(), ColumnDataType.NUMBER) == null
+    }
+
+    def "large snapshots should be inlined until their entry is stored in the background"() {
+        given:
+        def snapshot = PermissionSnapshot.of(["1", "2", "3"])
+        def conditions = new PollingConditions(timeout: 5)
+        def storingThread = null
+
+        when:
+        def first = relation.resolve(snapshot, ColumnDataType.NUMBER)
+
+        then:
+        first == null
+        conditions.eventually {
+            assert relation.resolve(snapshot, ColumnDataType.NUMBER) != null
+        }
+        1 * jdbcTemplate.update(_ as String, _, _) >> { args ->
+            storingThread = Thread.currentThread()
+            return 1
+        }
+        storingThread != null
+        storingThread != Thread.currentThread()
+    }
+
+    def "the entry of a snapshot should be stored once"() {
+        given:
+        def snapshot = PermissionSnapshot.of(["1", "2", "3"])
+        def conditions = new PollingConditions(timeout: 5)
+
+        when:
+        5.times { relation.resolve(snapshot, ColumnDataType.STRING) }
+        conditions.eventually {
+            assert relation.resolve(snapshot, ColumnDataType.STRING) != null
+        }
+
+        then:
+        1 * jdbcTemplate.update(_ as String, _, _) >> 1
+    }
+
+    def "in condition should select the ids of the entry by data type"() {
+        expect:
+        PermissionSnapshotRelation.toInCondition(42L, ColumnDataType.NUMBER) ==
+                "IN (SELECT data_number FROM t_permission_snapshot_item WHERE snapshot_id = 42)"
+        PermissionSnapshotRelation.toInCondition(42L, ColumnDataType.STRING) ==
+                "IN (SELECT data_string FROM t_permission_snapshot_item WHERE snapshot_id = 42)"
+    }
+}
@@ -0,0 +1,94 @@
+package com.milesight.beaveriot.permission.snapshot
+
+import com.milesight.beaveriot.permission.enums.ColumnDataType
+import spock.lang.Specification
+
+/**
+ * @author leon
+ */
+class PermissionSnapshotTest extends Specification {
+
+    def "should contain and filter the permitted ids"() {
+        given:
+        def snapshot = PermissionSnapshot.of(["1", "2", "2", "3"])
+
+        expect:
+        snapshot.getIds() == ["1", "2", "3"]
+        snapshot.contains("2")
+        !snapshot.contains("4")
+        snapshot.filter(["4", "3", "1"]) == ["3", "1"]
+    }
+
+    def "snapshot with all permissions should contain any id"() {
+        expect:
+        PermissionSnapshot.all().contains("any")
+        PermissionSnapshot.all().filter(["1", "2"]) == ["1", "2"]
+        PermissionSnapshot.all().with(["1"]).is(PermissionSnapshot.all())
+    }
+
+    def "with should permit the extra ids as well"() {
+        given:
+        def snapshot = PermissionSnapshot.of(["1", "2"], ["integration-a"] as Set)
+
+        when:
+        def merged = snapshot.with(["3"])
+
+        then:
+        merged.contains("1")
+        merged.contains("3")
+        !snapshot.contains("3")
+        merged.coversIntegration("integration-a")
+    }
+
+    def "with should return the same snapshot if nothing is added"() {
+        given:
+        def snapshot = PermissionSnapshot.of(["1", "2"])
+
+        expect:
+        snapshot.with([]).is(snapshot)
+        snapshot.with(["2", "1"]).is(snapshot)
+    }
+
+    def "with should reuse the merged snapshot and its relation for the same ids"() {
+        given:
+        def snapshot = PermissionSnapshot.of(["1", "2"])
+        def merged = snapshot.with(["3", "4"])
+        merged.setRelationId(ColumnDataType.NUMBER, 42L)
+
+        expect:
+        snapshot.with(["4", "3"]).is(merged)
+        snapshot.with(["4", "3"]).getRelationId(ColumnDataType.NUMBER) == 42L
+        !snapshot.with(["5"]).is(merged)
+    }
+
+    def "plus should not keep the new snapshot"() {
+        given:
+        def snapshot = PermissionSnapshot.of(["1"], ["integration-a"] as Set)
+
+        when:
+        def added = snapshot.plus(["2"])
+
+        then:
+        added.getIds() == ["1", "2"]
+        added.coversIntegration("integration-a")
+        !snapshot.with(["2"]).is(added)
+        snapshot.plus(["1"]).is(snapshot)
+    }
+
+    def "relation should be marked pending once until it is stored"() {
+        given:
+        def snapshot = PermissionSnapshot.of(["1"])
+
+        expect:
+        snapshot.markRelationPending(ColumnDataType.NUMBER)
+        !snapshot.markRelationPending(ColumnDataType.NUMBER)
+        snapshot.markRelationPending(ColumnDataType.STRING)
+
+        when:
+        snapshot.setRelationId(ColumnDataType.NUMBER, 1L)
+
+        then:
+        snapshot.getRelationId(ColumnDataType.NUMBER) == 1L
+        snapshot.markRelationPending(ColumnDataType.NUMBER)
+    }
+}
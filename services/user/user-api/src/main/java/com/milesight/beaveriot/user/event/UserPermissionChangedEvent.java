@@ -0,0 +1,23 @@
+package com.milesight.beaveriot.user.event;
+
+import com.milesight.beaveriot.pubsub.api.message.RemoteBroadcastMessage;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Broadcast after the roles, role resources or role menus of a tenant changed, the permissions derived from them are
+ * outdated on all nodes.
+ *
+ * @author leon
+ */
+@ToString(callSuper = true)
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class UserPermissionChangedEvent extends RemoteBroadcastMessage {
+
+    public UserPermissionChangedEvent(String tenantId) {
+        super(tenantId);
+    }
+
+}
@@ -12,6 +12,7 @@ import com.milesight.beaveriot.base.utils.snowflake.SnowflakeUtil;
 import com.milesight.beaveriot.context.api.IntegrationServiceProvider;
 import com.milesight.beaveriot.context.constants.CacheKeyConstants;
 import com.milesight.beaveriot.context.integration.model.Integration;
+import com.milesight.beaveriot.context.security.TenantContext;
 import com.milesight.beaveriot.context.support.KeyValidator;
 import com.milesight.beaveriot.dashboard.dto.DashboardDTO;
 import com.milesight.beaveriot.dashboard.facade.IDashboardFacade;
@@ -19,9 +20,11 @@ import com.milesight.beaveriot.data.util.PageConverter;
 import com.milesight.beaveriot.device.dto.DeviceNameDTO;
 import com.milesight.beaveriot.device.facade.IDeviceFacade;
 import com.milesight.beaveriot.entity.facade.IEntityFacade;
+import com.milesight.beaveriot.pubsub.MessagePubSub;
 import com.milesight.beaveriot.user.constants.UserConstants;
 import com.milesight.beaveriot.user.enums.ResourceType;
 import com.milesight.beaveriot.user.enums.UserErrorCode;
+import com.milesight.beaveriot.user.event.UserPermissionChangedEvent;
 import com.milesight.beaveriot.user.model.Menu;
 import com.milesight.beaveriot.user.model.request.CreateRoleRequest;
 import com.milesight.beaveriot.user.model.request.RoleMenuRequest;
@@ -110,6 +113,9 @@ public class RoleService {
     @Autowired
     private IntegrationServiceProvider integrationServiceProvider;
 
+    @Autowired
+    private MessagePubSub messagePubSub;
+
     @Lazy
     @Autowired
     private RoleService self;
@@ -763,7 +769,7 @@ public class RoleService {
 
     @BatchCacheEvict(cacheNames = CacheKeyConstants.USER_ID_TO_MENUS, keyPrefix = TENANT_PREFIX)
     public void evictUserMenusCache(@CacheKeys Collection<Long> userIds) {
-        // do nothing
+        publishPermissionChanged();
     }
 
 
@@ -876,12 +882,12 @@ public class RoleService {
 
     @BatchCacheEvict(cacheNames = CacheKeyConstants.USER_ID_TO_ROLES, keyPrefix = TENANT_PREFIX)
     public void evictUserRolesCache(@CacheKeys Collection<Long> userIds) {
-        // do nothing
+        publishPermissionChanged();
     }
 
     @BatchCacheEvict(cacheNames = CacheKeyConstants.ROLE_ID_TO_USERS, keyPrefix = TENANT_PREFIX)
     public void evictRoleUsersCache(@CacheKeys Collection<Long> roleIds) {
-        // do nothing
+        publishPermissionChanged();
     }
 
     @Transactional(rollbackFor = Throwable.class)
@@ -913,7 +919,7 @@ public class RoleService {
 
     @CacheEvict(cacheNames = CacheKeyConstants.ROLE_ID_TO_USERS, key = "T(com.milesight.beaveriot.context.security.TenantContext).getTenantId()+':'+#p0")
     public void evictUserRolesCacheByRoleId(Long roleId) {
-        // do nothing
+        publishPermissionChanged();
     }
 
     public List<RoleResourcePO> getRoleResourcePOsByRoleId(Long roleId) {
@@ -955,7 +961,14 @@ public class RoleService {
 
     @BatchCacheEvict(cacheNames = CacheKeyConstants.ROLE_ID_TO_RESOURCES, keyPrefix = TENANT_PREFIX)
     public void evictRoleResourcesCache(@CacheKeys Collection<Long> roleIds) {
-        // do nothing
+        publishPermissionChanged();
+    }
+
+    /**
+     * The data permissions derived from the roles are cached on every node, see the permission snapshots
+     */
+    private void publishPermissionChanged() {
+        messagePubSub.publishAfterCommit(new UserPermissionChangedEvent(TenantContext.getTenantId()));
     }
 
     public Long getSuperAdminRoleId() {
@@ -4,7 +4,6 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.milesight.beaveriot.base.enums.ErrorCode;
 import com.milesight.beaveriot.base.exception.ServiceException;
 import com.milesight.beaveriot.base.page.Sorts;
-import com.milesight.beaveriot.base.utils.snowflake.SnowflakeUtil;
 import com.milesight.beaveriot.rule.manager.model.request.SearchWorkflowLogsRequest;
 import com.milesight.beaveriot.rule.manager.model.response.WorkflowLogDetailResponse;
 import com.milesight.beaveriot.rule.manager.model.response.WorkflowLogResponse;
@@ -13,7 +12,7 @@ import com.milesight.beaveriot.rule.manager.po.WorkflowLogPO;
 import com.milesight.beaveriot.rule.manager.po.WorkflowPO;
 import com.milesight.beaveriot.rule.manager.repository.WorkflowLogDataRepository;
 import com.milesight.beaveriot.rule.manager.repository.WorkflowLogRepository;
-import com.milesight.beaveriot.rule.manager.repository.WorkflowRepository;
+import com.milesight.beaveriot.rule.manager.support.WorkflowTraceCompressor;
 import com.milesight.beaveriot.rule.model.trace.FlowTraceInfo;
 import com.milesight.beaveriot.rule.model.trace.NodeTraceInfo;
 import com.milesight.beaveriot.rule.support.JsonHelper;
@@ -34,7 +33,7 @@ public class WorkflowLogService {
     WorkflowService workflowService;
 
     @Autowired
-    WorkflowRepository workflowRepository;
+    WorkflowLogWriter workflowLogWriter;
 
     @Autowired
     WorkflowLogRepository workflowLogRepository;
@@ -83,7 +82,7 @@ public class WorkflowLogService {
                 .startTime(wl.getStartTime())
                 .version(wl.getVersion())
                 .message(wl.getMessage())
-                .traceInfo(JsonHelper.fromJSON(wld.getData(), new TypeReference<List<NodeTraceInfo>>() {}))
+                .traceInfo(JsonHelper.fromJSON(WorkflowTraceCompressor.decompress(wld.getData()), new TypeReference<List<NodeTraceInfo>>() {}))
                 .build();
     }
 
@@ -98,37 +97,6 @@ public class WorkflowLogService {
     @EventListener
     @Async
     public void onFlowLogEvent(FlowTraceInfo event) {
-        Long flowId = null;
-        try {
-            flowId = Long.valueOf(event.getFlowId());
-        } catch (NumberFormatException e) {
-            log.error("Parse flow id error: {}",event.getFlowId());
-            return;
-        }
-
-        WorkflowPO workflowPO = workflowRepository.findById(flowId).orElse(null);
-        if (workflowPO == null) {
-            log.error("Cannot find flow {}", flowId);
-            return;
-        }
-
-        WorkflowLogPO workflowLogPO = new WorkflowLogPO();
-        workflowLogPO.setId(SnowflakeUtil.nextId());
-        workflowLogPO.setStatus(event.getStatus().toString());
-        workflowLogPO.setFlowId(flowId);
-        workflowLogPO.setStartTime(event.getStartTime());
-        workflowLogPO.setTimeCost((int) event.getTimeCost());
-        workflowLogPO.setTenantId(workflowPO.getTenantId());
-        workflowLogPO.setUserId(workflowPO.getUserId());
-        workflowLogPO.setMessage(event.getMessage());
-        // BUG: Versions may be inconsistent
-        workflowLogPO.setVersion(workflowPO.getVersion());
-
-        workflowLogPO = workflowLogRepository.save(workflowLogPO);
-
-        WorkflowLogDataPO workflowLogDataPO = new WorkflowLogDataPO();
-        workflowLogDataPO.setId(workflowLogPO.getId());
-        workflowLogDataPO.setData(JsonHelper.toJSON(event.getTraceInfos()));
-        workflowLogDataRepository.save(workflowLogDataPO);
+        workflowLogWriter.submit(event);
     }
 }
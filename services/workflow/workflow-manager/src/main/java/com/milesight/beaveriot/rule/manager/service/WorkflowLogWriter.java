@@ -0,0 +1,285 @@
+package com.milesight.beaveriot.rule.manager.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.milesight.beaveriot.base.utils.snowflake.SnowflakeUtil;
+import com.milesight.beaveriot.rule.enums.ExecutionStatus;
+import com.milesight.beaveriot.rule.manager.po.WorkflowLogDataPO;
+import com.milesight.beaveriot.rule.manager.po.WorkflowLogPO;
+import com.milesight.beaveriot.rule.manager.po.WorkflowPO;
+import com.milesight.beaveriot.rule.manager.repository.WorkflowRepository;
+import com.milesight.beaveriot.rule.manager.support.WorkflowLogConfig;
+import com.milesight.beaveriot.rule.manager.support.WorkflowTraceCompressor;
+import com.milesight.beaveriot.rule.model.trace.FlowTraceInfo;
+import com.milesight.beaveriot.rule.support.JsonHelper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded write-behind writer of workflow execution logs.
+ * <p>
+ * The tenant, owner and version of a workflow are cached for a short time instead of being loaded for every
+ * execution, and large traces are compressed, see {@link WorkflowTraceCompressor}. Logs are collected until the batch
+ * size is reached or the flush interval since the first buffered log has elapsed, then the logs and their traces are
+ * inserted with JDBC batches in one transaction. Once the backlog exceeds its threshold, the overload policy decides
+ * which new logs are kept. New logs are dropped when the buffer is full.
+ *
+ * @author leon
+ */
+@Slf4j
+@Component
+public class WorkflowLogWriter {
+
+    private static final String INSERT_LOG_SQL = """
+            INSERT INTO t_flow_log (id, flow_id, version, start_time, time_cost, status, message, tenant_id, user_id, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String INSERT_LOG_DATA_SQL = """
+            INSERT INTO t_flow_log_data (id, data, created_at)
+            VALUES (?, ?, ?)
+            """;
+
+    private static final int MAX_MESSAGE_LENGTH = 1000;
+
+    private final WorkflowLogConfig config;
+
+    private final WorkflowRepository workflowRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Cache<Long, WorkflowMetadata> metadataCache;
+
+    private final AtomicLong droppedLogs = new AtomicLong();
+
+    private BlockingQueue<PendingLog> queue;
+
+    private Thread flushThread;
+
+    private volatile boolean running;
+
+    public WorkflowLogWriter(WorkflowLogConfig config, WorkflowRepository workflowRepository, JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager) {
+        this.config = config;
+        this.workflowRepository = workflowRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.metadataCache = Caffeine.newBuilder()
+                .expireAfterWrite(config.getMetadataCacheTtl())
+                .maximumSize(10000)
+                .build();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!config.isWriteBehind()) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(config.getCapacity());
+        running = true;
+        flushThread = new Thread(this::runFlushLoop, "workflow-log-write-behind");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    /**
+     * Write the log of a workflow execution, asynchronously if write-behind is enabled
+     */
+    public void submit(FlowTraceInfo event) {
+        Long flowId;
+        try {
+            flowId = Long.valueOf(event.getFlowId());
+        } catch (NumberFormatException e) {
+            log.error("Parse flow id error: {}", event.getFlowId());
+            return;
+        }
+
+        boolean withTrace = true;
+        if (running && queue.size() >= config.getBacklogThreshold()) {
+            switch (config.getOverloadPolicy()) {
+                case SAMPLE -> {
+                    if (event.getStatus() == ExecutionStatus.SUCCESS && ThreadLocalRandom.current().nextDouble() >= config.getSampleRate()) {
+                        droppedLogs.incrementAndGet();
+                        return;
+                    }
+                }
+                case DROP_TRACE -> withTrace = false;
+                case DROP -> {
+                    droppedLogs.incrementAndGet();
+                    return;
+                }
+            }
+        }
+
+        WorkflowMetadata metadata = metadataCache.get(flowId, this::loadMetadata);
+        if (metadata == null) {
+            log.error("Cannot find flow {}", flowId);
+            return;
+        }
+
+        PendingLog pendingLog = toPendingLog(flowId, metadata, event, withTrace);
+        if (!running) {
+            write(List.of(pendingLog));
+        } else if (!queue.offer(pendingLog)) {
+            droppedLogs.incrementAndGet();
+        }
+    }
+
+    /**
+     * Forget the cached metadata of a workflow, e.g. after it is redeployed with a new version
+     */
+    public void invalidate(String flowId) {
+        try {
+            metadataCache.invalidate(Long.valueOf(flowId));
+        } catch (NumberFormatException e) {
+            // not a persisted workflow
+        }
+    }
+
+    private WorkflowMetadata loadMetadata(Long flowId) {
+        WorkflowPO workflowPO = workflowRepository.findById(flowId).orElse(null);
+        if (workflowPO == null) {
+            return null;
+        }
+        return new WorkflowMetadata(workflowPO.getTenantId(), workflowPO.getUserId(), workflowPO.getVersion());
+    }
+
+    private PendingLog toPendingLog(Long flowId, WorkflowMetadata metadata, FlowTraceInfo event, boolean withTrace) {
+        WorkflowLogPO workflowLogPO = new WorkflowLogPO();
+        workflowLogPO.setId(SnowflakeUtil.nextId());
+        workflowLogPO.setStatus(event.getStatus().toString());
+        workflowLogPO.setFlowId(flowId);
+        workflowLogPO.setStartTime(event.getStartTime());
+        workflowLogPO.setTimeCost((int) event.getTimeCost());
+        workflowLogPO.setTenantId(metadata.tenantId());
+        workflowLogPO.setUserId(metadata.userId());
+        String message = event.getMessage();
+        workflowLogPO.setMessage(message != null && message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH) : message);
+        // BUG: Versions may be inconsistent
+        workflowLogPO.setVersion(metadata.version());
+
+        WorkflowLogDataPO workflowLogDataPO = new WorkflowLogDataPO();
+        workflowLogDataPO.setId(workflowLogPO.getId());
+        String trace = JsonHelper.toJSON(withTrace ? event.getTraceInfos() : List.of());
+        workflowLogDataPO.setData(WorkflowTraceCompressor.compress(trace, config.getCompressThreshold().toBytes()));
+        return new PendingLog(workflowLogPO, workflowLogDataPO);
+    }
+
+    private void runFlushLoop() {
+        long flushIntervalNanos = config.getFlushInterval().toNanos();
+        int batchSize = config.getBatchSize();
+        List<PendingLog> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingLog first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    PendingLog next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // stop waiting, write what is collected and drain the rest
+                queue.drainTo(batch);
+            }
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<PendingLog> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long dropped = droppedLogs.getAndSet(0);
+        if (dropped > 0) {
+            log.warn("Dropped {} workflow logs, backlog: {}", dropped, queue.size());
+        }
+        try {
+            write(batch);
+        } catch (Exception e) {
+            if (batch.size() > 1) {
+                log.warn("Write {} workflow logs failed, retry one by one", batch.size(), e);
+                batch.forEach(pendingLog -> flush(List.of(pendingLog)));
+            } else {
+                log.error("Write workflow log {} failed", batch.get(0).workflowLog().getId(), e);
+            }
+        }
+    }
+
+    /**
+     * Insert the logs and their traces, the tenant id is written explicitly because these statements do not pass
+     * through the tenant statement inspector of hibernate
+     */
+    private void write(List<PendingLog> logs) {
+        long now = System.currentTimeMillis();
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_LOG_SQL, logs, logs.size(), (ps, pendingLog) -> {
+                WorkflowLogPO workflowLog = pendingLog.workflowLog();
+                ps.setLong(1, workflowLog.getId());
+                ps.setLong(2, workflowLog.getFlowId());
+                ps.setInt(3, workflowLog.getVersion());
+                ps.setLong(4, workflowLog.getStartTime());
+                ps.setInt(5, workflowLog.getTimeCost());
+                ps.setString(6, workflowLog.getStatus());
+                ps.setString(7, workflowLog.getMessage());
+                ps.setString(8, workflowLog.getTenantId());
+                if (workflowLog.getUserId() == null) {
+                    ps.setNull(9, Types.BIGINT);
+                } else {
+                    ps.setLong(9, workflowLog.getUserId());
+                }
+                ps.setLong(10, now);
+            });
+            jdbcTemplate.batchUpdate(INSERT_LOG_DATA_SQL, logs, logs.size(), (ps, pendingLog) -> {
+                ps.setLong(1, pendingLog.workflowLogData().getId());
+                ps.setString(2, pendingLog.workflowLogData().getData());
+                ps.setLong(3, now);
+            });
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            flushThread.join(config.getFlushInterval().toMillis() * 10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flushThread.isAlive()) {
+            flushThread.interrupt();
+        }
+    }
+
+    private record WorkflowMetadata(String tenantId, Long userId, Integer version) {
+    }
+
+    private record PendingLog(WorkflowLogPO workflowLog, WorkflowLogDataPO workflowLogData) {
+    }
+}
@@ -86,6 +86,9 @@ public class WorkflowService {
 
     @Autowired
     MessagePubSub messagePubSub;
+
+    @Autowired
+    WorkflowLogWriter workflowLogWriter;
     private final AtomicBoolean workflowPrepared = new AtomicBoolean(true);
 
     @Async
@@ -273,6 +276,7 @@ public class WorkflowService {
         TenantContext.setTenantId(tenantId);
         ruleEngineLifecycleManager.deployFlow(ruleFlowConfig);
         WorkflowTenantCache.INSTANCE.put(deployEvent.getId().toString(), tenantId);
+        workflowLogWriter.invalidate(deployEvent.getId().toString());
     }
 
     public void removeFlowAndNotify(WorkflowPO workflowPO) {
@@ -284,6 +288,7 @@ public class WorkflowService {
     public void removeFlow(BaseWorkflowEvent removeEvent) {
         ruleEngineLifecycleManager.removeFlow(removeEvent.getId().toString());
         WorkflowTenantCache.INSTANCE.remove(removeEvent.getId().toString());
+        workflowLogWriter.invalidate(removeEvent.getId().toString());
     }
 
     public void disableFlowImmediately(Long flowId) {
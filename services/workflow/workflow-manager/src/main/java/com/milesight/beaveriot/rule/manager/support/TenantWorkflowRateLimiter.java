@@ -2,8 +2,10 @@ package com.milesight.beaveriot.rule.manager.support;
 
 import com.google.common.collect.Maps;
 import com.milesight.beaveriot.semaphore.DistributedSemaphore;
+import com.milesight.beaveriot.semaphore.lease.LeasingSemaphore;
 import com.milesight.beaveriot.user.dto.TenantDTO;
 import com.milesight.beaveriot.user.facade.IUserFacade;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
@@ -28,7 +30,7 @@ public class TenantWorkflowRateLimiter {
     public TenantWorkflowRateLimiter(WorkflowRateLimitConfig workflowRateLimitConfig, IUserFacade userFacade, DistributedSemaphore distributedSemaphore) {
         this.workflowRateLimitConfig = workflowRateLimitConfig;
         this.userFacade = userFacade;
-        this.distributedSemaphore = distributedSemaphore;
+        this.distributedSemaphore = createSemaphore(distributedSemaphore);
         initTenantTypeSemaphorePermitsMap();
         initTenantSemaphore();
     }
@@ -47,6 +49,22 @@ public class TenantWorkflowRateLimiter {
         distributedSemaphore.release(getKey(tenantId), permitId);
     }
 
+    @PreDestroy
+    public void destroy() {
+        if (distributedSemaphore instanceof LeasingSemaphore leasingSemaphore) {
+            leasingSemaphore.destroy();
+        }
+    }
+
+    private DistributedSemaphore createSemaphore(DistributedSemaphore distributedSemaphore) {
+        WorkflowRateLimitConfig.Lease lease = workflowRateLimitConfig.getLease();
+        if (!workflowRateLimitConfig.isEnabled() || lease == null || !lease.isEnabled()) {
+            return distributedSemaphore;
+        }
+        // keep the semaphore off the critical path of each exchange, permits are leased in blocks
+        return new LeasingSemaphore(distributedSemaphore, lease.getBlockSize(), lease.getMaxShare(), Duration.ofMillis(lease.getIdleTimeout()));
+    }
+
     private void initTenantTypeSemaphorePermitsMap() {
         tenantTypeSemaphorePermitsMap = Maps.newConcurrentMap();
         if (!CollectionUtils.isEmpty(workflowRateLimitConfig.getTenantConcurrency())) {
@@ -0,0 +1,76 @@
+package com.milesight.beaveriot.rule.manager.support;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings of the write-behind persistence of workflow execution logs.
+ *
+ * @author leon
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "workflow.log")
+public class WorkflowLogConfig {
+
+    /**
+     * Logs are buffered and written in batches if enabled, otherwise each log is written on its own
+     */
+    private boolean writeBehind = true;
+
+    /**
+     * Maximum number of logs waiting to be written, new logs are dropped when it is full
+     */
+    private int capacity = 10000;
+
+    /**
+     * Maximum number of logs written in one batch
+     */
+    private int batchSize = 200;
+
+    /**
+     * Maximum time a log waits in the buffer before it is written
+     */
+    private Duration flushInterval = Duration.ofMillis(500);
+
+    /**
+     * Number of buffered logs above which the {@link #overloadPolicy} applies to new logs
+     */
+    private int backlogThreshold = 5000;
+
+    private OverloadPolicy overloadPolicy = OverloadPolicy.SAMPLE;
+
+    /**
+     * Share of the successful executions logged while overloaded, with the {@link OverloadPolicy#SAMPLE} policy
+     */
+    private double sampleRate = 0.1;
+
+    /**
+     * Traces larger than this size are stored compressed
+     */
+    private DataSize compressThreshold = DataSize.ofKilobytes(1);
+
+    /**
+     * Time the tenant, owner and version of a workflow are cached for its logs
+     */
+    private Duration metadataCacheTtl = Duration.ofSeconds(30);
+
+    public enum OverloadPolicy {
+        /**
+         * Keep all failed executions and a sample of the successful ones
+         */
+        SAMPLE,
+        /**
+         * Keep the logs but drop their node traces
+         */
+        DROP_TRACE,
+        /**
+         * Drop the logs
+         */
+        DROP
+    }
+}
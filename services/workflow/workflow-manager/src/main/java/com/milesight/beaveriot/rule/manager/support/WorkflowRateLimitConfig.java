@@ -17,4 +17,16 @@ public class WorkflowRateLimitConfig {
     private boolean enabled = false;
     private long timeout = 5000;
     private Map<String, Integer> tenantConcurrency;
+    private Lease lease = new Lease();
+
+    /**
+     * Local leasing of the permits of the distributed tenant semaphores
+     */
+    @Data
+    public static class Lease {
+        private boolean enabled = true;
+        private int blockSize = 2;
+        private double maxShare = 0.5;
+        private long idleTimeout = 2000;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package com.milesight.beaveriot.rule.manager.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of the JSON traces stored in the text column of the workflow log data.
+ * <p>
+ * A compressed trace is the base64 of its gzip bytes behind a prefix, which a JSON trace can never start with, so
+ * the traces stored before compression was introduced are still read as they are.
+ *
+ * @author leon
+ */
+public final class WorkflowTraceCompressor {
+
+    private static final String COMPRESSED_PREFIX = "gz:";
+
+    private WorkflowTraceCompressor() {
+    }
+
+    /**
+     * Compress the trace if its UTF-8 size exceeds the threshold
+     */
+    public static String compress(String trace, long threshold) {
+        if (trace == null) {
+            return null;
+        }
+        byte[] bytes = trace.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= threshold) {
+            return trace;
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return COMPRESSED_PREFIX + Base64.getEncoder().encodeToString(output.toByteArray());
+    }
+
+    public static String decompress(String data) {
+        if (data == null || !data.startsWith(COMPRESSED_PREFIX)) {
+            return data;
+        }
+        byte[] bytes = Base64.getDecoder().decode(data.substring(COMPRESSED_PREFIX.length()));
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
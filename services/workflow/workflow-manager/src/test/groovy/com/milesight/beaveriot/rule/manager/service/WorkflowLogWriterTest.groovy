@@ -0,0 +1,175 @@
+package com.milesight.beaveriot.rule.manager.service
+
+import com.milesight.beaveriot.rule.enums.ExecutionStatus
+import com.milesight.beaveriot.rule.manager.po.WorkflowPO
+import com.milesight.beaveriot.rule.manager.repository.WorkflowRepository
+import com.milesight.beaveriot.rule.manager.support.WorkflowLogConfig
+import com.milesight.beaveriot.rule.manager.support.WorkflowTraceCompressor
+import com.milesight.beaveriot.rule.model.trace.FlowTraceInfo
+import com.milesight.beaveriot.rule.model.trace.NodeTraceInfo
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.jdbc.datasource.DataSourceTransactionManager
+import org.springframework.jdbc.datasource.SingleConnectionDataSource
+import org.springframework.util.unit.DataSize
+import spock.lang.Specification
+
+import java.time.Duration
+
+/**
+ * @author leon
+ */
+class WorkflowLogWriterTest extends Specification {
+
+    SingleConnectionDataSource dataSource = new SingleConnectionDataSource("jdbc:h2:mem:workflow_log_writer;DB_CLOSE_DELAY=-1", true)
+
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource)
+
+    WorkflowLogConfig config = new WorkflowLogConfig(writeBehind: false, flushInterval: Duration.ofMillis(50))
+
+    WorkflowRepository workflowRepository
+
+    WorkflowLogWriter writer
+
+    def setup() {
+        workflowRepository = Mock(WorkflowRepository)
+        jdbcTemplate.execute("""
+                CREATE TABLE t_flow_log (
+                    id BIGINT PRIMARY KEY, flow_id BIGINT NOT NULL, version INTEGER NOT NULL, start_time BIGINT NOT NULL,
+                    time_cost INTEGER, status VARCHAR(31), message VARCHAR(1000), tenant_id VARCHAR(255) NOT NULL,
+                    user_id BIGINT, created_at BIGINT NOT NULL)
+                """)
+        jdbcTemplate.execute("CREATE TABLE t_flow_log_data (id BIGINT PRIMARY KEY, data CLOB, created_at BIGINT NOT NULL)")
+    }
+
+    def cleanup() {
+        writer?.stop()
+        jdbcTemplate.execute("DROP ALL OBJECTS")
+        dataSource.destroy()
+    }
+
+    WorkflowLogWriter start() {
+        writer = new WorkflowLogWriter(config, workflowRepository, jdbcTemplate, new DataSourceTransactionManager(dataSource))
+        writer.start()
+        return writer
+    }
+
+    static FlowTraceInfo event(String flowId, ExecutionStatus status = ExecutionStatus.SUCCESS, String message = null,
+                               List<NodeTraceInfo> traceInfos = []) {
+        return new FlowTraceInfo(flowId: flowId, status: status, message: message, timeCost: 5, traceInfos: traceInfos)
+    }
+
+    static NodeTraceInfo nodeTrace(int index) {
+        return new NodeTraceInfo(nodeId: "node-" + index, nodeName: "name-" + index, output: "x" * 100)
+    }
+
+    List<Map<String, Object>> logs() {
+        return jdbcTemplate.queryForList("SELECT * FROM t_flow_log l JOIN t_flow_log_data d ON l.id = d.id")
+    }
+
+    def "log should be written with the cached metadata of the workflow"() {
+        given:
+        start()
+
+        when:
+        writer.submit(event("1"))
+        writer.submit(event("1", ExecutionStatus.ERROR, "failed"))
+
+        then:
+        1 * workflowRepository.findById(1L) >> Optional.of(new WorkflowPO(id: 1L, version: 2, tenantId: "t1", userId: 3L))
+        logs().collect { [it.FLOW_ID, it.VERSION, it.TENANT_ID, it.USER_ID, it.STATUS, it.MESSAGE] }.toSet() == [
+                [1L, 2, "t1", 3L, "SUCCESS", null],
+                [1L, 2, "t1", 3L, "ERROR", "failed"]
+        ].toSet()
+    }
+
+    def "log of an invalid or unknown workflow should be skipped"() {
+        given:
+        start()
+        workflowRepository.findById(2L) >> Optional.empty()
+
+        when:
+        writer.submit(event("not-a-number"))
+        writer.submit(event("2"))
+
+        then:
+        logs().isEmpty()
+    }
+
+    def "message longer than 1000 characters should be truncated"() {
+        given:
+        start()
+        workflowRepository.findById(1L) >> Optional.of(new WorkflowPO(id: 1L, version: 1, tenantId: "t1"))
+
+        when:
+        writer.submit(event("1", ExecutionStatus.ERROR, "a" * 999 + "bc"))
+
+        then:
+        def message = logs()[0].MESSAGE as String
+        message.length() == 1000
+        message == "a" * 999 + "b"
+    }
+
+    def "large trace should be stored compressed and read back"() {
+        given:
+        config.compressThreshold = DataSize.ofBytes(512)
+        start()
+        workflowRepository.findById(1L) >> Optional.of(new WorkflowPO(id: 1L, version: 1, tenantId: "t1"))
+
+        when:
+        writer.submit(event("1", ExecutionStatus.SUCCESS, null, (1..20).collect { nodeTrace(it) }))
+        writer.submit(event("1", ExecutionStatus.SUCCESS, null, [nodeTrace(0)]))
+
+        then:
+        def data = logs()*.DATA as List<String>
+        data.count { it.startsWith("gz:") } == 1
+        data.collect { WorkflowTraceCompressor.decompress(it) }.every { it.startsWith('[{') && it.contains('node-') }
+        WorkflowTraceCompressor.decompress(data.find { it.startsWith("gz:") }).contains('node-20')
+    }
+
+    def "buffered logs should be written on stop"() {
+        given:
+        config.writeBehind = true
+        config.flushInterval = Duration.ofSeconds(1)
+        start()
+        workflowRepository.findById(1L) >> Optional.of(new WorkflowPO(id: 1L, version: 1, tenantId: "t1"))
+
+        when:
+        5.times { writer.submit(event("1")) }
+        writer.stop()
+
+        then:
+        logs().size() == 5
+    }
+
+    def "traces should be dropped while overloaded with the drop trace policy"() {
+        given:
+        config.writeBehind = true
+        config.backlogThreshold = 0
+        config.overloadPolicy = WorkflowLogConfig.OverloadPolicy.DROP_TRACE
+        start()
+        workflowRepository.findById(1L) >> Optional.of(new WorkflowPO(id: 1L, version: 1, tenantId: "t1"))
+
+        when:
+        writer.submit(event("1", ExecutionStatus.SUCCESS, null, [nodeTrace(1)]))
+        writer.stop()
+
+        then:
+        logs()*.DATA as List<String> == ["[]"]
+    }
+
+    def "logs should be dropped while overloaded with the drop policy"() {
+        given:
+        config.writeBehind = true
+        config.backlogThreshold = 0
+        config.overloadPolicy = WorkflowLogConfig.OverloadPolicy.DROP
+        start()
+
+        when:
+        writer.submit(event("1"))
+        writer.stop()
+
+        then:
+        0 * workflowRepository.findById(_)
+        logs().isEmpty()
+    }
+}
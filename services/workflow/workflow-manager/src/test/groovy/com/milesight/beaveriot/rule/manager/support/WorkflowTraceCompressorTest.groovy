@@ -0,0 +1,49 @@
+package com.milesight.beaveriot.rule.manager.support
+
+import spock.lang.Specification
+
+/**
+ * @author leon
+ */
+class WorkflowTraceCompressorTest extends Specification {
+
+    def "trace not larger than the threshold should be kept as it is"() {
+        expect:
+        WorkflowTraceCompressor.compress(trace, 9) == trace
+
+        where:
+        trace << [null, "", "[]", '[{"a":1}]', "[\"中文\"]"]
+    }
+
+    def "threshold should be compared with the UTF-8 size"() {
+        given:
+        // 4 characters, 12 bytes
+        def trace = "中文中文"
+
+        expect:
+        WorkflowTraceCompressor.compress(trace, 4).startsWith("gz:")
+        WorkflowTraceCompressor.compress(trace, 12) == trace
+    }
+
+    def "compressed trace should be decompressed to the original trace"() {
+        given:
+        def trace = '[' + (1..200).collect { '{"nodeId":"node-' + it + '","output":"输出' + it + '"}' }.join(',') + ']'
+
+        when:
+        def compressed = WorkflowTraceCompressor.compress(trace, 1024)
+
+        then:
+        compressed.startsWith("gz:")
+        compressed.length() < trace.length()
+        Base64.getDecoder().decode(compressed.substring(3)).length > 0
+        WorkflowTraceCompressor.decompress(compressed) == trace
+    }
+
+    def "trace stored without compression should be read as it is"() {
+        expect:
+        WorkflowTraceCompressor.decompress(data) == data
+
+        where:
+        data << [null, "", "[]", '[{"nodeId":"gz:1"}]']
+    }
+}